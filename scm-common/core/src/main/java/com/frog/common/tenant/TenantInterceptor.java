@@ -1,9 +1,12 @@
 package com.frog.common.tenant;
 
 import com.baomidou.mybatisplus.core.toolkit.PluginUtils;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import lombok.extern.slf4j.Slf4j;
 import net.sf.jsqlparser.expression.Expression;
-import net.sf.jsqlparser.expression.StringValue;
+import net.sf.jsqlparser.expression.JdbcNamedParameter;
 import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
 import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
 import net.sf.jsqlparser.parser.CCJSqlParserUtil;
@@ -14,17 +17,22 @@ import net.sf.jsqlparser.statement.select.Select;
 import org.apache.ibatis.executor.statement.StatementHandler;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
 import org.apache.ibatis.mapping.SqlCommandType;
 import org.apache.ibatis.plugin.*;
 import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.reflection.SystemMetaObject;
 
 import java.sql.Connection;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Properties;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * MyBatis 租户拦截器
@@ -37,6 +45,10 @@ import java.util.UUID;
  *
  * 排除表：不需要租户隔离的系统表（如租户表本身）
  *
+ * 改写计划缓存：同一条原始 SQL 只解析一次，缓存带租户占位符的改写结果和占位符位置；
+ * 之后每次执行只把当前租户 ID 作为 JDBC 参数绑定，不再调用 JSqlParser。
+ * 改写后的 SQL 文本与租户无关，PostgreSQL 可跨租户复用预编译语句。
+ *
  * @author Claude Code
  * @since 2025-01-24
  */
@@ -55,6 +67,13 @@ public class TenantInterceptor implements Interceptor {
      */
     private static final String TENANT_COLUMN = "tenant_id";
 
+    /**
+     * 租户参数名（BoundSql 附加参数）
+     */
+    static final String TENANT_PARAM = "__tenant_id";
+
+    private static final int DEFAULT_PLAN_CACHE_SIZE = 2048;
+
     /**
      * 不需要租户隔离的表（系统表、租户表本身等）
      */
@@ -68,6 +87,27 @@ public class TenantInterceptor implements Interceptor {
         "tenant_operation_log"
     ));
 
+    /**
+     * 改写计划缓存（key: 原始 SQL）
+     */
+    private final Cache<String, RewritePlan> planCache;
+
+    /**
+     * JSqlParser 解析次数
+     */
+    private final AtomicLong parseCount = new AtomicLong();
+
+    public TenantInterceptor() {
+        this(DEFAULT_PLAN_CACHE_SIZE);
+    }
+
+    public TenantInterceptor(int planCacheSize) {
+        this.planCache = CacheBuilder.newBuilder()
+                .maximumSize(planCacheSize)
+                .recordStats()
+                .build();
+    }
+
     @Override
     public Object intercept(Invocation invocation) throws Throwable {
         StatementHandler statementHandler = PluginUtils.realTarget(invocation.getTarget());
@@ -95,48 +135,86 @@ public class TenantInterceptor implements Interceptor {
 
         // 获取原始SQL
         BoundSql boundSql = statementHandler.getBoundSql();
-        String originalSql = boundSql.getSql();
+        RewritePlan plan = plan(boundSql.getSql());
+        if (!plan.rewritten()) {
+            return invocation.proceed();
+        }
 
+        // 重新设置SQL，并在租户占位符位置插入参数映射
+        PluginUtils.MPBoundSql mpBoundSql = PluginUtils.mpBoundSql(boundSql);
+        List<ParameterMapping> mappings = new ArrayList<>(mpBoundSql.parameterMappings());
+        ParameterMapping tenantMapping = new ParameterMapping.Builder(
+                mappedStatement.getConfiguration(), TENANT_PARAM, Object.class).build();
+        for (int position : plan.tenantParamPositions()) {
+            mappings.add(Math.min(position, mappings.size()), tenantMapping);
+        }
+        mpBoundSql.sql(plan.sql());
+        mpBoundSql.parameterMappings(mappings);
+        boundSql.setAdditionalParameter(TENANT_PARAM, tenantId);
+
+        log.debug("Injected tenant_id={} into SQL: {}", tenantId, plan.sql());
+        return invocation.proceed();
+    }
+
+    /**
+     * 获取改写计划（缓存未命中时解析）
+     */
+    RewritePlan plan(String originalSql) {
+        try {
+            return planCache.get(originalSql, () -> buildPlan(originalSql));
+        } catch (ExecutionException e) {
+            return RewritePlan.PASSTHROUGH;
+        }
+    }
+
+    /**
+     * 解析并生成改写计划
+     */
+    RewritePlan buildPlan(String originalSql) {
+        parseCount.incrementAndGet();
         try {
             // 解析SQL
             Statement statement = CCJSqlParserUtil.parse(originalSql);
 
             // 根据SQL类型处理
+            boolean rewritten = false;
             if (statement instanceof Select) {
-                handleSelect((Select) statement, tenantId);
+                rewritten = handleSelect((Select) statement);
             }
             // TODO: 处理 UPDATE, DELETE, INSERT
 
-            // 重新设置SQL
-            String newSql = statement.toString();
-            metaObject.setValue("delegate.boundSql.sql", newSql);
-
-            log.debug("Injected tenant_id={} into SQL: {}", tenantId, newSql);
+            if (!rewritten) {
+                return RewritePlan.PASSTHROUGH;
+            }
+            return RewritePlan.of(statement.toString());
         } catch (Exception e) {
+            // 解析失败的 SQL 也缓存为原样执行，避免每次重复解析和打印错误
             log.error("Failed to inject tenant_id into SQL: {}", originalSql, e);
-            // 如果解析失败，继续执行原SQL（安全起见，建议配置为抛异常）
+            return RewritePlan.PASSTHROUGH;
         }
-
-        return invocation.proceed();
     }
 
     /**
      * 处理 SELECT 语句
+     *
+     * @return 是否注入了租户条件
      */
-    private void handleSelect(Select select, UUID tenantId) {
-        PlainSelect plainSelect = (PlainSelect) select.getSelectBody();
+    private boolean handleSelect(Select select) {
+        if (!(select.getSelectBody() instanceof PlainSelect plainSelect)) {
+            return false;
+        }
 
         // 获取表名
         String tableName = plainSelect.getFromItem().toString();
         if (isExcludeTable(tableName)) {
             log.debug("Table {} is excluded from tenant filter", tableName);
-            return;
+            return false;
         }
 
-        // 构建 tenant_id = 'xxx' 条件
+        // 构建 tenant_id = :__tenant_id 条件，生成计划时替换为 JDBC 占位符
         EqualsTo tenantCondition = new EqualsTo();
         tenantCondition.setLeftExpression(new Column(TENANT_COLUMN));
-        tenantCondition.setRightExpression(new StringValue(tenantId.toString()));
+        tenantCondition.setRightExpression(new JdbcNamedParameter(TENANT_PARAM));
 
         // 添加到WHERE条件
         Expression where = plainSelect.getWhere();
@@ -146,6 +224,7 @@ public class TenantInterceptor implements Interceptor {
             AndExpression andExpression = new AndExpression(where, tenantCondition);
             plainSelect.setWhere(andExpression);
         }
+        return true;
     }
 
     /**
@@ -182,6 +261,68 @@ public class TenantInterceptor implements Interceptor {
             for (String table : tables) {
                 EXCLUDE_TABLES.add(table.trim().toLowerCase());
             }
+            planCache.invalidateAll();
         }
     }
+
+    /**
+     * 获取改写计划缓存统计
+     */
+    public PlanCacheStats getPlanCacheStats() {
+        CacheStats stats = planCache.stats();
+        return new PlanCacheStats(planCache.size(), stats.hitCount(), stats.missCount(),
+                stats.evictionCount(), parseCount.get());
+    }
+
+    /**
+     * 改写计划
+     *
+     * @param sql                  改写后的 SQL（租户条件为 JDBC 占位符），null 表示原样执行
+     * @param tenantParamPositions 租户参数在参数列表中的插入位置（升序）
+     */
+    record RewritePlan(String sql, int[] tenantParamPositions) {
+        static final RewritePlan PASSTHROUGH = new RewritePlan(null, new int[0]);
+
+        boolean rewritten() {
+            return sql != null;
+        }
+
+        /**
+         * 把租户命名参数替换为 ?，并记录其前面已有的 ? 个数作为插入位置
+         */
+        static RewritePlan of(String template) {
+            String marker = ":" + TENANT_PARAM;
+            StringBuilder sql = new StringBuilder(template.length());
+            List<Integer> positions = new ArrayList<>(1);
+            int placeholders = 0;
+            boolean inString = false;
+            for (int i = 0; i < template.length(); i++) {
+                char c = template.charAt(i);
+                if (c == '\'') {
+                    inString = !inString;
+                } else if (!inString && c == '?') {
+                    placeholders++;
+                } else if (!inString && template.startsWith(marker, i)) {
+                    // 插入后后续租户参数的位置依次后移
+                    positions.add(placeholders + positions.size());
+                    sql.append('?');
+                    i += marker.length() - 1;
+                    continue;
+                }
+                sql.append(c);
+            }
+            return new RewritePlan(sql.toString(), positions.stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+
+    /**
+     * 改写计划缓存统计
+     *
+     * @param size      缓存条目数
+     * @param hits      命中次数
+     * @param misses    未命中次数
+     * @param evictions 淘汰次数
+     * @param parses    JSqlParser 解析次数
+     */
+    public record PlanCacheStats(long size, long hits, long misses, long evictions, long parses) {}
 }
\ No newline at end of file
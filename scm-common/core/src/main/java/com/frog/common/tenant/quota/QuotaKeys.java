@@ -0,0 +1,54 @@
+package com.frog.common.tenant.quota;
+
+import java.util.UUID;
+
+/**
+ * 配额 Redis key 约定
+ * <p>
+ * 同一租户的 key 都带 {tenantId} hash tag，集群模式下落在同一个 slot，Lua 脚本可以同时操作。
+ * <ul>
+ *   <li>quota:{tenantId}:limits —— 限额 Hash，field 为 {@link QuotaType#name()}，另有 {@link #PUBLISHED_FIELD}
+ *       标记已发布（不限额的租户也有这个 key，key 不存在表示未发布或已丢失）</li>
+ *   <li>quota:{tenantId}:gen —— 每日配额代号，手动重置时递增</li>
+ *   <li>quota:{tenantId}:ORDERS:{epochDay}:{gen} —— 每日计数器，按天和代号分 key，过期自动回收</li>
+ *   <li>quota:{tenantId}:USERS —— 存量计数器（用户、仓库、SKU、存储）</li>
+ * </ul>
+ *
+ * @author Deng
+ * @since 2025-12-25
+ */
+public final class QuotaKeys {
+
+    /**
+     * 限额 Hash 中的发布时间字段
+     */
+    public static final String PUBLISHED_FIELD = "publishedAt";
+
+    private static final String PREFIX = "quota:{";
+
+    private QuotaKeys() {
+    }
+
+    /**
+     * 是否为每日配额（按天计数，每日自动归零）
+     */
+    public static boolean isDaily(QuotaType quotaType) {
+        return quotaType == QuotaType.ORDERS || quotaType == QuotaType.API_CALLS;
+    }
+
+    public static String limits(UUID tenantId) {
+        return PREFIX + tenantId + "}:limits";
+    }
+
+    public static String generation(UUID tenantId) {
+        return PREFIX + tenantId + "}:gen";
+    }
+
+    public static String daily(UUID tenantId, QuotaType quotaType, long epochDay, long generation) {
+        return PREFIX + tenantId + "}:" + quotaType.name() + ":" + epochDay + ":" + generation;
+    }
+
+    public static String stock(UUID tenantId, QuotaType quotaType) {
+        return PREFIX + tenantId + "}:" + quotaType.name();
+    }
+}
@@ -0,0 +1,28 @@
+package com.frog.common.tenant.quota;
+
+import java.util.UUID;
+
+/**
+ * 配额限额来源
+ * <p>
+ * 配额引擎只负责计数，各配额类型的上限由本接口提供（通常来自 tenant_resource_quota 表）。
+ *
+ * @author Deng
+ * @since 2025-12-25
+ */
+public interface QuotaLimitProvider {
+
+    /**
+     * 不限额
+     */
+    long UNLIMITED = -1L;
+
+    /**
+     * 获取租户某类配额的上限
+     *
+     * @param tenantId 租户ID
+     * @param quotaType 配额类型
+     * @return 上限，{@link #UNLIMITED} 表示不限额
+     */
+    long getLimit(UUID tenantId, QuotaType quotaType);
+}
@@ -0,0 +1,23 @@
+package com.frog.common.tenant.quota;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 限额的权威来源（tenant_resource_quota 表）
+ * <p>
+ * Redis 中的限额不存在（尚未发布、数据丢失或被淘汰）时，能访问配额表的服务通过本接口读取并重新发布限额。
+ *
+ * @author Deng
+ * @since 2025-12-25
+ */
+public interface QuotaLimitSource {
+
+    /**
+     * 读取租户限额并重新发布到 Redis
+     *
+     * @param tenantId 租户ID
+     * @return 各配额类型的上限，未设置的类型不限额；租户没有配额记录时返回空 Map
+     */
+    Map<QuotaType, Long> reload(UUID tenantId);
+}
@@ -0,0 +1,92 @@
+package com.frog.common.tenant;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * TenantInterceptor Test Suite
+ *
+ * <p>Covers the rewrite plan cache: plans are keyed by the original SQL text, the tenant
+ * placeholder positions line up with the existing JDBC parameters, and excluded tables
+ * are cached as pass-through.
+ */
+@DisplayName("TenantInterceptor Tests")
+class TenantInterceptorTest {
+
+    private final TenantInterceptor interceptor = new TenantInterceptor();
+
+    @Test
+    @DisplayName("Should parse each distinct SQL once and reuse the cached plan")
+    void shouldCachePlanBySql() {
+        TenantInterceptor.RewritePlan first = interceptor.plan("SELECT * FROM orders WHERE id = ?");
+        TenantInterceptor.RewritePlan second = interceptor.plan("SELECT * FROM orders WHERE id = ?");
+        interceptor.plan("SELECT * FROM orders WHERE code = ?");
+
+        assertThat(second).isSameAs(first);
+        TenantInterceptor.PlanCacheStats stats = interceptor.getPlanCacheStats();
+        assertThat(stats.parses()).isEqualTo(2);
+        assertThat(stats.size()).isEqualTo(2);
+        assertThat(stats.hits()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should bind the tenant as a JDBC placeholder after the existing parameters")
+    void shouldPlaceTenantParameter() {
+        TenantInterceptor.RewritePlan noWhere = interceptor.plan("SELECT id FROM orders");
+        assertThat(noWhere.sql()).isEqualTo("SELECT id FROM orders WHERE tenant_id = ?");
+        assertThat(noWhere.tenantParamPositions()).containsExactly(0);
+
+        TenantInterceptor.RewritePlan twoParams = interceptor.plan("SELECT * FROM orders WHERE status = ? AND id = ?");
+        assertThat(twoParams.sql()).endsWith("AND tenant_id = ?").doesNotContain(TenantInterceptor.TENANT_PARAM);
+        assertThat(twoParams.tenantParamPositions()).containsExactly(2);
+
+        // 字符串字面量中的 ? 不是参数占位符
+        TenantInterceptor.RewritePlan literal = interceptor.plan("SELECT * FROM orders WHERE note = 'a?b' AND id = ?");
+        assertThat(literal.sql()).contains("'a?b'");
+        assertThat(literal.tenantParamPositions()).containsExactly(1);
+    }
+
+    @Test
+    @DisplayName("Should shift later tenant positions by the tenant parameters already inserted")
+    void shouldPlaceMultipleTenantParameters() {
+        String marker = ":" + TenantInterceptor.TENANT_PARAM;
+        TenantInterceptor.RewritePlan plan = TenantInterceptor.RewritePlan.of(
+                "SELECT ? FROM a WHERE tenant_id = " + marker + " AND x = ? AND b.tenant_id = " + marker);
+
+        assertThat(plan.sql()).isEqualTo("SELECT ? FROM a WHERE tenant_id = ? AND x = ? AND b.tenant_id = ?");
+        assertThat(plan.tenantParamPositions()).containsExactly(1, 3);
+    }
+
+    @Test
+    @DisplayName("Should pass excluded tables through and cache that decision")
+    void shouldSkipExcludedTables() {
+        String[] statements = {
+            "SELECT * FROM tenant WHERE id = ?",
+            "SELECT * FROM tenant_config c WHERE c.tenant_id = ?",
+            "SELECT * FROM db_tenant.tenant_package"
+        };
+
+        for (String sql : statements) {
+            assertThat(interceptor.plan(sql).rewritten()).withFailMessage("Should pass through: " + sql).isFalse();
+            assertThat(interceptor.plan(sql)).isSameAs(TenantInterceptor.RewritePlan.PASSTHROUGH);
+        }
+        assertThat(interceptor.getPlanCacheStats().parses()).isEqualTo(statements.length);
+    }
+
+    @Test
+    @DisplayName("Should drop cached plans when exclude tables are configured")
+    void shouldInvalidatePlansOnExcludeTables() {
+        String sql = "SELECT * FROM tenant_interceptor_test_archive WHERE id = ?";
+        assertThat(interceptor.plan(sql).rewritten()).isTrue();
+
+        Properties properties = new Properties();
+        properties.setProperty("excludeTables", "tenant_interceptor_test_archive");
+        interceptor.setProperties(properties);
+
+        assertThat(interceptor.plan(sql).rewritten()).isFalse();
+    }
+}
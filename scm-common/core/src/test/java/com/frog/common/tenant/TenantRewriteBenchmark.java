@@ -0,0 +1,80 @@
+package com.frog.common.tenant;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 租户 SQL 改写基准
+ *
+ * <p>对比每次解析改写（parse）与改写计划缓存（cached）的耗时；TearDown 时打印 JSqlParser 解析次数，
+ * cached 在稳态下解析次数应等于不同 SQL 的条数。
+ *
+ * <p>运行: 编译测试代码后执行 main 方法（类名不以 Test 结尾，不随单元测试执行）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TenantRewriteBenchmark {
+
+    @Param({"simple", "join"})
+    private String shape;
+
+    private String sql;
+    private TenantInterceptor interceptor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sql = switch (shape) {
+            case "simple" -> "SELECT id, sku_code, quantity FROM inv_stock WHERE sku_code = ? AND deleted = 0";
+            default -> """
+                    SELECT s.id, s.sku_code, s.quantity, w.warehouse_name
+                    FROM inv_stock s
+                    LEFT JOIN wms_warehouse w ON w.id = s.warehouse_id
+                    WHERE s.deleted = 0 AND (s.sku_code LIKE ? OR s.sku_name LIKE ?)
+                    ORDER BY s.update_time DESC
+                    LIMIT ? OFFSET ?
+                    """;
+        };
+        interceptor = new TenantInterceptor();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.printf("%n[parses] shape=%s %s%n", shape, interceptor.getPlanCacheStats());
+    }
+
+    @Benchmark
+    public TenantInterceptor.RewritePlan parse() {
+        return interceptor.buildPlan(sql);
+    }
+
+    @Benchmark
+    public TenantInterceptor.RewritePlan cached() {
+        return interceptor.plan(sql);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TenantRewriteBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,92 @@
+package com.frog.common.cache.spring;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 缓存 key 的布隆过滤器（线程安全，只增不删）
+ *
+ * <p>用于以 ID 为 key 的缓存：mightContain 返回 false 的 key 视为确定不存在，TwoLevelCache 直接返回 null，
+ * 不访问 Redis，也不回源数据库。因此过滤器必须先由业务方用全部有效 ID 填充，再调用 {@link #markSeeded()}；
+ * 标记之前过滤器不参与判断。之后新增的 ID 必须经缓存的 put/evict 写入（如新增数据时 @CacheEvict），
+ * 本节点和经失效消息通知到的其他节点会把该 key 加入过滤器。
+ */
+public class KeyBloomFilter {
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+    private volatile boolean seeded;
+
+    /**
+     * @param expectedInsertions 预计元素数
+     * @param fpp                期望误判率，如 0.01
+     */
+    public KeyBloomFilter(long expectedInsertions, double fpp) {
+        long n = Math.max(1, expectedInsertions);
+        long m = (long) Math.ceil(-n * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (m + 63) >>> 6));
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = (long) words << 6;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+    }
+
+    public void put(String key) {
+        long h1 = hash(key);
+        long h2 = mix(h1) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            while (((current = bits.get(word)) & mask) == 0) {
+                if (bits.compareAndSet(word, current, current | mask)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * 全部有效 ID 已填充完毕，此后 mightContain 返回 false 的 key 不再回源
+     */
+    public void markSeeded() {
+        this.seeded = true;
+    }
+
+    public boolean isSeeded() {
+        return seeded;
+    }
+
+    public boolean mightContain(String key) {
+        long h1 = hash(key);
+        long h2 = mix(h1) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * FNV-1a 64
+     */
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    /**
+     * SplitMix64 finalizer
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -1,33 +1,97 @@
 package com.frog.common.cache.spring;
 
+import com.github.benmanes.caffeine.cache.AsyncCache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.script.RedisScript;
 
 import java.time.Duration;
-import java.util.Objects;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * 二级缓存（Caffeine + Redis）
+ *
+ * <p>Redis 中每个 key 存为 hash: v=值, s=逻辑过期时间(ms), d=回源耗时(ms)。key 的物理 TTL 比逻辑 TTL
+ * 多出 staleGrace，逻辑过期后旧值仍可在回源期间返回。
+ *
+ * <p>Redis key 为 tlc:{cache}:{代号}:{key}。clear() 只递增 tlc:gen:{cache}，旧代 key 不再被访问，由 TTL 回收；
+ * 其他节点收到整缓存失效消息时重新读取代号。开启清理器时旧代 key 在后台 UNLINK。
+ *
+ * <p>空值缓存: 回源结果为 null 或 put(key, null) 时写入空值标记（hash 中 n=1，无 v 字段），使用单独的
+ * negativeTtl（为 0 时不缓存空值）。配置了已填充完成的 {@link KeyBloomFilter} 时，过滤器判定不存在的 key
+ * 直接返回 null，不访问 Redis，也不调用 valueLoader。
+ *
+ * <p>{@link #get(Object, Callable)} 的回源保护：
+ * <ul>
+ *   <li>同一 JVM 内同一个 key 只有一个线程回源，其余线程等待同一个 future</li>
+ *   <li>开启租约时，跨实例只有持有租约的节点回源，其余节点返回旧值或短暂等待新值</li>
+ *   <li>按 XFetch 概率提前刷新: now - d * beta * ln(rand) >= s 时由命中的线程提前回源</li>
+ * </ul>
+ */
 @Slf4j
 public class TwoLevelCache implements org.springframework.cache.Cache {
-    private static final String CHANNEL = "cache:invalidation:twolevel";
+    private static final String KEY_PREFIX = "tlc:";
+    private static final String LEASE_PREFIX = "tlc:lease:";
+    private static final String GENERATION_PREFIX = "tlc:gen:";
+    private static final String FIELD_VALUE = "v";
+    private static final String FIELD_SOFT_EXPIRE = "s";
+    private static final String FIELD_LOAD_COST = "d";
+    private static final String FIELD_NEGATIVE = "n";
+    private static final List<Object> FIELDS = List.of(FIELD_VALUE, FIELD_SOFT_EXPIRE, FIELD_LOAD_COST, FIELD_NEGATIVE);
+    private static final long AWAIT_POLL_MILLIS = 20;
+    private static final RedisScript<Long> RELEASE_LEASE = RedisScript.of(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0",
+            Long.class);
 
     private final String name;
     private final Duration ttl;
+    private final Duration negativeTtl;
     private final RedisTemplate<String, Object> redisTemplate;
-    private final com.github.benmanes.caffeine.cache.Cache<@NonNull String, Object> local;
+    private final TwoLevelCacheOptions options;
+    private final TwoLevelCacheInvalidationBus invalidationBus;
+    private final TwoLevelCacheSweeper sweeper;
+    private final String generationKey;
+    private final AsyncCache<@NonNull String, Entry> local;
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private volatile KeyBloomFilter bloomFilter;
+    private volatile long generation;
 
-    public TwoLevelCache(String name, Duration ttl, RedisTemplate<String, Object> redisTemplate, long maxSize) {
+    /**
+     * @param sweeper 旧代 key 清理器，为 null 时旧代 key 只依靠 TTL 回收
+     */
+    public TwoLevelCache(String name, Duration ttl, Duration negativeTtl, RedisTemplate<String, Object> redisTemplate,
+                         long maxSize, TwoLevelCacheOptions options, TwoLevelCacheInvalidationBus invalidationBus,
+                         TwoLevelCacheSweeper sweeper) {
         this.name = name;
         this.ttl = ttl;
+        this.negativeTtl = negativeTtl;
         this.redisTemplate = redisTemplate;
+        this.options = options;
+        this.invalidationBus = invalidationBus;
+        this.sweeper = sweeper;
+        this.generationKey = GENERATION_PREFIX + name;
+        this.generation = readGeneration();
         this.local = Caffeine.newBuilder()
                 .maximumSize(maxSize)
-                .expireAfterWrite(ttl)
+                .expireAfter(new SoftExpiry())
                 .recordStats()
-                .build();
+                .buildAsync();
     }
 
     @NonNull
@@ -45,12 +109,16 @@ public class TwoLevelCache implements org.springframework.cache.Cache {
     @Override
     public ValueWrapper get(@NonNull Object key) {
         Object v = lookup(key);
-        return (v != null) ? () -> v : null;
+        if (v == null) {
+            return null;
+        }
+        Object value = fromStore(v);
+        return () -> value;
     }
 
     @Override
     public <T> T get(@NonNull Object key, Class<T> type) {
-        Object v = lookup(key);
+        Object v = fromStore(lookup(key));
         if (v == null) {
             return null;
         }
@@ -62,29 +130,56 @@ public class TwoLevelCache implements org.springframework.cache.Cache {
 
     @Override
     public <T> T get(@NonNull Object key, @NonNull Callable<T> valueLoader) {
-        Object v = lookup(key);
-        if (v != null) {
-            return uncheckedCast(v);
+        String k = keyString(key);
+        long now = System.currentTimeMillis();
+        CompletableFuture<Entry> existing = local.getIfPresent(k);
+        Entry cached = completedEntry(existing);
+        if (cached != null && cached.isFresh(now)) {
+            if (shouldRefreshEarly(cached, now)) {
+                refreshEarly(k, valueLoader);
+            }
+            return uncheckedCast(fromStore(cached.value()));
+        }
+        if (cached != null) {
+            local.asMap().remove(k, existing);
+        }
+        if (!mightExist(k)) {
+            return null;
+        }
+
+        // 同一个 key 只有放入 future 的线程回源，其余线程等待该 future；回源在调用线程执行以保留线程上下文
+        CompletableFuture<Entry> mine = new CompletableFuture<>();
+        CompletableFuture<Entry> inFlight = local.get(k, (ignored, executor) -> mine);
+        if (inFlight == mine) {
+            try {
+                mine.complete(load(k, valueLoader));
+            } catch (Throwable e) {
+                mine.completeExceptionally(e);
+            }
         }
         try {
-            T loaded = Objects.requireNonNull(valueLoader.call());
-            put(key, loaded);
-            return loaded;
-        } catch (Exception e) {
-            throw new ValueRetrievalException(key, valueLoader, e);
+            return uncheckedCast(fromStore(inFlight.join().value()));
+        } catch (CompletionException e) {
+            throw new ValueRetrievalException(key, valueLoader, e.getCause());
         }
     }
 
     @Override
     public void put(@NonNull Object key, Object value) {
         String k = keyString(key);
-        local.put(k, value);
+        Entry entry = newEntry(value, 0);
+        if (entry.isNegative() && negativeTtl.isZero()) {
+            evict(key);
+            return;
+        }
+        admit(k, entry);
+        local.put(k, CompletableFuture.completedFuture(entry));
         try {
-            redisTemplate.opsForValue().set(redisKey(k), value, ttl);
-            redisTemplate.convertAndSend(CHANNEL, name + "|" + k);
+            writeRemote(k, entry);
         } catch (Exception e) {
             log.warn("TwoLevelCache put redis failed: {}", e.getMessage());
         }
+        invalidationBus.publish(name, k);
     }
 
     @Override
@@ -94,74 +189,295 @@ public class TwoLevelCache implements org.springframework.cache.Cache {
             put(key, value);
             return null;
         }
-        final Object finalExisting = existing;
+        final Object finalExisting = fromStore(existing);
         return () -> finalExisting;
     }
 
     @Override
     public void evict(@NonNull Object key) {
         String k = keyString(key);
-        local.invalidate(k);
+        admit(k, null);
+        local.synchronous().invalidate(k);
         try {
             redisTemplate.delete(redisKey(k));
-            redisTemplate.convertAndSend(CHANNEL, name + "|" + k);
         } catch (Exception e) {
             log.warn("TwoLevelCache evict redis failed: {}", e.getMessage());
         }
+        invalidationBus.publish(name, k);
     }
 
+    /**
+     * 整缓存失效：递增代号，O(1)
+     */
     @Override
     public void clear() {
-        local.invalidateAll();
+        long previous = generation;
         try {
-            redisTemplate.execute(connection -> {
-                try (var cursor = connection.keyCommands().scan(
-                        ScanOptions.scanOptions()
-                                .match(redisKey("*"))
-                                .count(500)
-                                .build())) {
-                    while (cursor.hasNext()) {
-                        byte[] key = cursor.next();
-                        connection.keyCommands().del(key);
-                    }
-                }
-                return null;
-            }, false, true);
-            redisTemplate.convertAndSend(CHANNEL, name + "|*");
+            Long next = redisTemplate.opsForValue().increment(generationKey);
+            if (next != null) {
+                generation = next;
+            }
         } catch (Exception e) {
             log.warn("TwoLevelCache clear redis failed: {}", e.getMessage());
         }
+        local.synchronous().invalidateAll();
+        invalidationBus.publishClear(name);
+        if (sweeper != null && generation != previous) {
+            sweeper.sweep(KEY_PREFIX + name + ":" + previous + ":*");
+        }
     }
 
     public void invalidateLocal(Object key) {
-        local.invalidate(keyString(key));
+        String k = keyString(key);
+        // 其他节点 put/evict 过的 key 可能存在
+        admit(k, null);
+        local.synchronous().invalidate(k);
+    }
+
+    /**
+     * 为以 ID 为 key 的缓存启用布隆过滤器预检（过滤器需已用全部有效 ID 填充并标记完成）
+     */
+    public void useBloomFilter(KeyBloomFilter bloomFilter) {
+        this.bloomFilter = bloomFilter;
     }
 
     public void clearLocal() {
-        local.invalidateAll();
+        generation = readGeneration();
+        local.synchronous().invalidateAll();
     }
 
     public com.github.benmanes.caffeine.cache.stats.CacheStats getLocalStats() {
-        return local.stats();
+        return local.synchronous().stats();
     }
 
     public long localSize() {
-        return local.estimatedSize();
+        return local.synchronous().estimatedSize();
     }
 
+    /**
+     * 返回存储值（空值为 {@link NullValue#INSTANCE}），未命中返回 null
+     */
     private Object lookup(Object key) {
         String k = keyString(key);
-        Object v = local.getIfPresent(k);
-        if (v != null) return v;
+        long now = System.currentTimeMillis();
+        Entry cached = completedEntry(local.getIfPresent(k));
+        if (cached != null && cached.isFresh(now)) {
+            return cached.value();
+        }
+        if (!mightExist(k)) {
+            return null;
+        }
+        Entry remote = readRemote(k);
+        if (remote == null || !remote.isFresh(now)) {
+            return null;
+        }
+        local.put(k, CompletableFuture.completedFuture(remote));
+        return remote.value();
+    }
+
+    /**
+     * 回源（每个 JVM 内同一个 key 只有一个线程进入）
+     */
+    private Entry load(String k, Callable<?> valueLoader) throws Exception {
+        long now = System.currentTimeMillis();
+        Entry remote = readRemote(k);
+        boolean remoteFresh = remote != null && remote.isFresh(now);
+        if (remoteFresh && !shouldRefreshEarly(remote, now)) {
+            return remote;
+        }
+        if (!options.isLeaseEnabled()) {
+            return compute(k, valueLoader);
+        }
+
+        String token = UUID.randomUUID().toString();
+        if (tryLease(k, token)) {
+            try {
+                // 拿到租约前可能已有节点写入新值
+                Entry latest = readRemote(k);
+                if (latest != null && latest.isFresh(now)
+                        && (remote == null || latest.softExpireAt() > remote.softExpireAt())) {
+                    return latest;
+                }
+                return compute(k, valueLoader);
+            } finally {
+                releaseLease(k, token);
+            }
+        }
+
+        // 其他节点正在回源：有值先返回（逻辑过期的旧值只在本地保留 leaseWait），没有则短暂等待
+        if (remoteFresh) {
+            return remote;
+        }
+        if (remote != null) {
+            return new Entry(remote.value(), now + options.getLeaseWait().toMillis(), 0);
+        }
+        Entry awaited = awaitRemote(k);
+        return awaited != null ? awaited : compute(k, valueLoader);
+    }
+
+    /**
+     * XFetch 提前刷新，由抽中的线程同步回源；同一个 key 同时只刷新一次，跨实例需拿到租约
+     */
+    private void refreshEarly(String k, Callable<?> valueLoader) {
+        if (!refreshing.add(k)) {
+            return;
+        }
+        String token = UUID.randomUUID().toString();
+        boolean leased = options.isLeaseEnabled() && tryLease(k, token);
         try {
-            v = redisTemplate.opsForValue().get(redisKey(k));
+            if (leased || !options.isLeaseEnabled()) {
+                local.put(k, CompletableFuture.completedFuture(compute(k, valueLoader)));
+            }
+        } catch (Exception e) {
+            log.warn("TwoLevelCache early refresh failed: {} -> {}", name, e.getMessage());
+        } finally {
+            refreshing.remove(k);
+            if (leased) {
+                releaseLease(k, token);
+            }
+        }
+    }
+
+    private Entry compute(String k, Callable<?> valueLoader) throws Exception {
+        long start = System.nanoTime();
+        Object value = valueLoader.call();
+        long loadCost = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Entry entry = newEntry(value, loadCost);
+        if (entry.isNegative() && negativeTtl.isZero()) {
+            return entry;
+        }
+        admit(k, entry);
+        try {
+            writeRemote(k, entry);
+        } catch (Exception e) {
+            log.warn("TwoLevelCache put redis failed: {}", e.getMessage());
+        }
+        // 回源只是填充缓存，数据本身没有变化，不通知其他节点；其他节点的本地副本按各自的逻辑过期时间淘汰
+        return entry;
+    }
+
+    private boolean shouldRefreshEarly(Entry entry, long now) {
+        double beta = options.getEarlyRefreshBeta();
+        if (beta <= 0 || entry.loadCost() <= 0) {
+            return false;
+        }
+        double gap = -entry.loadCost() * beta * Math.log(ThreadLocalRandom.current().nextDouble());
+        return now + gap >= entry.softExpireAt();
+    }
+
+    private Entry awaitRemote(String k) {
+        long deadline = System.currentTimeMillis() + options.getLeaseWait().toMillis();
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(AWAIT_POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            Entry remote = readRemote(k);
+            if (remote != null && remote.isFresh(System.currentTimeMillis())) {
+                return remote;
+            }
+        }
+        return null;
+    }
+
+    private boolean tryLease(String k, String token) {
+        try {
+            return Boolean.TRUE.equals(redisTemplate.opsForValue()
+                    .setIfAbsent(leaseKey(k), token, options.getLeaseTime()));
+        } catch (Exception e) {
+            // Redis 不可用时各节点自行回源
+            log.warn("TwoLevelCache lease redis failed: {}", e.getMessage());
+            return true;
+        }
+    }
+
+    private void releaseLease(String k, String token) {
+        try {
+            redisTemplate.execute(RELEASE_LEASE, List.of(leaseKey(k)), token);
+        } catch (Exception e) {
+            log.warn("TwoLevelCache release lease failed: {}", e.getMessage());
+        }
+    }
+
+    private Entry readRemote(String k) {
+        try {
+            List<Object> fields = redisTemplate.opsForHash().multiGet(redisKey(k), FIELDS);
+            if (fields.size() < FIELDS.size()) {
+                return null;
+            }
+            Object value = fields.get(0);
+            if (value == null) {
+                if (toLong(fields.get(3)) != 1) {
+                    return null;
+                }
+                value = NullValue.INSTANCE;
+            }
+            return new Entry(value, toLong(fields.get(1)), toLong(fields.get(2)));
         } catch (Exception e) {
             log.warn("TwoLevelCache get redis failed: {}", e.getMessage());
+            return null;
         }
-        if (v != null) {
-            local.put(k, v);
+    }
+
+    private void writeRemote(String k, Entry entry) {
+        String key = redisKey(k);
+        Map<String, Object> fields = new LinkedHashMap<>(4);
+        if (entry.isNegative()) {
+            fields.put(FIELD_NEGATIVE, 1);
+        } else {
+            fields.put(FIELD_VALUE, entry.value());
         }
-        return v;
+        fields.put(FIELD_SOFT_EXPIRE, entry.softExpireAt());
+        fields.put(FIELD_LOAD_COST, entry.loadCost());
+        Duration hardTtl = entry.isNegative() ? negativeTtl : ttl.plus(options.getStaleGrace());
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                ops.opsForHash().putAll(key, fields);
+                ops.expire(key, hardTtl);
+                return null;
+            }
+        });
+    }
+
+    private Entry newEntry(Object value, long loadCost) {
+        boolean negative = value == null || value == NullValue.INSTANCE;
+        Duration life = negative ? negativeTtl : ttl;
+        return new Entry(negative ? NullValue.INSTANCE : value, System.currentTimeMillis() + life.toMillis(), loadCost);
+    }
+
+    private boolean mightExist(String k) {
+        KeyBloomFilter filter = bloomFilter;
+        return filter == null || !filter.isSeeded() || filter.mightContain(k);
+    }
+
+    /**
+     * 写入非空值（entry 为 null 表示 key 可能存在）时把 key 加入布隆过滤器
+     */
+    private void admit(String k, Entry entry) {
+        KeyBloomFilter filter = bloomFilter;
+        if (filter != null && (entry == null || !entry.isNegative())) {
+            filter.put(k);
+        }
+    }
+
+    private static Object fromStore(Object storeValue) {
+        return storeValue == NullValue.INSTANCE ? null : storeValue;
+    }
+
+    private static Entry completedEntry(CompletableFuture<Entry> future) {
+        if (future == null || !future.isDone() || future.isCompletedExceptionally()) {
+            return null;
+        }
+        return future.join();
+    }
+
+    private static long toLong(Object v) {
+        return v instanceof Number n ? n.longValue() : 0L;
     }
 
     @NonNull
@@ -170,11 +486,65 @@ public class TwoLevelCache implements org.springframework.cache.Cache {
     }
 
     private String redisKey(String k) {
-        return name + ":" + k;
+        return KEY_PREFIX + name + ":" + generation + ":" + k;
+    }
+
+    /**
+     * 读取 Redis 中的当前代号，失败时保持原值
+     */
+    private long readGeneration() {
+        try {
+            Object v = redisTemplate.opsForValue().get(generationKey);
+            return v != null ? Long.parseLong(v.toString()) : 0L;
+        } catch (Exception e) {
+            log.warn("TwoLevelCache read generation failed: {}", e.getMessage());
+            return generation;
+        }
+    }
+
+    private String leaseKey(String k) {
+        return LEASE_PREFIX + name + ":" + k;
     }
 
     @SuppressWarnings("unchecked")
     private static <T> T uncheckedCast(Object value) {
         return (T) value;
     }
+
+    /**
+     * 缓存条目
+     *
+     * @param value        缓存值，空值为 {@link NullValue#INSTANCE}
+     * @param softExpireAt 逻辑过期时间（毫秒时间戳）
+     * @param loadCost     回源耗时（毫秒），0 表示未知，不参与提前刷新
+     */
+    private record Entry(Object value, long softExpireAt, long loadCost) {
+        boolean isFresh(long now) {
+            return now < softExpireAt;
+        }
+
+        boolean isNegative() {
+            return value == NullValue.INSTANCE;
+        }
+    }
+
+    /**
+     * 本地条目在逻辑过期时淘汰
+     */
+    private static final class SoftExpiry implements Expiry<String, Entry> {
+        @Override
+        public long expireAfterCreate(String key, Entry entry, long currentTime) {
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, entry.softExpireAt() - System.currentTimeMillis()));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, entry, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
 }
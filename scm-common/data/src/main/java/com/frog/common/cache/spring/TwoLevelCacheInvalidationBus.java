@@ -0,0 +1,268 @@
+package com.frog.common.cache.spring;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 二级缓存失效总线
+ *
+ * <p>put/evict 产生的失效 key 先在本地合并，每 flushWindow 批量发送一条二进制消息；消息按缓存分段，
+ * 每段带发送节点维护的单调版本号：
+ * <ul>
+ *   <li>接收方跳过本节点发出的消息，写入方刚写入的本地值不会被自己的消息清掉</li>
+ *   <li>版本号不大于已收到的版本视为重复或过期消息，直接忽略</li>
+ *   <li>版本号跳号说明有消息丢失（Redis 断连、发送失败），清空该缓存的本地副本</li>
+ *   <li>各节点定期发送心跳段（只带当前版本号），断连恢复后即使没有新的失效也能发现跳号</li>
+ *   <li>没有某节点（或某缓存）的版本记录时按已收到版本 0 处理：新节点从版本 1 开始发送，首条消息不是版本 1
+ *   或首先收到的是心跳，说明之前的消息没有收到（本节点刚启动，或断连超过 60 秒、
+ *   节点记录已过期），同样清空该缓存的本地副本</li>
+ * </ul>
+ *
+ * <p>消息格式: [format:1][nodeId:8][sections:2] + sections × [cacheName:UTF][version:8][flags:1][count:4][key:UTF × count]
+ */
+@Slf4j
+public class TwoLevelCacheInvalidationBus {
+    public static final String CHANNEL = "cache:invalidation:twolevel";
+    /** 与旧版文本消息（Jackson 序列化的字符串以 '"' 开头）区分 */
+    static final byte FORMAT = 0x7F;
+    private static final byte FLAG_CLEAR = 1;
+    private static final byte FLAG_HEARTBEAT = 2;
+    private static final String WILDCARD = "*";
+    private static final int MAX_KEYS_PER_SECTION = 1000;
+    private static final long HEARTBEAT_INTERVAL_MILLIS = 5_000;
+    private static final long NODE_EXPIRE_MILLIS = 60_000;
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final byte[] channel = CHANNEL.getBytes(StandardCharsets.UTF_8);
+    private final long nodeId = ThreadLocalRandom.current().nextLong();
+    private final long flushWindowMillis;
+
+    /** 待发送的失效 key（按缓存合并），由 this 保护 */
+    private Map<String, Set<String>> pending = new HashMap<>();
+    private boolean flushScheduled;
+
+    private final Map<String, AtomicLong> sentVersions = new ConcurrentHashMap<>();
+    private final Map<Long, RemoteNode> remoteNodes = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    public TwoLevelCacheInvalidationBus(RedisTemplate<String, Object> redisTemplate, Duration flushWindow) {
+        this.redisTemplate = redisTemplate;
+        this.flushWindowMillis = Math.max(1, flushWindow.toMillis());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "two-level-cache-invalidation");
+            t.setDaemon(true);
+            return t;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::heartbeat,
+                HEARTBEAT_INTERVAL_MILLIS, HEARTBEAT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 登记单个 key 失效
+     */
+    public void publish(String cacheName, String key) {
+        enqueue(cacheName, key);
+    }
+
+    /**
+     * 登记整个缓存失效
+     */
+    public void publishClear(String cacheName) {
+        enqueue(cacheName, WILDCARD);
+    }
+
+    public void shutdown() {
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(1, TimeUnit.SECONDS)) {
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    /**
+     * 处理收到的消息，返回 false 表示不是本总线的消息格式
+     */
+    boolean receive(byte[] body, TwoLevelCacheManager cacheManager) {
+        if (body == null || body.length == 0 || body[0] != FORMAT) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(body, 1, body.length - 1))) {
+            long sender = in.readLong();
+            if (sender == nodeId) {
+                return true;
+            }
+            RemoteNode node = remoteNodes.computeIfAbsent(sender, id -> new RemoteNode());
+            node.lastSeen = System.currentTimeMillis();
+            int sections = in.readUnsignedShort();
+            for (int i = 0; i < sections; i++) {
+                String cacheName = in.readUTF();
+                long version = in.readLong();
+                byte flags = in.readByte();
+                int count = in.readInt();
+                List<String> keys = new ArrayList<>(count);
+                for (int j = 0; j < count; j++) {
+                    keys.add(in.readUTF());
+                }
+                apply(node, cacheName, version, flags, keys, cacheManager);
+            }
+        } catch (IOException e) {
+            log.warn("TwoLevel cache invalidation message malformed: {}", e.getMessage());
+        }
+        return true;
+    }
+
+    private void apply(RemoteNode node, String cacheName, long version, byte flags, List<String> keys,
+                       TwoLevelCacheManager cacheManager) {
+        synchronized (node) {
+            Long last = node.versions.get(cacheName);
+            boolean heartbeat = (flags & FLAG_HEARTBEAT) != 0;
+            if (last != null && version <= last) {
+                return;
+            }
+            node.versions.put(cacheName, version);
+            long received = last != null ? last : 0L;
+            if (heartbeat || version > received + 1) {
+                log.info("TwoLevel cache invalidation gap detected, flush local: {} {} -> {}", cacheName, last, version);
+                cacheManager.invalidateLocal(cacheName, WILDCARD);
+                return;
+            }
+            if ((flags & FLAG_CLEAR) != 0) {
+                cacheManager.invalidateLocal(cacheName, WILDCARD);
+                return;
+            }
+            for (String key : keys) {
+                cacheManager.invalidateLocal(cacheName, key);
+            }
+        }
+    }
+
+    private synchronized void enqueue(String cacheName, String key) {
+        Set<String> keys = pending.computeIfAbsent(cacheName, n -> new LinkedHashSet<>());
+        if (!keys.contains(WILDCARD)) {
+            if (WILDCARD.equals(key)) {
+                keys.clear();
+            }
+            keys.add(key);
+        }
+        if (!flushScheduled) {
+            flushScheduled = true;
+            try {
+                scheduler.schedule(this::flush, flushWindowMillis, TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                // 已关闭，由 shutdown 中的 flush 发送
+                flushScheduled = false;
+            }
+        }
+    }
+
+    private synchronized Map<String, Set<String>> drain() {
+        Map<String, Set<String>> batch = pending;
+        pending = new HashMap<>();
+        flushScheduled = false;
+        return batch;
+    }
+
+    private void flush() {
+        Map<String, Set<String>> batch = drain();
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<Section> sections = new ArrayList<>();
+        batch.forEach((cacheName, keys) -> {
+            AtomicLong version = sentVersions.computeIfAbsent(cacheName, n -> new AtomicLong());
+            if (keys.contains(WILDCARD)) {
+                sections.add(new Section(cacheName, version.incrementAndGet(), FLAG_CLEAR, List.of()));
+                return;
+            }
+            List<String> all = new ArrayList<>(keys);
+            for (int from = 0; from < all.size(); from += MAX_KEYS_PER_SECTION) {
+                List<String> chunk = all.subList(from, Math.min(all.size(), from + MAX_KEYS_PER_SECTION));
+                sections.add(new Section(cacheName, version.incrementAndGet(), (byte) 0, chunk));
+            }
+        });
+        send(sections);
+    }
+
+    private void heartbeat() {
+        try {
+            List<Section> sections = new ArrayList<>(sentVersions.size());
+            sentVersions.forEach((cacheName, version) ->
+                    sections.add(new Section(cacheName, version.get(), FLAG_HEARTBEAT, List.of())));
+            if (!sections.isEmpty()) {
+                send(sections);
+            }
+            long expireBefore = System.currentTimeMillis() - NODE_EXPIRE_MILLIS;
+            remoteNodes.values().removeIf(node -> node.lastSeen < expireBefore);
+        } catch (Exception e) {
+            log.warn("TwoLevel cache invalidation heartbeat failed: {}", e.getMessage());
+        }
+    }
+
+    private void send(List<Section> sections) {
+        // 单条消息最多 65535 段
+        for (int from = 0; from < sections.size(); from += 0xFFFF) {
+            byte[] body = encode(sections.subList(from, Math.min(sections.size(), from + 0xFFFF)));
+            try {
+                redisTemplate.execute((RedisCallback<Long>) connection -> connection.publish(channel, body));
+            } catch (Exception e) {
+                // 版本号已递增，接收方会在下一条消息或心跳中发现跳号并清空本地副本
+                log.warn("TwoLevel cache invalidation publish failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private byte[] encode(List<Section> sections) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT);
+            out.writeLong(nodeId);
+            out.writeShort(sections.size());
+            for (Section section : sections) {
+                out.writeUTF(section.cacheName());
+                out.writeLong(section.version());
+                out.writeByte(section.flags());
+                out.writeInt(section.keys().size());
+                for (String key : section.keys()) {
+                    out.writeUTF(key);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private record Section(String cacheName, long version, byte flags, List<String> keys) {
+    }
+
+    private static final class RemoteNode {
+        private final Map<String, Long> versions = new HashMap<>();
+        private volatile long lastSeen;
+    }
+}
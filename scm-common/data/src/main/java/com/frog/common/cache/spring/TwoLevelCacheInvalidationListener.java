@@ -18,6 +18,10 @@ public class TwoLevelCacheInvalidationListener implements MessageListener {
     @Override
     public void onMessage(@NonNull Message message, byte[] pattern) {
         try {
+            if (cacheManager.onInvalidationMessage(message.getBody())) {
+                return;
+            }
+            // 兼容旧版文本消息（滚动发布期间）
             String body = new String(message.getBody(), StandardCharsets.UTF_8);
             if (body.length() >= 2 && body.startsWith("\"") && body.endsWith("\"")) {
                 body = body.substring(1, body.length() - 1);
@@ -1,7 +1,7 @@
 package com.frog.common.cache.spring;
 
 import lombok.NonNull;
-import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.data.redis.core.RedisTemplate;
@@ -10,25 +10,75 @@ import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
-@RequiredArgsConstructor
-public class TwoLevelCacheManager implements CacheManager {
+/**
+ * 二级缓存管理器
+ *
+ * <p>ttlByCache 中以 {@value #NEGATIVE_TTL_SUFFIX} 结尾的项配置对应缓存的空值 TTL（如 "user.negative"），
+ * 未配置时使用 {@link TwoLevelCacheOptions#getNegativeTtl()}。
+ */
+public class TwoLevelCacheManager implements CacheManager, DisposableBean {
+    public static final String NEGATIVE_TTL_SUFFIX = ".negative";
+
     private final RedisTemplate<String, Object> redisTemplate;
     private final Duration defaultTtl;
     private final Map<String, Duration> ttlByCache;
     private final long localMaxSize;
+    private final TwoLevelCacheOptions options;
+    private final TwoLevelCacheInvalidationBus invalidationBus;
+    private final TwoLevelCacheSweeper sweeper;
 
     private final Map<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+    private final Map<String, KeyBloomFilter> bloomFilters = new ConcurrentHashMap<>();
+
+    public TwoLevelCacheManager(RedisTemplate<String, Object> redisTemplate, Duration defaultTtl,
+                                Map<String, Duration> ttlByCache, long localMaxSize) {
+        this(redisTemplate, defaultTtl, ttlByCache, localMaxSize, TwoLevelCacheOptions.defaults());
+    }
+
+    public TwoLevelCacheManager(RedisTemplate<String, Object> redisTemplate, Duration defaultTtl,
+                                Map<String, Duration> ttlByCache, long localMaxSize,
+                                TwoLevelCacheOptions options) {
+        this.redisTemplate = redisTemplate;
+        this.defaultTtl = defaultTtl;
+        this.ttlByCache = ttlByCache;
+        this.localMaxSize = localMaxSize;
+        this.options = options;
+        this.invalidationBus = new TwoLevelCacheInvalidationBus(redisTemplate, options.getInvalidationFlushWindow());
+        this.sweeper = options.isSweepOnClear() ? new TwoLevelCacheSweeper(redisTemplate) : null;
+    }
 
     @Override
     public Cache getCache(@NonNull String name) {
-        return caches.computeIfAbsent(name, n ->
-                new TwoLevelCache(n, ttlByCache.getOrDefault(n, defaultTtl), redisTemplate, localMaxSize));
+        return caches.computeIfAbsent(name, n -> {
+            TwoLevelCache cache = new TwoLevelCache(n, ttlByCache.getOrDefault(n, defaultTtl),
+                    ttlByCache.getOrDefault(n + NEGATIVE_TTL_SUFFIX, options.getNegativeTtl()),
+                    redisTemplate, localMaxSize, options, invalidationBus, sweeper);
+            KeyBloomFilter filter = bloomFilters.get(n);
+            if (filter != null) {
+                cache.useBloomFilter(filter);
+            }
+            return cache;
+        });
+    }
+
+    /**
+     * 为以 ID 为 key 的缓存注册布隆过滤器，过滤器判定不存在的 key 不再访问 Redis 和数据库
+     * （过滤器 {@link KeyBloomFilter#markSeeded() 填充完成} 之前不生效）
+     */
+    public void registerBloomFilter(String cacheName, KeyBloomFilter filter) {
+        bloomFilters.put(cacheName, filter);
+        TwoLevelCache cache = caches.get(cacheName);
+        if (cache != null) {
+            cache.useBloomFilter(filter);
+        }
     }
 
     @Override
     @NonNull
     public Collection<String> getCacheNames() {
-        return Collections.unmodifiableSet(ttlByCache.keySet());
+        return ttlByCache.keySet().stream()
+                .filter(n -> !n.endsWith(NEGATIVE_TTL_SUFFIX))
+                .toList();
     }
 
     public void invalidateLocal(String cacheName, String keyOrWildcard) {
@@ -41,7 +91,22 @@ public class TwoLevelCacheManager implements CacheManager {
         }
     }
 
+    /**
+     * 处理失效总线消息，返回 false 表示不是总线的消息格式
+     */
+    public boolean onInvalidationMessage(byte[] body) {
+        return invalidationBus.receive(body, this);
+    }
+
     public Map<String, TwoLevelCache> currentCaches() {
         return Collections.unmodifiableMap(caches);
     }
+
+    @Override
+    public void destroy() {
+        invalidationBus.shutdown();
+        if (sweeper != null) {
+            sweeper.shutdown();
+        }
+    }
 }
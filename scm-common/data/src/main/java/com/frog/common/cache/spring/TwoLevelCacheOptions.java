@@ -0,0 +1,43 @@
+package com.frog.common.cache.spring;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * 二级缓存加载策略
+ *
+ * <ul>
+ *   <li>lease: 跨实例回源租约，同一个 key 只有持有租约的节点回源，其余节点短暂等待或返回旧值</li>
+ *   <li>staleGrace: Redis 中的值逻辑过期后继续保留的时长，用于租约期间返回旧值</li>
+ *   <li>earlyRefreshBeta: 概率提前刷新（XFetch）系数，0 表示关闭；越大越早刷新</li>
+ *   <li>negativeTtl: 空值缓存默认 TTL，可按缓存在 ttlByCache 中用 "缓存名.negative" 覆盖；0 表示不缓存空值</li>
+ *   <li>sweepOnClear: clear() 递增代号后是否在后台 UNLINK 旧代 key；关闭时旧代 key 由 TTL 回收</li>
+ *   <li>invalidationFlushWindow: 失效消息合并窗口，窗口内的失效 key 合并为一条消息发送</li>
+ * </ul>
+ */
+@Getter
+@Builder
+public class TwoLevelCacheOptions {
+    @Builder.Default
+    private final boolean leaseEnabled = true;
+    @Builder.Default
+    private final Duration leaseTime = Duration.ofSeconds(3);
+    @Builder.Default
+    private final Duration leaseWait = Duration.ofMillis(500);
+    @Builder.Default
+    private final Duration staleGrace = Duration.ofMinutes(1);
+    @Builder.Default
+    private final double earlyRefreshBeta = 1.0;
+    @Builder.Default
+    private final Duration negativeTtl = Duration.ofMinutes(1);
+    @Builder.Default
+    private final Duration invalidationFlushWindow = Duration.ofMillis(5);
+    @Builder.Default
+    private final boolean sweepOnClear = false;
+
+    public static TwoLevelCacheOptions defaults() {
+        return TwoLevelCacheOptions.builder().build();
+    }
+}
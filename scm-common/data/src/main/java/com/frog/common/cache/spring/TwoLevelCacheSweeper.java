@@ -0,0 +1,90 @@
+package com.frog.common.cache.spring;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisKeyCommands;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 旧代 key 后台清理
+ *
+ * <p>clear() 只递增代号，旧代 key 依靠 TTL 回收；需要尽快释放内存时开启本清理器，
+ * 在后台线程 SCAN 旧代前缀并批量 UNLINK（Redis 异步释放内存，不阻塞其他命令）。
+ */
+@Slf4j
+public class TwoLevelCacheSweeper {
+    private static final int BATCH_SIZE = 500;
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "two-level-cache-sweeper");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public TwoLevelCacheSweeper(RedisTemplate<String, Object> redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * 异步清理匹配 pattern 的 key
+     */
+    public void sweep(String pattern) {
+        try {
+            executor.execute(() -> doSweep(pattern));
+        } catch (Exception e) {
+            log.warn("TwoLevelCache sweep rejected: {}", pattern);
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void doSweep(String pattern) {
+        long start = System.currentTimeMillis();
+        try {
+            Long removed = redisTemplate.execute(connection -> {
+                long count = 0;
+                List<byte[]> batch = new ArrayList<>(BATCH_SIZE);
+                try (var cursor = connection.keyCommands().scan(
+                        ScanOptions.scanOptions()
+                                .match(pattern)
+                                .count(BATCH_SIZE)
+                                .build())) {
+                    while (cursor.hasNext() && !Thread.currentThread().isInterrupted()) {
+                        batch.add(cursor.next());
+                        if (batch.size() >= BATCH_SIZE) {
+                            count += unlink(connection.keyCommands(), batch);
+                        }
+                    }
+                }
+                count += unlink(connection.keyCommands(), batch);
+                return count;
+            }, false, false);
+            log.debug("TwoLevelCache swept {} keys: {} in {}ms", removed, pattern, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.warn("TwoLevelCache sweep failed: {} -> {}", pattern, e.getMessage());
+        }
+    }
+
+    private static long unlink(RedisKeyCommands commands, List<byte[]> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        Long n = commands.unlink(batch.toArray(new byte[0][]));
+        batch.clear();
+        return n != null ? n : 0;
+    }
+}
@@ -11,18 +11,26 @@ import com.frog.common.data.rw.health.ReadWriteHealthIndicator;
 import com.frog.common.data.rw.health.SlaveHealthChecker;
 import com.frog.common.data.rw.loadbalance.*;
 import com.frog.common.data.rw.metrics.ConnectionPoolMetrics;
+import com.frog.common.data.rw.routing.ReadWriteRoutingContext;
 import com.frog.common.data.rw.routing.ReadWriteRoutingDataSource;
 import com.frog.common.data.rw.sql.SqlRoutingInterceptor;
+import com.frog.common.data.rw.tracing.ReadWriteTracingInterceptor;
+import com.frog.common.data.rw.web.LsnTokenSigner;
+import com.frog.common.data.rw.web.ReadWriteConsistencyFilter;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.aspectj.AspectJExpressionPointcut;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.jdbc.autoconfigure.DataSourceAutoConfiguration;
 import org.springframework.context.annotation.Bean;
@@ -177,6 +185,7 @@ public class ReadWriteAutoConfiguration {
             case RANDOM -> new RandomLoadBalancer();
             case WEIGHTED_RANDOM -> new WeightedRandomLoadBalancer();
             case LEAST_CONNECTIONS -> new LeastConnectionsLoadBalancer();
+            case ADAPTIVE -> new AdaptiveLoadBalancer();
         };
     }
 
@@ -256,6 +265,24 @@ public class ReadWriteAutoConfiguration {
         return new ReadWriteRoutingAspect();
     }
 
+    /**
+     * 读写一致性位点传递过滤器
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public ReadWriteConsistencyFilter readWriteConsistencyFilter() {
+        String secret = properties.getLsnTokenSecret();
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalStateException(
+                    "spring.datasource.rw.lsn-token-secret must be configured (shared by all instances) "
+                            + "when read/write routing is enabled");
+        }
+        log.info("[RW-Config] Registering ReadWriteConsistencyFilter, header: {}",
+                ReadWriteRoutingContext.LSN_HEADER);
+        return new ReadWriteConsistencyFilter(new LsnTokenSigner(secret));
+    }
+
     /**
      * 从库健康检查器
      */
@@ -286,7 +313,26 @@ public class ReadWriteAutoConfiguration {
     @ConditionalOnClass(name = "org.apache.ibatis.plugin.Interceptor")
     public SqlRoutingInterceptor sqlRoutingInterceptor() {
         log.info("[RW-Config] Registering SqlRoutingInterceptor for SQL-based routing");
-        return new SqlRoutingInterceptor();
+        return new SqlRoutingInterceptor(properties.getSqlRouteCacheSize());
+    }
+
+    /**
+     * Mapper 链路追踪（同时为自适应负载均衡采集从库耗时）
+     */
+    @Bean
+    @ConditionalOnMissingBean(name = "readWriteTracingAdvisor")
+    @ConditionalOnClass(name = "com.baomidou.mybatisplus.core.mapper.BaseMapper")
+    @ConditionalOnProperty(
+            prefix = "spring.datasource.rw",
+            name = "tracing-enabled",
+            havingValue = "true",
+            matchIfMissing = true
+    )
+    public Advisor readWriteTracingAdvisor() {
+        log.info("[RW-Config] Registering ReadWriteTracingInterceptor for mappers");
+        AspectJExpressionPointcut pointcut = new AspectJExpressionPointcut();
+        pointcut.setExpression("execution(* com.baomidou.mybatisplus.core.mapper.BaseMapper+.*(..))");
+        return new DefaultPointcutAdvisor(pointcut, new ReadWriteTracingInterceptor());
     }
 
     /**
@@ -42,10 +42,25 @@ public class ReadWriteProperties {
     private Duration replicationLagTolerance = Duration.ofSeconds(1);
 
     /**
-     * 写后读主库持续时间（解决读写一致性）
+     * 写后读主库持续时间（拿不到主库 LSN 时的读写一致性兜底）
      */
     private Duration readMasterAfterWrite = Duration.ofSeconds(2);
 
+    /**
+     * 是否启用基于 LSN 的读写一致性（写后只读回放位点已追上的从库）
+     */
+    private boolean lsnConsistencyEnabled = true;
+
+    /**
+     * 从库回放 LSN 轮询间隔
+     */
+    private Duration replayLsnPollInterval = Duration.ofMillis(200);
+
+    /**
+     * 会话位点（X-RW-LSN）签名密钥，启用读写分离时必填，各服务实例需一致（未配置时启动失败）
+     */
+    private String lsnTokenSecret;
+
     /**
      * 是否启用健康检查
      */
@@ -61,6 +76,11 @@ public class ReadWriteProperties {
      */
     private int failureThreshold = 3;
 
+    /**
+     * SQL 路由决策缓存容量（按语句缓存）
+     */
+    private int sqlRouteCacheSize = 4096;
+
     /**
      * 数据源组配置
      */
@@ -154,6 +174,11 @@ public class ReadWriteProperties {
         /**
          * 最少连接
          */
-        LEAST_CONNECTIONS
+        LEAST_CONNECTIONS,
+
+        /**
+         * 自适应（耗时/错误率/复制延迟 EWMA + 两次随机选择）
+         */
+        ADAPTIVE
     }
 }
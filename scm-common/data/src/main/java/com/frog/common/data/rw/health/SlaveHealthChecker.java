@@ -21,6 +21,7 @@ import java.util.concurrent.atomic.AtomicInteger;
  * 功能：
  * - 定期检查从库连接
  * - 检测复制延迟
+ * - 轮询从库回放 LSN（供读写一致性路由使用）
  * - 自动摘除/恢复不可用节点
  *
  * @author Deng
@@ -113,6 +114,10 @@ public class SlaveHealthChecker {
             // 2. 复制延迟检查（PostgreSQL）
             Long lagMs = checkReplicationLag(statement);
             replicationLags.put(fullName, lagMs != null ? lagMs : 0L);
+            ReadWriteRoutingDataSource routingDataSource = routingDataSources.get(groupName);
+            if (routingDataSource != null) {
+                routingDataSource.recordReplicationLag(slaveName, lagMs != null ? lagMs : 0L);
+            }
 
             if (lagMs != null && lagMs > properties.getReplicationLagTolerance().toMillis()) {
                 log.warn("[Health] Slave [{}] replication lag too high: {}ms (threshold: {}ms)",
@@ -134,6 +139,46 @@ public class SlaveHealthChecker {
         }
     }
 
+    /**
+     * 轮询从库回放 LSN
+     * <p>
+     * 间隔远小于健康检查，写后读能尽快路由回从库；查询失败只跳过本轮，不计入健康检查失败
+     */
+    @Scheduled(fixedDelayString = "${spring.datasource.rw.replay-lsn-poll-interval:200}")
+    public void pollReplayLsn() {
+        if (!properties.isLsnConsistencyEnabled()) {
+            return;
+        }
+
+        for (Map.Entry<String, Map<String, DataSource>> groupEntry : slaveDataSources.entrySet()) {
+            ReadWriteRoutingDataSource routingDataSource = routingDataSources.get(groupEntry.getKey());
+            if (routingDataSource == null) {
+                continue;
+            }
+            for (Map.Entry<String, DataSource> slaveEntry : groupEntry.getValue().entrySet()) {
+                Long lsn = queryReplayLsn(slaveEntry.getValue());
+                if (lsn != null) {
+                    routingDataSource.updateReplayLsn(slaveEntry.getKey(), lsn);
+                }
+            }
+        }
+    }
+
+    private Long queryReplayLsn(DataSource dataSource) {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(
+                     "SELECT (pg_last_wal_replay_lsn() - '0/0'::pg_lsn)::bigint")) {
+            if (rs.next()) {
+                long lsn = rs.getLong(1);
+                return rs.wasNull() ? null : lsn;
+            }
+        } catch (Exception e) {
+            log.trace("[Health] Could not poll replay LSN: {}", e.getMessage());
+        }
+        return null;
+    }
+
     /**
      * 检查复制延迟（PostgreSQL）
      */
@@ -165,6 +210,11 @@ public class SlaveHealthChecker {
         log.warn("[Health] Slave [{}] health check failed ({}): {}",
                 fullName, failures, reason);
 
+        ReadWriteRoutingDataSource routingDataSource = routingDataSources.get(groupName);
+        if (routingDataSource != null) {
+            routingDataSource.recordQuery(slaveName, 0, false);
+        }
+
         if (failures >= properties.getFailureThreshold()) {
             markSlaveUnavailable(groupName, slaveName);
         }
@@ -18,6 +18,18 @@ public abstract class AbstractLoadBalancer implements SlaveLoadBalancer {
             return null;
         }
 
+        // 通常传入的已是可用节点快照，全部可用时不再复制列表
+        boolean allAvailable = true;
+        for (SlaveInfo slave : slaves) {
+            if (!slave.available()) {
+                allAvailable = false;
+                break;
+            }
+        }
+        if (allAvailable) {
+            return doSelect(slaves);
+        }
+
         List<SlaveInfo> available = slaves.stream()
                 .filter(SlaveInfo::available)
                 .toList();
@@ -0,0 +1,94 @@
+package com.frog.common.data.rw.loadbalance;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 自适应负载均衡器（EWMA + Power of Two Choices）
+ * <p>
+ * 每个从库维护查询耗时和错误率的指数加权移动平均（按时间衰减，采样稀疏时也不会被旧数据主导），
+ * 以及健康检查上报的复制延迟。选择时随机取两个从库，比较代价后取较小者：
+ * - 代价 = (耗时 + 1ms) × (1 + 错误率惩罚) × (1 + 复制延迟 / 1s)
+ * - 长时间未被选中的从库统计会逐渐衰减回初始值，从而重新获得探测流量
+ * - 只比较两个候选，避免所有请求同时涌向"最快"的从库
+ *
+ * @author Deng
+ * @since 2025-12-16
+ */
+public class AdaptiveLoadBalancer extends AbstractLoadBalancer {
+    /**
+     * EWMA 时间常数
+     */
+    private static final long DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final double ERROR_PENALTY = 10.0;
+    private static final double LAG_SCALE_MS = 1000.0;
+
+    private final Map<String, ReplicaStats> stats = new ConcurrentHashMap<>();
+
+    @Override
+    protected String doSelect(List<SlaveInfo> available) {
+        int size = available.size();
+        if (size == 1) {
+            return available.getFirst().name();
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+
+        long now = System.nanoTime();
+        String a = available.get(first).name();
+        String b = available.get(second).name();
+        return cost(a, now) <= cost(b, now) ? a : b;
+    }
+
+    @Override
+    public void recordResult(String slaveName, long latencyNanos, boolean success) {
+        stats.computeIfAbsent(slaveName, k -> new ReplicaStats()).record(latencyNanos, success);
+    }
+
+    @Override
+    public void recordReplicationLag(String slaveName, long lagMs) {
+        stats.computeIfAbsent(slaveName, k -> new ReplicaStats()).lagMs = Math.max(0, lagMs);
+    }
+
+    private double cost(String slaveName, long now) {
+        ReplicaStats s = stats.get(slaveName);
+        return s == null ? 1.0 : s.cost(now);
+    }
+
+    /**
+     * 单个从库的统计
+     */
+    private static final class ReplicaStats {
+        private double latencyMs;
+        private double errorRate;
+        private long lastUpdate = System.nanoTime();
+        private volatile long lagMs;
+
+        synchronized void record(long latencyNanos, boolean success) {
+            long now = System.nanoTime();
+            double alpha = 1 - Math.exp(-(double) Math.max(0, now - lastUpdate) / DECAY_NANOS);
+            // 首个样本之前 alpha 可能很小，至少按 0.1 吸收
+            alpha = Math.max(alpha, 0.1);
+            if (success) {
+                latencyMs += alpha * (latencyNanos / 1_000_000.0 - latencyMs);
+            }
+            errorRate += alpha * ((success ? 0.0 : 1.0) - errorRate);
+            lastUpdate = now;
+        }
+
+        synchronized double cost(long now) {
+            double decay = Math.exp(-(double) Math.max(0, now - lastUpdate) / DECAY_NANOS);
+            return (latencyMs * decay + 1.0)
+                    * (1.0 + ERROR_PENALTY * errorRate * decay)
+                    * (1.0 + lagMs / LAG_SCALE_MS);
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package com.frog.common.data.rw.loadbalance;
 
-import java.util.Comparator;
 import java.util.List;
 
 /**
@@ -13,9 +12,12 @@ public class LeastConnectionsLoadBalancer extends AbstractLoadBalancer {
 
     @Override
     protected String doSelect(List<SlaveInfo> available) {
-        return available.stream()
-                .min(Comparator.comparingInt(SlaveInfo::activeConnections))
-                .map(SlaveInfo::name)
-                .orElseGet(() -> getFirstName(available));
+        SlaveInfo least = available.getFirst();
+        for (SlaveInfo slave : available) {
+            if (slave.activeConnections() < least.activeConnections()) {
+                least = slave;
+            }
+        }
+        return least.name();
     }
 }
@@ -18,6 +18,25 @@ public interface SlaveLoadBalancer {
      */
     String select(List<SlaveInfo> slaves);
 
+    /**
+     * 上报一次从库查询结果（自适应策略使用）
+     *
+     * @param slaveName    从库名称
+     * @param latencyNanos 耗时（纳秒）
+     * @param success      是否成功
+     */
+    default void recordResult(String slaveName, long latencyNanos, boolean success) {
+    }
+
+    /**
+     * 上报从库复制延迟（自适应策略使用）
+     *
+     * @param slaveName 从库名称
+     * @param lagMs     复制延迟（毫秒）
+     */
+    default void recordReplicationLag(String slaveName, long lagMs) {
+    }
+
     /**
      * 从库信息
      */
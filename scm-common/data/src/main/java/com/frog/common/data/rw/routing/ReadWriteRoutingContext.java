@@ -1,16 +1,27 @@
 package com.frog.common.data.rw.routing;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.Instant;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.function.Consumer;
 
 /**
  * 读写路由上下文
  * <p>
  * 使用 ThreadLocal 保存当前线程的路由信息
  * 支持嵌套调用（使用栈结构）
+ * <p>
+ * 读写一致性：写操作提交后记录各数据源组主库的 WAL 位点（LSN），之后的读只路由到回放位点已追上的从库；
+ * 位点通过 {@link #LSN_HEADER} 在请求间传递。拿不到位点时退回写后读主库时间窗口。
  *
  * @author Deng
  * @since 2025-12-16
@@ -24,10 +35,36 @@ public class ReadWriteRoutingContext {
             ThreadLocal.withInitial(ArrayDeque::new);
 
     /**
-     * 最后写入时间（用于读写一致性保证）
+     * 会话一致性位点请求头，格式: group:lsnHex[;group:lsnHex].签名
+     */
+    public static final String LSN_HEADER = "X-RW-LSN";
+
+    /**
+     * 最后写入时间（拿不到 LSN 时用于读写一致性保证）
      */
     private static final ThreadLocal<Instant> LAST_WRITE_TIME = new ThreadLocal<>();
 
+    /**
+     * 各数据源组读操作需要达到的 LSN
+     */
+    private static final ThreadLocal<Map<String, Long>> REQUIRED_LSNS = ThreadLocal.withInitial(HashMap::new);
+
+    /**
+     * 当前线程用过主库、尚未记录 LSN 的数据源组
+     */
+    private static final ThreadLocal<Map<String, ReadWriteRoutingDataSource>> MASTER_GROUPS =
+            ThreadLocal.withInitial(HashMap::new);
+
+    /**
+     * LSN 更新回调（如写入响应头）
+     */
+    private static final ThreadLocal<Consumer<String>> LSN_LISTENER = new ThreadLocal<>();
+
+    /**
+     * 最近一次路由结果（供链路追踪记录目标和耗时）
+     */
+    private static final ThreadLocal<Route> LAST_ROUTE = new ThreadLocal<>();
+
     /**
      * 强制主库标记
      */
@@ -109,11 +146,123 @@ public class ReadWriteRoutingContext {
     }
 
     /**
-     * 记录写操作时间（用于读写一致性）
+     * 记录写操作（用于读写一致性）
+     * <p>
+     * 在事务中时于提交后读取主库 LSN（提交前的位点不包含提交记录），否则立即读取
      */
     public static void markWrite() {
-        LAST_WRITE_TIME.set(Instant.now());
-        log.trace("[RW-Routing] Write operation marked");
+        Map<String, ReadWriteRoutingDataSource> groups = MASTER_GROUPS.get();
+        if (groups.isEmpty()) {
+            // 非读写分离数据源，退回时间窗口
+            LAST_WRITE_TIME.set(Instant.now());
+            log.trace("[RW-Routing] Write operation marked");
+            return;
+        }
+
+        List<ReadWriteRoutingDataSource> written = new ArrayList<>(groups.values());
+        groups.clear();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    captureLsn(written);
+                }
+            });
+        } else {
+            captureLsn(written);
+        }
+    }
+
+    /**
+     * 记录路由到主库的数据源组（由 {@link ReadWriteRoutingDataSource} 调用）
+     */
+    static void touchMaster(ReadWriteRoutingDataSource dataSource) {
+        MASTER_GROUPS.get().putIfAbsent(dataSource.getGroupName(), dataSource);
+    }
+
+    private static void captureLsn(List<ReadWriteRoutingDataSource> written) {
+        Map<String, Long> required = REQUIRED_LSNS.get();
+        for (ReadWriteRoutingDataSource dataSource : written) {
+            long lsn = dataSource.currentMasterLsn();
+            if (lsn > 0) {
+                required.merge(dataSource.getGroupName(), lsn, Math::max);
+                log.trace("[RW-Routing] Group [{}] write LSN: {}", dataSource.getGroupName(), Long.toHexString(lsn));
+            } else {
+                LAST_WRITE_TIME.set(Instant.now());
+            }
+        }
+        Consumer<String> listener = LSN_LISTENER.get();
+        if (listener != null && !required.isEmpty()) {
+            listener.accept(exportLsnToken());
+        }
+    }
+
+    /**
+     * 记录路由结果（由 {@link ReadWriteRoutingDataSource} 调用，target 为 null 表示主库）
+     */
+    static void recordRoute(ReadWriteRoutingDataSource dataSource, String target) {
+        LAST_ROUTE.set(target != null ? new Route(dataSource, target) : null);
+    }
+
+    /**
+     * 获取最近一次路由到的从库，未路由或路由到主库时返回 null
+     */
+    public static Route lastRoute() {
+        return LAST_ROUTE.get();
+    }
+
+    /**
+     * 清除最近一次路由结果
+     */
+    public static void clearLastRoute() {
+        LAST_ROUTE.remove();
+    }
+
+    /**
+     * 获取数据源组读操作需要达到的 LSN，0 表示无要求
+     */
+    public static long getRequiredLsn(String groupName) {
+        return REQUIRED_LSNS.get().getOrDefault(groupName, 0L);
+    }
+
+    /**
+     * 导出会话位点（用于响应头和下游调用的请求头）
+     */
+    public static String exportLsnToken() {
+        StringJoiner joiner = new StringJoiner(";");
+        REQUIRED_LSNS.get().forEach((group, lsn) -> joiner.add(group + ":" + Long.toHexString(lsn)));
+        return joiner.toString();
+    }
+
+    /**
+     * 导入上游传来的会话位点
+     * <p>
+     * 位点按原样信任，来自客户端的请求头需先验签（见 {@code ReadWriteConsistencyFilter}）
+     */
+    public static void importLsnToken(String token) {
+        if (token == null || token.isBlank()) {
+            return;
+        }
+        Map<String, Long> required = REQUIRED_LSNS.get();
+        for (String part : token.split(";")) {
+            int idx = part.lastIndexOf(':');
+            if (idx <= 0) {
+                continue;
+            }
+            try {
+                long lsn = Long.parseUnsignedLong(part.substring(idx + 1).trim(), 16);
+                required.merge(part.substring(0, idx).trim(), lsn, Math::max);
+            } catch (NumberFormatException e) {
+                log.debug("[RW-Routing] Ignore invalid LSN token: {}", part);
+            }
+        }
+    }
+
+    /**
+     * 设置 LSN 更新回调
+     */
+    public static void onLsnCaptured(Consumer<String> listener) {
+        LSN_LISTENER.set(listener);
     }
 
     /**
@@ -143,6 +292,10 @@ public class ReadWriteRoutingContext {
     public static void clear() {
         ROUTING_STACK.remove();
         LAST_WRITE_TIME.remove();
+        REQUIRED_LSNS.remove();
+        MASTER_GROUPS.remove();
+        LSN_LISTENER.remove();
+        LAST_ROUTE.remove();
         FORCE_MASTER.remove();
         SPECIFIED_SLAVE.remove();
         log.trace("[RW-Routing] Context cleared");
@@ -150,11 +303,14 @@ public class ReadWriteRoutingContext {
 
     /**
      * 判断是否应该走主库
+     * <p>
+     * 数据源组有 LSN 要求时不强制主库，由路由数据源选择已追上的从库
      *
+     * @param groupName              数据源组
      * @param readMasterAfterWriteMs 写后读主库的时间窗口
      * @return true 如果应该走主库
      */
-    public static boolean shouldUseMaster(long readMasterAfterWriteMs) {
+    public static boolean shouldUseMaster(String groupName, long readMasterAfterWriteMs) {
         // 1. 强制主库
         if (isForceMaster()) {
             return true;
@@ -165,7 +321,10 @@ public class ReadWriteRoutingContext {
             return true;
         }
 
-        // 3. 写后读一致性检查
+        // 3. 写后读一致性检查：有 LSN 时按从库回放位点判断
+        if (getRequiredLsn(groupName) > 0) {
+            return false;
+        }
         Instant lastWrite = getLastWriteTime();
         if (lastWrite != null) {
             long elapsed = Instant.now().toEpochMilli() - lastWrite.toEpochMilli();
@@ -177,4 +336,9 @@ public class ReadWriteRoutingContext {
 
         return false;
     }
+
+    /**
+     * 路由结果
+     */
+    public record Route(ReadWriteRoutingDataSource dataSource, String slaveName) {}
 }
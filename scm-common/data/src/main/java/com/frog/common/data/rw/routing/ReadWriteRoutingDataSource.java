@@ -4,11 +4,15 @@ import com.frog.common.data.rw.config.ReadWriteProperties;
 import com.frog.common.data.rw.loadbalance.SlaveLoadBalancer;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
-import lombok.Setter;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
 
 import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -20,7 +24,7 @@ import java.util.concurrent.ConcurrentHashMap;
  * - 主从自动路由
  * - 负载均衡
  * - 健康检查
- * - 读写一致性保证
+ * - 读写一致性保证（按从库回放 LSN 选择已追上写入位点的从库）
  *
  * @author Deng
  * @since 2025-12-16
@@ -28,23 +32,36 @@ import java.util.concurrent.ConcurrentHashMap;
 @Slf4j
 public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
     private static final String MASTER_KEY = "master";
+    private static final String CURRENT_LSN_SQL = "SELECT (pg_current_wal_lsn() - '0/0'::pg_lsn)::bigint";
 
+    @Getter
     private final String groupName;
+    private final DataSource masterDataSource;
     private final ReadWriteProperties properties;
     private final SlaveLoadBalancer loadBalancer;
 
-    @Setter
-    private List<SlaveLoadBalancer.SlaveInfo> slaveInfos;
+    private volatile List<SlaveLoadBalancer.SlaveInfo> slaveInfos = List.of();
 
     /**
      * 从库可用性状态
      */
     private final Map<String, Boolean> slaveAvailability = new ConcurrentHashMap<>();
 
+    /**
+     * 可用从库快照，可用性变化时整体替换，路由时直接使用
+     */
+    private volatile List<SlaveLoadBalancer.SlaveInfo> healthySlaves = List.of();
+
+    /**
+     * 从库已回放的 LSN（由健康检查器轮询更新）
+     */
+    private final Map<String, Long> replayLsns = new ConcurrentHashMap<>();
+
     // Metrics
     private Counter masterRouteCounter;
     private Counter slaveRouteCounter;
     private Counter fallbackCounter;
+    private Counter lsnFallbackCounter;
 
     public ReadWriteRoutingDataSource(String groupName,
                                        DataSource masterDataSource,
@@ -53,6 +70,7 @@ public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
                                        SlaveLoadBalancer loadBalancer,
                                        MeterRegistry meterRegistry) {
         this.groupName = groupName;
+        this.masterDataSource = masterDataSource;
         this.properties = properties;
         this.loadBalancer = loadBalancer;
 
@@ -90,16 +108,21 @@ public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
                 .tag("group", groupName)
                 .description("Number of fallbacks to master")
                 .register(meterRegistry);
+
+        this.lsnFallbackCounter = Counter.builder("datasource.rw.lsn.fallback")
+                .tag("group", groupName)
+                .description("Number of reads routed to master because no slave reached the required LSN")
+                .register(meterRegistry);
     }
 
     @Override
     protected Object determineCurrentLookupKey() {
         // 1. 检查是否应该使用主库
         long readMasterAfterWriteMs = properties.getReadMasterAfterWrite().toMillis();
-        if (ReadWriteRoutingContext.shouldUseMaster(readMasterAfterWriteMs)) {
+        ReadWriteRoutingContext.recordRoute(this, null);
+        if (ReadWriteRoutingContext.shouldUseMaster(groupName, readMasterAfterWriteMs)) {
             log.debug("[RW-Routing] Group [{}] routing to MASTER", groupName);
-            incrementMasterCounter();
-            return MASTER_KEY;
+            return routeToMaster();
         }
 
         // 2. 检查路由类型
@@ -107,30 +130,38 @@ public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
 
         if (routingType == ReadWriteRoutingContext.RoutingType.MASTER) {
             log.debug("[RW-Routing] Group [{}] routing to MASTER (explicit)", groupName);
-            incrementMasterCounter();
-            return MASTER_KEY;
+            return routeToMaster();
         }
 
         // 3. 尝试路由到从库
         if (routingType == ReadWriteRoutingContext.RoutingType.SLAVE ||
                 routingType == ReadWriteRoutingContext.RoutingType.AUTO) {
 
+            long requiredLsn = ReadWriteRoutingContext.getRequiredLsn(groupName);
+
             // 检查是否指定了特定从库
             String specifiedSlave = ReadWriteRoutingContext.getSpecifiedSlave();
-            if (specifiedSlave != null && slaveAvailability.getOrDefault(specifiedSlave, false)) {
+            if (specifiedSlave != null && slaveAvailability.getOrDefault(specifiedSlave, false)
+                    && isCaughtUp(specifiedSlave, requiredLsn)) {
                 log.debug("[RW-Routing] Group [{}] routing to SLAVE [{}] (specified)",
                         groupName, specifiedSlave);
-                incrementSlaveCounter();
-                return specifiedSlave;
+                return routeToSlave(specifiedSlave);
             }
 
             // 使用负载均衡选择从库
-            String selectedSlave = selectSlave();
+            String selectedSlave = selectSlave(requiredLsn);
             if (selectedSlave != null) {
                 log.debug("[RW-Routing] Group [{}] routing to SLAVE [{}]",
                         groupName, selectedSlave);
-                incrementSlaveCounter();
-                return selectedSlave;
+                return routeToSlave(selectedSlave);
+            }
+
+            if (requiredLsn > 0) {
+                // 从库尚未回放到写入位点，本次读主库
+                log.debug("[RW-Routing] Group [{}] no slave reached LSN {}, fallback to MASTER",
+                        groupName, Long.toHexString(requiredLsn));
+                incrementLsnFallbackCounter();
+                return routeToMaster();
             }
 
             // 从库不可用，降级到主库
@@ -138,25 +169,85 @@ public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
             incrementFallbackCounter();
         }
 
+        return routeToMaster();
+    }
+
+    private String routeToMaster() {
+        ReadWriteRoutingContext.touchMaster(this);
         incrementMasterCounter();
         return MASTER_KEY;
     }
 
-    private String selectSlave() {
-        if (slaveInfos == null || slaveInfos.isEmpty()) {
+    private String routeToSlave(String slaveName) {
+        ReadWriteRoutingContext.recordRoute(this, slaveName);
+        incrementSlaveCounter();
+        return slaveName;
+    }
+
+    private String selectSlave(long requiredLsn) {
+        List<SlaveLoadBalancer.SlaveInfo> candidates = healthySlaves;
+        if (candidates.isEmpty()) {
             return null;
         }
 
-        // 过滤可用的从库
-        List<SlaveLoadBalancer.SlaveInfo> availableSlaves = slaveInfos.stream()
+        // 有 LSN 要求时只在有从库落后的情况下才复制列表
+        if (requiredLsn > 0) {
+            candidates = caughtUpSlaves(candidates, requiredLsn);
+            if (candidates.isEmpty()) {
+                return null;
+            }
+        }
+
+        return loadBalancer.select(candidates);
+    }
+
+    private List<SlaveLoadBalancer.SlaveInfo> caughtUpSlaves(List<SlaveLoadBalancer.SlaveInfo> candidates,
+                                                             long requiredLsn) {
+        for (int i = 0; i < candidates.size(); i++) {
+            if (!isCaughtUp(candidates.get(i).name(), requiredLsn)) {
+                List<SlaveLoadBalancer.SlaveInfo> caughtUp = new ArrayList<>(candidates.subList(0, i));
+                for (int j = i + 1; j < candidates.size(); j++) {
+                    if (isCaughtUp(candidates.get(j).name(), requiredLsn)) {
+                        caughtUp.add(candidates.get(j));
+                    }
+                }
+                return caughtUp;
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * 设置从库列表
+     */
+    public void setSlaveInfos(List<SlaveLoadBalancer.SlaveInfo> slaveInfos) {
+        this.slaveInfos = slaveInfos != null ? List.copyOf(slaveInfos) : List.of();
+        refreshHealthySlaves();
+    }
+
+    /**
+     * 重建可用从库快照（可用性变化时调用）
+     */
+    private synchronized void refreshHealthySlaves() {
+        healthySlaves = slaveInfos.stream()
                 .filter(s -> slaveAvailability.getOrDefault(s.name(), false))
                 .toList();
+    }
 
-        if (availableSlaves.isEmpty()) {
-            return null;
+    /**
+     * 上报从库查询结果（供自适应负载均衡使用）
+     */
+    public void recordQuery(String slaveName, long latencyNanos, boolean success) {
+        if (slaveName != null && !MASTER_KEY.equals(slaveName)) {
+            loadBalancer.recordResult(slaveName, latencyNanos, success);
         }
+    }
 
-        return loadBalancer.select(availableSlaves);
+    /**
+     * 上报从库复制延迟（供自适应负载均衡使用）
+     */
+    public void recordReplicationLag(String slaveName, long lagMs) {
+        loadBalancer.recordReplicationLag(slaveName, lagMs);
     }
 
     /**
@@ -164,6 +255,7 @@ public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
      */
     public void markSlaveUnavailable(String slaveName) {
         slaveAvailability.put(slaveName, false);
+        refreshHealthySlaves();
         log.warn("[RW-Routing] Group [{}] slave [{}] marked as UNAVAILABLE",
                 groupName, slaveName);
     }
@@ -173,10 +265,39 @@ public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
      */
     public void markSlaveAvailable(String slaveName) {
         slaveAvailability.put(slaveName, true);
+        refreshHealthySlaves();
         log.info("[RW-Routing] Group [{}] slave [{}] marked as AVAILABLE",
                 groupName, slaveName);
     }
 
+    private boolean isCaughtUp(String slaveName, long requiredLsn) {
+        return requiredLsn <= 0 || replayLsns.getOrDefault(slaveName, 0L) >= requiredLsn;
+    }
+
+    /**
+     * 更新从库已回放的 LSN
+     */
+    public void updateReplayLsn(String slaveName, long lsn) {
+        replayLsns.merge(slaveName, lsn, Math::max);
+    }
+
+    /**
+     * 查询主库当前 WAL 位点，未开启或查询失败时返回 0（调用方退回时间窗口）
+     */
+    public long currentMasterLsn() {
+        if (!properties.isLsnConsistencyEnabled()) {
+            return 0;
+        }
+        try (Connection connection = masterDataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(CURRENT_LSN_SQL)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        } catch (Exception e) {
+            log.warn("[RW-Routing] Group [{}] could not read master LSN: {}", groupName, e.getMessage());
+            return 0;
+        }
+    }
+
     /**
      * 获取从库可用性状态
      */
@@ -201,4 +322,10 @@ public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
             fallbackCounter.increment();
         }
     }
+
+    private void incrementLsnFallbackCounter() {
+        if (lsnFallbackCounter != null) {
+            lsnFallbackCounter.increment();
+        }
+    }
 }
@@ -1,12 +1,16 @@
 package com.frog.common.data.rw.sql;
 
 import com.frog.common.data.rw.routing.ReadWriteRoutingContext;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.builder.StaticSqlSource;
 import org.apache.ibatis.executor.Executor;
-import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.mapping.SqlSource;
 import org.apache.ibatis.plugin.*;
+import org.apache.ibatis.scripting.defaults.RawSqlSource;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
 
@@ -17,7 +21,7 @@ import org.apache.ibatis.session.RowBounds;
  * - 美团 Zebra ZebraInterceptor
  * - Apache ShardingSphere SQLRouteExecutor
  * <p>
- * 在 SQL 执行前解析 SQL 类型和 Hint，设置路由上下文
+ * 在 SQL 执行前解析 SQL 类型和 Hint，设置路由上下文；解析结果按语句缓存
  *
  * @author Deng
  * @since 2025-12-16
@@ -30,6 +34,25 @@ import org.apache.ibatis.session.RowBounds;
                 args = {MappedStatement.class, Object.class})
 })
 public class SqlRoutingInterceptor implements Interceptor {
+    private static final int DEFAULT_CACHE_SIZE = 4096;
+
+    /**
+     * 路由决策缓存
+     * <p>
+     * 决策只取决于语句 ID 和 SQL 文本：静态 SQL 按语句 ID 缓存（无需生成 BoundSql），
+     * 动态 SQL 按语句 ID + SQL 文本缓存（String 自带哈希缓存，equals 校验避免哈希冲突误路由）
+     */
+    private final Cache<Object, RouteDecision> decisionCache;
+
+    public SqlRoutingInterceptor() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    public SqlRoutingInterceptor(int cacheSize) {
+        this.decisionCache = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .build();
+    }
 
     @Override
     public Object intercept(Invocation invocation) throws Throwable {
@@ -41,57 +64,75 @@ public class SqlRoutingInterceptor implements Interceptor {
         MappedStatement ms = (MappedStatement) invocation.getArgs()[0];
         Object parameter = invocation.getArgs()[1];
 
-        // 获取 SQL
-        BoundSql boundSql = ms.getBoundSql(parameter);
-        String sql = boundSql.getSql();
+        RouteDecision decision = decide(ms, parameter);
+        return switch (decision.route()) {
+            case MASTER -> executeWithMaster(invocation);
+            case SLAVE -> {
+                if (decision.slaveName() != null) {
+                    ReadWriteRoutingContext.specifySlave(decision.slaveName());
+                }
+                yield executeWithSlave(invocation);
+            }
+            case WRITE -> executeWithMasterAndMarkWrite(invocation);
+        };
+    }
+
+    /**
+     * 获取语句的路由决策（优先读缓存）
+     */
+    RouteDecision decide(MappedStatement ms, Object parameter) {
+        SqlSource sqlSource = ms.getSqlSource();
+        if (sqlSource instanceof RawSqlSource || sqlSource instanceof StaticSqlSource) {
+            return decisionCache.get(ms.getId(),
+                    id -> resolve(ms, ms.getBoundSql(parameter).getSql()));
+        }
+
+        String sql = ms.getBoundSql(parameter).getSql();
+        return decisionCache.get(new StatementKey(ms.getId(), sql), key -> resolve(ms, sql));
+    }
 
-        // 1. 解析 Hint
-        SqlTypeParser.RoutingHint hint = SqlTypeParser.parseHint(sql);
-        if (hint.type() != SqlTypeParser.RoutingHint.HintType.NONE) {
-            return executeWithHint(invocation, hint);
+    private RouteDecision resolve(MappedStatement ms, String sql) {
+        SqlTypeParser.Analysis analysis = SqlTypeParser.analyze(sql);
+
+        // 1. Hint
+        SqlTypeParser.RoutingHint hint = analysis.hint();
+        switch (hint.type()) {
+            case MASTER -> {
+                log.debug("[SQL-Routing] Hint: MASTER");
+                return RouteDecision.MASTER;
+            }
+            case SLAVE -> {
+                log.debug("[SQL-Routing] Hint: SLAVE({})", hint.slaveName());
+                return hint.slaveName() != null
+                        ? new RouteDecision(Route.SLAVE, hint.slaveName())
+                        : RouteDecision.SLAVE;
+            }
+            default -> {
+            }
         }
 
         // 2. 根据 MyBatis SqlCommandType 判断
         SqlCommandType commandType = ms.getSqlCommandType();
         if (commandType == SqlCommandType.SELECT) {
-            // 进一步检查是否有 FOR UPDATE
-            SqlTypeParser.SqlType sqlType = SqlTypeParser.parse(sql);
-            if (sqlType == SqlTypeParser.SqlType.WRITE) {
+            if (analysis.locking()) {
                 // SELECT ... FOR UPDATE，走主库
                 log.debug("[SQL-Routing] Detected SELECT FOR UPDATE, routing to MASTER");
-                return executeWithMaster(invocation);
+                return RouteDecision.MASTER;
+            }
+            if (analysis.type() == SqlTypeParser.SqlType.WRITE) {
+                // 带数据修改的 WITH 查询
+                log.debug("[SQL-Routing] Detected data-modifying SELECT, routing to MASTER");
+                return RouteDecision.WRITE;
             }
 
             // 普通 SELECT，走从库
             log.debug("[SQL-Routing] Detected SELECT, routing to SLAVE");
-            return executeWithSlave(invocation);
+            return RouteDecision.SLAVE;
         }
 
         // INSERT/UPDATE/DELETE，走主库并标记写操作
         log.debug("[SQL-Routing] Detected {} operation, routing to MASTER", commandType);
-        return executeWithMasterAndMarkWrite(invocation);
-    }
-
-    private Object executeWithHint(Invocation invocation, SqlTypeParser.RoutingHint hint)
-            throws Throwable {
-        switch (hint.type()) {
-            case MASTER -> {
-                log.debug("[SQL-Routing] Hint: MASTER");
-                return executeWithMaster(invocation);
-            }
-            case SLAVE -> {
-                if (hint.slaveName() != null) {
-                    log.debug("[SQL-Routing] Hint: SLAVE({})", hint.slaveName());
-                    ReadWriteRoutingContext.specifySlave(hint.slaveName());
-                } else {
-                    log.debug("[SQL-Routing] Hint: SLAVE");
-                }
-                return executeWithSlave(invocation);
-            }
-            default -> {
-                return invocation.proceed();
-            }
-        }
+        return RouteDecision.WRITE;
     }
 
     private Object executeWithMaster(Invocation invocation) throws Throwable {
@@ -129,4 +170,30 @@ public class SqlRoutingInterceptor implements Interceptor {
     public Object plugin(Object target) {
         return Plugin.wrap(target, this);
     }
+
+    /**
+     * 路由目标
+     */
+    enum Route {
+        MASTER,
+        SLAVE,
+        WRITE
+    }
+
+    /**
+     * 路由决策
+     *
+     * @param route     路由目标
+     * @param slaveName Hint 指定的从库
+     */
+    record RouteDecision(Route route, String slaveName) {
+        static final RouteDecision MASTER = new RouteDecision(Route.MASTER, null);
+        static final RouteDecision SLAVE = new RouteDecision(Route.SLAVE, null);
+        static final RouteDecision WRITE = new RouteDecision(Route.WRITE, null);
+    }
+
+    /**
+     * 动态 SQL 缓存键
+     */
+    private record StatementKey(String statementId, String sql) {}
 }
@@ -2,13 +2,13 @@ package com.frog.common.data.rw.sql;
 
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.Set;
-import java.util.regex.Pattern;
-
 /**
  * SQL 类型解析器
  * <p>
  * 通过 SQL 语句判断是读操作还是写操作
+ * <p>
+ * 单遍扫描：跳过空白、注释、字符串（含 PostgreSQL $tag$ 美元引号）和引号标识符，取第一个关键字并识别锁定子句，
+ * 同时从块注释中提取路由 Hint。扫描过程不做正则匹配，也不复制 SQL 字符串。
  *
  * @author Deng
  * @since 2025-12-16
@@ -18,42 +18,35 @@ public class SqlTypeParser {
     /**
      * 写操作关键字
      */
-    private static final Set<String> WRITE_KEYWORDS = Set.of(
+    private static final String[] WRITE_KEYWORDS = {
             "INSERT", "UPDATE", "DELETE", "REPLACE",
             "CREATE", "ALTER", "DROP", "TRUNCATE",
             "GRANT", "REVOKE", "LOCK", "UNLOCK",
             "CALL", "MERGE", "UPSERT"
-    );
-
-    /**
-     * SELECT ... FOR UPDATE 模式
-     */
-    private static final Pattern FOR_UPDATE_PATTERN =
-            Pattern.compile(".*\\bFOR\\s+UPDATE\\b.*", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    };
 
     /**
-     * SELECT ... LOCK IN SHARE MODE 模式
+     * 读操作关键字
      */
-    private static final Pattern LOCK_IN_SHARE_MODE_PATTERN =
-            Pattern.compile(".*\\bLOCK\\s+IN\\s+SHARE\\s+MODE\\b.*", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final String[] READ_KEYWORDS = {
+            "SELECT", "SHOW", "DESCRIBE", "EXPLAIN"
+    };
 
     /**
-     * Hint: 强制主库
+     * 可出现在 WITH 子句中的数据修改关键字（PostgreSQL 可写 CTE）
      */
-    private static final Pattern MASTER_HINT_PATTERN =
-            Pattern.compile("/\\*\\s*MASTER\\s*\\*/", Pattern.CASE_INSENSITIVE);
+    private static final String[] CTE_WRITE_KEYWORDS = {
+            "INSERT", "UPDATE", "DELETE", "MERGE"
+    };
 
-    /**
-     * Hint: 强制从库
-     */
-    private static final Pattern SLAVE_HINT_PATTERN =
-            Pattern.compile("/\\*\\s*SLAVE\\s*\\*/", Pattern.CASE_INSENSITIVE);
+    private static final RoutingHint NO_HINT = new RoutingHint(RoutingHint.HintType.NONE, null);
+    private static final RoutingHint MASTER_HINT = new RoutingHint(RoutingHint.HintType.MASTER, null);
+    private static final RoutingHint SLAVE_HINT = new RoutingHint(RoutingHint.HintType.SLAVE, null);
 
-    /**
-     * Hint: 指定从库名称
-     */
-    private static final Pattern SLAVE_NAME_HINT_PATTERN =
-            Pattern.compile("/\\*\\s*SLAVE\\s*\\(\\s*(\\w+)\\s*\\)\\s*\\*/", Pattern.CASE_INSENSITIVE);
+    private static final Analysis UNKNOWN = new Analysis(SqlType.UNKNOWN, false, NO_HINT);
+    private static final Analysis READ = new Analysis(SqlType.READ, false, NO_HINT);
+    private static final Analysis WRITE = new Analysis(SqlType.WRITE, false, NO_HINT);
+    private static final Analysis LOCKING_READ = new Analysis(SqlType.WRITE, true, NO_HINT);
 
     /**
      * SQL 类型
@@ -78,6 +71,19 @@ public class SqlTypeParser {
         }
     }
 
+    /**
+     * 解析结果
+     *
+     * @param type    SQL 类型
+     * @param locking 是否为带锁定子句的查询（FOR UPDATE / FOR SHARE / LOCK IN SHARE MODE）
+     * @param hint    路由 Hint
+     */
+    public record Analysis(
+            SqlType type,
+            boolean locking,
+            RoutingHint hint
+    ) {}
+
     /**
      * 解析 SQL 类型
      *
@@ -85,37 +91,7 @@ public class SqlTypeParser {
      * @return SQL 类型
      */
     public static SqlType parse(String sql) {
-        if (sql == null || sql.isBlank()) {
-            return SqlType.UNKNOWN;
-        }
-
-        String trimmedSql = sql.trim();
-
-        // 1. 检查是否有 FOR UPDATE / LOCK IN SHARE MODE（需要走主库）
-        if (FOR_UPDATE_PATTERN.matcher(trimmedSql).matches() ||
-                LOCK_IN_SHARE_MODE_PATTERN.matcher(trimmedSql).matches()) {
-            log.trace("[SQL-Parser] Detected locking SQL, type: WRITE");
-            return SqlType.WRITE;
-        }
-
-        // 2. 获取第一个关键字
-        String firstKeyword = getFirstKeyword(trimmedSql);
-
-        // 3. 判断是否是写操作
-        if (WRITE_KEYWORDS.contains(firstKeyword)) {
-            log.trace("[SQL-Parser] Detected write keyword [{}], type: WRITE", firstKeyword);
-            return SqlType.WRITE;
-        }
-
-        // 4. SELECT 开头视为读操作
-        if ("SELECT".equals(firstKeyword) || "SHOW".equals(firstKeyword) ||
-                "DESCRIBE".equals(firstKeyword) || "EXPLAIN".equals(firstKeyword)) {
-            log.trace("[SQL-Parser] Detected read keyword [{}], type: READ", firstKeyword);
-            return SqlType.READ;
-        }
-
-        log.trace("[SQL-Parser] Unknown SQL type for keyword [{}]", firstKeyword);
-        return SqlType.UNKNOWN;
+        return analyze(sql).type();
     }
 
     /**
@@ -130,31 +106,166 @@ public class SqlTypeParser {
      * @return 路由 Hint
      */
     public static RoutingHint parseHint(String sql) {
-        if (sql == null || sql.isBlank()) {
-            return new RoutingHint(RoutingHint.HintType.NONE, null);
+        return analyze(sql).hint();
+    }
+
+    /**
+     * 一次扫描同时解析 SQL 类型、锁定子句和路由 Hint
+     *
+     * @param sql SQL 语句
+     * @return 解析结果
+     */
+    public static Analysis analyze(String sql) {
+        if (sql == null) {
+            return UNKNOWN;
+        }
+
+        int length = sql.length();
+        RoutingHint hint = NO_HINT;
+        int firstStart = -1;
+        int firstEnd = -1;
+        boolean cteWrite = false;
+        boolean locking = false;
+        // 上一个单词：0 其他，1 FOR，2 LOCK，3 LOCK IN
+        int previous = 0;
+
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                int bodyEnd = end < 0 ? length : end;
+                if (hint == NO_HINT) {
+                    hint = parseHintComment(sql, i + 2, bodyEnd);
+                }
+                i = end < 0 ? length : end + 2;
+            } else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+                int end = sql.indexOf('\n', i + 2);
+                i = end < 0 ? length : end + 1;
+            } else if (c == '\'' || c == '"') {
+                i = skipQuoted(sql, i, c);
+            } else if (c == '$') {
+                int tagEnd = dollarTagEnd(sql, i);
+                if (tagEnd < 0) {
+                    previous = 0;
+                    i++;
+                } else {
+                    i = skipDollarQuoted(sql, i, tagEnd);
+                }
+            } else if (isWordStart(c)) {
+                int start = i;
+                while (i < length && isWordPart(sql.charAt(i))) {
+                    i++;
+                }
+
+                if (firstStart < 0) {
+                    firstStart = start;
+                    firstEnd = i;
+                    previous = wordIs(sql, start, i, "LOCK") ? 2 : 0;
+                    continue;
+                }
+
+                if (previous == 1 && (wordIs(sql, start, i, "UPDATE") || wordIs(sql, start, i, "SHARE")
+                        || wordIs(sql, start, i, "NO") || wordIs(sql, start, i, "KEY"))) {
+                    locking = true;
+                } else if (previous == 3 && wordIs(sql, start, i, "SHARE")) {
+                    locking = true;
+                } else if (!cteWrite && wordIs(sql, firstStart, firstEnd, "WITH")
+                        && matchesAny(sql, start, i, CTE_WRITE_KEYWORDS)) {
+                    cteWrite = true;
+                }
+
+                if (wordIs(sql, start, i, "FOR")) {
+                    previous = 1;
+                } else if (wordIs(sql, start, i, "LOCK")) {
+                    previous = 2;
+                } else if (previous == 2 && wordIs(sql, start, i, "IN")) {
+                    previous = 3;
+                } else {
+                    previous = 0;
+                }
+            } else {
+                previous = 0;
+                i++;
+            }
         }
 
-        // 检查 MASTER Hint
-        if (MASTER_HINT_PATTERN.matcher(sql).find()) {
-            log.trace("[SQL-Parser] Found MASTER hint");
-            return new RoutingHint(RoutingHint.HintType.MASTER, null);
+        Analysis result = classify(sql, firstStart, firstEnd, cteWrite, locking);
+        return hint == NO_HINT ? result : new Analysis(result.type(), result.locking(), hint);
+    }
+
+    private static Analysis classify(String sql, int start, int end, boolean cteWrite, boolean locking) {
+        if (start < 0) {
+            return UNKNOWN;
         }
 
-        // 检查带名称的 SLAVE Hint
-        var slaveNameMatcher = SLAVE_NAME_HINT_PATTERN.matcher(sql);
-        if (slaveNameMatcher.find()) {
-            String slaveName = slaveNameMatcher.group(1);
-            log.trace("[SQL-Parser] Found SLAVE hint with name: {}", slaveName);
-            return new RoutingHint(RoutingHint.HintType.SLAVE, slaveName);
+        // 1. FOR UPDATE / FOR SHARE / LOCK IN SHARE MODE（需要走主库）
+        if (locking) {
+            log.trace("[SQL-Parser] Detected locking SQL, type: WRITE");
+            return LOCKING_READ;
+        }
+
+        // 2. 写操作关键字
+        if (matchesAny(sql, start, end, WRITE_KEYWORDS)) {
+            log.trace("[SQL-Parser] Detected write keyword, type: WRITE");
+            return WRITE;
         }
 
-        // 检查 SLAVE Hint
-        if (SLAVE_HINT_PATTERN.matcher(sql).find()) {
+        // 3. SELECT 等开头视为读操作；WITH 查询按其中是否有数据修改判断
+        if (matchesAny(sql, start, end, READ_KEYWORDS)) {
+            log.trace("[SQL-Parser] Detected read keyword, type: READ");
+            return READ;
+        }
+        if (wordIs(sql, start, end, "WITH")) {
+            return cteWrite ? WRITE : READ;
+        }
+
+        log.trace("[SQL-Parser] Unknown SQL type");
+        return UNKNOWN;
+    }
+
+    /**
+     * 解析块注释中的 Hint：MASTER / SLAVE / SLAVE(name)
+     */
+    private static RoutingHint parseHintComment(String sql, int from, int to) {
+        int i = skipWhitespace(sql, from, to);
+        if (regionIs(sql, i, to, "MASTER")) {
+            if (skipWhitespace(sql, i + 6, to) == to) {
+                log.trace("[SQL-Parser] Found MASTER hint");
+                return MASTER_HINT;
+            }
+            return NO_HINT;
+        }
+        if (!regionIs(sql, i, to, "SLAVE")) {
+            return NO_HINT;
+        }
+
+        i = skipWhitespace(sql, i + 5, to);
+        if (i == to) {
             log.trace("[SQL-Parser] Found SLAVE hint");
-            return new RoutingHint(RoutingHint.HintType.SLAVE, null);
+            return SLAVE_HINT;
+        }
+        if (sql.charAt(i) != '(') {
+            return NO_HINT;
+        }
+
+        int nameStart = skipWhitespace(sql, i + 1, to);
+        int nameEnd = nameStart;
+        while (nameEnd < to && isWordPart(sql.charAt(nameEnd))) {
+            nameEnd++;
+        }
+        int close = skipWhitespace(sql, nameEnd, to);
+        if (nameEnd == nameStart || close == to || sql.charAt(close) != ')'
+                || skipWhitespace(sql, close + 1, to) != to) {
+            return NO_HINT;
         }
 
-        return new RoutingHint(RoutingHint.HintType.NONE, null);
+        String slaveName = sql.substring(nameStart, nameEnd);
+        log.trace("[SQL-Parser] Found SLAVE hint with name: {}", slaveName);
+        return new RoutingHint(RoutingHint.HintType.SLAVE, slaveName);
     }
 
     /**
@@ -170,29 +281,6 @@ public class SqlTypeParser {
                 .trim();
     }
 
-    /**
-     * 获取 SQL 的第一个关键字
-     */
-    private static String getFirstKeyword(String sql) {
-        // 跳过注释和空白
-        String cleanSql = sql
-                .replaceAll("/\\*.*?\\*/", "")  // 移除块注释
-                .replaceAll("--.*$", "")         // 移除行注释
-                .replaceAll("^\\s+", "");        // 移除开头空白
-
-        // 获取第一个词
-        int spaceIndex = cleanSql.indexOf(' ');
-        int newlineIndex = cleanSql.indexOf('\n');
-        int tabIndex = cleanSql.indexOf('\t');
-
-        int endIndex = cleanSql.length();
-        if (spaceIndex > 0) endIndex = Math.min(endIndex, spaceIndex);
-        if (newlineIndex > 0) endIndex = Math.min(endIndex, newlineIndex);
-        if (tabIndex > 0) endIndex = Math.min(endIndex, tabIndex);
-
-        return cleanSql.substring(0, endIndex).toUpperCase();
-    }
-
     /**
      * 判断是否是事务控制语句
      */
@@ -208,4 +296,78 @@ public class SqlTypeParser {
                 upper.startsWith("SAVEPOINT") ||
                 upper.startsWith("SET AUTOCOMMIT");
     }
+
+    private static int skipQuoted(String sql, int start, char quote) {
+        int i = start + 1;
+        int length = sql.length();
+        while (i < length) {
+            if (sql.charAt(i) == quote) {
+                // 连续两个引号为转义
+                if (i + 1 < length && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return length;
+    }
+
+    /**
+     * 美元引号起始标记（$$ 或 $tag$，tag 不以数字开头，区别于 $1 参数）的结束位置，不是起始标记时返回 -1
+     */
+    private static int dollarTagEnd(String sql, int start) {
+        // 标识符中的 $（如 a$b）不是美元引号
+        if (start > 0 && isWordPart(sql.charAt(start - 1))) {
+            return -1;
+        }
+        int i = start + 1;
+        int length = sql.length();
+        if (i < length && isWordStart(sql.charAt(i))) {
+            while (i < length && isWordPart(sql.charAt(i))) {
+                i++;
+            }
+        }
+        return i < length && sql.charAt(i) == '$' ? i + 1 : -1;
+    }
+
+    private static int skipDollarQuoted(String sql, int start, int tagEnd) {
+        int close = sql.indexOf(sql.substring(start, tagEnd), tagEnd);
+        return close < 0 ? sql.length() : close + (tagEnd - start);
+    }
+
+    private static int skipWhitespace(String sql, int from, int to) {
+        while (from < to && Character.isWhitespace(sql.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    private static boolean isWordStart(char c) {
+        return Character.isLetter(c) || c == '_';
+    }
+
+    private static boolean isWordPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    private static boolean wordIs(String sql, int start, int end, String keyword) {
+        return end - start == keyword.length() && sql.regionMatches(true, start, keyword, 0, keyword.length());
+    }
+
+    private static boolean regionIs(String sql, int start, int to, String keyword) {
+        int end = start + keyword.length();
+        return end <= to && sql.regionMatches(true, start, keyword, 0, keyword.length())
+                && (end == to || !isWordPart(sql.charAt(end)));
+    }
+
+    private static boolean matchesAny(String sql, int start, int end, String[] keywords) {
+        for (String keyword : keywords) {
+            if (wordIs(sql, start, end, keyword)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -19,6 +19,8 @@ import org.aopalliance.intercept.MethodInvocation;
  * - 目标数据源
  * - 执行耗时
  * - 是否降级
+ * <p>
+ * 同时把从库查询的耗时和成败上报给路由数据源，供自适应负载均衡使用
  *
  * @author Deng
  * @since 2025-12-16
@@ -46,6 +48,10 @@ public class ReadWriteTracingInterceptor implements MethodInterceptor {
                 .setAttribute("db.rw.force_master", ReadWriteRoutingContext.isForceMaster())
                 .startSpan();
 
+        ReadWriteRoutingContext.clearLastRoute();
+        long start = System.nanoTime();
+        boolean success = false;
+
         try (Scope ignored = span.makeCurrent()) {
             // 记录指定的从库
             String specifiedSlave = ReadWriteRoutingContext.getSpecifiedSlave();
@@ -57,6 +63,7 @@ public class ReadWriteTracingInterceptor implements MethodInterceptor {
             Object result = invocation.proceed();
 
             // 记录成功
+            success = true;
             span.setStatus(StatusCode.OK);
             return result;
 
@@ -67,7 +74,17 @@ public class ReadWriteTracingInterceptor implements MethodInterceptor {
             throw e;
 
         } finally {
+            recordRoute(span, System.nanoTime() - start, success);
             span.end();
         }
     }
+
+    private void recordRoute(Span span, long elapsedNanos, boolean success) {
+        ReadWriteRoutingContext.Route route = ReadWriteRoutingContext.lastRoute();
+        if (route == null) {
+            return;
+        }
+        span.setAttribute("db.rw.target", route.dataSource().getGroupName() + "." + route.slaveName());
+        route.dataSource().recordQuery(route.slaveName(), elapsedNanos, success);
+    }
 }
@@ -0,0 +1,82 @@
+package com.frog.common.data.rw.web;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+/**
+ * 会话位点签名
+ * <p>
+ * 位点由服务端在写入响应中下发，格式: 位点.HMAC-SHA256(位点)。客户端原样带回，验签失败的位点整体丢弃，
+ * 客户端无法伪造一个超前于主库的位点把读请求长期钉在主库上。
+ * <p>
+ * 同一会话的请求可能落到不同实例，各实例必须配置相同的密钥：其他实例签发的位点验签失败后按无位点处理，
+ * 而写后读主库时间窗口是签发实例上的线程内状态，不会随请求转移，读请求可能直接落到未追上的从库。
+ * 因此密钥为必填项，未配置时拒绝创建。
+ *
+ * @author Deng
+ * @since 2025-12-16
+ */
+public class LsnTokenSigner {
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final char SEPARATOR = '.';
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec key;
+
+    /**
+     * @param secret 签名密钥，各实例一致
+     * @throws IllegalArgumentException 密钥为空
+     */
+    public LsnTokenSigner(String secret) {
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalArgumentException("LSN token secret must not be blank");
+        }
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+    }
+
+    /**
+     * 签名位点
+     */
+    public String sign(String payload) {
+        return payload + SEPARATOR + ENCODER.encodeToString(mac(payload));
+    }
+
+    /**
+     * 验签
+     *
+     * @param token 请求头中的位点
+     * @return 签名有效时返回位点，否则返回 null
+     */
+    public String verify(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        int idx = token.lastIndexOf(SEPARATOR);
+        if (idx <= 0) {
+            return null;
+        }
+        String payload = token.substring(0, idx);
+        byte[] signature;
+        try {
+            signature = DECODER.decode(token.substring(idx + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return MessageDigest.isEqual(mac(payload), signature) ? payload : null;
+    }
+
+    private byte[] mac(String payload) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+}
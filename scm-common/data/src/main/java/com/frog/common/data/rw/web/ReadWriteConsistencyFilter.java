@@ -0,0 +1,57 @@
+package com.frog.common.data.rw.web;
+
+import com.frog.common.data.rw.routing.ReadWriteRoutingContext;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * 读写一致性位点传递过滤器
+ * <p>
+ * 请求进入时导入 {@link ReadWriteRoutingContext#LSN_HEADER} 携带的写入位点，使同一会话的后续读
+ * 只路由到已回放该位点的从库；本次请求产生写入后把最新位点写回响应头，由客户端在下次请求带回。
+ * 请求结束时清理路由上下文，避免线程复用导致写入状态串到其他请求。
+ * <p>
+ * 位点由 {@link LsnTokenSigner} 签名后下发，请求头中验签失败的位点不导入，避免伪造的超前位点使读请求全部走主库。
+ *
+ * @author Deng
+ * @since 2025-12-16
+ */
+@Slf4j
+public class ReadWriteConsistencyFilter extends OncePerRequestFilter {
+    private final LsnTokenSigner signer;
+
+    public ReadWriteConsistencyFilter(LsnTokenSigner signer) {
+        this.signer = signer;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        try {
+            String header = request.getHeader(ReadWriteRoutingContext.LSN_HEADER);
+            if (header != null && !header.isBlank()) {
+                String token = signer.verify(header);
+                if (token != null) {
+                    ReadWriteRoutingContext.importLsnToken(token);
+                } else {
+                    log.debug("[RW-Routing] Ignore LSN token with invalid signature: {}", header);
+                }
+            }
+            ReadWriteRoutingContext.onLsnCaptured(token -> {
+                if (!response.isCommitted()) {
+                    response.setHeader(ReadWriteRoutingContext.LSN_HEADER, signer.sign(token));
+                }
+            });
+            filterChain.doFilter(request, response);
+        } finally {
+            ReadWriteRoutingContext.clear();
+        }
+    }
+}
@@ -10,6 +10,8 @@ import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 import java.util.HashMap;
 import java.util.List;
@@ -25,6 +27,8 @@ import java.util.stream.Collectors;
  * <p>REFACTORED: Now depends on SecurityContext interface instead of concrete SecurityUser class.
  * This follows Dependency Inversion Principle (DIP) and decouples data layer from web layer.
  *
+ * <p>同一请求内按 (用户, 别名) 缓存已解析的过滤条件，列表接口多次查询只解析一次（含自定义权限的数据库查询）。
+ *
  * @author Deng
  * createData 2025/10/30 11:15
  * @version 2.0 - Refactored to use SecurityContext interface
@@ -33,6 +37,7 @@ import java.util.stream.Collectors;
 @Component
 @Slf4j
 public class DataScopeAspect {
+    private static final String REQUEST_CACHE_ATTRIBUTE = DataScopeAspect.class.getName() + ".FILTERS";
 
     private final SecurityContext securityContext;
     private final DataPermissionService dataPermissionService;
@@ -53,6 +58,8 @@ public class DataScopeAspect {
      */
     @Around("@annotation(dataScope)")
     public Object around(ProceedingJoinPoint point, DataScope dataScope) throws Throwable {
+        // 嵌套调用时保留外层条件，结束后恢复
+        DataScopeFilter previous = DataScopeContextHolder.get();
         try {
             // Check if user is authenticated via interface
             if (!securityContext.isAuthenticated()) {
@@ -71,8 +78,8 @@ public class DataScopeAspect {
                 return point.proceed();
             }
 
-            // Build SQL filter based on data scope level
-            DataScopeFilter filter = buildSqlFilter(dataScopeLevel, userId, deptId, dataScope);
+            // Build SQL filter based on data scope level (cached per request)
+            DataScopeFilter filter = resolveFilter(dataScopeLevel, userId, deptId, dataScope);
 
             // 设置到ThreadLocal，由DataScopeInterceptor使用
             DataScopeContextHolder.set(filter);
@@ -83,8 +90,32 @@ public class DataScopeAspect {
             return point.proceed();
         } finally {
             // 清理 ThreadLocal
-            DataScopeContextHolder.clear();
+            if (previous != null) {
+                DataScopeContextHolder.set(previous);
+            } else {
+                DataScopeContextHolder.clear();
+            }
+        }
+    }
+
+    /**
+     * 获取过滤条件，优先取本次请求内已解析的结果
+     */
+    @SuppressWarnings("unchecked")
+    private DataScopeFilter resolveFilter(Integer dataScope, UUID userId, UUID deptId, DataScope annotation) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return buildSqlFilter(dataScope, userId, deptId, annotation);
+        }
+
+        Map<String, DataScopeFilter> filters = (Map<String, DataScopeFilter>)
+                attributes.getAttribute(REQUEST_CACHE_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (filters == null) {
+            filters = new HashMap<>();
+            attributes.setAttribute(REQUEST_CACHE_ATTRIBUTE, filters, RequestAttributes.SCOPE_REQUEST);
         }
+        String key = userId + ":" + dataScope + ":" + deptId + ":" + annotation.deptAlias() + ":" + annotation.userAlias();
+        return filters.computeIfAbsent(key, k -> buildSqlFilter(dataScope, userId, deptId, annotation));
     }
 
     /**
@@ -1,21 +1,33 @@
 package com.frog.common.mybatisPlus.interceptor;
 
+import com.baomidou.mybatisplus.core.toolkit.PluginUtils;
 import com.frog.common.mybatisPlus.context.DataScopeContextHolder;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.ibatis.executor.statement.StatementHandler;
 import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
 import org.apache.ibatis.plugin.*;
-import org.apache.ibatis.reflection.MetaObject;
-import org.apache.ibatis.reflection.SystemMetaObject;
+import org.apache.ibatis.session.Configuration;
 import org.springframework.stereotype.Component;
 
 import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 import java.util.Properties;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * MyBatis拦截器 - 自动添加数据权限过滤
  *
+ * <p>过滤条件校验后编译为 JDBC 占位符形式并缓存，改写后的 SQL 按 (原始 SQL, 条件) 缓存，
+ * 同一角色的条件只校验一次，同一语句只改写一次。
+ *
  * @author Deng
  * createData 2025/10/15 14:32
  * @version 1.0
@@ -30,31 +42,198 @@ import java.util.Properties;
         )}
 )
 public class DataScopeInterceptor implements Interceptor {
+    private static final int PREDICATE_CACHE_SIZE = 1024;
+    private static final int REWRITE_CACHE_SIZE = 4096;
+    private static final Pattern PARAM_PLACEHOLDER = Pattern.compile("#\\{\\s*([\\w.]+)\\s*}");
+
+    /**
+     * 外层查询中结束 WHERE 条件（或在没有 WHERE 时决定插入位置）的子句关键字
+     */
+    private static final Set<String> CLAUSE_KEYWORDS = Set.of(
+            "group", "having", "window", "order", "limit", "offset", "fetch", "for",
+            "union", "intersect", "except", "returning");
+
+    /**
+     * 已校验并编译的过滤条件（key: 条件文本），同一角色的条件只校验一次
+     */
+    private final Cache<String, CompiledPredicate> predicateCache = Caffeine.newBuilder()
+            .maximumSize(PREDICATE_CACHE_SIZE)
+            .build();
+
+    /**
+     * 改写后的 SQL（key: 原始 SQL + 条件文本）
+     */
+    private final Cache<RewriteKey, Rewrite> rewriteCache = Caffeine.newBuilder()
+            .maximumSize(REWRITE_CACHE_SIZE)
+            .build();
 
     @Override
     public Object intercept(Invocation invocation) throws Throwable {
-        StatementHandler statementHandler = (StatementHandler) invocation.getTarget();
-        MetaObject metaObject = SystemMetaObject.forObject(statementHandler);
-
-        // 获取 SQL过滤条件
+        // 获取 SQL过滤条件（没有数据权限上下文的查询不做任何反射）
         var filter = DataScopeContextHolder.get();
-        if (filter != null && filter.getClause() != null && !filter.getClause().isEmpty()
-                && isSafeFilter(filter.getClause()) && isSelectStatement(metaObject)) {
-            BoundSql boundSql = statementHandler.getBoundSql();
-            String originalSql = boundSql.getSql();
+        if (filter == null || filter.getClause() == null || filter.getClause().isEmpty()) {
+            return invocation.proceed();
+        }
 
-            String newSql = appendFilter(originalSql, filter.getClause());
+        CompiledPredicate predicate = compile(filter.getClause());
+        if (!predicate.safe() || predicate.matchesAll()) {
+            return invocation.proceed();
+        }
+
+        StatementHandler statementHandler = PluginUtils.realTarget(invocation.getTarget());
+        PluginUtils.MPStatementHandler mpStatementHandler = PluginUtils.mpStatementHandler(statementHandler);
+        if (mpStatementHandler.mappedStatement().getSqlCommandType() != SqlCommandType.SELECT) {
+            return invocation.proceed();
+        }
 
-            metaObject.setValue("delegate.boundSql.sql", newSql);
-            // 追加参数以支持 #{...} 占位符
-            filter.getParams().forEach(boundSql::setAdditionalParameter);
+        BoundSql boundSql = mpStatementHandler.boundSql();
+        Rewrite rewrite = rewrite(boundSql.getSql(), predicate);
 
-            log.debug("Data scope filter applied: {}", filter.getClause());
+        // 在过滤条件位置插入参数映射，参数值通过附加参数由 JDBC 绑定
+        PluginUtils.MPBoundSql mpBoundSql = PluginUtils.mpBoundSql(boundSql);
+        List<ParameterMapping> mappings = new ArrayList<>(mpBoundSql.parameterMappings());
+        Configuration configuration = mpStatementHandler.mappedStatement().getConfiguration();
+        int index = Math.min(rewrite.paramIndex(), mappings.size());
+        for (String name : predicate.paramNames()) {
+            mappings.add(index++, new ParameterMapping.Builder(configuration, name, Object.class).build());
         }
+        mpBoundSql.sql(rewrite.sql());
+        mpBoundSql.parameterMappings(mappings);
+        filter.getParams().forEach(boundSql::setAdditionalParameter);
 
+        log.debug("Data scope filter applied: {}", filter.getClause());
         return invocation.proceed();
     }
 
+    /**
+     * 校验并编译过滤条件（带缓存）
+     */
+    CompiledPredicate compile(String clause) {
+        return predicateCache.get(clause, this::compileUncached);
+    }
+
+    /**
+     * 校验并编译过滤条件：#{name} 替换为 JDBC 占位符并按出现顺序记录参数名
+     */
+    CompiledPredicate compileUncached(String clause) {
+        if (!isSafeFilter(clause)) {
+            return CompiledPredicate.REJECTED;
+        }
+        if ("1=1".equals(clause.trim())) {
+            return CompiledPredicate.ALL;
+        }
+
+        Matcher matcher = PARAM_PLACEHOLDER.matcher(clause);
+        StringBuilder sql = new StringBuilder(clause.length());
+        List<String> names = new ArrayList<>();
+        while (matcher.find()) {
+            names.add(matcher.group(1));
+            matcher.appendReplacement(sql, "?");
+        }
+        matcher.appendTail(sql);
+        return new CompiledPredicate(true, false, sql.toString(), List.copyOf(names));
+    }
+
+    /**
+     * 改写 SQL（带缓存）
+     */
+    Rewrite rewrite(String originalSql, CompiledPredicate predicate) {
+        return rewriteCache.get(new RewriteKey(originalSql, predicate.sql()),
+                key -> rewriteUncached(originalSql, predicate));
+    }
+
+    /**
+     * 改写 SQL 并计算过滤条件参数在参数列表中的插入位置
+     *
+     * <p>只改写最外层查询：子查询、CTE 中的 WHERE 不受影响（过滤条件引用的是外层表别名）。
+     * 已有的 WHERE 条件整体加括号，避免其中的 OR 绕过过滤条件。
+     */
+    Rewrite rewriteUncached(String originalSql, CompiledPredicate predicate) {
+        String lower = originalSql.toLowerCase(Locale.ROOT);
+        int whereIdx = findTopLevelKeyword(lower, 0, Set.of("where"));
+        if (whereIdx < 0) {
+            int insertAt = findTopLevelKeyword(lower, 0, CLAUSE_KEYWORDS);
+            if (insertAt < 0) {
+                insertAt = originalSql.length();
+            }
+            String head = originalSql.substring(0, insertAt).stripTrailing();
+            String tail = originalSql.substring(insertAt);
+            String sql = head + " WHERE (" + predicate.sql() + ")" + (tail.isEmpty() ? "" : " " + tail);
+            return new Rewrite(sql, countPlaceholders(originalSql, insertAt));
+        }
+
+        int conditionStart = whereIdx + "where".length();
+        int conditionEnd = findTopLevelKeyword(lower, conditionStart, CLAUSE_KEYWORDS);
+        if (conditionEnd < 0) {
+            conditionEnd = originalSql.length();
+        }
+        String condition = originalSql.substring(conditionStart, conditionEnd).strip();
+        String tail = originalSql.substring(conditionEnd);
+        String sql = originalSql.substring(0, whereIdx) + "WHERE (" + predicate.sql() + ") AND (" + condition + ")"
+                + (tail.isEmpty() ? "" : " " + tail);
+        return new Rewrite(sql, countPlaceholders(originalSql, whereIdx));
+    }
+
+    /**
+     * 查找最外层（不在括号、字符串、带引号标识符和注释中）第一个属于 keywords 的单词
+     *
+     * @return 单词起始位置，没有时返回 -1
+     */
+    private static int findTopLevelKeyword(String lower, int from, Set<String> keywords) {
+        int depth = 0;
+        int i = from;
+        int n = lower.length();
+        while (i < n) {
+            char c = lower.charAt(i);
+            if (c == '\'' || c == '"') {
+                int close = lower.indexOf(c, i + 1);
+                i = close < 0 ? n : close + 1;
+            } else if (c == '-' && lower.startsWith("--", i)) {
+                int close = lower.indexOf('\n', i);
+                i = close < 0 ? n : close + 1;
+            } else if (c == '/' && lower.startsWith("/*", i)) {
+                int close = lower.indexOf("*/", i + 2);
+                i = close < 0 ? n : close + 2;
+            } else if (c == '(') {
+                depth++;
+                i++;
+            } else if (c == ')') {
+                depth--;
+                i++;
+            } else if (Character.isLetter(c) && (i == 0 || !isIdentifierPart(lower.charAt(i - 1)))) {
+                int end = i;
+                while (end < n && isIdentifierPart(lower.charAt(end))) {
+                    end++;
+                }
+                if (depth == 0 && keywords.contains(lower.substring(i, end))) {
+                    return i;
+                }
+                i = end;
+            } else {
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '.';
+    }
+
+    private static int countPlaceholders(String sql, int end) {
+        int count = 0;
+        boolean inString = false;
+        for (int i = 0; i < end; i++) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                inString = !inString;
+            } else if (c == '?' && !inString) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     /**
      * Enhanced SQL injection prevention.
      * Validates that the filter clause only contains safe SQL patterns.
@@ -62,7 +241,7 @@ public class DataScopeInterceptor implements Interceptor {
      * @param filter The data scope filter clause
      * @return true if filter is safe, false otherwise
      */
-    private boolean isSafeFilter(String filter) {
+    boolean isSafeFilter(String filter) {
         if (filter == null || filter.trim().isEmpty()) {
             return false;
         }
@@ -120,7 +299,7 @@ public class DataScopeInterceptor implements Interceptor {
      * Validates that filter matches expected data scope patterns.
      * Only allows: equality, IN clause, CTEs, and boolean operators.
      */
-    private boolean matchesAllowedPattern(String filter) {
+    boolean matchesAllowedPattern(String filter) {
         String lower = filter.toLowerCase(Locale.ROOT);
 
         // Allow simple cases
@@ -146,43 +325,6 @@ public class DataScopeInterceptor implements Interceptor {
         return hasComparison || hasRecursiveCTE;
     }
 
-    private boolean isSelectStatement(MetaObject metaObject) {
-        try {
-            Object cmd = metaObject.getValue("delegate.mappedStatement.sqlCommandType");
-            return cmd != null && "SELECT".equalsIgnoreCase(cmd.toString());
-        } catch (Exception e) {
-            // On error, default to false for security (don't modify unknown SQL types)
-            log.debug("Could not determine SQL command type, skipping data scope filter", e);
-            return false;
-        }
-    }
-
-    /**
-     * Appends data scope filter to SQL WHERE clause.
-     * NOTE: This still uses string manipulation, but the filter is heavily validated.
-     *
-     * IMPORTANT: The actual parameter values are passed separately via BoundSql.setAdditionalParameter(),
-     * so they are properly escaped by JDBC PreparedStatement. Only the clause structure is concatenated.
-     *
-     * @param originalSql The original SQL query
-     * @param filter The validated filter clause (contains #{...} placeholders, not actual values)
-     * @return Modified SQL with filter applied
-     */
-    private String appendFilter(String originalSql, String filter) {
-        String lower = originalSql.toLowerCase(Locale.ROOT);
-        int whereIdx = lower.indexOf(" where ");
-
-        if (whereIdx >= 0) {
-            // Insert filter right after WHERE keyword
-            return originalSql.substring(0, whereIdx + 7) +
-                   "(" + filter + ") AND " +
-                   originalSql.substring(whereIdx + 7);
-        } else {
-            // No WHERE clause, add one
-            return originalSql + " WHERE (" + filter + ")";
-        }
-    }
-
     @Override
     public Object plugin(Object target) {
         return Plugin.wrap(target, this);
@@ -191,4 +333,27 @@ public class DataScopeInterceptor implements Interceptor {
     @Override
     public void setProperties(Properties properties) {
     }
+
+    /**
+     * 编译后的过滤条件（不可变）
+     *
+     * @param safe       是否通过安全校验
+     * @param matchesAll 是否为全部数据权限（无需改写）
+     * @param sql        JDBC 占位符形式的条件
+     * @param paramNames 占位符对应的参数名（按出现顺序）
+     */
+    record CompiledPredicate(boolean safe, boolean matchesAll, String sql, List<String> paramNames) {
+        static final CompiledPredicate REJECTED = new CompiledPredicate(false, false, null, List.of());
+        static final CompiledPredicate ALL = new CompiledPredicate(true, true, "1=1", List.of());
+    }
+
+    /**
+     * SQL 改写结果
+     *
+     * @param sql        改写后的 SQL
+     * @param paramIndex 过滤条件参数在参数列表中的插入位置
+     */
+    record Rewrite(String sql, int paramIndex) {}
+
+    private record RewriteKey(String sql, String predicate) {}
 }
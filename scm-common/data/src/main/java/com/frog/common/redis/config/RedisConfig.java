@@ -1,5 +1,6 @@
 package com.frog.common.redis.config;
 
+import com.frog.common.cache.spring.TwoLevelCacheInvalidationBus;
 import com.frog.common.cache.spring.TwoLevelCacheInvalidationListener;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
@@ -8,18 +9,30 @@ import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.ChannelTopic;
 import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.listener.adapter.MessageListenerAdapter;
 import org.springframework.data.redis.serializer.JacksonJsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.cache.CacheManager;
 import org.springframework.context.annotation.Primary;
 import com.frog.common.cache.spring.TwoLevelCacheManager;
+import com.frog.common.cache.spring.TwoLevelCacheOptions;
+import com.frog.common.dto.dept.DeptDTO;
+import com.frog.common.dto.permission.ApiPermissionDTO;
+import com.frog.common.dto.permission.PermissionDTO;
+import com.frog.common.dto.role.RoleDTO;
+import com.frog.common.dto.user.UserDTO;
+import com.frog.common.dto.user.UserInfo;
+import com.frog.common.redis.serializer.CompactRedisSerializer;
+import com.frog.common.redis.serializer.KryoRedisValueCodec;
+import org.springframework.beans.factory.annotation.Value;
 
 import java.time.Duration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -32,25 +45,42 @@ import java.util.Map;
 @Configuration
 @EnableCaching
 public class RedisConfig {
-    private static final String TWOLEVEL_INVALIDATION_CHANNEL = "cache:invalidation:twolevel";
+    /**
+     * Redis 值序列化器
+     *
+     * <p>scm.redis.value-format=compact（默认）时对象用 Kryo 二进制编码、超过阈值的 LZ4 压缩，字符串、数字、布尔仍为 JSON；
+     * 旧的 JSON 数据可以继续读取。滚动升级期间旧版本节点读不了二进制数据，可先配置为 json。
+     */
+    @Bean
+    public RedisSerializer<Object> redisValueSerializer(
+            @Value("${scm.redis.value-format:compact}") String valueFormat,
+            @Value("${scm.redis.compress-threshold:1024}") int compressThreshold) {
+        JacksonJsonRedisSerializer<Object> json = jackson2JsonRedisSerializer();
+        if ("json".equalsIgnoreCase(valueFormat)) {
+            return json;
+        }
+        List<Class<?>> types = List.of(
+                UserInfo.class, UserDTO.class, RoleDTO.class, PermissionDTO.class,
+                ApiPermissionDTO.class, DeptDTO.class);
+        return new CompactRedisSerializer(new KryoRedisValueCodec(types), List.of(), json, compressThreshold);
+    }
 
     @Bean
-    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory factory) {
+    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory factory,
+                                                       RedisSerializer<Object> redisValueSerializer) {
         RedisTemplate<String, Object> template = new RedisTemplate<>();
         template.setConnectionFactory(factory);
 
-        JacksonJsonRedisSerializer<Object> serializer = new JacksonJsonRedisSerializer<>(Object.class);
-
         StringRedisSerializer stringSerializer = new StringRedisSerializer();
 
         // key 采用String的序列化方式
         template.setKeySerializer(stringSerializer);
         // hash 的key也采用String的序列化方式
         template.setHashKeySerializer(stringSerializer);
-        // value 序列化方式采用jackson
-        template.setValueSerializer(serializer);
-        // hash  的value序列化方式采用jackson
-        template.setHashValueSerializer(serializer);
+        // value 序列化方式采用紧凑二进制（见 redisValueSerializer）
+        template.setValueSerializer(redisValueSerializer);
+        // hash 的value序列化方式同上
+        template.setHashValueSerializer(redisValueSerializer);
 
         template.afterPropertiesSet();
         return template;
@@ -62,7 +92,7 @@ public class RedisConfig {
             TwoLevelCacheInvalidationListener twoLevelListener) {
         RedisMessageListenerContainer container = new RedisMessageListenerContainer();
         container.setConnectionFactory(connectionFactory);
-        container.addMessageListener(new MessageListenerAdapter(twoLevelListener), new PatternTopic(TWOLEVEL_INVALIDATION_CHANNEL));
+        container.addMessageListener(new MessageListenerAdapter(twoLevelListener), new ChannelTopic(TwoLevelCacheInvalidationBus.CHANNEL));
         return container;
     }
 
@@ -99,52 +129,70 @@ public class RedisConfig {
         // 临时角色缓存
         ttls.put("userTemporaryRoles", Duration.ofMinutes(15));
 
+        // 空值缓存（不存在的用户、角色），防止随机 ID 探测直接打到数据库
+        ttls.put("user" + TwoLevelCacheManager.NEGATIVE_TTL_SUFFIX, Duration.ofMinutes(2));
+        ttls.put("userDetails" + TwoLevelCacheManager.NEGATIVE_TTL_SUFFIX, Duration.ofMinutes(2));
+        ttls.put("role" + TwoLevelCacheManager.NEGATIVE_TTL_SUFFIX, Duration.ofMinutes(2));
+
         long localMaxSize = 10_000L;
-        return new TwoLevelCacheManager(redisTemplate, defaultTtl, ttls, localMaxSize);
+        // 回源保护：跨实例租约 + XFetch 提前刷新
+        TwoLevelCacheOptions options = TwoLevelCacheOptions.builder()
+                .leaseEnabled(true)
+                .leaseTime(Duration.ofSeconds(3))
+                .leaseWait(Duration.ofMillis(500))
+                .staleGrace(Duration.ofMinutes(1))
+                .earlyRefreshBeta(1.0)
+                .negativeTtl(Duration.ofMinutes(1))
+                .invalidationFlushWindow(Duration.ofMillis(5))
+                // clear() 只递增代号，旧代 key 由 TTL 回收
+                .sweepOnClear(false)
+                .build();
+        return new TwoLevelCacheManager(redisTemplate, defaultTtl, ttls, localMaxSize, options);
     }
 
     @Bean
-    public RedisCacheManager cacheManager(RedisConnectionFactory redisConnectionFactory) {
+    public RedisCacheManager cacheManager(RedisConnectionFactory redisConnectionFactory,
+                                          RedisSerializer<Object> redisValueSerializer) {
         RedisCacheConfiguration defaultConfig = RedisCacheConfiguration.defaultCacheConfig()
                 .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
-                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(jackson2JsonRedisSerializer()))
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(redisValueSerializer))
                 .entryTtl(Duration.ofHours(1)); // 默认缓存1小时
 
         // 为不同的缓存设置不同的过期时间
         Map<String, RedisCacheConfiguration> cacheConfigurations = new HashMap<>();
         cacheConfigurations.put("user", RedisCacheConfiguration.defaultCacheConfig()
                 .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
-                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(jackson2JsonRedisSerializer()))
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(redisValueSerializer))
                 .entryTtl(Duration.ofMinutes(30))); // 用户缓存30分钟
 
         cacheConfigurations.put("userInfo", RedisCacheConfiguration.defaultCacheConfig()
                 .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
-                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(jackson2JsonRedisSerializer()))
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(redisValueSerializer))
                 .entryTtl(Duration.ofMinutes(30))); // 用户信息缓存30分钟
 
         cacheConfigurations.put("userRoles", RedisCacheConfiguration.defaultCacheConfig()
                 .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
-                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(jackson2JsonRedisSerializer()))
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(redisValueSerializer))
                 .entryTtl(Duration.ofHours(1))); // 用户角色缓存1小时
 
         cacheConfigurations.put("userPermissions", RedisCacheConfiguration.defaultCacheConfig()
                 .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
-                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(jackson2JsonRedisSerializer()))
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(redisValueSerializer))
                 .entryTtl(Duration.ofHours(1))); // 用户权限缓存1小时
 
         cacheConfigurations.put("permissionTree", RedisCacheConfiguration.defaultCacheConfig()
                 .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
-                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(jackson2JsonRedisSerializer()))
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(redisValueSerializer))
                 .entryTtl(Duration.ofHours(2))); // 权限树缓存2小时
 
         cacheConfigurations.put("roles", RedisCacheConfiguration.defaultCacheConfig()
                 .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
-                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(jackson2JsonRedisSerializer()))
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(redisValueSerializer))
                 .entryTtl(Duration.ofHours(1))); // 角色列表缓存1小时
 
         cacheConfigurations.put("role", RedisCacheConfiguration.defaultCacheConfig()
                 .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
-                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(jackson2JsonRedisSerializer()))
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(redisValueSerializer))
                 .entryTtl(Duration.ofHours(1))); // 角色缓存1小时
 
         return RedisCacheManager.builder(redisConnectionFactory)
@@ -0,0 +1,92 @@
+package com.frog.common.redis.quota;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地配额租约
+ * <p>
+ * 从 Redis 计数器一次预占的一批令牌，节点内用 CAS 扣减。租约到期、跨天或被新租约替换时退役，
+ * 退役后不再接受扣减和退还，剩余令牌由持有方一次性还给 Redis。
+ *
+ * @author Deng
+ * @since 2025-12-25
+ */
+final class QuotaLease {
+    private static final long RETIRED = Long.MIN_VALUE;
+
+    /**
+     * 租约所属的 Redis 计数器 key
+     */
+    final String counterKey;
+
+    /**
+     * 租约对应的每日配额代号
+     */
+    final long generation;
+
+    /**
+     * 到期时间（毫秒），不晚于计数器所属自然日的结束时间
+     */
+    final long expiresAt;
+
+    /**
+     * 计数器所属自然日的结束时间（毫秒），之后退还令牌已无意义
+     */
+    final long dayEndsAt;
+
+    private final AtomicLong remaining;
+
+    QuotaLease(String counterKey, long generation, long tokens, long expiresAt, long dayEndsAt) {
+        this.counterKey = counterKey;
+        this.generation = generation;
+        this.remaining = new AtomicLong(tokens);
+        this.expiresAt = Math.min(expiresAt, dayEndsAt);
+        this.dayEndsAt = dayEndsAt;
+    }
+
+    boolean isExpired(long now) {
+        return now >= expiresAt;
+    }
+
+    /**
+     * 扣减令牌，余量不足或已退役时返回 false
+     */
+    boolean tryConsume(long amount) {
+        long current;
+        do {
+            current = remaining.get();
+            if (current < amount) {
+                return false;
+            }
+        } while (!remaining.compareAndSet(current, current - amount));
+        return true;
+    }
+
+    /**
+     * 退还令牌到本地租约，已退役时返回 false（调用方需直接退还到 Redis）
+     */
+    boolean refund(long amount) {
+        long current;
+        do {
+            current = remaining.get();
+            if (current == RETIRED) {
+                return false;
+            }
+        } while (!remaining.compareAndSet(current, current + amount));
+        return true;
+    }
+
+    /**
+     * 当前余量，已退役为 0
+     */
+    long remaining() {
+        return Math.max(0, remaining.get());
+    }
+
+    /**
+     * 退役并返回剩余令牌；重复调用返回 0
+     */
+    long retire() {
+        return Math.max(0, remaining.getAndSet(RETIRED));
+    }
+}
@@ -0,0 +1,126 @@
+package com.frog.common.redis.quota;
+
+import com.frog.common.tenant.quota.QuotaKeys;
+import com.frog.common.tenant.quota.QuotaLimitProvider;
+import com.frog.common.tenant.quota.QuotaLimitSource;
+import com.frog.common.tenant.quota.QuotaType;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 从 Redis 读取租户限额
+ * <p>
+ * 限额由租户服务在配额变更时写入 quota:{tenantId}:limits，本地缓存一段时间，
+ * 配额检查的热路径不访问 Redis。已发布但未设置某类限额的租户按不限额处理。
+ * <p>
+ * 限额 key 不存在（尚未发布、Redis 数据丢失或被淘汰）时不能当作不限额：
+ * 有 {@link QuotaLimitSource} 的服务（租户服务）从配额表读取并重新发布；其他服务拒绝（限额按 0 处理），
+ * 该结果只缓存 missing-limit-retry，租户服务发布后很快恢复。
+ *
+ * @author Deng
+ * @since 2025-12-25
+ */
+@Slf4j
+@Component
+public class RedisQuotaLimitProvider implements QuotaLimitProvider {
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final ObjectProvider<QuotaLimitSource> limitSource;
+    private final LoadingCache<UUID, Limits> limits;
+
+    public RedisQuotaLimitProvider(RedisTemplate<String, Object> redisTemplate,
+                                   ObjectProvider<QuotaLimitSource> limitSource,
+                                   @Value("${scm.quota.limit-cache-ttl:30s}") Duration cacheTtl,
+                                   @Value("${scm.quota.missing-limit-retry:2s}") Duration missingRetry) {
+        this.redisTemplate = redisTemplate;
+        this.limitSource = limitSource;
+        this.limits = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfter(new Expiry<UUID, Limits>() {
+                    @Override
+                    public long expireAfterCreate(UUID key, Limits value, long currentTime) {
+                        return (value.published() ? cacheTtl : missingRetry).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(UUID key, Limits value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(UUID key, Limits value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build(this::load);
+    }
+
+    @Override
+    public long getLimit(UUID tenantId, QuotaType quotaType) {
+        Limits tenantLimits = limits.get(tenantId);
+        if (!tenantLimits.published()) {
+            return 0L;
+        }
+        Long limit = tenantLimits.values().get(quotaType);
+        return limit != null ? limit : UNLIMITED;
+    }
+
+    /**
+     * 丢弃本地缓存的限额，下次检查时重新读取
+     */
+    public void evict(UUID tenantId) {
+        limits.invalidate(tenantId);
+    }
+
+    private Limits load(UUID tenantId) {
+        Map<Object, Object> raw = redisTemplate.opsForHash().entries(QuotaKeys.limits(tenantId));
+        if (raw.isEmpty()) {
+            return reload(tenantId);
+        }
+        Map<QuotaType, Long> result = new EnumMap<>(QuotaType.class);
+        for (QuotaType type : QuotaType.values()) {
+            Object value = raw.get(type.name());
+            if (value instanceof Number number) {
+                result.put(type, number.longValue());
+            } else if (value != null) {
+                try {
+                    result.put(type, Long.parseLong(value.toString()));
+                } catch (NumberFormatException e) {
+                    log.warn("[Quota] Invalid limit {}={} for tenant {}", type, value, tenantId);
+                }
+            }
+        }
+        return new Limits(result, true);
+    }
+
+    /**
+     * Redis 中没有限额：从配额表重新发布，无法访问配额表时拒绝
+     */
+    private Limits reload(UUID tenantId) {
+        QuotaLimitSource source = limitSource.getIfAvailable();
+        if (source == null) {
+            log.warn("[Quota] Limits not published for tenant {}, denying until published", tenantId);
+            return new Limits(Map.of(), false);
+        }
+        log.warn("[Quota] Limits missing in Redis for tenant {}, reloading from quota table", tenantId);
+        return new Limits(source.reload(tenantId), true);
+    }
+
+    /**
+     * 租户限额
+     *
+     * @param values 各配额类型的上限
+     * @param published 限额是否已发布，false 时全部拒绝
+     */
+    private record Limits(Map<QuotaType, Long> values, boolean published) {}
+}
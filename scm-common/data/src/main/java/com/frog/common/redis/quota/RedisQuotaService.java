@@ -0,0 +1,487 @@
+package com.frog.common.redis.quota;
+
+import com.frog.common.tenant.quota.QuotaKeys;
+import com.frog.common.tenant.quota.QuotaLimitProvider;
+import com.frog.common.tenant.quota.QuotaService;
+import com.frog.common.tenant.quota.QuotaType;
+import com.frog.common.tenant.quota.QuotaUsage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于 Redis 的配额服务
+ * <p>
+ * Redis 保存每个租户的权威计数器，各节点按批预占令牌（租约）后在本地用 CAS 扣减，
+ * 只有租约用完、到期或跨天时才访问 Redis：
+ * <ul>
+ *   <li>每日配额（订单、API 调用）：计数器 key 带自然日和代号，跨天自动换 key，旧 key 由 TTL 回收，不做批量删除；
+ *       手动重置单个租户时递增代号，各节点下次续租时发现代号变化即切换到新 key</li>
+ *   <li>租约大小不超过限额的 1/{@value #LEASE_SHARE_DIVISOR}，避免少数节点囤积令牌导致其他节点过早拒绝；
+ *       配额接近用尽时 Redis 只发放剩余部分</li>
+ *   <li>未用完的令牌在租约到期（后台扫描）和应用关闭时退还 Redis</li>
+ *   <li>存量配额（用户、仓库、SKU、存储）变化频率低且需要精确，直接在 Redis 上原子增减，不使用租约</li>
+ * </ul>
+ * Redis 不可用时放行请求（记录告警），配额限制不影响业务可用性。
+ *
+ * @author Deng
+ * @since 2025-12-25
+ */
+@Slf4j
+@Component
+public class RedisQuotaService implements QuotaService, DisposableBean {
+    private static final int LEASE_SHARE_DIVISOR = 50;
+    private static final long STALE_GENERATION = -1L;
+    private static final Duration DAILY_COUNTER_TTL = Duration.ofDays(2);
+
+    /**
+     * 预占令牌：代号一致时发放 min(请求量, 剩余量)，返回 {发放量, 当前代号}；代号不一致返回 {-1, 当前代号}
+     */
+    private static final String LEASE_LUA = """
+            local gen = tonumber(redis.call('GET', KEYS[2]) or '0')
+            if gen ~= tonumber(ARGV[1]) then
+                return {-1, gen}
+            end
+            local used = tonumber(redis.call('GET', KEYS[1]) or '0')
+            local grant = math.min(tonumber(ARGV[3]), tonumber(ARGV[2]) - used)
+            if grant <= 0 then
+                return {0, gen}
+            end
+            redis.call('INCRBY', KEYS[1], grant)
+            redis.call('PEXPIRE', KEYS[1], ARGV[4])
+            return {grant, gen}
+            """;
+
+    /**
+     * 退还令牌：代号未变时扣减计数器，不低于 0
+     */
+    private static final String RETURN_LUA = """
+            local gen = tonumber(redis.call('GET', KEYS[2]) or '0')
+            if gen ~= tonumber(ARGV[1]) or redis.call('EXISTS', KEYS[1]) == 0 then
+                return 0
+            end
+            if redis.call('DECRBY', KEYS[1], ARGV[2]) < 0 then
+                redis.call('SET', KEYS[1], 0, 'KEEPTTL')
+            end
+            return 1
+            """;
+
+    /**
+     * 存量配额消耗：不超限时增加计数器
+     */
+    private static final String CONSUME_LUA = """
+            local used = tonumber(redis.call('GET', KEYS[1]) or '0')
+            if used + tonumber(ARGV[1]) > tonumber(ARGV[2]) then
+                return 0
+            end
+            redis.call('INCRBY', KEYS[1], ARGV[1])
+            return 1
+            """;
+
+    /**
+     * 存量配额释放：扣减计数器，不低于 0
+     */
+    private static final String RELEASE_LUA = """
+            if redis.call('DECRBY', KEYS[1], ARGV[1]) < 0 then
+                redis.call('SET', KEYS[1], 0)
+            end
+            return 1
+            """;
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final QuotaLimitProvider limitProvider;
+    private final int leaseSize;
+    private final long leaseTtlMillis;
+    private final long exhaustedBackoffMillis;
+    private final ZoneId zone;
+
+    @SuppressWarnings("rawtypes")
+    private final DefaultRedisScript<List> leaseScript = new DefaultRedisScript<>(LEASE_LUA, List.class);
+    private final DefaultRedisScript<Long> returnScript = new DefaultRedisScript<>(RETURN_LUA, Long.class);
+    private final DefaultRedisScript<Long> consumeScript = new DefaultRedisScript<>(CONSUME_LUA, Long.class);
+    private final DefaultRedisScript<Long> releaseScript = new DefaultRedisScript<>(RELEASE_LUA, Long.class);
+    private final RedisSerializer<String> stringSerializer = new StringRedisSerializer();
+
+    private final Map<SlotKey, LeaseSlot> slots = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "quota-lease-sweeper");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile long today;
+    private volatile long todayEndsAt;
+
+    public RedisQuotaService(RedisTemplate<String, Object> redisTemplate,
+                             QuotaLimitProvider limitProvider,
+                             @Value("${scm.quota.lease-size:100}") int leaseSize,
+                             @Value("${scm.quota.lease-ttl:10s}") Duration leaseTtl,
+                             @Value("${scm.quota.exhausted-backoff:1s}") Duration exhaustedBackoff,
+                             @Value("${scm.quota.zone:}") String zone) {
+        this.redisTemplate = redisTemplate;
+        this.limitProvider = limitProvider;
+        this.leaseSize = Math.max(1, leaseSize);
+        this.leaseTtlMillis = leaseTtl.toMillis();
+        this.exhaustedBackoffMillis = exhaustedBackoff.toMillis();
+        this.zone = zone == null || zone.isBlank() ? ZoneId.systemDefault() : ZoneId.of(zone);
+        rollDay(System.currentTimeMillis());
+        long sweepInterval = Math.max(100, leaseTtlMillis / 2);
+        sweeper.scheduleWithFixedDelay(this::sweepExpired, sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public boolean checkQuota(UUID tenantId, QuotaType quotaType, int increment) {
+        if (increment <= 0) {
+            return true;
+        }
+        try {
+            long limit = limitProvider.getLimit(tenantId, quotaType);
+            if (limit == QuotaLimitProvider.UNLIMITED) {
+                return true;
+            }
+            if (QuotaKeys.isDaily(quotaType)) {
+                LeaseSlot slot = slot(tenantId, quotaType);
+                QuotaLease lease = slot.lease;
+                if (lease != null && !lease.isExpired(System.currentTimeMillis()) && lease.remaining() >= increment) {
+                    return true;
+                }
+                return readCounter(dailyKey(tenantId, quotaType, generation(slot, tenantId))) + increment <= limit;
+            }
+            return readCounter(QuotaKeys.stock(tenantId, quotaType)) + increment <= limit;
+        } catch (DataAccessException e) {
+            log.warn("[Quota] Check failed, allowing: tenant={}, type={}, error={}", tenantId, quotaType, e.getMessage());
+            return true;
+        }
+    }
+
+    @Override
+    public boolean checkAndConsumeQuota(UUID tenantId, QuotaType quotaType, int increment) {
+        if (increment <= 0) {
+            return true;
+        }
+        try {
+            long limit = limitProvider.getLimit(tenantId, quotaType);
+            if (limit == QuotaLimitProvider.UNLIMITED) {
+                return true;
+            }
+            if (!QuotaKeys.isDaily(quotaType)) {
+                Long ok = redisTemplate.execute(consumeScript, stringSerializer, null,
+                        List.of(QuotaKeys.stock(tenantId, quotaType)),
+                        String.valueOf(increment), String.valueOf(limit));
+                return ok != null && ok == 1L;
+            }
+
+            LeaseSlot slot = slot(tenantId, quotaType);
+            QuotaLease lease = slot.lease;
+            long now = System.currentTimeMillis();
+            if (lease != null && !lease.isExpired(now) && lease.tryConsume(increment)) {
+                return true;
+            }
+            if (now < slot.exhaustedUntil) {
+                return false;
+            }
+            return refill(slot, tenantId, quotaType, increment, limit);
+        } catch (DataAccessException e) {
+            log.warn("[Quota] Consume failed, allowing: tenant={}, type={}, error={}", tenantId, quotaType, e.getMessage());
+            return true;
+        }
+    }
+
+    @Override
+    public void releaseQuota(UUID tenantId, QuotaType quotaType, int decrement) {
+        if (decrement <= 0) {
+            return;
+        }
+        try {
+            if (!QuotaKeys.isDaily(quotaType)) {
+                redisTemplate.execute(releaseScript, stringSerializer, null,
+                        List.of(QuotaKeys.stock(tenantId, quotaType)), String.valueOf(decrement));
+                return;
+            }
+
+            LeaseSlot slot = slot(tenantId, quotaType);
+            QuotaLease lease = slot.lease;
+            if (lease != null && !lease.isExpired(System.currentTimeMillis()) && lease.refund(decrement)) {
+                return;
+            }
+            long generation = generation(slot, tenantId);
+            returnTokens(dailyKey(tenantId, quotaType, generation), tenantId, generation, decrement);
+        } catch (DataAccessException e) {
+            log.warn("[Quota] Release failed: tenant={}, type={}, error={}", tenantId, quotaType, e.getMessage());
+        }
+    }
+
+    /**
+     * 获取配额使用情况
+     * <p>
+     * 每日配额的使用量为 Redis 计数器减去本节点租约余量，其他节点预占但未使用的令牌仍计为已使用。
+     */
+    @Override
+    public QuotaUsage getQuotaUsage(UUID tenantId, QuotaType quotaType) {
+        long limit = limitProvider.getLimit(tenantId, quotaType);
+        long used;
+        if (QuotaKeys.isDaily(quotaType)) {
+            LeaseSlot slot = slot(tenantId, quotaType);
+            QuotaLease lease = slot.lease;
+            used = readCounter(dailyKey(tenantId, quotaType, generation(slot, tenantId)));
+            if (lease != null && !lease.isExpired(System.currentTimeMillis())) {
+                used = Math.max(0, used - lease.remaining());
+            }
+        } else {
+            used = readCounter(QuotaKeys.stock(tenantId, quotaType));
+        }
+
+        QuotaUsage usage = QuotaUsage.builder()
+                .quotaType(quotaType)
+                .currentUsage(toInt(used))
+                .maxQuota(limit == QuotaLimitProvider.UNLIMITED ? Integer.MAX_VALUE : toInt(limit))
+                .build();
+        usage.calculateAvailable();
+        return usage;
+    }
+
+    /**
+     * 重置每日配额
+     * <p>
+     * 每日计数器按自然日分 key，跨天后自动从 0 开始，定时任务无需做任何事；
+     * 指定租户时递增其代号，相当于当天重新计数，其他节点已持有的租约最迟在租约到期后切换。
+     */
+    @Override
+    public void resetDailyQuota(UUID tenantId) {
+        if (tenantId == null) {
+            log.info("[Quota] Daily counters roll over by day key, nothing to reset");
+            return;
+        }
+        Long generation = redisTemplate.execute((RedisCallback<Long>) connection ->
+                connection.stringCommands().incr(QuotaKeys.generation(tenantId).getBytes(StandardCharsets.UTF_8)));
+        for (QuotaType type : QuotaType.values()) {
+            if (!QuotaKeys.isDaily(type)) {
+                continue;
+            }
+            LeaseSlot slot = slots.get(new SlotKey(tenantId, type));
+            if (slot == null) {
+                continue;
+            }
+            synchronized (slot) {
+                if (slot.lease != null) {
+                    // 旧代号的计数器已作废，剩余令牌无需退还
+                    slot.lease.retire();
+                    slot.lease = null;
+                }
+                slot.generation = generation != null ? generation : slot.generation + 1;
+                slot.generationKnown = true;
+                slot.exhaustedUntil = 0;
+            }
+        }
+        log.info("[Quota] Daily quota reset: tenant={}, generation={}", tenantId, generation);
+    }
+
+    @Override
+    public void destroy() {
+        sweeper.shutdownNow();
+        int returned = 0;
+        for (Map.Entry<SlotKey, LeaseSlot> entry : slots.entrySet()) {
+            LeaseSlot slot = entry.getValue();
+            QuotaLease lease;
+            synchronized (slot) {
+                lease = slot.lease;
+                slot.lease = null;
+            }
+            if (lease != null && giveBack(entry.getKey().tenantId(), lease)) {
+                returned++;
+            }
+        }
+        log.info("[Quota] Returned {} unused leases on shutdown", returned);
+    }
+
+    /**
+     * 本地租约不足时续租；同一租户同一配额类型只有一个线程访问 Redis
+     */
+    private boolean refill(LeaseSlot slot, UUID tenantId, QuotaType quotaType, int increment, long limit) {
+        QuotaLease retired = null;
+        try {
+            synchronized (slot) {
+                long now = System.currentTimeMillis();
+                QuotaLease current = slot.lease;
+                if (current != null && !current.isExpired(now) && current.tryConsume(increment)) {
+                    return true;
+                }
+                if (now < slot.exhaustedUntil) {
+                    return false;
+                }
+                retired = current;
+                slot.lease = null;
+
+                if (now >= todayEndsAt) {
+                    rollDay(now);
+                }
+                long want = Math.max(increment, leaseSize(limit));
+                long[] grant = lease(tenantId, quotaType, slot.generation, limit, want);
+                if (grant[0] == STALE_GENERATION) {
+                    slot.generation = grant[1];
+                    grant = lease(tenantId, quotaType, slot.generation, limit, want);
+                }
+                slot.generationKnown = true;
+                long granted = Math.max(0, grant[0]);
+                String key = dailyKey(tenantId, quotaType, slot.generation);
+
+                if (granted < increment) {
+                    if (granted > 0) {
+                        returnTokens(key, tenantId, slot.generation, granted);
+                    }
+                    slot.exhaustedUntil = now + exhaustedBackoffMillis;
+                    log.debug("[Quota] Exhausted: tenant={}, type={}, limit={}", tenantId, quotaType, limit);
+                    return false;
+                }
+                slot.lease = new QuotaLease(key, slot.generation, granted - increment,
+                        now + leaseTtlMillis, todayEndsAt);
+                return true;
+            }
+        } finally {
+            if (retired != null) {
+                giveBack(tenantId, retired);
+            }
+        }
+    }
+
+    private long[] lease(UUID tenantId, QuotaType quotaType, long generation, long limit, long want) {
+        List<?> result = redisTemplate.execute(leaseScript, stringSerializer, null,
+                List.of(dailyKey(tenantId, quotaType, generation), QuotaKeys.generation(tenantId)),
+                String.valueOf(generation), String.valueOf(limit), String.valueOf(want),
+                String.valueOf(DAILY_COUNTER_TTL.toMillis()));
+        if (result == null || result.size() < 2) {
+            return new long[]{0, generation};
+        }
+        return new long[]{((Number) result.get(0)).longValue(), ((Number) result.get(1)).longValue()};
+    }
+
+    /**
+     * 单次租约大小：配置值与限额份额取小，至少 1
+     */
+    private long leaseSize(long limit) {
+        return Math.max(1, Math.min(leaseSize, limit / LEASE_SHARE_DIVISOR));
+    }
+
+    /**
+     * 退还租约剩余令牌；租约所属自然日已结束时直接丢弃
+     */
+    private boolean giveBack(UUID tenantId, QuotaLease lease) {
+        long tokens = lease.retire();
+        if (tokens <= 0 || System.currentTimeMillis() >= lease.dayEndsAt) {
+            return false;
+        }
+        try {
+            returnTokens(lease.counterKey, tenantId, lease.generation, tokens);
+            return true;
+        } catch (DataAccessException e) {
+            log.warn("[Quota] Failed to return {} tokens to {}: {}", tokens, lease.counterKey, e.getMessage());
+            return false;
+        }
+    }
+
+    private void returnTokens(String counterKey, UUID tenantId, long generation, long tokens) {
+        redisTemplate.execute(returnScript, stringSerializer, null,
+                List.of(counterKey, QuotaKeys.generation(tenantId)),
+                String.valueOf(generation), String.valueOf(tokens));
+    }
+
+    /**
+     * 回收到期租约
+     */
+    private void sweepExpired() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<SlotKey, LeaseSlot> entry : slots.entrySet()) {
+            LeaseSlot slot = entry.getValue();
+            QuotaLease lease = slot.lease;
+            if (lease == null || !lease.isExpired(now)) {
+                continue;
+            }
+            synchronized (slot) {
+                if (slot.lease != lease) {
+                    continue;
+                }
+                slot.lease = null;
+            }
+            giveBack(entry.getKey().tenantId(), lease);
+        }
+    }
+
+    private long readCounter(String key) {
+        byte[] value = redisTemplate.execute((RedisCallback<byte[]>) connection ->
+                connection.stringCommands().get(key.getBytes(StandardCharsets.UTF_8)));
+        return value == null ? 0 : Long.parseLong(new String(value, StandardCharsets.UTF_8));
+    }
+
+    private String dailyKey(UUID tenantId, QuotaType quotaType, long generation) {
+        long now = System.currentTimeMillis();
+        if (now >= todayEndsAt) {
+            rollDay(now);
+        }
+        return QuotaKeys.daily(tenantId, quotaType, today, generation);
+    }
+
+    private synchronized void rollDay(long now) {
+        if (now < todayEndsAt) {
+            return;
+        }
+        LocalDate date = LocalDate.now(zone);
+        today = date.toEpochDay();
+        todayEndsAt = date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    private LeaseSlot slot(UUID tenantId, QuotaType quotaType) {
+        return slots.computeIfAbsent(new SlotKey(tenantId, quotaType), k -> new LeaseSlot());
+    }
+
+    /**
+     * 槽位的配额代号；尚未续租过的槽位从 Redis 读取，避免重置后仍读取旧代号的计数器
+     */
+    private long generation(LeaseSlot slot, UUID tenantId) {
+        if (!slot.generationKnown) {
+            long generation = readCounter(QuotaKeys.generation(tenantId));
+            synchronized (slot) {
+                if (!slot.generationKnown) {
+                    slot.generation = generation;
+                    slot.generationKnown = true;
+                }
+            }
+        }
+        return slot.generation;
+    }
+
+    private static int toInt(long value) {
+        return (int) Math.min(Integer.MAX_VALUE, value);
+    }
+
+    private record SlotKey(UUID tenantId, QuotaType quotaType) {}
+
+    /**
+     * 租户 + 配额类型的租约槽位，续租时以槽位为锁
+     */
+    private static final class LeaseSlot {
+        volatile QuotaLease lease;
+        volatile long generation;
+        // generation 是否已与 Redis 同步（续租、重置或读取过代号）
+        volatile boolean generationKnown;
+        volatile long exhaustedUntil;
+    }
+}
@@ -0,0 +1,134 @@
+package com.frog.common.redis.serializer;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 紧凑二进制 Redis 值序列化器
+ *
+ * <ul>
+ *   <li>字符串、数字、布尔仍按 JSON 文本写入，Lua 脚本和 INCR/DECRBY 等命令可以直接操作</li>
+ *   <li>其他对象用 {@link RedisValueCodec} 编码，首字节为格式标记；编解码器不支持的类型仍按 JSON 写入</li>
+ *   <li>编码结果超过压缩阈值时用 LZ4 压缩: [0x02][原长度:4][压缩数据]，压缩后不变小则不压缩</li>
+ *   <li>读取时首字节不是已知标记的数据按旧的 JSON 格式解析，已有缓存无需迁移</li>
+ * </ul>
+ */
+public class CompactRedisSerializer implements RedisSerializer<Object> {
+    static final byte LZ4_MARKER = 0x02;
+    private static final byte[] EMPTY = new byte[0];
+
+    private final RedisValueCodec writeCodec;
+    private final Map<Byte, RedisValueCodec> readCodecs = new HashMap<>();
+    private final RedisSerializer<Object> jsonSerializer;
+    private final int compressThreshold;
+    private final LZ4Compressor compressor;
+    private final LZ4FastDecompressor decompressor;
+
+    /**
+     * @param writeCodec        写入使用的编解码器
+     * @param extraReadCodecs   额外可读的编解码器（切换写入格式期间保留旧格式的读取）
+     * @param jsonSerializer    标量与旧数据使用的 JSON 序列化器
+     * @param compressThreshold 压缩阈值（字节），小于等于 0 表示不压缩
+     */
+    public CompactRedisSerializer(RedisValueCodec writeCodec, List<RedisValueCodec> extraReadCodecs,
+                                  RedisSerializer<Object> jsonSerializer, int compressThreshold) {
+        this.writeCodec = writeCodec;
+        this.jsonSerializer = jsonSerializer;
+        this.compressThreshold = compressThreshold;
+        readCodecs.put(writeCodec.marker(), writeCodec);
+        for (RedisValueCodec codec : extraReadCodecs) {
+            readCodecs.putIfAbsent(codec.marker(), codec);
+        }
+        LZ4Factory factory = LZ4Factory.fastestInstance();
+        this.compressor = factory.fastCompressor();
+        this.decompressor = factory.fastDecompressor();
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return EMPTY;
+        }
+        if (value instanceof CharSequence || value instanceof Number || value instanceof Boolean) {
+            return jsonSerializer.serialize(value);
+        }
+        try {
+            byte[] body = writeCodec.encode(value);
+            if (body == null) {
+                // 编解码器不支持的类型（如未登记的类）按 JSON 写入
+                return jsonSerializer.serialize(value);
+            }
+            if (compressThreshold > 0 && body.length + 1 > compressThreshold) {
+                byte[] compressed = compress(body);
+                if (compressed != null) {
+                    return compressed;
+                }
+            }
+            byte[] bytes = new byte[body.length + 1];
+            bytes[0] = writeCodec.marker();
+            System.arraycopy(body, 0, bytes, 1, body.length);
+            return bytes;
+        } catch (Exception e) {
+            throw new SerializationException("Could not write Redis value: " + value.getClass().getName(), e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        try {
+            if (bytes[0] == LZ4_MARKER) {
+                int length = ((bytes[1] & 0xFF) << 24) | ((bytes[2] & 0xFF) << 16)
+                        | ((bytes[3] & 0xFF) << 8) | (bytes[4] & 0xFF);
+                byte[] restored = new byte[length];
+                decompressor.decompress(bytes, 5, restored, 0, length);
+                return decode(restored);
+            }
+            return decode(bytes);
+        } catch (SerializationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SerializationException("Could not read Redis value", e);
+        }
+    }
+
+    private Object decode(byte[] bytes) {
+        RedisValueCodec codec = readCodecs.get(bytes[0]);
+        if (codec == null) {
+            return jsonSerializer.deserialize(bytes);
+        }
+        return codec.decode(bytes, 1, bytes.length - 1);
+    }
+
+    /**
+     * 压缩 [marker][body]，压缩后不变小返回 null
+     */
+    private byte[] compress(byte[] body) {
+        byte[] plain = new byte[body.length + 1];
+        plain[0] = writeCodec.marker();
+        System.arraycopy(body, 0, plain, 1, body.length);
+
+        byte[] out = new byte[5 + compressor.maxCompressedLength(plain.length)];
+        int size = compressor.compress(plain, 0, plain.length, out, 5, out.length - 5);
+        if (size + 5 >= plain.length) {
+            return null;
+        }
+        out[0] = LZ4_MARKER;
+        out[1] = (byte) (plain.length >>> 24);
+        out[2] = (byte) (plain.length >>> 16);
+        out[3] = (byte) (plain.length >>> 8);
+        out[4] = (byte) plain.length;
+        byte[] result = new byte[size + 5];
+        System.arraycopy(out, 0, result, 0, result.length);
+        return result;
+    }
+}
@@ -0,0 +1,159 @@
+package com.frog.common.redis.serializer;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.SerializerFactory;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.serializers.CompatibleFieldSerializer;
+import com.esotericsoftware.kryo.serializers.ImmutableCollectionsSerializers;
+import com.esotericsoftware.kryo.util.DefaultInstantiatorStrategy;
+import com.esotericsoftware.kryo.util.Pool;
+import org.objenesis.strategy.StdInstantiatorStrategy;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Kryo 编解码器
+ *
+ * <p>格式：[标记][格式版本][Kryo 数据]。
+ * <ul>
+ *   <li>只接受登记过的类型：写入前检查类型是否已登记，未登记的类型返回 null（由 {@link CompactRedisSerializer}
+ *       改写 JSON）；登记类型的字段值为未登记类型时，该类型记入 {@link #unsupportedTypes}，之后直接改写 JSON。
+ *       读取时不会按 Redis 中的类名实例化任意类</li>
+ *   <li>对象字段按名称写入（{@link CompatibleFieldSerializer}），DTO 增删字段后新旧版本节点仍能互相读取，
+ *       滚动发布无需清缓存</li>
+ *   <li>类型 ID 按登记顺序分配，各节点必须使用相同的登记列表，新增类型只能追加在末尾；
+ *       登记列表或编码方式发生不兼容变化时递增 {@link #SCHEMA_VERSION}，旧版本数据读取时报错而不是读出错误对象</li>
+ * </ul>
+ * 不开启引用追踪，缓存对象不能有循环引用。
+ */
+public class KryoRedisValueCodec implements RedisValueCodec {
+    public static final byte MARKER = 0x03;
+    static final byte SCHEMA_VERSION = 1;
+    private static final int FIRST_REGISTRATION_ID = 100;
+    private static final int BUFFER_SIZE = 256;
+
+    private static final List<Class<?>> BUILTIN_TYPES = List.of(
+            ArrayList.class, LinkedList.class, HashMap.class, LinkedHashMap.class, TreeMap.class,
+            HashSet.class, LinkedHashSet.class, TreeSet.class,
+            UUID.class, BigDecimal.class, BigInteger.class, Date.class,
+            LocalDate.class, LocalDateTime.class, OffsetDateTime.class, Instant.class);
+
+    private final Pool<Kryo> pool;
+    /**
+     * 已登记但字段值含未登记类型、无法编码的类型
+     */
+    private final Set<Class<?>> unsupportedTypes = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param registeredTypes 业务 DTO 类型（追加在内置类型之后登记）
+     */
+    public KryoRedisValueCodec(List<Class<?>> registeredTypes) {
+        List<Class<?>> types = new ArrayList<>(BUILTIN_TYPES);
+        types.addAll(registeredTypes);
+        this.pool = new Pool<>(true, false, Runtime.getRuntime().availableProcessors() * 4) {
+            @Override
+            protected Kryo create() {
+                return newKryo(types);
+            }
+        };
+    }
+
+    @Override
+    public byte marker() {
+        return MARKER;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        Class<?> type = value.getClass();
+        if (unsupportedTypes.contains(type)) {
+            return null;
+        }
+        Kryo kryo = pool.obtain();
+        try {
+            if (kryo.getClassResolver().getRegistration(type) == null) {
+                return null;
+            }
+            try (Output output = new Output(BUFFER_SIZE, -1)) {
+                output.writeByte(SCHEMA_VERSION);
+                kryo.writeClassAndObject(output, value);
+                return output.toBytes();
+            } catch (IllegalArgumentException | KryoException e) {
+                // 字段值为未登记类型（如 Collections.unmodifiableList），该类型此后直接改写 JSON，只付出一次异常开销
+                unsupportedTypes.add(type);
+                return null;
+            }
+        } finally {
+            pool.free(kryo);
+        }
+    }
+
+    @Override
+    public Object decode(byte[] bytes, int offset, int length) {
+        Kryo kryo = pool.obtain();
+        try (Input input = new Input(bytes, offset, length)) {
+            byte version = input.readByte();
+            if (version != SCHEMA_VERSION) {
+                throw new SerializationException("Unsupported Kryo schema version: " + version);
+            }
+            return kryo.readClassAndObject(input);
+        } finally {
+            pool.free(kryo);
+        }
+    }
+
+    private static Kryo newKryo(List<Class<?>> types) {
+        Kryo kryo = new Kryo();
+        kryo.setRegistrationRequired(true);
+        kryo.setReferences(false);
+        CompatibleFieldSerializer.CompatibleFieldSerializerConfig config =
+                new CompatibleFieldSerializer.CompatibleFieldSerializerConfig();
+        // 分块写入字段值，读到本节点不认识的字段时可以整块跳过
+        config.setChunkedEncoding(true);
+        kryo.setDefaultSerializer(new SerializerFactory.CompatibleFieldSerializerFactory(config));
+        kryo.setInstantiatorStrategy(new DefaultInstantiatorStrategy(new StdInstantiatorStrategy()));
+        ImmutableCollectionsSerializers.addDefaultSerializers(kryo);
+        ImmutableCollectionsSerializers.registerSerializers(kryo);
+        // NullValue 依赖单例判断，反序列化必须返回 INSTANCE
+        kryo.register(NullValue.class, new NullValueSerializer(), FIRST_REGISTRATION_ID - 1);
+        int id = FIRST_REGISTRATION_ID;
+        for (Class<?> type : types) {
+            kryo.register(type, id++);
+        }
+        return kryo;
+    }
+
+    private static final class NullValueSerializer extends Serializer<Object> {
+        @Override
+        public void write(Kryo kryo, Output output, Object object) {
+        }
+
+        @Override
+        public Object read(Kryo kryo, Input input, Class<?> type) {
+            return NullValue.INSTANCE;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.frog.common.redis.serializer;
+
+/**
+ * Redis 值二进制编解码器
+ *
+ * <p>每种编解码器占用一个格式标记字节，{@link CompactRedisSerializer} 写入时把标记放在首字节，
+ * 读取时按首字节选择编解码器。标记不能与 JSON 文本的首字符冲突（应小于 0x20）。
+ */
+public interface RedisValueCodec {
+
+    /**
+     * 格式标记
+     */
+    byte marker();
+
+    /**
+     * 编码
+     *
+     * @return 编码结果；不支持该类型时返回 null，由调用方改用 JSON
+     */
+    byte[] encode(Object value);
+
+    Object decode(byte[] bytes, int offset, int length);
+}
@@ -0,0 +1,122 @@
+package com.frog.common.cache.spring;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * TwoLevelCacheInvalidationBus Test Suite
+ *
+ * <p>Verifies per-node version tracking on the receiving side: in-order messages evict
+ * single keys, duplicates are ignored, and any gap — including one hidden behind an
+ * unknown or expired node record — flushes the whole local tier.
+ */
+@DisplayName("TwoLevelCacheInvalidationBus Tests")
+class TwoLevelCacheInvalidationBusTest {
+    private static final long REMOTE_NODE = 42L;
+
+    private final RecordingCacheManager cacheManager = new RecordingCacheManager();
+
+    @AfterEach
+    void tearDown() {
+        cacheManager.destroy();
+    }
+
+    @Test
+    @DisplayName("Should evict keys in order and ignore duplicates")
+    void shouldApplyInOrderMessages() throws IOException {
+        receive(message(1, (byte) 0, "a"));
+        receive(message(2, (byte) 0, "b", "c"));
+        receive(message(2, (byte) 0, "b", "c"));
+
+        assertThat(cacheManager.invalidated).containsExactly("user:a", "user:b", "user:c");
+    }
+
+    @Test
+    @DisplayName("Should flush the local tier when a version is skipped")
+    void shouldFlushOnGap() throws IOException {
+        receive(message(1, (byte) 0, "a"));
+        receive(message(3, (byte) 0, "c"));
+
+        assertThat(cacheManager.invalidated).containsExactly("user:a", "user:*");
+    }
+
+    @Test
+    @DisplayName("Should flush when the first message from an unknown node is not version 1")
+    void shouldFlushOnUnknownNodeMidStream() throws IOException {
+        // 断连超过节点过期时间后，节点记录已被移除，与首次收到该节点消息相同
+        receive(message(7, (byte) 0, "g"));
+        receive(message(8, (byte) 0, "h"));
+
+        assertThat(cacheManager.invalidated).containsExactly("user:*", "user:h");
+    }
+
+    @Test
+    @DisplayName("Should flush when the first section from an unknown node is a heartbeat")
+    void shouldFlushOnUnknownNodeHeartbeat() throws IOException {
+        receive(message(5, (byte) 2));
+        receive(message(5, (byte) 2));
+
+        assertThat(cacheManager.invalidated).containsExactly("user:*");
+    }
+
+    @Test
+    @DisplayName("Should apply the first message of a freshly started node without flushing")
+    void shouldAcceptFreshNode() throws IOException {
+        receive(message(1, (byte) 0, "a"));
+
+        assertThat(cacheManager.invalidated).containsExactly("user:a");
+    }
+
+    @Test
+    @DisplayName("Should ignore messages in other formats")
+    void shouldIgnoreForeignFormat() {
+        assertThat(cacheManager.onInvalidationMessage("\"user:a\"".getBytes())).isFalse();
+        assertThat(cacheManager.onInvalidationMessage(new byte[0])).isFalse();
+        assertThat(cacheManager.invalidated).isEmpty();
+    }
+
+    private void receive(byte[] body) {
+        assertThat(cacheManager.onInvalidationMessage(body)).isTrue();
+    }
+
+    private static byte[] message(long version, byte flags, String... keys) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(TwoLevelCacheInvalidationBus.FORMAT);
+            out.writeLong(REMOTE_NODE);
+            out.writeShort(1);
+            out.writeUTF("user");
+            out.writeLong(version);
+            out.writeByte(flags);
+            out.writeInt(keys.length);
+            for (String key : keys) {
+                out.writeUTF(key);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static final class RecordingCacheManager extends TwoLevelCacheManager {
+        private final List<String> invalidated = new ArrayList<>();
+
+        RecordingCacheManager() {
+            super(null, Duration.ofMinutes(1), Map.of(), 100);
+        }
+
+        @Override
+        public void invalidateLocal(String cacheName, String keyOrWildcard) {
+            invalidated.add(cacheName + ":" + keyOrWildcard);
+        }
+    }
+}
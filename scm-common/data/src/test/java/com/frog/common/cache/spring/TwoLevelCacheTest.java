@@ -0,0 +1,155 @@
+package com.frog.common.cache.spring;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * TwoLevelCache Test Suite
+ *
+ * <p>Runs the cache against an in-memory stand-in for the Redis hash/generation commands
+ * and verifies load collapsing within one JVM, negative-entry expiry, and that clear()
+ * moves reads to a new generation instead of deleting keys.
+ */
+@DisplayName("TwoLevelCache Tests")
+class TwoLevelCacheTest {
+
+    private final Map<String, Map<Object, Object>> hashes = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final ValueOperations<String, Object> valueOps = mock(ValueOperations.class);
+    @SuppressWarnings("unchecked")
+    private final HashOperations<String, Object, Object> hashOps = mock(HashOperations.class);
+
+    private final TwoLevelCacheInvalidationBus bus =
+            new TwoLevelCacheInvalidationBus(redisTemplate, Duration.ofMillis(5));
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOps);
+        doReturn(hashOps).when(redisTemplate).opsForHash();
+        when(valueOps.get(anyString())).thenAnswer(inv -> generation.get());
+        when(valueOps.increment(anyString())).thenAnswer(inv -> generation.incrementAndGet());
+        when(hashOps.multiGet(anyString(), anyCollection())).thenAnswer(inv -> {
+            Map<Object, Object> hash = hashes.get(inv.<String>getArgument(0));
+            List<Object> values = new ArrayList<>();
+            for (Object field : inv.<Collection<Object>>getArgument(1)) {
+                values.add(hash != null ? hash.get(field) : null);
+            }
+            return values;
+        });
+        doAnswer(inv -> {
+            hashes.put(inv.getArgument(0), new ConcurrentHashMap<>(inv.<Map<Object, Object>>getArgument(1)));
+            return null;
+        }).when(hashOps).putAll(anyString(), anyMap());
+        when(redisTemplate.executePipelined(any(SessionCallback.class))).thenAnswer(inv -> {
+            inv.<SessionCallback<Object>>getArgument(0).execute(redisTemplate);
+            return List.of();
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        bus.shutdown();
+    }
+
+    private TwoLevelCache cache(Duration negativeTtl) {
+        TwoLevelCacheOptions options = TwoLevelCacheOptions.builder()
+                .leaseEnabled(false)
+                .earlyRefreshBeta(0)
+                .negativeTtl(negativeTtl)
+                .build();
+        return new TwoLevelCache("user", Duration.ofMinutes(1), negativeTtl, redisTemplate, 100, options, bus, null);
+    }
+
+    @Test
+    @DisplayName("Should collapse concurrent loads of one key into a single loader call")
+    void shouldCollapseConcurrentLoads() throws Exception {
+        TwoLevelCache cache = cache(Duration.ofMinutes(1));
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        int threads = 16;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return cache.get("1", () -> {
+                        loads.incrementAndGet();
+                        Thread.sleep(100);
+                        return "alice";
+                    });
+                }));
+            }
+            start.countDown();
+            for (Future<String> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("alice");
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("Should cache a null result only for the negative TTL")
+    void shouldExpireNegativeEntry() throws Exception {
+        TwoLevelCache cache = cache(Duration.ofMillis(100));
+        AtomicInteger loads = new AtomicInteger();
+
+        assertThat(cache.<String>get("2", () -> { loads.incrementAndGet(); return null; })).isNull();
+        assertThat(cache.<String>get("2", () -> { loads.incrementAndGet(); return "bob"; })).isNull();
+        assertThat(loads).hasValue(1);
+
+        Thread.sleep(150);
+
+        assertThat(cache.<String>get("2", () -> { loads.incrementAndGet(); return "bob"; })).isEqualTo("bob");
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("Should stop reading old keys after clear() bumps the generation")
+    void shouldBumpGenerationOnClear() throws Exception {
+        TwoLevelCache cache = cache(Duration.ofMinutes(1));
+        cache.put("3", "carol");
+        assertThat(hashes).containsKey("tlc:user:0:3");
+
+        cache.clear();
+
+        assertThat(generation).hasValue(1);
+        assertThat(cache.get("3")).isNull();
+        // 旧代 key 仍在 Redis 中，由 TTL 回收，但不再被读取
+        assertThat(hashes).containsKey("tlc:user:0:3");
+        assertThat(cache.<String>get("3", () -> "dave")).isEqualTo("dave");
+        assertThat(hashes).containsKey("tlc:user:1:3");
+    }
+}
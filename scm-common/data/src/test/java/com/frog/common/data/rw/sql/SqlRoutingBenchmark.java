@@ -0,0 +1,106 @@
+package com.frog.common.data.rw.sql;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * SQL 路由解析基准
+ *
+ * <p>对比原正则实现（regex）、单遍扫描（lexer）和拦截器按语句缓存的决策（cached）的耗时。
+ *
+ * <p>运行: 编译测试代码后执行 main 方法（类名不以 Test 结尾，不随单元测试执行）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SqlRoutingBenchmark {
+    private static final Pattern FOR_UPDATE =
+            Pattern.compile(".*\\bFOR\\s+UPDATE\\b.*", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern LOCK_IN_SHARE_MODE =
+            Pattern.compile(".*\\bLOCK\\s+IN\\s+SHARE\\s+MODE\\b.*", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern MASTER_HINT = Pattern.compile("/\\*\\s*MASTER\\s*\\*/", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SLAVE_HINT = Pattern.compile("/\\*\\s*SLAVE\\s*\\*/", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SLAVE_NAME_HINT =
+            Pattern.compile("/\\*\\s*SLAVE\\s*\\(\\s*(\\w+)\\s*\\)\\s*\\*/", Pattern.CASE_INSENSITIVE);
+
+    @Param({"simple", "hinted", "locking", "paged"})
+    private String shape;
+
+    private String sql;
+    private MappedStatement statement;
+    private SqlRoutingInterceptor interceptor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sql = switch (shape) {
+            case "simple" -> "SELECT id, sku_code, warehouse_id, quantity FROM inv_stock WHERE id = ?";
+            case "hinted" -> "/*SLAVE(slave2)*/ SELECT id, sku_code, quantity FROM inv_stock WHERE sku_code = ?";
+            case "locking" -> "SELECT id, quantity, version FROM inv_stock WHERE sku_code = ? AND warehouse_id = ? FOR UPDATE";
+            default -> """
+                    SELECT s.id, s.sku_code, s.warehouse_id, s.quantity, s.locked_quantity, w.warehouse_name,
+                           l.location_code, l.zone_code, s.update_time
+                    FROM inv_stock s
+                    LEFT JOIN wms_warehouse w ON w.id = s.warehouse_id AND w.deleted = 0
+                    LEFT JOIN wms_location l ON l.id = s.location_id AND l.deleted = 0
+                    WHERE s.tenant_id = ? AND s.deleted = 0 AND s.quantity > 0
+                      AND (s.sku_code LIKE ? OR s.sku_name LIKE ?)
+                    ORDER BY s.update_time DESC
+                    LIMIT ? OFFSET ?
+                    """;
+        };
+        Configuration configuration = new Configuration();
+        statement = new MappedStatement.Builder(configuration, "bench.InvStockMapper." + shape,
+                new StaticSqlSource(configuration, sql), SqlCommandType.SELECT).build();
+        interceptor = new SqlRoutingInterceptor();
+    }
+
+    @Benchmark
+    public Object regex() {
+        boolean locking = FOR_UPDATE.matcher(sql.trim()).matches() || LOCK_IN_SHARE_MODE.matcher(sql.trim()).matches();
+        boolean hinted = MASTER_HINT.matcher(sql).find() || SLAVE_NAME_HINT.matcher(sql).find()
+                || SLAVE_HINT.matcher(sql).find();
+        String keyword = sql.replaceAll("/\\*.*?\\*/", "")
+                .replaceAll("--.*$", "")
+                .replaceAll("^\\s+", "");
+        return locking || hinted ? keyword : keyword.toUpperCase();
+    }
+
+    @Benchmark
+    public SqlTypeParser.Analysis lexer() {
+        return SqlTypeParser.analyze(sql);
+    }
+
+    @Benchmark
+    public SqlRoutingInterceptor.RouteDecision cached() {
+        return interceptor.decide(statement, null);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SqlRoutingBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,70 @@
+package com.frog.common.data.rw.sql;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * SqlRoutingInterceptor Test Suite
+ *
+ * <p>Verifies the cached routing decision for SELECT statements: locking reads and
+ * data-modifying CTEs go to the master, hints win over the SQL shape.
+ */
+@DisplayName("SqlRoutingInterceptor Tests")
+class SqlRoutingInterceptorTest {
+
+    private final Configuration configuration = new Configuration();
+    private final SqlRoutingInterceptor interceptor = new SqlRoutingInterceptor();
+
+    private MappedStatement select(String id, String sql) {
+        return new MappedStatement.Builder(configuration, "test.Mapper." + id,
+                new StaticSqlSource(configuration, sql), SqlCommandType.SELECT).build();
+    }
+
+    @Test
+    @DisplayName("Should route plain SELECT to a slave")
+    void shouldRouteReadToSlave() {
+        assertThat(interceptor.decide(select("read", "SELECT * FROM t WHERE id = ?"), null).route())
+                .isEqualTo(SqlRoutingInterceptor.Route.SLAVE);
+    }
+
+    @Test
+    @DisplayName("Should route locking SELECT to the master")
+    void shouldRouteLockingReadToMaster() {
+        assertThat(interceptor.decide(select("lock", "SELECT * FROM t WHERE id = ? FOR NO KEY UPDATE"), null).route())
+                .isEqualTo(SqlRoutingInterceptor.Route.MASTER);
+        assertThat(interceptor.decide(select("share", "SELECT * FROM t WHERE id = ? FOR KEY SHARE"), null).route())
+                .isEqualTo(SqlRoutingInterceptor.Route.MASTER);
+    }
+
+    @Test
+    @DisplayName("Should route a SELECT-mapped CTE write to the master as a write")
+    void shouldRouteCteWriteToMaster() {
+        MappedStatement statement = select("cte",
+                "WITH ids AS (SELECT id FROM a) UPDATE b SET flag = true WHERE id IN (SELECT id FROM ids) RETURNING id");
+
+        assertThat(interceptor.decide(statement, null).route()).isEqualTo(SqlRoutingInterceptor.Route.WRITE);
+    }
+
+    @Test
+    @DisplayName("Should let hints override the SQL shape")
+    void shouldPreferHints() {
+        assertThat(interceptor.decide(select("master", "/*MASTER*/ SELECT 1"), null).route())
+                .isEqualTo(SqlRoutingInterceptor.Route.MASTER);
+        assertThat(interceptor.decide(select("slave", "/*SLAVE(slave2)*/ SELECT 1"), null))
+                .isEqualTo(new SqlRoutingInterceptor.RouteDecision(SqlRoutingInterceptor.Route.SLAVE, "slave2"));
+    }
+
+    @Test
+    @DisplayName("Should cache decisions per static statement")
+    void shouldCacheDecision() {
+        MappedStatement statement = select("cached", "/*SLAVE(slave1)*/ SELECT 1");
+
+        assertThat(interceptor.decide(statement, null)).isSameAs(interceptor.decide(statement, null));
+    }
+}
@@ -0,0 +1,131 @@
+package com.frog.common.data.rw.sql;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * SqlTypeParser Test Suite
+ *
+ * <p>Covers the single-pass lexer: statement classification, every locking clause,
+ * data-modifying CTEs, and keywords hidden in literals, quoted identifiers,
+ * comments and dollar-quoted strings that must not change the route.
+ */
+@DisplayName("SqlTypeParser Tests")
+class SqlTypeParserTest {
+
+    @Test
+    @DisplayName("Should classify plain reads and writes by the first keyword")
+    void shouldClassifyByFirstKeyword() {
+        assertThat(SqlTypeParser.parse("SELECT * FROM t WHERE id = ?")).isEqualTo(SqlTypeParser.SqlType.READ);
+        assertThat(SqlTypeParser.parse("  select 1")).isEqualTo(SqlTypeParser.SqlType.READ);
+        assertThat(SqlTypeParser.parse("UPDATE t SET a = ? WHERE id = ?")).isEqualTo(SqlTypeParser.SqlType.WRITE);
+        assertThat(SqlTypeParser.parse("insert into t values (?)")).isEqualTo(SqlTypeParser.SqlType.WRITE);
+        assertThat(SqlTypeParser.parse("DELETE FROM t")).isEqualTo(SqlTypeParser.SqlType.WRITE);
+        assertThat(SqlTypeParser.parse("VACUUM t")).isEqualTo(SqlTypeParser.SqlType.UNKNOWN);
+        assertThat(SqlTypeParser.parse("   ")).isEqualTo(SqlTypeParser.SqlType.UNKNOWN);
+        assertThat(SqlTypeParser.parse(null)).isEqualTo(SqlTypeParser.SqlType.UNKNOWN);
+    }
+
+    @Test
+    @DisplayName("Should route every locking clause to the master")
+    void shouldDetectLockingClauses() {
+        String[] statements = {
+            "SELECT * FROM t WHERE id = ? FOR UPDATE",
+            "SELECT * FROM t WHERE id = ? FOR NO KEY UPDATE",
+            "SELECT * FROM t WHERE id = ? FOR SHARE",
+            "SELECT * FROM t WHERE id = ? FOR KEY SHARE",
+            "SELECT * FROM t WHERE id = ? for update skip locked",
+            "SELECT * FROM t WHERE id = ?\n  FOR\n  UPDATE NOWAIT",
+            "SELECT * FROM t WHERE id = ? LOCK IN SHARE MODE"
+        };
+
+        for (String sql : statements) {
+            SqlTypeParser.Analysis analysis = SqlTypeParser.analyze(sql);
+            assertThat(analysis.locking()).withFailMessage("Should detect locking: " + sql).isTrue();
+            assertThat(analysis.type()).isEqualTo(SqlTypeParser.SqlType.WRITE);
+        }
+    }
+
+    @Test
+    @DisplayName("Should ignore locking keywords inside literals, identifiers and comments")
+    void shouldIgnoreHiddenLockingKeywords() {
+        String[] statements = {
+            "SELECT 'for update' FROM t",
+            "SELECT 'it''s FOR UPDATE' FROM t",
+            "SELECT \"for\", \"update\" FROM t",
+            "SELECT $$ FOR UPDATE $$ FROM t",
+            "SELECT $body$ it's FOR SHARE $body$ FROM t",
+            "SELECT * FROM t -- FOR UPDATE",
+            "SELECT * FROM t /* FOR KEY SHARE */",
+            "SELECT for_update FROM t",
+            "SELECT * FROM t WHERE note = 'LOCK IN SHARE MODE'"
+        };
+
+        for (String sql : statements) {
+            SqlTypeParser.Analysis analysis = SqlTypeParser.analyze(sql);
+            assertThat(analysis.locking()).withFailMessage("Should not detect locking: " + sql).isFalse();
+            assertThat(analysis.type()).isEqualTo(SqlTypeParser.SqlType.READ);
+        }
+    }
+
+    @Test
+    @DisplayName("Should skip leading comments and literals when taking the first keyword")
+    void shouldSkipCommentsBeforeFirstKeyword() {
+        assertThat(SqlTypeParser.parse("-- UPDATE t\nSELECT 1")).isEqualTo(SqlTypeParser.SqlType.READ);
+        assertThat(SqlTypeParser.parse("/* DELETE */ SELECT 1")).isEqualTo(SqlTypeParser.SqlType.READ);
+        assertThat(SqlTypeParser.parse("/* SELECT */ DELETE FROM t")).isEqualTo(SqlTypeParser.SqlType.WRITE);
+    }
+
+    @Test
+    @DisplayName("Should treat a dollar-quoted body as opaque, including unterminated ones")
+    void shouldSkipDollarQuotedStrings() {
+        assertThat(SqlTypeParser.analyze("SELECT $fn$ SELECT 1 $x$ FOR UPDATE $fn$ FROM t").locking()).isFalse();
+        assertThat(SqlTypeParser.analyze("SELECT $$ FOR UPDATE").locking()).isFalse();
+        // $1 是位置参数，a$b 是标识符，都不是美元引号
+        assertThat(SqlTypeParser.analyze("SELECT * FROM t WHERE id = $1 FOR UPDATE").locking()).isTrue();
+        assertThat(SqlTypeParser.analyze("SELECT a$b$ FROM t FOR SHARE").locking()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should treat data-modifying CTEs as writes")
+    void shouldDetectCteWrites() {
+        String[] statements = {
+            "WITH moved AS (DELETE FROM a WHERE id = ? RETURNING *) SELECT * FROM moved",
+            "WITH ids AS (SELECT id FROM a) UPDATE b SET flag = true WHERE id IN (SELECT id FROM ids)",
+            "with ins as (insert into a values (?) returning id) select id from ins",
+            "WITH src AS (SELECT 1) MERGE INTO t USING src ON true WHEN MATCHED THEN DO NOTHING"
+        };
+
+        for (String sql : statements) {
+            assertThat(SqlTypeParser.parse(sql))
+                    .withFailMessage("Should be a write: " + sql)
+                    .isEqualTo(SqlTypeParser.SqlType.WRITE);
+        }
+    }
+
+    @Test
+    @DisplayName("Should treat read-only CTEs as reads")
+    void shouldTreatReadOnlyCteAsRead() {
+        assertThat(SqlTypeParser.parse("WITH RECURSIVE tree AS (SELECT id FROM d UNION ALL SELECT id FROM d) "
+                + "SELECT * FROM tree")).isEqualTo(SqlTypeParser.SqlType.READ);
+        assertThat(SqlTypeParser.parse("WITH x AS (SELECT 'update' AS op) SELECT \"delete\" FROM x"))
+                .isEqualTo(SqlTypeParser.SqlType.READ);
+    }
+
+    @Test
+    @DisplayName("Should parse routing hints from block comments")
+    void shouldParseHints() {
+        assertThat(SqlTypeParser.parseHint("/*MASTER*/ SELECT 1").type())
+                .isEqualTo(SqlTypeParser.RoutingHint.HintType.MASTER);
+        assertThat(SqlTypeParser.parseHint("/* SLAVE */ SELECT 1").type())
+                .isEqualTo(SqlTypeParser.RoutingHint.HintType.SLAVE);
+        assertThat(SqlTypeParser.parseHint("/*SLAVE( slave2 )*/ SELECT 1"))
+                .isEqualTo(new SqlTypeParser.RoutingHint(SqlTypeParser.RoutingHint.HintType.SLAVE, "slave2"));
+        assertThat(SqlTypeParser.parseHint("/* MASTER please */ SELECT 1").type())
+                .isEqualTo(SqlTypeParser.RoutingHint.HintType.NONE);
+        assertThat(SqlTypeParser.parseHint("SELECT '/*MASTER*/' FROM t").type())
+                .isEqualTo(SqlTypeParser.RoutingHint.HintType.NONE);
+    }
+}
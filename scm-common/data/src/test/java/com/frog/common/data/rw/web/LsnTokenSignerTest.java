@@ -0,0 +1,49 @@
+package com.frog.common.data.rw.web;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * LsnTokenSigner Test Suite
+ *
+ * <p>SECURITY: session LSN tokens come back from clients, so only tokens signed by
+ * the server may be imported; tampered or forged LSNs must be rejected.
+ */
+@DisplayName("LsnTokenSigner Tests")
+class LsnTokenSignerTest {
+
+    private final LsnTokenSigner signer = new LsnTokenSigner("test-secret");
+
+    @Test
+    @DisplayName("Should accept a token it signed")
+    void shouldVerifyOwnToken() {
+        String token = signer.sign("inventory:16b3a28;order:2f00");
+
+        assertThat(signer.verify(token)).isEqualTo("inventory:16b3a28;order:2f00");
+        assertThat(new LsnTokenSigner("test-secret").verify(token)).isEqualTo("inventory:16b3a28;order:2f00");
+    }
+
+    @Test
+    @DisplayName("SECURITY: Should reject unsigned, forged and tampered tokens")
+    void shouldRejectForgedTokens() {
+        String token = signer.sign("inventory:16b3a28");
+        String signature = token.substring(token.lastIndexOf('.'));
+
+        assertThat(signer.verify("inventory:ffffffffffffffff")).isNull();
+        assertThat(signer.verify("inventory:ffffffffffffffff" + signature)).isNull();
+        assertThat(signer.verify(token + "0")).isNull();
+        assertThat(signer.verify("inventory:16b3a28.not*base64")).isNull();
+        assertThat(new LsnTokenSigner("other-secret").verify(token)).isNull();
+        assertThat(signer.verify("")).isNull();
+        assertThat(signer.verify(null)).isNull();
+    }
+
+    @Test
+    @DisplayName("Should refuse to start without a shared secret")
+    void shouldRequireSecret() {
+        assertThatThrownBy(() -> new LsnTokenSigner(null)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new LsnTokenSigner(" ")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
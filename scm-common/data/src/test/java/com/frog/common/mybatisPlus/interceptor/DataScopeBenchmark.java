@@ -0,0 +1,85 @@
+package com.frog.common.mybatisPlus.interceptor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 数据权限改写基准
+ *
+ * <p>模拟列表接口：一次请求内执行 queries 条带数据权限的查询（分页 count + 列表 + 关联明细），
+ * 对比每次校验并改写（uncached）与编译条件、改写结果缓存（cached）的耗时。
+ *
+ * <p>运行: 编译测试代码后执行 main 方法（类名不以 Test 结尾，不随单元测试执行）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataScopeBenchmark {
+
+    @Param({"dept", "self"})
+    private String scope;
+
+    @Param({"20"})
+    private int queries;
+
+    private String clause;
+    private String[] statements;
+    private DataScopeInterceptor interceptor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        clause = switch (scope) {
+            case "dept" -> "d.dept_id = #{__ds_deptId}::uuid";
+            default -> "d.create_by = #{__ds_userId}::uuid";
+        };
+        statements = new String[]{
+                "SELECT COUNT(*) FROM pur_order d WHERE d.status = ? AND d.deleted = 0",
+                "SELECT d.id, d.order_no, d.supplier_id, d.amount FROM pur_order d WHERE d.status = ? AND d.deleted = 0 "
+                        + "ORDER BY d.create_time DESC LIMIT ? OFFSET ?",
+                "SELECT d.id, d.order_id, d.sku_code, d.quantity FROM pur_order_item d WHERE d.order_id = ?",
+                "SELECT d.id, d.supplier_name FROM pur_supplier d WHERE d.id = ?"
+        };
+        interceptor = new DataScopeInterceptor();
+    }
+
+    @Benchmark
+    public void uncached(Blackhole blackhole) {
+        for (int i = 0; i < queries; i++) {
+            DataScopeInterceptor.CompiledPredicate predicate = interceptor.compileUncached(clause);
+            blackhole.consume(interceptor.rewriteUncached(statements[i % statements.length], predicate));
+        }
+    }
+
+    @Benchmark
+    public void cached(Blackhole blackhole) {
+        for (int i = 0; i < queries; i++) {
+            DataScopeInterceptor.CompiledPredicate predicate = interceptor.compile(clause);
+            blackhole.consume(interceptor.rewrite(statements[i % statements.length], predicate));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(DataScopeBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -384,4 +384,70 @@ class DataScopeInterceptorTest {
                     .isFalse();
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Should compile placeholders to JDBC parameters in order")
+    void testCompile_ConvertsPlaceholders() {
+        // Act
+        DataScopeInterceptor.CompiledPredicate predicate =
+                interceptor.compile("d.dept_id = #{__ds_deptId}::uuid AND u.create_by = #{ __ds_userId }::uuid");
+
+        // Assert
+        assertThat(predicate.safe()).isTrue();
+        assertThat(predicate.sql()).isEqualTo("d.dept_id = ?::uuid AND u.create_by = ?::uuid");
+        assertThat(predicate.paramNames()).containsExactly("__ds_deptId", "__ds_userId");
+        assertThat(interceptor.compile("d.dept_id = #{__ds_deptId}::uuid AND u.create_by = #{ __ds_userId }::uuid"))
+                .isSameAs(predicate);
+    }
+
+    @Test
+    @DisplayName("SECURITY: Should cache rejected filters as unsafe")
+    void testCompile_RejectsUnsafeFilter() {
+        assertThat(interceptor.compile("u.dept_id = 1; DROP TABLE sys_user").safe()).isFalse();
+        assertThat(interceptor.compile("1=1").matchesAll()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should inject the filter into the outer query after placeholders preceding its WHERE")
+    void testRewrite_ComputesParameterIndex() {
+        // Arrange
+        DataScopeInterceptor.CompiledPredicate predicate = interceptor.compile("d.dept_id = #{__ds_deptId}::uuid");
+        String sql = "SELECT * FROM (SELECT * FROM t WHERE x = ?) d WHERE d.status = ? LIMIT ?";
+
+        // Act
+        DataScopeInterceptor.Rewrite rewrite = interceptor.rewrite(sql, predicate);
+
+        // Assert
+        assertThat(rewrite.sql()).isEqualTo(
+                "SELECT * FROM (SELECT * FROM t WHERE x = ?) d WHERE (d.dept_id = ?::uuid) AND (d.status = ?) LIMIT ?");
+        assertThat(rewrite.paramIndex()).isEqualTo(1);
+        assertThat(interceptor.rewrite(sql, predicate)).isSameAs(rewrite);
+        assertThat(interceptor.rewrite("SELECT * FROM t WHERE a = ? AND b = ?", predicate).paramIndex()).isZero();
+    }
+
+    @Test
+    @DisplayName("SECURITY: Should keep an OR in the original WHERE from bypassing the filter")
+    void testRewrite_WrapsOriginalCondition() {
+        DataScopeInterceptor.CompiledPredicate predicate = interceptor.compile("d.dept_id = #{__ds_deptId}::uuid");
+
+        DataScopeInterceptor.Rewrite rewrite = interceptor.rewrite(
+                "SELECT * FROM t d WHERE d.a = ? OR d.b = 'where' GROUP BY d.a", predicate);
+
+        assertThat(rewrite.sql()).isEqualTo(
+                "SELECT * FROM t d WHERE (d.dept_id = ?::uuid) AND (d.a = ? OR d.b = 'where') GROUP BY d.a");
+        assertThat(rewrite.paramIndex()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should add an outer WHERE before trailing clauses when the outer query has none")
+    void testRewrite_AddsWhereBeforeTrailingClauses() {
+        DataScopeInterceptor.CompiledPredicate predicate = interceptor.compile("d.dept_id = #{__ds_deptId}::uuid");
+
+        DataScopeInterceptor.Rewrite rewrite = interceptor.rewrite(
+                "WITH c AS (SELECT id FROM x WHERE y = ?) SELECT * FROM c d ORDER BY d.id LIMIT ?", predicate);
+
+        assertThat(rewrite.sql()).isEqualTo(
+                "WITH c AS (SELECT id FROM x WHERE y = ?) SELECT * FROM c d WHERE (d.dept_id = ?::uuid) ORDER BY d.id LIMIT ?");
+        assertThat(rewrite.paramIndex()).isEqualTo(1);
+    }
+}
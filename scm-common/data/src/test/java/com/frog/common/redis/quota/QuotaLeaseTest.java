@@ -0,0 +1,83 @@
+package com.frog.common.redis.quota;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * QuotaLease Test Suite
+ *
+ * <p>Validates local token accounting: consumption never goes below zero,
+ * refunds are accepted only while the lease is active, and retiring returns
+ * the remaining tokens exactly once.
+ */
+@DisplayName("QuotaLease Tests")
+class QuotaLeaseTest {
+
+    private static final String KEY = "quota:{t}:API_CALLS:1:0";
+
+    @Test
+    @DisplayName("Should consume until exhausted")
+    void shouldConsumeUntilExhausted() {
+        QuotaLease lease = new QuotaLease(KEY, 0, 3, Long.MAX_VALUE, Long.MAX_VALUE);
+
+        assertThat(lease.tryConsume(2)).isTrue();
+        assertThat(lease.tryConsume(2)).isFalse();
+        assertThat(lease.tryConsume(1)).isTrue();
+        assertThat(lease.remaining()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should return remaining tokens once on retire")
+    void shouldRetireOnce() {
+        QuotaLease lease = new QuotaLease(KEY, 0, 10, Long.MAX_VALUE, Long.MAX_VALUE);
+        lease.tryConsume(4);
+
+        assertThat(lease.retire()).isEqualTo(6);
+        assertThat(lease.retire()).isZero();
+        assertThat(lease.tryConsume(1)).isFalse();
+        assertThat(lease.refund(1)).isFalse();
+        assertThat(lease.remaining()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should expire no later than the end of the counter day")
+    void shouldExpireAtDayEnd() {
+        QuotaLease lease = new QuotaLease(KEY, 0, 10, 5_000, 1_000);
+
+        assertThat(lease.isExpired(999)).isFalse();
+        assertThat(lease.isExpired(1_000)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should never hand out more tokens than leased under contention")
+    void shouldNotOverConsumeConcurrently() throws InterruptedException {
+        QuotaLease lease = new QuotaLease(KEY, 0, 1_000, Long.MAX_VALUE, Long.MAX_VALUE);
+        AtomicInteger granted = new AtomicInteger();
+        int threads = 8;
+        CountDownLatch done = new CountDownLatch(threads);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            pool.execute(() -> {
+                for (int j = 0; j < 500; j++) {
+                    if (lease.tryConsume(1)) {
+                        granted.incrementAndGet();
+                    }
+                }
+                done.countDown();
+            });
+        }
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        pool.shutdown();
+
+        assertThat(granted.get()).isEqualTo(1_000);
+        assertThat(lease.remaining()).isZero();
+    }
+}
@@ -0,0 +1,203 @@
+package com.frog.common.redis.serializer;
+
+import com.frog.common.dto.permission.ApiPermissionDTO;
+import com.frog.common.dto.permission.PermissionDTO;
+import com.frog.common.dto.role.RoleDTO;
+import com.frog.common.dto.user.UserDTO;
+import com.frog.common.dto.user.UserInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.serializer.JacksonJsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis 值序列化基准
+ *
+ * <p>对比 JSON、Kryo、Kryo + LZ4 在缓存实际存放的对象上的序列化/反序列化耗时，Setup 时打印每个对象的字节数。
+ *
+ * <p>运行: 编译测试代码后执行 main 方法（类名不以 Test 结尾，不随单元测试执行）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RedisValueSerializerBenchmark {
+
+    @Param({"json", "kryo", "kryo-lz4"})
+    private String format;
+
+    @Param({"userInfo", "userDTO", "roles", "permissionMapping"})
+    private String payload;
+
+    private RedisSerializer<Object> serializer;
+    private Object value;
+    private byte[] bytes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        JacksonJsonRedisSerializer<Object> json = new JacksonJsonRedisSerializer<>(Object.class);
+        KryoRedisValueCodec kryo = new KryoRedisValueCodec(List.of(
+                UserInfo.class, UserDTO.class, RoleDTO.class, PermissionDTO.class, ApiPermissionDTO.class));
+        serializer = switch (format) {
+            case "json" -> json;
+            case "kryo" -> new CompactRedisSerializer(kryo, List.of(), json, 0);
+            default -> new CompactRedisSerializer(kryo, List.of(), json, 1024);
+        };
+        value = switch (payload) {
+            case "userInfo" -> userInfo();
+            case "userDTO" -> userDTO();
+            case "roles" -> roles();
+            default -> permissionMapping();
+        };
+        bytes = serializer.serialize(value);
+        System.out.printf("%n[bytes] format=%s payload=%s size=%d%n", format, payload, bytes.length);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(value);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return serializer.deserialize(bytes);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RedisValueSerializerBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+    private static UserInfo userInfo() {
+        Set<PermissionDTO> menus = new HashSet<>();
+        for (int i = 0; i < 10; i++) {
+            PermissionDTO menu = permission("system:menu:" + i, 1);
+            List<PermissionDTO> children = new ArrayList<>();
+            for (int j = 0; j < 5; j++) {
+                children.add(permission("system:menu:" + i + ":" + j, 2));
+            }
+            menu.setChildren(children);
+            menus.add(menu);
+        }
+        Set<String> permissions = new HashSet<>();
+        for (int i = 0; i < 80; i++) {
+            permissions.add("inventory:stock:op" + i);
+        }
+        return UserInfo.builder()
+                .userId(UUID.randomUUID())
+                .username("zhangsan")
+                .realName("张三")
+                .avatar("https://cdn.example.com/avatar/zhangsan.png")
+                .email("zhangsan@example.com")
+                .phone("13800000000")
+                .deptId(UUID.randomUUID())
+                .deptName("华东仓储中心")
+                .userLevel(3)
+                .roles(Set.of("ROLE_WAREHOUSE_MANAGER", "ROLE_INVENTORY_AUDITOR"))
+                .permissions(permissions)
+                .menuTree(menus)
+                .build();
+    }
+
+    private static UserDTO userDTO() {
+        UserDTO user = new UserDTO();
+        user.setId(UUID.randomUUID());
+        user.setUsername("zhangsan");
+        user.setRealName("张三");
+        user.setEmail("zhangsan@example.com");
+        user.setPhone("13800000000");
+        user.setStatus(1);
+        user.setDeptId(UUID.randomUUID());
+        user.setDeptName("华东仓储中心");
+        user.setUserLevel(3);
+        user.setAccountType(1);
+        user.setLoginAttempts(0);
+        user.setForceChangePassword(false);
+        user.setTwoFactorEnabled(true);
+        user.setCreateTime(LocalDateTime.now());
+        user.setLastLoginTime(LocalDateTime.now());
+        user.setLastLoginIp("10.0.12.34");
+        user.setRoleIds(List.of(UUID.randomUUID(), UUID.randomUUID()));
+        user.setRoleNames(List.of("仓库主管", "库存审计员"));
+        user.setPermissions(List.of("inventory:stock:query", "inventory:stock:adjust", "warehouse:location:query"));
+        return user;
+    }
+
+    private static List<RoleDTO> roles() {
+        List<RoleDTO> roles = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            RoleDTO role = new RoleDTO();
+            role.setId(UUID.randomUUID());
+            role.setRoleCode("ROLE_" + i);
+            role.setRoleName("角色" + i);
+            role.setRoleDesc("库存模块角色" + i);
+            role.setRoleLevel(i % 4 + 1);
+            role.setDataScope(2);
+            role.setMaxApprovalAmount(new BigDecimal("50000.00"));
+            role.setStatus(1);
+            role.setSortOrder(i);
+            role.setCreateTime(LocalDateTime.now());
+            role.setPermissionIds(List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID()));
+            roles.add(role);
+        }
+        return roles;
+    }
+
+    private static Map<String, Set<String>> permissionMapping() {
+        Map<String, Set<String>> mapping = new HashMap<>();
+        for (int i = 0; i < 300; i++) {
+            ApiPermissionDTO api = new ApiPermissionDTO("/api/inventory/resource" + i + "/{id}", "GET",
+                    "inventory:resource" + i + ":query");
+            mapping.computeIfAbsent(api.getHttpMethod() + ":" + api.getApiPath(), k -> new HashSet<>())
+                    .add(api.getPermissionCode());
+        }
+        return mapping;
+    }
+
+    private static PermissionDTO permission(String code, int type) {
+        PermissionDTO p = new PermissionDTO();
+        p.setId(UUID.randomUUID());
+        p.setParentId(UUID.randomUUID());
+        p.setPermissionCode(code);
+        p.setPermissionName("菜单 " + code);
+        p.setPermissionType(type);
+        p.setRoutePath("/" + code.replace(':', '/'));
+        p.setComponent("views/" + code.replace(':', '/') + "/index");
+        p.setIcon("menu");
+        p.setPermissionLevel(1);
+        p.setRiskLevel(1);
+        p.setNeedApproval(false);
+        p.setNeedTwoFactor(false);
+        p.setSortOrder(1);
+        p.setVisible(true);
+        p.setStatus(1);
+        return p;
+    }
+}
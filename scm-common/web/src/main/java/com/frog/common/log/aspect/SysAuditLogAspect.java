@@ -1,12 +1,13 @@
 package com.frog.common.log.aspect;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.frog.common.log.annotation.AuditLog;
+import com.frog.common.log.async.AuditEvent;
+import com.frog.common.log.async.AuditLogDispatcher;
 import com.frog.common.log.entity.SysAuditLog;
-import com.frog.common.log.mapper.SysAuditLogMapper;
-import com.frog.common.security.util.DesensitizeUtils;
 import com.frog.common.security.util.IpUtils;
 import com.frog.common.web.util.SecurityUtils;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -17,11 +18,16 @@ import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.stereotype.Component;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.multipart.MultipartFile;
 
 import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
 
 /**
  * 审计日志 AOP切面
+ * 请求线程只收集轻量字段，参数/结果的序列化、脱敏和入库由 {@link AuditLogDispatcher} 在后台批量完成。
+ * 请求参数在方法执行前取快照，并剔除请求/响应/上传文件这类随请求结束失效、也无法序列化的对象
  *
  * @author Deng
  * createData 2025/10/14 17:23
@@ -32,8 +38,7 @@ import java.time.LocalDateTime;
 @RequiredArgsConstructor
 @Slf4j
 public class SysAuditLogAspect {
-    private final SysAuditLogMapper sysAuditLogMapper;
-    private final ObjectMapper objectMapper;
+    private final AuditLogDispatcher auditLogDispatcher;
 
     @Around("@annotation(com.frog.common.log.annotation.AuditLog)")
     public Object around(ProceedingJoinPoint point) throws Throwable {
@@ -56,6 +61,7 @@ public class SysAuditLogAspect {
                 .operationDesc(annotation.operation())
                 .riskLevel(annotation.riskLevel())
                 .build();
+        Object[] args = null;
 
         if (request != null) {
             auditLog.setRequestUri(request.getRequestURI());
@@ -63,36 +69,18 @@ public class SysAuditLogAspect {
             auditLog.setIpAddress(IpUtils.getClientIp(request));
             auditLog.setUserAgent(request.getHeader("User-Agent"));
 
-            // 记录请求参数
+            // 执行前记录请求参数快照（序列化和脱敏在后台线程完成）
             if (annotation.recordParams()) {
-                try {
-                    Object[] args = point.getArgs();
-                    String params = objectMapper.writeValueAsString(args);
-                    // 敏感信息脱敏
-                    params = DesensitizeUtils.desensitize(params);
-                    auditLog.setRequestParams(params);
-                } catch (Exception e) {
-                    log.error("Failed to serialize request params", e);
-                }
+                args = snapshotArgs(point.getArgs());
             }
         }
 
-        Object result;
+        Object result = null;
         try {
             // 执行方法
             result = point.proceed();
             auditLog.setStatus(1);
 
-            // 记录响应结果
-            if (annotation.recordResult() && result != null) {
-                try {
-                    String response = objectMapper.writeValueAsString(result);
-                    auditLog.setResponseData(DesensitizeUtils.desensitize(response));
-                } catch (Exception e) {
-                    log.error("Failed to serialize response", e);
-                }
-            }
-
         } catch (Exception e) {
             auditLog.setStatus(0);
             auditLog.setErrorMsg(e.getMessage());
@@ -102,14 +90,46 @@ public class SysAuditLogAspect {
             auditLog.setExecuteTime((int) executeTime);
             auditLog.setCreateTime(LocalDateTime.now());
 
-            // 异步保存日志
-            try {
-                sysAuditLogMapper.insert(auditLog);
-            } catch (Exception e) {
-                log.error("Failed to save audit log", e);
-            }
+            // 异步批量保存日志
+            auditLogDispatcher.submit(AuditEvent.of(auditLog, args,
+                    annotation.recordResult() ? result : null));
         }
 
         return result;
     }
+
+    /**
+     * 复制参数数组并剔除不可记录的参数
+     * <p>
+     * 后台线程序列化时请求已经结束，ServletRequest/ServletResponse/MultipartFile 届时已不可用，
+     * 序列化它们只会失败或读到临时文件；参数数组本身也在执行前复制，方法内替换参数不影响记录内容。
+     */
+    static Object[] snapshotArgs(Object[] args) {
+        if (args == null || args.length == 0) {
+            return args;
+        }
+        Object[] snapshot = new Object[args.length];
+        int size = 0;
+        for (Object arg : args) {
+            if (!isExcluded(arg)) {
+                snapshot[size++] = arg;
+            }
+        }
+        return size == args.length ? snapshot : Arrays.copyOf(snapshot, size);
+    }
+
+    private static boolean isExcluded(Object arg) {
+        if (arg instanceof ServletRequest || arg instanceof ServletResponse
+                || arg instanceof MultipartFile || arg instanceof MultipartFile[]) {
+            return true;
+        }
+        if (arg instanceof Collection<?> collection) {
+            for (Object element : collection) {
+                if (element instanceof MultipartFile) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
 }
@@ -0,0 +1,35 @@
+package com.frog.common.log.async;
+
+import com.frog.common.log.entity.SysAuditLog;
+
+/**
+ * 待写入的审计事件
+ * <p>
+ * 请求线程只填充 {@link SysAuditLog} 中的轻量字段并保留参数、返回值的引用，
+ * JSON 序列化和脱敏由后台线程在批量写入前完成。
+ *
+ * @param auditLog     审计记录
+ * @param args         需要记录的请求参数，null 表示不记录
+ * @param result       需要记录的返回值，null 表示不记录
+ * @param enqueuedNanos 入队时间（System.nanoTime），用于按时间触发批量写入
+ * @author Deng
+ * @since 2025-10-17
+ */
+public record AuditEvent(SysAuditLog auditLog, Object[] args, Object result, long enqueuedNanos) {
+
+    public static AuditEvent of(SysAuditLog auditLog) {
+        return new AuditEvent(auditLog, null, null, System.nanoTime());
+    }
+
+    public static AuditEvent of(SysAuditLog auditLog, Object[] args, Object result) {
+        return new AuditEvent(auditLog, args, result, System.nanoTime());
+    }
+
+    /**
+     * 风险等级，未设置按低风险处理
+     */
+    public int riskLevel() {
+        Integer level = auditLog.getRiskLevel();
+        return level != null ? level : 1;
+    }
+}
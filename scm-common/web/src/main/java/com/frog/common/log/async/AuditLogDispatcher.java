@@ -0,0 +1,218 @@
+package com.frog.common.log.async;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.frog.common.log.entity.SysAuditLog;
+import com.frog.common.log.mapper.SysAuditLogMapper;
+import com.frog.common.security.util.DesensitizeUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 审计日志异步批量写入
+ * <p>
+ * 请求线程把 {@link AuditEvent} 放入 {@link AuditLogRingBuffer} 后立即返回，单个后台线程负责：
+ * <ul>
+ *   <li>序列化请求参数、返回值并脱敏</li>
+ *   <li>积压达到 batchSize 或首条事件等待超过 flushInterval 时，以一条多行 INSERT 写入</li>
+ *   <li>整批写入失败时逐条重试，避免一条异常数据拖垮整批</li>
+ *   <li>关闭时写完缓冲区中剩余的事件</li>
+ * </ul>
+ * 缓冲区满或积压过高时按 {@link AuditLogProperties.OverflowPolicy} 处理，丢弃/采样数量见
+ * audit.log.dropped 指标，积压深度见 audit.log.queue.depth。
+ *
+ * @author Deng
+ * @since 2025-10-17
+ */
+@Slf4j
+@Component
+public class AuditLogDispatcher implements DisposableBean {
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final SysAuditLogMapper sysAuditLogMapper;
+    private final ObjectMapper objectMapper;
+    private final AuditLogProperties properties;
+    private final AuditLogRingBuffer<AuditEvent> buffer;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final int sampleThreshold;
+    private final AtomicLong sampleCounter = new AtomicLong();
+    private final Thread drainer;
+    private volatile boolean running = true;
+    // 后台线程已取出、尚未写入的事件数，与缓冲区积压一起决定是否提前唤醒
+    private volatile int held;
+
+    private final Counter droppedFull;
+    private final Counter droppedSampled;
+    private final Counter blocked;
+    private final Counter written;
+    private final Counter failed;
+    private final Timer flushTimer;
+
+    public AuditLogDispatcher(SysAuditLogMapper sysAuditLogMapper,
+                              ObjectMapper objectMapper,
+                              AuditLogProperties properties,
+                              MeterRegistry meterRegistry) {
+        this.sysAuditLogMapper = sysAuditLogMapper;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.buffer = new AuditLogRingBuffer<>(properties.getCapacity());
+        this.batchSize = Math.max(1, Math.min(properties.getBatchSize(), buffer.capacity()));
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, properties.getFlushInterval()));
+        this.sampleThreshold = (int) (buffer.capacity() * properties.getSampleThreshold());
+
+        this.droppedFull = meterRegistry.counter("audit.log.dropped", "reason", "full");
+        this.droppedSampled = meterRegistry.counter("audit.log.dropped", "reason", "sampled");
+        this.blocked = meterRegistry.counter("audit.log.blocked");
+        this.written = meterRegistry.counter("audit.log.written");
+        this.failed = meterRegistry.counter("audit.log.write_failed");
+        this.flushTimer = meterRegistry.timer("audit.log.flush");
+        Gauge.builder("audit.log.queue.depth", buffer, AuditLogRingBuffer::size)
+                .register(meterRegistry);
+        Gauge.builder("audit.log.queue.capacity", buffer, AuditLogRingBuffer::capacity)
+                .register(meterRegistry);
+
+        this.drainer = new Thread(this::drainLoop, "audit-log-drainer");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * 提交审计事件
+     *
+     * @return 是否已进入缓冲区（false 表示按背压策略被丢弃）
+     */
+    public boolean submit(AuditEvent event) {
+        AuditLogProperties.OverflowPolicy policy = properties.getOverflowPolicy();
+        if (policy == AuditLogProperties.OverflowPolicy.SAMPLE
+                && event.riskLevel() < properties.getCriticalRiskLevel()
+                && buffer.size() >= sampleThreshold
+                && sampleCounter.getAndIncrement() % Math.max(1, properties.getSampleRate()) != 0) {
+            droppedSampled.increment();
+            return false;
+        }
+
+        boolean accepted = buffer.offer(event);
+        if (!accepted && policy == AuditLogProperties.OverflowPolicy.BLOCK) {
+            blocked.increment();
+            accepted = offerBlocking(event);
+        }
+        if (!accepted) {
+            droppedFull.increment();
+            return false;
+        }
+        if (buffer.size() + held >= batchSize) {
+            LockSupport.unpark(drainer);
+        }
+        return true;
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(drainer);
+        drainer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    private boolean offerBlocking(AuditEvent event) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getBlockTimeout());
+        LockSupport.unpark(drainer);
+        while (System.nanoTime() < deadline) {
+            LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+            if (buffer.offer(event)) {
+                return true;
+            }
+            if (!running) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private void drainLoop() {
+        List<SysAuditLog> batch = new ArrayList<>(batchSize);
+        long deadline = 0;
+        while (running || !buffer.isEmpty()) {
+            AuditEvent event = buffer.poll();
+            if (event != null) {
+                if (batch.isEmpty()) {
+                    deadline = event.enqueuedNanos() + flushIntervalNanos;
+                }
+                batch.add(materialize(event));
+                held = batch.size();
+                if (batch.size() >= batchSize) {
+                    flush(batch);
+                }
+                continue;
+            }
+            long now = System.nanoTime();
+            if (!batch.isEmpty() && now - deadline >= 0) {
+                flush(batch);
+                continue;
+            }
+            LockSupport.parkNanos(this, batch.isEmpty() ? flushIntervalNanos : deadline - now);
+        }
+        flush(batch);
+        log.info("Audit log drainer stopped");
+    }
+
+    /**
+     * 在后台线程完成序列化和脱敏
+     */
+    private SysAuditLog materialize(AuditEvent event) {
+        SysAuditLog auditLog = event.auditLog();
+        if (event.args() != null) {
+            auditLog.setRequestParams(toDesensitizedJson(event.args(), "request params"));
+        }
+        if (event.result() != null) {
+            auditLog.setResponseData(toDesensitizedJson(event.result(), "response"));
+        }
+        return auditLog;
+    }
+
+    private String toDesensitizedJson(Object value, String what) {
+        try {
+            return DesensitizeUtils.desensitize(objectMapper.writeValueAsString(value));
+        } catch (Exception e) {
+            log.error("Failed to serialize audit {}", what, e);
+            return null;
+        }
+    }
+
+    private void flush(List<SysAuditLog> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            sysAuditLogMapper.insertBatch(batch);
+            written.increment(batch.size());
+        } catch (Exception e) {
+            log.error("Failed to save audit log batch, size={}, retrying one by one", batch.size(), e);
+            for (SysAuditLog auditLog : batch) {
+                try {
+                    sysAuditLogMapper.insertBatch(List.of(auditLog));
+                    written.increment();
+                } catch (Exception single) {
+                    failed.increment();
+                    log.error("Failed to save audit log: type={}, uri={}",
+                            auditLog.getOperationType(), auditLog.getRequestUri(), single);
+                }
+            }
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            batch.clear();
+            held = 0;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.frog.common.log.async;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 异步审计日志配置
+ *
+ * @author Deng
+ * @since 2025-10-17
+ */
+@Component
+@ConfigurationProperties(prefix = "frog.audit.async")
+@Data
+public class AuditLogProperties {
+    // 缓冲区容量（向上取整为 2 的幂）
+    private int capacity = 8192;
+    // 单批最大行数，积压达到该值立即写入
+    private int batchSize = 500;
+    // 最长攒批时间（毫秒），首条事件入队后超过该时间即写入
+    private long flushInterval = 1000;
+    // 缓冲区满/高水位时的处理策略
+    private OverflowPolicy overflowPolicy = OverflowPolicy.SAMPLE;
+    // SAMPLE：积压超过容量的该比例后开始采样
+    private double sampleThreshold = 0.8;
+    // SAMPLE：采样期间每 N 条低风险事件保留 1 条
+    private int sampleRate = 10;
+    // 风险等级不低于该值的事件不参与采样
+    private int criticalRiskLevel = 3;
+    // BLOCK：缓冲区满时请求线程最长等待时间（毫秒），超时后丢弃
+    private long blockTimeout = 50;
+
+    public enum OverflowPolicy {
+        /**
+         * 缓冲区满时直接丢弃
+         */
+        DROP,
+        /**
+         * 超过高水位后按比例采样低风险事件，满时丢弃
+         */
+        SAMPLE,
+        /**
+         * 缓冲区满时阻塞请求线程等待空位，超时丢弃
+         */
+        BLOCK
+    }
+}
@@ -0,0 +1,94 @@
+package com.frog.common.log.async;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 有界无锁环形缓冲区（多生产者、单消费者）
+ * <p>
+ * 每个槽位带一个序号：生产者通过 CAS 抢占写位置，写入元素后发布序号；消费者看到序号就绪后取走元素，
+ * 再把序号推进一圈释放槽位。满时 offer 直接返回 false，由调用方决定丢弃、采样或等待。
+ *
+ * @param <E> 元素类型
+ * @author Deng
+ * @since 2025-10-17
+ */
+public final class AuditLogRingBuffer<E> {
+    private final Object[] items;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * @param capacity 容量，向上取整为 2 的幂
+     */
+    public AuditLogRingBuffer(int capacity) {
+        int size = capacity <= 1 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.items = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * 写入元素，缓冲区已满时返回 false（可被多个线程并发调用）
+     */
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException("element");
+        }
+        long position = tail.get();
+        for (;;) {
+            int index = (int) position & mask;
+            long diff = sequences.get(index) - position;
+            if (diff == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    items[index] = element;
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * 取出元素，没有就绪元素时返回 null（只允许单个消费线程调用）
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long position = head.get();
+        int index = (int) position & mask;
+        if (sequences.get(index) != position + 1) {
+            return null;
+        }
+        E element = (E) items[index];
+        items[index] = null;
+        sequences.set(index, position + mask + 1);
+        head.lazySet(position + 1);
+        return element;
+    }
+
+    /**
+     * 当前积压数量（近似值，仅用于监控和背压判断）
+     */
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return items.length;
+    }
+}
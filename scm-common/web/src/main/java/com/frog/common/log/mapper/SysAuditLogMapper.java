@@ -2,7 +2,11 @@ package com.frog.common.log.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.frog.common.log.entity.SysAuditLog;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 /**
  * <p>
@@ -15,4 +19,24 @@ import org.apache.ibatis.annotations.Mapper;
 @Mapper
 public interface SysAuditLogMapper extends BaseMapper<SysAuditLog> {
 
+    /**
+     * 批量写入审计日志（单条多行 INSERT，id 由数据库生成）
+     */
+    @Insert("""
+            <script>
+            INSERT INTO sys_audit_log (user_id, username, real_name, dept_id, operation_type, operation_module,
+                                       operation_desc, request_uri, request_method, request_params, response_data,
+                                       response_status, ip_address, location, user_agent, business_type, business_id,
+                                       old_value, new_value, risk_level, status, error_msg, execute_time, create_time)
+            VALUES
+            <foreach collection='logs' item='l' separator=','>
+            (#{l.userId}, #{l.username}, #{l.realName}, #{l.deptId}, #{l.operationType}, #{l.operationModule},
+             #{l.operationDesc}, #{l.requestUri}, #{l.requestMethod}, #{l.requestParams}::jsonb, #{l.responseData}::jsonb,
+             #{l.responseStatus}, #{l.ipAddress}::inet, #{l.location}, #{l.userAgent}, #{l.businessType}, #{l.businessId},
+             #{l.oldValue}::jsonb, #{l.newValue}::jsonb, COALESCE(#{l.riskLevel}, 1), COALESCE(#{l.status}, 1),
+             #{l.errorMsg}, #{l.executeTime}, COALESCE(#{l.createTime}, NOW()))
+            </foreach>
+            </script>
+            """)
+    int insertBatch(@Param("logs") List<SysAuditLog> logs);
 }
@@ -1,12 +1,13 @@
 package com.frog.common.log.service.Impl;
 
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.frog.common.log.async.AuditEvent;
+import com.frog.common.log.async.AuditLogDispatcher;
 import com.frog.common.log.entity.SysAuditLog;
 import com.frog.common.log.mapper.SysAuditLogMapper;
 import com.frog.common.log.service.ISysAuditLogService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
@@ -16,6 +17,7 @@ import java.util.UUID;
  * <p>
  * 操作审计日志表 服务实现类
  * </p>
+ * 登录、安全事件等日志交给 {@link AuditLogDispatcher} 入队后批量写入，调用方不再等待数据库
  *
  * @author author
  * @since 2025-10-14
@@ -26,9 +28,8 @@ import java.util.UUID;
 public class SysAuditLogServiceImpl extends ServiceImpl<SysAuditLogMapper, SysAuditLog>
         implements ISysAuditLogService {
 
-    private final SysAuditLogMapper sysAuditLogMapper;
+    private final AuditLogDispatcher auditLogDispatcher;
 
-    @Async
     public void recordLogin(UUID userId, String username, String ipAddress,
                             boolean success, String remark) {
         SysAuditLog log = SysAuditLog.builder()
@@ -40,10 +41,9 @@ public class SysAuditLogServiceImpl extends ServiceImpl<SysAuditLogMapper, SysAu
                 .operationDesc(remark)
                 .createTime(LocalDateTime.now())
                 .build();
-        sysAuditLogMapper.insert(log);
+        auditLogDispatcher.submit(AuditEvent.of(log));
     }
 
-    @Async
     public void recordLoginFailure(String username, String ipAddress, String reason) {
         SysAuditLog log = SysAuditLog.builder()
                 .username(username)
@@ -53,10 +53,9 @@ public class SysAuditLogServiceImpl extends ServiceImpl<SysAuditLogMapper, SysAu
                 .errorMsg(reason)
                 .createTime(LocalDateTime.now())
                 .build();
-        sysAuditLogMapper.insert(log);
+        auditLogDispatcher.submit(AuditEvent.of(log));
     }
 
-    @Async
     public void recordLogout(UUID userId, String remark) {
         SysAuditLog log = SysAuditLog.builder()
                 .userId(userId)
@@ -65,13 +64,12 @@ public class SysAuditLogServiceImpl extends ServiceImpl<SysAuditLogMapper, SysAu
                 .operationDesc(remark)
                 .createTime(LocalDateTime.now())
                 .build();
-        sysAuditLogMapper.insert(log);
+        auditLogDispatcher.submit(AuditEvent.of(log));
     }
 
     /**
-     * 记录安全事件（异步）
+     * 记录安全事件（入队异步写入，高风险告警立即发出）
      */
-    @Async
     public void recordSecurityEvent(String eventType, Integer riskLevel, UUID userId,
                                     String username, String ipAddress,
                                     String resource, boolean success, String details) {
@@ -88,7 +86,7 @@ public class SysAuditLogServiceImpl extends ServiceImpl<SysAuditLogMapper, SysAu
                     .createTime(LocalDateTime.now())
                     .build();
 
-            sysAuditLogMapper.insert(log);
+            auditLogDispatcher.submit(AuditEvent.of(log));
 
             // 高风险事件立即告警
             if (riskLevel >= 4) {
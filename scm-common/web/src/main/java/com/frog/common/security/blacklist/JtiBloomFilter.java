@@ -0,0 +1,91 @@
+package com.frog.common.security.blacklist;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 已撤销 jti 的布隆过滤器（线程安全，只增不删）
+ * <p>
+ * mightContain 返回 false 的 jti 一定没有被撤销；返回 true 时需要到 Redis 确认。
+ * 过滤器不能删除元素，过期的 jti 通过定期重建整个过滤器清除。
+ *
+ * @author Deng
+ * @since 2025-10-15
+ */
+public class JtiBloomFilter {
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+    private final LongAdder size = new LongAdder();
+
+    /**
+     * @param expectedInsertions 预计元素数
+     * @param fpp                期望误判率，如 0.001
+     */
+    public JtiBloomFilter(long expectedInsertions, double fpp) {
+        long n = Math.max(1, expectedInsertions);
+        long m = (long) Math.ceil(-n * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (m + 63) >>> 6));
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = (long) words << 6;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+    }
+
+    public void put(String jti) {
+        long h1 = hash(jti);
+        long h2 = mix(h1) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            while (((current = bits.get(word)) & mask) == 0) {
+                if (bits.compareAndSet(word, current, current | mask)) {
+                    break;
+                }
+            }
+        }
+        size.increment();
+    }
+
+    public boolean mightContain(String jti) {
+        long h1 = hash(jti);
+        long h2 = mix(h1) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 写入次数（含重复写入），用于观察过滤器饱和程度
+     */
+    public long size() {
+        return size.sum();
+    }
+
+    /**
+     * FNV-1a 64
+     */
+    private static long hash(String jti) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : jti.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    /**
+     * SplitMix64 finalizer
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
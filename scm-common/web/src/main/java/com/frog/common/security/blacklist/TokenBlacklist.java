@@ -0,0 +1,251 @@
+package com.frog.common.security.blacklist;
+
+import com.frog.common.security.properties.JwtProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 本地复制的 Token 黑名单
+ * <p>
+ * 每个节点在内存中维护已撤销 jti 的布隆过滤器，绝大多数请求判定为"未撤销"后无需访问 Redis：
+ * <ul>
+ *   <li>撤销时写入 Redis 有序集合（score 为 Token 过期时间）、递增版本号并通过 pub/sub 广播，各节点收到后加入本地过滤器</li>
+ *   <li>消息携带版本号，发现版本跳号或定期检查发现远端版本领先时，从有序集合全量重建过滤器</li>
+ *   <li>布隆过滤器无法删除，定期重建以清除已过期的 jti，控制误判率</li>
+ *   <li>过滤器未就绪（启动时 Redis 不可用等）时一律按"可能已撤销"处理，交给 Redis 确认</li>
+ * </ul>
+ *
+ * @author Deng
+ * @since 2025-10-15
+ */
+@Slf4j
+@Component
+public class TokenBlacklist implements MessageListener, DisposableBean {
+    public static final String CHANNEL = "jwt:revocation:events";
+    private static final String LOG_KEY = "jwt:revocation:log";
+    private static final String VERSION_KEY = "jwt:revocation:version";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final JwtProperties jwtProperties;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "jwt-blacklist-sync");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Object versionLock = new Object();
+    private volatile JtiBloomFilter current;
+    private volatile JtiBloomFilter building;
+    private volatile boolean ready;
+    private volatile long appliedVersion;
+    private volatile long laggingVersion = -1;
+
+    private final LongAdder negatives = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+    private final Counter localPasses;
+    private final Counter bloomPositives;
+    private final Counter bloomFalsePositives;
+    private final Counter redisCallsSaved;
+
+    public TokenBlacklist(RedisTemplate<String, Object> redisTemplate,
+                          JwtProperties jwtProperties,
+                          MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.jwtProperties = jwtProperties;
+        this.current = newFilter();
+        this.localPasses = meterRegistry.counter("security.jwt.revocation.local_pass");
+        this.bloomPositives = meterRegistry.counter("security.jwt.revocation.bloom_positive");
+        this.bloomFalsePositives = meterRegistry.counter("security.jwt.revocation.bloom_false_positive");
+        this.redisCallsSaved = meterRegistry.counter("security.jwt.revocation.redis_calls_saved");
+        Gauge.builder("security.jwt.revocation.false_positive_rate", this, TokenBlacklist::falsePositiveRate)
+                .register(meterRegistry);
+        Gauge.builder("security.jwt.revocation.bloom_size", this, b -> b.current.size())
+                .register(meterRegistry);
+
+        scheduler.execute(this::rebuild);
+        long syncInterval = Math.max(100, jwtProperties.getBlacklistSyncInterval());
+        scheduler.scheduleWithFixedDelay(this::sync, syncInterval, syncInterval, TimeUnit.MILLISECONDS);
+        long rebuildInterval = Math.max(syncInterval, jwtProperties.getBlacklistRebuildInterval());
+        scheduler.scheduleWithFixedDelay(this::rebuild, rebuildInterval, rebuildInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * jti 是否可能已被撤销；返回 false 时一定未撤销
+     */
+    public boolean mightBeRevoked(String jti) {
+        if (!ready) {
+            return true;
+        }
+        if (current.mightContain(jti)) {
+            bloomPositives.increment();
+            return true;
+        }
+        negatives.increment();
+        return false;
+    }
+
+    /**
+     * 记录一次完全在本地完成的校验（原先需要黑名单、指纹两次 Redis 调用）
+     */
+    public void recordLocalPass() {
+        localPasses.increment();
+        redisCallsSaved.increment(2);
+    }
+
+    /**
+     * 记录一次 Redis 确认结果（黑名单和指纹合并为一次管道调用）
+     *
+     * @param jti         Token ID
+     * @param suspected   本地过滤器是否判定为可能撤销
+     * @param blacklisted Redis 中是否确实在黑名单
+     */
+    public void recordRedisCheck(String jti, boolean suspected, boolean blacklisted) {
+        redisCallsSaved.increment();
+        if (blacklisted) {
+            // 本地漏掉的撤销（消息丢失等），补入过滤器
+            add(jti);
+        } else if (suspected && ready) {
+            falsePositives.increment();
+            bloomFalsePositives.increment();
+        }
+    }
+
+    /**
+     * 撤销 jti 并广播给所有节点
+     *
+     * @param jti       Token ID
+     * @param expiresAt Token 过期时间（毫秒），之后不再需要记录
+     */
+    public void revoke(String jti, long expiresAt) {
+        add(jti);
+        try {
+            redisTemplate.opsForZSet().add(LOG_KEY, jti, expiresAt);
+            Long version = redisTemplate.opsForValue().increment(VERSION_KEY);
+            redisTemplate.convertAndSend(CHANNEL, version + ":" + jti);
+        } catch (Exception e) {
+            log.error("Failed to publish token revocation: jti={}, error={}", jti, e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        Object body = redisTemplate.getValueSerializer().deserialize(message.getBody());
+        if (body == null) {
+            return;
+        }
+        String payload = body.toString();
+        int sep = payload.indexOf(':');
+        if (sep <= 0) {
+            return;
+        }
+        long version;
+        try {
+            version = Long.parseLong(payload.substring(0, sep));
+        } catch (NumberFormatException e) {
+            log.warn("Invalid revocation message: {}", payload);
+            return;
+        }
+        add(payload.substring(sep + 1));
+
+        synchronized (versionLock) {
+            if (version == appliedVersion + 1) {
+                appliedVersion = version;
+            } else if (version > appliedVersion + 1) {
+                log.warn("Revocation messages missed: applied={}, received={}, rebuilding", appliedVersion, version);
+                scheduler.execute(this::rebuild);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 检查远端版本；连续两次落后（排除消息在途的情况）时重建
+     */
+    void sync() {
+        try {
+            Object value = redisTemplate.opsForValue().get(VERSION_KEY);
+            long remote = value == null ? 0 : Long.parseLong(value.toString());
+            if (!ready || remote <= appliedVersion) {
+                laggingVersion = -1;
+                if (!ready) {
+                    rebuild();
+                }
+                return;
+            }
+            if (laggingVersion == remote) {
+                rebuild();
+                laggingVersion = -1;
+            } else {
+                laggingVersion = remote;
+            }
+        } catch (Exception e) {
+            log.warn("Blacklist version check failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 从 Redis 全量重建过滤器，顺带清理有序集合中已过期的 jti
+     */
+    synchronized void rebuild() {
+        JtiBloomFilter fresh = newFilter();
+        building = fresh;
+        try {
+            Object value = redisTemplate.opsForValue().get(VERSION_KEY);
+            long version = value == null ? 0 : Long.parseLong(value.toString());
+            long now = System.currentTimeMillis();
+            redisTemplate.opsForZSet().removeRangeByScore(LOG_KEY, Double.NEGATIVE_INFINITY, now);
+            Set<Object> members = redisTemplate.opsForZSet().rangeByScore(LOG_KEY, now, Double.POSITIVE_INFINITY);
+            if (members != null) {
+                for (Object member : members) {
+                    fresh.put(member.toString());
+                }
+            }
+            current = fresh;
+            synchronized (versionLock) {
+                appliedVersion = Math.max(appliedVersion, version);
+            }
+            ready = true;
+            log.info("Blacklist filter rebuilt: entries={}, version={}", members != null ? members.size() : 0, version);
+        } catch (Exception e) {
+            log.warn("Blacklist filter rebuild failed: {}", e.getMessage());
+        } finally {
+            building = null;
+        }
+    }
+
+    private void add(String jti) {
+        current.put(jti);
+        JtiBloomFilter pending = building;
+        if (pending != null) {
+            pending.put(jti);
+        }
+    }
+
+    private JtiBloomFilter newFilter() {
+        return new JtiBloomFilter(jwtProperties.getBlacklistBloomExpectedInsertions(),
+                jwtProperties.getBlacklistBloomFpp());
+    }
+
+    private double falsePositiveRate() {
+        long fp = falsePositives.sum();
+        long total = fp + negatives.sum();
+        return total == 0 ? 0 : (double) fp / total;
+    }
+}
@@ -0,0 +1,26 @@
+package com.frog.common.security.blacklist;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+/**
+ * Token 黑名单撤销消息订阅
+ *
+ * @author Deng
+ * @since 2025-10-15
+ */
+@Configuration
+public class TokenBlacklistConfig {
+
+    @Bean
+    public RedisMessageListenerContainer tokenBlacklistListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                         TokenBlacklist tokenBlacklist) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(tokenBlacklist, new ChannelTopic(TokenBlacklist.CHANNEL));
+        return container;
+    }
+}
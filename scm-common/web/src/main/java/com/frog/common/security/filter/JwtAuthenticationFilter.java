@@ -5,6 +5,7 @@ import com.frog.common.security.util.HttpServletRequestUtils;
 import com.frog.common.security.util.IpUtils;
 import com.frog.common.security.util.JwtUtils;
 import com.frog.common.security.util.SecurityErrorResponseWriter;
+import com.frog.common.security.util.VerifiedToken;
 import com.frog.common.web.domain.SecurityUser;
 import jakarta.annotation.Nonnull;
 import jakarta.servlet.FilterChain;
@@ -54,13 +55,14 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                 String currentIp = IpUtils.getClientIp(request);
                 String currentDeviceId = httpServletRequestUtils.getDeviceId(request);
 
-                // 验证 Token
-                if (jwtUtils.validateToken(token, currentIp, currentDeviceId)) {
-                    // 提取用户信息
-                    UUID userId = jwtUtils.getUserIdFromToken(token);
-                    String username = jwtUtils.getUsernameFromToken(token);
-                    Set<String> permissions = jwtUtils.getPermissionsFromToken(token);
-                    Set<String> roles = jwtUtils.getRolesFromToken(token);
+                // 验证 Token（只解析一次，用户信息直接从验证结果读取）
+                VerifiedToken verified = jwtUtils.validateAccessToken(token, currentIp, currentDeviceId);
+                if (verified != null) {
+                    UUID userId = verified.userId();
+                    String username = verified.username();
+                    Set<String> permissions = verified.permissions();
+                    Set<String> roles = verified.roles();
+                    request.setAttribute(VerifiedToken.REQUEST_ATTRIBUTE, verified);
 
                     // 构建权限列表
                     Set<SimpleGrantedAuthority> authorities = permissions.stream()
@@ -14,12 +14,13 @@ import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 动态权限加载服务
  * 支持权限热更新，无需重启应用
+ * <p>
+ * 权限映射编译为不可变的 {@link PermissionTrie}，与版本号一起作为快照通过一次 volatile 写发布，
+ * 刷新过程中请求始终看到完整的旧快照或新快照。定时刷新只在权限内容变化时才重建、发布事件并清理相关缓存。
  *
  * @author Deng
  * createData 2025/11/7 10:18
@@ -33,11 +34,8 @@ public class DynamicPermissionLoader {
     private final CacheManager cacheManager;
     private final ApplicationEventPublisher eventPublisher;
 
-    // 内存缓存：URL -> 所需权限列表
-    private final Map<String, Set<String>> urlPermissionCache = new ConcurrentHashMap<>();
-
-    // 权限版本号（用于检测变更）
-    private final AtomicLong permissionVersion = new AtomicLong(0L);
+    // 当前生效的权限快照：版本号 + 原始映射（METHOD:path -> 权限集合）+ 编译后的前缀树
+    private volatile PermissionSnapshot snapshot = PermissionSnapshot.EMPTY;
 
     private static final String PERMISSION_CACHE_NAME = "permissionMapping";
     private static final String PERM_MAPPING_CACHE_KEY = "dynamic:permission:mapping";
@@ -49,13 +47,10 @@ public class DynamicPermissionLoader {
             if (permCache != null) {
                 Object rawCached = permCache.get(PERM_MAPPING_CACHE_KEY, Map.class);
                 if (rawCached instanceof Map<?, ?> rawMap && !rawMap.isEmpty()) {
-                    urlPermissionCache.clear();
-                    urlPermissionCache.putAll(normalizePermissionMap(rawMap));
-
-                    // 初始化版本号
-                    permissionVersion.set(1L);
+                    Map<String, Set<String>> mappings = normalizePermissionMap(rawMap);
+                    snapshot = PermissionSnapshot.of(1L, mappings);
                     log.info("Initialized dynamic permission cache from TwoLevelCache, size={}",
-                            urlPermissionCache.size());
+                            mappings.size());
                 }
             }
         } catch (Exception e) {
@@ -89,7 +84,17 @@ public class DynamicPermissionLoader {
      * 初始化加载权限配置
      */
     public void loadPermissions() {
-        log.info("Loading dynamic permissions...");
+        loadPermissions(true);
+    }
+
+    /**
+     * 加载权限配置
+     *
+     * @param force false 时权限内容未变化则保留当前快照
+     * @return 是否发布了新快照
+     */
+    private synchronized boolean loadPermissions(boolean force) {
+        log.debug("Loading dynamic permissions...");
 
         try {
             // 查询所有 API类型的权限
@@ -110,9 +115,15 @@ public class DynamicPermissionLoader {
                 }
             }
 
-            // 原子性替换缓存
-            urlPermissionCache.clear();
-            urlPermissionCache.putAll(newCache);
+            PermissionSnapshot current = snapshot;
+            if (!force && newCache.equals(current.mappings())) {
+                log.debug("API permission mappings unchanged, version: {}", current.version());
+                return false;
+            }
+
+            // 编译完成后一次性替换快照
+            PermissionSnapshot next = PermissionSnapshot.of(current.version() + 1, newCache);
+            snapshot = next;
 
             // 持久化到多级缓存（供多实例共享，冷启动加速）
             Cache permCache = cacheManager.getCache(PERMISSION_CACHE_NAME);
@@ -120,27 +131,28 @@ public class DynamicPermissionLoader {
                 permCache.put(PERM_MAPPING_CACHE_KEY, newCache);
             }
 
-            permissionVersion.incrementAndGet();
-
             log.info("Loaded {} API permission mappings, version: {}",
-                    newCache.size(), permissionVersion.get());
+                    newCache.size(), next.version());
 
             // 发布权限更新事件
-            eventPublisher.publishEvent(new PermissionRefreshEvent(this, permissionVersion.get()));
+            eventPublisher.publishEvent(new PermissionRefreshEvent(this, next.version()));
+            return true;
 
         } catch (Exception e) {
             log.error("Failed to load permissions", e);
+            return false;
         }
     }
 
     /**
-     * 定时刷新权限（每5分钟）
+     * 定时检查权限变更（每5分钟），内容未变化时不重建、不清理缓存
      */
     @Scheduled(fixedRate = 300000)
     public void scheduleRefresh() {
         log.debug("Scheduled permission refresh triggered");
-        loadPermissions();
-        clearRelatedCaches();
+        if (loadPermissions(false)) {
+            clearRelatedCaches();
+        }
     }
 
     /**
@@ -156,131 +168,15 @@ public class DynamicPermissionLoader {
      * 检查 URL是否需要权限
      */
     public boolean requiresPermission(String method, String url) {
-        String key = buildKey(method, url);
-        return urlPermissionCache.containsKey(key);
+        return !snapshot.trie().match(method, url).isEmpty();
     }
 
     /**
      * 获取 URL所需的权限
+     * 精确路径优先，其次 /api/users/{id}、/api/users/*，最后 /api/**
      */
     public Set<String> getRequiredPermissions(String method, String url) {
-        String key = buildKey(method, url);
-        Set<String> permissions = urlPermissionCache.get(key);
-
-        // 如果没有精确匹配，尝试通配符匹配
-        if (permissions == null || permissions.isEmpty()) {
-            permissions = matchWildcardPermissions(method, url);
-        }
-
-        return permissions != null ? permissions : Collections.emptySet();
-    }
-
-    /**
-     * 通配符匹配
-     * 支持路径参数: /api/users/{id} 匹配 /api/users/123
-     */
-    private Set<String> matchWildcardPermissions(String method, String url) {
-        for (Map.Entry<String, Set<String>> entry : urlPermissionCache.entrySet()) {
-            String pattern = entry.getKey();
-
-            if (matchesPattern(pattern, method, url)) {
-                return entry.getValue();
-            }
-        }
-        return null;
-    }
-
-    /**
-     * 模式匹配
-     */
-    private boolean matchesPattern(String pattern, String method, String url) {
-        // 提取方法和路径
-        String[] patternParts = pattern.split(":", 2);
-        if (patternParts.length != 2) {
-            return false;
-        }
-
-        String patternMethod = patternParts[0];
-        String patternPath = patternParts[1];
-
-        // 方法匹配（* 表示所有方法）
-        if (!"*".equals(patternMethod) && !method.equals(patternMethod)) {
-            return false;
-        }
-
-        // 路径匹配
-        return matchesPath(patternPath, url);
-    }
-
-    /**
-     * 路径匹配算法
-     * 支持: /api/users/{id}, /api/users/*, /api/**
-     */
-    private boolean matchesPath(String pattern, String path) {
-        // 分割路径段
-        String[] patternSegments = pattern.split("/");
-        String[] pathSegments = path.split("/");
-
-        // ** 通配符：匹配任意层级
-        if (pattern.contains("**")) {
-            return matchesDeepWildcard(patternSegments, pathSegments);
-        }
-
-        // 长度不匹配
-        if (patternSegments.length != pathSegments.length) {
-            return false;
-        }
-
-        // 逐段匹配
-        for (int i = 0; i < patternSegments.length; i++) {
-            String patternSeg = patternSegments[i];
-            String pathSeg = pathSegments[i];
-
-            // {xxx} 路径参数
-            if (patternSeg.startsWith("{") && patternSeg.endsWith("}")) {
-                continue;
-            }
-
-            // * 单层通配符
-            if ("*".equals(patternSeg)) {
-                continue;
-            }
-
-            // 精确匹配
-            if (!patternSeg.equals(pathSeg)) {
-                return false;
-            }
-        }
-
-        return true;
-    }
-
-    /**
-     * 深度通配符匹配
-     */
-    private boolean matchesDeepWildcard(String[] patternSegments, String[] pathSegments) {
-        int patternIdx = 0;
-        int pathIdx = 0;
-
-        while (patternIdx < patternSegments.length && pathIdx < pathSegments.length) {
-            String patternSeg = patternSegments[patternIdx];
-
-            if ("**".equals(patternSeg)) {
-                // ** 匹配剩余所有路径
-                return true;
-            }
-
-            if (patternSeg.equals(pathSegments[pathIdx]) ||
-                    "*".equals(patternSeg) ||
-                    (patternSeg.startsWith("{") && patternSeg.endsWith("}"))) {
-                patternIdx++;
-                pathIdx++;
-            } else {
-                return false;
-            }
-        }
-
-        return patternIdx == patternSegments.length && pathIdx == pathSegments.length;
+        return snapshot.trie().match(method, url);
     }
 
     /**
@@ -317,32 +213,44 @@ public class DynamicPermissionLoader {
      * 获取权限版本号
      */
     public long getPermissionVersion() {
-        return permissionVersion.get();
+        return snapshot.version();
     }
 
     /**
      * 获取缓存统计信息
      */
     public Map<String, Object> getCacheStats() {
+        PermissionSnapshot current = snapshot;
         Map<String, Object> stats = new HashMap<>();
-        stats.put("version", permissionVersion.get());
-        stats.put("cachedMappings", urlPermissionCache.size());
-        stats.put("memorySize", estimateMemorySize());
+        stats.put("version", current.version());
+        stats.put("cachedMappings", current.mappings().size());
+        stats.put("memorySize", estimateMemorySize(current.mappings()));
         return stats;
     }
 
     /**
      * 估算内存占用
      */
-    private long estimateMemorySize() {
+    private static long estimateMemorySize(Map<String, Set<String>> mappings) {
         long size = 0;
-        for (Map.Entry<String, Set<String>> entry : urlPermissionCache.entrySet()) {
+        for (Map.Entry<String, Set<String>> entry : mappings.entrySet()) {
             size += entry.getKey().length() * 2L; // String 占用
             size += entry.getValue().size() * 50L; // Set 元素估算
         }
         return size;
     }
 
+    /**
+     * 权限快照，整体替换，不做原地修改
+     */
+    private record PermissionSnapshot(long version, Map<String, Set<String>> mappings, PermissionTrie trie) {
+        static final PermissionSnapshot EMPTY = new PermissionSnapshot(0L, Map.of(), PermissionTrie.EMPTY);
+
+        static PermissionSnapshot of(long version, Map<String, Set<String>> mappings) {
+            return new PermissionSnapshot(version, Map.copyOf(mappings), PermissionTrie.compile(mappings));
+        }
+    }
+
     /**
      * 权限刷新事件
      */
@@ -0,0 +1,230 @@
+package com.frog.common.security.loader;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * URL 权限规则的路径段前缀树（构建后不可变，线程安全）
+ * <p>
+ * 规则按 HTTP 方法分别建树，每一层对应一个路径段：
+ * <ul>
+ *   <li>字面量段：开放寻址表，直接在请求路径上按区间比较，不做 split/substring</li>
+ *   <li>{@code *} 与 {@code {param}}：同一个单层通配子节点</li>
+ *   <li>{@code **}：匹配剩余的一个或多个路径段，其后的段忽略（与原实现一致）</li>
+ * </ul>
+ * 匹配优先级为 字面量 &gt; 单层通配 &gt; {@code **}，失败时回溯；方法树未命中再查 {@code *} 方法树。
+ * 查找耗时只与路径深度有关，且不分配对象。
+ *
+ * @author Deng
+ * @since 2025-10-17
+ */
+public final class PermissionTrie {
+    public static final PermissionTrie EMPTY = new PermissionTrie(Map.of());
+
+    private static final String ANY_METHOD = "*";
+
+    private final Map<String, Node> roots;
+
+    private PermissionTrie(Map<String, Node> roots) {
+        this.roots = roots;
+    }
+
+    /**
+     * 编译权限映射
+     *
+     * @param mappings "METHOD:path" -> 权限集合，METHOD 为 * 表示所有方法
+     */
+    public static PermissionTrie compile(Map<String, Set<String>> mappings) {
+        Map<String, Builder> builders = new HashMap<>();
+        for (Map.Entry<String, Set<String>> entry : mappings.entrySet()) {
+            String key = entry.getKey();
+            int sep = key.indexOf(':');
+            if (sep <= 0 || entry.getValue() == null || entry.getValue().isEmpty()) {
+                continue;
+            }
+            builders.computeIfAbsent(key.substring(0, sep), m -> new Builder())
+                    .insert(key, sep + 1, entry.getValue());
+        }
+        if (builders.isEmpty()) {
+            return EMPTY;
+        }
+        Map<String, Node> roots = new HashMap<>();
+        builders.forEach((method, builder) -> roots.put(method, builder.freeze()));
+        return new PermissionTrie(Map.copyOf(roots));
+    }
+
+    /**
+     * 查找请求所需权限
+     *
+     * @return 权限集合（不可变），无匹配规则时为空集合
+     */
+    public Set<String> match(String method, String path) {
+        if (path == null) {
+            return Collections.emptySet();
+        }
+        Set<String> permissions = null;
+        if (method != null) {
+            Node root = roots.get(method);
+            if (root != null) {
+                permissions = root.match(path, 0);
+            }
+        }
+        if (permissions == null) {
+            Node any = roots.get(ANY_METHOD);
+            if (any != null) {
+                permissions = any.match(path, 0);
+            }
+        }
+        return permissions != null ? permissions : Collections.emptySet();
+    }
+
+    public boolean isEmpty() {
+        return roots.isEmpty();
+    }
+
+    private static int skipSlashes(String path, int from) {
+        int length = path.length();
+        while (from < length && path.charAt(from) == '/') {
+            from++;
+        }
+        return from;
+    }
+
+    private static int segmentEnd(String path, int start) {
+        int end = path.indexOf('/', start);
+        return end < 0 ? path.length() : end;
+    }
+
+    /**
+     * 与 String.hashCode 相同的算法，直接作用于路径区间
+     */
+    private static int hash(String s, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + s.charAt(i);
+        }
+        return h;
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Node {
+        private final String[] keys;
+        private final Node[] children;
+        private final int mask;
+        private final Node wildcard;
+        private final Set<String> permissions;
+        private final Set<String> deepPermissions;
+
+        private Node(Map<String, Node> literals, Node wildcard,
+                     Set<String> permissions, Set<String> deepPermissions) {
+            int capacity = Integer.highestOneBit(Math.max(1, literals.size() * 2 - 1)) << 1;
+            this.keys = literals.isEmpty() ? null : new String[capacity];
+            this.children = literals.isEmpty() ? null : new Node[capacity];
+            this.mask = capacity - 1;
+            for (Map.Entry<String, Node> entry : literals.entrySet()) {
+                int slot = spread(entry.getKey().hashCode()) & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = entry.getKey();
+                children[slot] = entry.getValue();
+            }
+            this.wildcard = wildcard;
+            this.permissions = permissions;
+            this.deepPermissions = deepPermissions;
+        }
+
+        Set<String> match(String path, int from) {
+            int start = skipSlashes(path, from);
+            if (start == path.length()) {
+                return permissions;
+            }
+            int end = segmentEnd(path, start);
+            Node literal = literal(path, start, end);
+            if (literal != null) {
+                Set<String> result = literal.match(path, end);
+                if (result != null) {
+                    return result;
+                }
+            }
+            if (wildcard != null) {
+                Set<String> result = wildcard.match(path, end);
+                if (result != null) {
+                    return result;
+                }
+            }
+            return deepPermissions;
+        }
+
+        private Node literal(String path, int start, int end) {
+            if (keys == null) {
+                return null;
+            }
+            int length = end - start;
+            int slot = spread(hash(path, start, end)) & mask;
+            String key;
+            while ((key = keys[slot]) != null) {
+                if (key.length() == length && key.regionMatches(0, path, start, length)) {
+                    return children[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+    }
+
+    private static final class Builder {
+        private final Map<String, Builder> literals = new LinkedHashMap<>();
+        private Builder wildcard;
+        private Set<String> permissions;
+        private Set<String> deepPermissions;
+
+        void insert(String key, int from, Set<String> codes) {
+            Builder node = this;
+            int start = skipSlashes(key, from);
+            while (start < key.length()) {
+                int end = segmentEnd(key, start);
+                String segment = key.substring(start, end);
+                if ("**".equals(segment)) {
+                    node.deepPermissions = merge(node.deepPermissions, codes);
+                    return;
+                }
+                if ("*".equals(segment) || (segment.startsWith("{") && segment.endsWith("}"))) {
+                    if (node.wildcard == null) {
+                        node.wildcard = new Builder();
+                    }
+                    node = node.wildcard;
+                } else {
+                    node = node.literals.computeIfAbsent(segment, s -> new Builder());
+                }
+                start = skipSlashes(key, end);
+            }
+            node.permissions = merge(node.permissions, codes);
+        }
+
+        Node freeze() {
+            Map<String, Node> frozen = new HashMap<>();
+            literals.forEach((segment, child) -> frozen.put(segment, child.freeze()));
+            return new Node(frozen,
+                    wildcard != null ? wildcard.freeze() : null,
+                    permissions != null ? Set.copyOf(permissions) : null,
+                    deepPermissions != null ? Set.copyOf(deepPermissions) : null);
+        }
+
+        /**
+         * 多条规则落在同一节点（如 /users/{id} 与 /users/{userId}）时合并权限
+         */
+        private static Set<String> merge(Set<String> existing, Set<String> codes) {
+            Set<String> merged = existing != null ? existing : new HashSet<>();
+            merged.addAll(codes);
+            return merged;
+        }
+    }
+}
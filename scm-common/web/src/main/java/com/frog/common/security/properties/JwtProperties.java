@@ -60,6 +60,11 @@ public class JwtProperties {
      */
     private boolean deviceFingerprintEnabled = true;
 
+    /**
+     * 已验签 Token 缓存容量，同一 Token 在过期前重复请求时跳过签名校验
+     */
+    private long verifiedTokenCacheSize = 10000L;
+
     /**
      * Token自动续期阈值（毫秒）
      * 当Token剩余时间小于此值时，自动续期
@@ -98,6 +103,27 @@ public class JwtProperties {
      */
     private Integer blacklistCleanupInterval = 24;
 
+    /**
+     * 黑名单布隆过滤器预计容量（有效期内被撤销的 Token 数）
+     */
+    private long blacklistBloomExpectedInsertions = 100000L;
+
+    /**
+     * 黑名单布隆过滤器期望误判率
+     */
+    private double blacklistBloomFpp = 0.001;
+
+    /**
+     * 黑名单版本检查间隔（毫秒），用于发现丢失的撤销消息
+     */
+    private long blacklistSyncInterval = 5000L;
+
+    /**
+     * 黑名单布隆过滤器重建间隔（毫秒），清除已过期的 jti
+     * 默认: 30分钟
+     */
+    private long blacklistRebuildInterval = 1800000L;
+
     public enum SessionPolicy {
         ALLOW_ALL,
         REPLACE_OLD,
@@ -9,6 +9,7 @@ import com.frog.common.security.util.FilterBypassHelper;
 import com.frog.common.security.util.HttpServletRequestUtils;
 import com.frog.common.security.util.JwtUtils;
 import com.frog.common.security.util.SecurityErrorResponseWriter;
+import com.frog.common.security.util.VerifiedToken;
 import com.frog.common.web.domain.SecurityUser;
 import com.frog.common.web.util.SecurityUtils;
 import jakarta.servlet.FilterChain;
@@ -101,8 +102,7 @@ public class StepUpFilter extends OncePerRequestFilter {
         }
 
         if (requirement != StepUpRequirement.NONE) {
-            String token = requestUtils.getTokenFromRequest(request);
-            java.util.Set<String> amr = token != null ? jwtUtils.getAmrFromToken(token) : Collections.emptySet();
+            java.util.Set<String> amr = resolveAmr(request);
             if ((requirement == StepUpRequirement.MFA && amr.contains("mfa"))
                     || (requirement == StepUpRequirement.WEBAUTHN && amr.contains("webauthn"))) {
                 filterChain.doFilter(request, response);
@@ -139,6 +139,17 @@ public class StepUpFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    /**
+     * 优先使用 JwtAuthenticationFilter 放入请求的验证结果，避免再次解析 Token
+     */
+    private java.util.Set<String> resolveAmr(HttpServletRequest request) {
+        if (request.getAttribute(VerifiedToken.REQUEST_ATTRIBUTE) instanceof VerifiedToken verified) {
+            return verified.amr();
+        }
+        String token = requestUtils.getTokenFromRequest(request);
+        return token != null ? jwtUtils.getAmrFromToken(token) : Collections.emptySet();
+    }
+
     private boolean shouldBypass(String uri, SecurityUser user) {
         return FilterBypassHelper.shouldBypass(uri, user,
                 properties.getBypassPaths(),
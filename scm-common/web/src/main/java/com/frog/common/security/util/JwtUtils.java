@@ -1,20 +1,29 @@
 package com.frog.common.security.util;
 
 import com.frog.common.exception.UnauthorizedException;
+import com.frog.common.security.blacklist.TokenBlacklist;
 import com.frog.common.security.properties.JwtProperties;
 import com.frog.common.util.UUIDv7Util;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
 
 /**
  * Jwt 工具类
@@ -29,8 +38,28 @@ import java.util.*;
 public class JwtUtils {
     private final JwtProperties jwtProperties;
     private final RedisTemplate<String, Object> redisTemplate;
+    private final TokenBlacklist tokenBlacklist;
 
     private SecretKey signingKey;
+    private JwtParser jwtParser;
+
+    /**
+     * 已验签 Token 缓存：key 为 Token 的 SHA-256 摘要，条目在 Token 过期时失效
+     */
+    private Cache<String, VerifiedToken> verifiedTokens;
+
+    /**
+     * 本节点已在 Redis 确认过指纹的 jti（value 为过期时间），之后只要黑名单过滤器判定未撤销即可放行
+     */
+    private Cache<String, Long> confirmedFingerprints;
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
 
     private static final String TOKEN_BLACKLIST_PREFIX = "jwt:blacklist:";
     private static final String USER_TOKENS_HASH = "jwt:user:tokens:";  // Hash key per user
@@ -50,6 +79,17 @@ public class JwtUtils {
                     "JWT secret must be at least 512 bits, current: " + keyBytes.length);
         }
         this.signingKey = Keys.hmacShaKeyFor(keyBytes);
+        this.jwtParser = Jwts.parser()
+                .verifyWith(signingKey)
+                .build();
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(jwtProperties.getVerifiedTokenCacheSize())
+                .expireAfter(new ExpireAt<String, VerifiedToken>(VerifiedToken::expiresAt))
+                .build();
+        this.confirmedFingerprints = Caffeine.newBuilder()
+                .maximumSize(jwtProperties.getVerifiedTokenCacheSize())
+                .expireAfter(new ExpireAt<String, Long>(Long::longValue))
+                .build();
     }
 
     /**
@@ -123,34 +163,41 @@ public class JwtUtils {
      * 验证Token - 拆分为多个小方法
      */
     public boolean validateToken(String token, String currentIp, String currentDeviceId) {
+        return validateAccessToken(token, currentIp, currentDeviceId) != null;
+    }
+
+    /**
+     * 验证访问令牌，通过时返回已验签的 Token，供调用方读取用户信息而无需再次解析
+     *
+     * @return 验证通过返回 VerifiedToken，否则返回 null
+     */
+    public VerifiedToken validateAccessToken(String token, String currentIp, String currentDeviceId) {
         try {
-            // 1. 解析Token
-            Claims claims = parseToken(token);
+            // 1. 解析Token（验签结果按摘要缓存）
+            VerifiedToken verified = verify(token);
 
             // 2. 基础验证
-            if (!validateBasicClaims(claims)) {
-                return false;
+            if (!validateBasicClaims(verified)) {
+                return null;
             }
 
-            // 3. 黑名单检查
-            if (isTokenBlacklisted(getJti(claims))) {
-                log.warn("Token is blacklisted");
-                return false;
+            // 3. 黑名单与指纹检查（本地过滤器判定未撤销时不访问 Redis）
+            if (!isTokenActive(verified)) {
+                return null;
             }
 
             // 4. 设备验证
-            if (!validateDevice(claims, currentDeviceId)) {
-                return false;
+            if (!validateDevice(verified, currentDeviceId)) {
+                return null;
             }
 
             // 5. IP验证（可配置）
             if (jwtProperties.isStrictIpCheck() &&
-                    !validateIpAddress(claims, currentIp)) {
-                return false;
+                    !validateIpAddress(verified, currentIp)) {
+                return null;
             }
 
-            // 6. 指纹验证
-            return validateFingerprint(claims);
+            return verified;
         } catch (ExpiredJwtException e) {
             log.debug("Token expired: {}", e.getMessage());
         } catch (UnsupportedJwtException e) {
@@ -160,7 +207,25 @@ public class JwtUtils {
         } catch (Exception e) {
             log.error("Token validation failed: {}", e.getMessage());
         }
-        return false;
+        return null;
+    }
+
+    /**
+     * 验签并解析 Token
+     * <p>
+     * 同一个 Token 只在首次出现时做 HMAC 校验和 JSON 解析，之后直到过期都从缓存读取。
+     *
+     * @throws JwtException Token 无效或已过期
+     */
+    public VerifiedToken verify(String token) {
+        String digest = digest(token);
+        VerifiedToken cached = verifiedTokens.getIfPresent(digest);
+        if (cached != null && !cached.isExpired(System.currentTimeMillis())) {
+            return cached;
+        }
+        VerifiedToken verified = VerifiedToken.from(parseToken(token));
+        verifiedTokens.put(digest, verified);
+        return verified;
     }
 
     /**
@@ -171,10 +236,8 @@ public class JwtUtils {
      */
     public boolean isRefreshTokenInvalid(String token) {
         try {
-            Claims claims = parseToken(token);
-            String tokenType = (String) claims.get("tokenType");
-            Date expiration = claims.getExpiration();
-            return !"refresh".equals(tokenType) || !expiration.after(new Date());
+            VerifiedToken verified = verify(token);
+            return !"refresh".equals(verified.tokenType()) || verified.isExpired(System.currentTimeMillis());
         } catch (Exception e) {
             return true;
         }
@@ -221,6 +284,7 @@ public class JwtUtils {
     public void revokeToken(String token, String reason) {
         try {
             Claims claims = parseToken(token);
+            verifiedTokens.invalidate(digest(token));
             String jti = getJti(claims);
             Date expiration = claims.getExpiration();
             UUID userId = UUID.fromString(claims.getSubject());
@@ -230,6 +294,8 @@ public class JwtUtils {
             if (ttl > 0) {
                 // 加入黑名单
                 addToBlacklist(jti, userId, reason, ttl);
+                tokenBlacklist.revoke(jti, expiration.getTime());
+                confirmedFingerprints.invalidate(jti);
 
                 // 删除 Token缓存
                 deleteTokenCache(userId, deviceId);
@@ -283,57 +349,42 @@ public class JwtUtils {
     /**
      * 从 Token中提取角色
      */
-    @SuppressWarnings("unchecked")
     public Set<String> getRolesFromToken(String token) {
-        Claims claims = parseToken(token);
-        if (claims == null) return Collections.emptySet();
-        List<String> roleList = (List<String>) claims.get("roles");
-        return roleList != null ? new HashSet<>(roleList) : Collections.emptySet();
+        return verify(token).roles();
     }
 
     /**
      * 从 Token中提取权限
      */
-    @SuppressWarnings("unchecked")
     public Set<String> getPermissionsFromToken(String token) {
-        Claims claims = parseToken(token);
-        if (claims == null) return Collections.emptySet();
-        List<String> permList = (List<String>) claims.get("permissions");
-        return permList != null ? new HashSet<>(permList) : Collections.emptySet();
+        return verify(token).permissions();
     }
 
 
     public UUID getUserIdFromToken(String token) {
-        Claims claims = parseToken(token);
-        Object userId = claims.get("userId");
-        return userId instanceof UUID ? (UUID) userId :
-                UUID.fromString(userId.toString());
+        return verify(token).userId();
     }
 
     public String getUsernameFromToken(String token) {
-        Claims claims = parseToken(token);
-        return (String) claims.get("username");
+        return verify(token).username();
     }
 
     /**
      * 从Token中提取 AMR（认证方法引用）
      */
-    @SuppressWarnings("unchecked")
-    public java.util.Set<String> getAmrFromToken(String token) {
-        Claims claims = parseToken(token);
-        if (claims == null) return java.util.Collections.emptySet();
-        java.util.List<String> amr = (java.util.List<String>) claims.get("amr");
-        return amr != null ? new java.util.HashSet<>(amr) : java.util.Collections.emptySet();
+    public Set<String> getAmrFromToken(String token) {
+        return verify(token).amr();
     }
 
     // ==================== 私有方法 ====================
 
     private Claims parseToken(String token) {
-        return Jwts.parser()
-                .verifyWith(signingKey)
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        return jwtParser.parseSignedClaims(token).getPayload();
+    }
+
+    private static String digest(String token) {
+        byte[] hash = SHA256.get().digest(token.getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().withoutPadding().encodeToString(hash);
     }
 
     private String createToken(Map<String, Object> claims, String subject, long expiration) {
@@ -366,16 +417,13 @@ public class JwtUtils {
         return claims;
     }
 
-    private boolean validateBasicClaims(Claims claims) {
-        String tokenType = (String) claims.get("tokenType");
-        Date expiration = claims.getExpiration();
-
-        if (!"access".equals(tokenType)) {
-            log.warn("Invalid token type: {}", tokenType);
+    private boolean validateBasicClaims(VerifiedToken token) {
+        if (!token.isAccessToken()) {
+            log.warn("Invalid token type: {}", token.tokenType());
             return false;
         }
 
-        if (expiration.before(new Date())) {
+        if (token.isExpired(System.currentTimeMillis())) {
             log.debug("Token expired");
             return false;
         }
@@ -383,8 +431,8 @@ public class JwtUtils {
         return true;
     }
 
-    private boolean validateDevice(Claims claims, String currentDeviceId) {
-        String tokenDeviceId = (String) claims.get("deviceId");
+    private boolean validateDevice(VerifiedToken token, String currentDeviceId) {
+        String tokenDeviceId = token.deviceId();
         if (tokenDeviceId != null && !tokenDeviceId.equals(currentDeviceId)) {
             log.warn("Device mismatch: expected={}, actual={}",
                     tokenDeviceId, currentDeviceId);
@@ -393,8 +441,8 @@ public class JwtUtils {
         return true;
     }
 
-    private boolean validateIpAddress(Claims claims, String currentIp) {
-        String tokenIp = (String) claims.get("ipAddress");
+    private boolean validateIpAddress(VerifiedToken token, String currentIp) {
+        String tokenIp = token.ipAddress();
         if (tokenIp != null && !tokenIp.equals(currentIp)) {
             log.warn("IP changed: {} -> {}", tokenIp, currentIp);
             return false;
@@ -402,10 +450,41 @@ public class JwtUtils {
         return true;
     }
 
-    private boolean validateFingerprint(Claims claims) {
-        String jti = getJti(claims);
-        String fingerprintKey = TOKEN_FINGERPRINT_PREFIX + jti;
-        return redisTemplate.hasKey(fingerprintKey);
+    /**
+     * 黑名单与指纹检查
+     * <p>
+     * 本地黑名单过滤器判定未撤销且本节点已确认过指纹时直接放行；
+     * 否则用一次管道调用同时确认黑名单和指纹。
+     */
+    private boolean isTokenActive(VerifiedToken token) {
+        String jti = token.jti();
+        boolean suspected = tokenBlacklist.mightBeRevoked(jti);
+        if (!suspected && confirmedFingerprints.getIfPresent(jti) != null) {
+            tokenBlacklist.recordLocalPass();
+            return true;
+        }
+
+        byte[] blacklistKey = (TOKEN_BLACKLIST_PREFIX + jti).getBytes(StandardCharsets.UTF_8);
+        byte[] fingerprintKey = (TOKEN_FINGERPRINT_PREFIX + jti).getBytes(StandardCharsets.UTF_8);
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.keyCommands().exists(blacklistKey);
+            connection.keyCommands().exists(fingerprintKey);
+            return null;
+        });
+        boolean blacklisted = Boolean.TRUE.equals(results.get(0));
+        boolean fingerprint = Boolean.TRUE.equals(results.get(1));
+        tokenBlacklist.recordRedisCheck(jti, suspected, blacklisted);
+
+        if (blacklisted) {
+            log.warn("Token is blacklisted");
+            return false;
+        }
+        if (!fingerprint) {
+            log.warn("Token fingerprint missing: jti={}", jti);
+            return false;
+        }
+        confirmedFingerprints.put(jti, token.expiresAt());
+        return true;
     }
 
     /**
@@ -461,11 +540,6 @@ public class JwtUtils {
         log.debug("Deleted fingerprint for jti {}", jti);
     }
 
-    private boolean isTokenBlacklisted(String jti) {
-        String blacklistKey = TOKEN_BLACKLIST_PREFIX + jti;
-        return Boolean.TRUE.equals(redisTemplate.hasKey(blacklistKey));
-    }
-
     /**
      * Revokes access tokens for a specific user device.
      * Uses Hash lookup (HGET) instead of key lookup.
@@ -480,11 +554,31 @@ public class JwtUtils {
     }
 
     public String getDeviceIdFromToken(String token) {
-        Claims claims = parseToken(token);
-        return (String) claims.get("deviceId");
+        return verify(token).deviceId();
     }
 
     private String getJti(Claims claims) {
         return (String) claims.get("jti");
     }
+
+    /**
+     * 缓存条目在 Token 过期时失效
+     */
+    private record ExpireAt<K, V>(ToLongFunction<V> expiresAt) implements Expiry<K, V> {
+        @Override
+        public long expireAfterCreate(K key, V value, long currentTime) {
+            return TimeUnit.MILLISECONDS.toNanos(
+                    Math.max(0, expiresAt.applyAsLong(value) - System.currentTimeMillis()));
+        }
+
+        @Override
+        public long expireAfterUpdate(K key, V value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(K key, V value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
 }
@@ -0,0 +1,78 @@
+package com.frog.common.security.util;
+
+import io.jsonwebtoken.Claims;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * 已验签的 Token
+ * <p>
+ * 签名校验和 Claims 解析只做一次，过滤器链中后续需要的用户信息都从这里读取，不再重复解析 Token。
+ * 仅表示签名有效，黑名单、设备、指纹等动态校验仍由 {@link JwtUtils#validateAccessToken} 每次执行。
+ *
+ * @param jti         Token ID
+ * @param userId      用户ID
+ * @param username    用户名
+ * @param tokenType   access / refresh
+ * @param deviceId    签发设备
+ * @param ipAddress   签发 IP
+ * @param roles       角色
+ * @param permissions 权限
+ * @param amr         认证方式
+ * @param expiresAt   过期时间（毫秒）
+ * @author Deng
+ * @since 2025-10-11
+ */
+public record VerifiedToken(
+        String jti,
+        UUID userId,
+        String username,
+        String tokenType,
+        String deviceId,
+        String ipAddress,
+        Set<String> roles,
+        Set<String> permissions,
+        Set<String> amr,
+        long expiresAt
+) {
+    /**
+     * 请求属性名：JwtAuthenticationFilter 验证通过后放入，后续过滤器直接读取
+     */
+    public static final String REQUEST_ATTRIBUTE = VerifiedToken.class.getName();
+
+    static VerifiedToken from(Claims claims) {
+        Object userId = claims.get("userId");
+        Date expiration = claims.getExpiration();
+        return new VerifiedToken(
+                (String) claims.get("jti"),
+                userId == null ? null : userId instanceof UUID uuid ? uuid : UUID.fromString(userId.toString()),
+                (String) claims.get("username"),
+                (String) claims.get("tokenType"),
+                (String) claims.get("deviceId"),
+                (String) claims.get("ipAddress"),
+                toSet(claims.get("roles")),
+                toSet(claims.get("permissions")),
+                toSet(claims.get("amr")),
+                expiration != null ? expiration.getTime() : Long.MAX_VALUE
+        );
+    }
+
+    public boolean isAccessToken() {
+        return "access".equals(tokenType);
+    }
+
+    public boolean isExpired(long now) {
+        return now >= expiresAt;
+    }
+
+    private static Set<String> toSet(Object value) {
+        if (!(value instanceof Collection<?> collection) || collection.isEmpty()) {
+            return Set.of();
+        }
+        return collection.stream().map(String::valueOf).collect(Collectors.toUnmodifiableSet());
+    }
+}
@@ -0,0 +1,54 @@
+package com.frog.common.log.aspect;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * SysAuditLogAspect Test Suite
+ *
+ * <p>Request params are captured before the audited method runs and serialized later on
+ * the drainer thread, so request-bound arguments must be dropped from the snapshot.
+ */
+@DisplayName("SysAuditLogAspect Tests")
+class SysAuditLogAspectTest {
+
+    @Test
+    @DisplayName("Should copy the argument array before the method runs")
+    void shouldSnapshotArgs() {
+        Map<String, String> body = Map.of("name", "a");
+        Object[] args = {1L, body};
+
+        Object[] snapshot = SysAuditLogAspect.snapshotArgs(args);
+        args[0] = 2L;
+
+        assertThat(snapshot).isNotSameAs(args).containsExactly(1L, body);
+    }
+
+    @Test
+    @DisplayName("Should drop servlet request, response and uploaded files")
+    void shouldExcludeRequestBoundArgs() {
+        MultipartFile file = new MockMultipartFile("file", new byte[]{1});
+        Object[] args = {
+            new MockHttpServletRequest(), 7L, new MockHttpServletResponse(), file,
+            new MultipartFile[]{file}, List.of(file), List.of("kept")
+        };
+
+        assertThat(SysAuditLogAspect.snapshotArgs(args)).containsExactly(7L, List.of("kept"));
+    }
+
+    @Test
+    @DisplayName("Should pass through empty and null argument arrays")
+    void shouldHandleEmptyArgs() {
+        assertThat(SysAuditLogAspect.snapshotArgs(null)).isNull();
+        assertThat(SysAuditLogAspect.snapshotArgs(new Object[0])).isEmpty();
+    }
+}
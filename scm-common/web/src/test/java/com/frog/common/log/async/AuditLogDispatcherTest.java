@@ -0,0 +1,227 @@
+package com.frog.common.log.async;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.frog.common.log.entity.SysAuditLog;
+import com.frog.common.log.mapper.SysAuditLogMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * AuditLogDispatcher Test Suite
+ *
+ * <p>Covers size- and time-triggered batch flushes, off-thread serialization,
+ * the drop/sample/block overflow policies and draining on shutdown.
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("AuditLogDispatcher Tests")
+class AuditLogDispatcherTest {
+
+    @Mock
+    private SysAuditLogMapper sysAuditLogMapper;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<List<SysAuditLog>> batches = new CopyOnWriteArrayList<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch entered = new CountDownLatch(1);
+    private AuditLogProperties properties;
+    private AuditLogDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        properties = new AuditLogProperties();
+        properties.setFlushInterval(TimeUnit.SECONDS.toMillis(10));
+        lenient().doAnswer(invocation -> {
+            // 批次列表在写入后会被复用，这里保存副本
+            batches.add(List.copyOf(invocation.getArgument(0)));
+            return batches.get(batches.size() - 1).size();
+        }).when(sysAuditLogMapper).insertBatch(anyList());
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        release.countDown();
+        if (dispatcher != null) {
+            dispatcher.destroy();
+        }
+    }
+
+    private AuditLogDispatcher start() {
+        dispatcher = new AuditLogDispatcher(sysAuditLogMapper, new ObjectMapper(), properties, meterRegistry);
+        return dispatcher;
+    }
+
+    private void blockWrites() {
+        doAnswer(invocation -> {
+            entered.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return 1;
+        }).when(sysAuditLogMapper).insertBatch(anyList());
+    }
+
+    private static AuditEvent event(String type, int riskLevel) {
+        return AuditEvent.of(SysAuditLog.builder().operationType(type).riskLevel(riskLevel).build());
+    }
+
+    private double dropped(String reason) {
+        return meterRegistry.counter("audit.log.dropped", "reason", reason).count();
+    }
+
+    @Test
+    @DisplayName("Should flush a batch once batchSize events are queued")
+    void shouldFlushBySize() {
+        properties.setBatchSize(3);
+        start();
+
+        for (int i = 0; i < 6; i++) {
+            assertThat(dispatcher.submit(event("QUERY", 1))).isTrue();
+        }
+
+        verify(sysAuditLogMapper, timeout(2000).times(2)).insertBatch(anyList());
+        assertThat(batches).allSatisfy(batch -> assertThat(batch).hasSize(3));
+        assertThat(meterRegistry.counter("audit.log.written").count()).isEqualTo(6);
+    }
+
+    @Test
+    @DisplayName("Should flush a partial batch after flushInterval")
+    void shouldFlushByTime() {
+        properties.setFlushInterval(50);
+        start();
+
+        dispatcher.submit(event("LOGIN", 1));
+
+        verify(sysAuditLogMapper, timeout(2000)).insertBatch(anyList());
+        assertThat(batches).singleElement().satisfies(batch -> assertThat(batch).hasSize(1));
+    }
+
+    @Test
+    @DisplayName("Should serialize params and result on the drainer thread")
+    void shouldSerializeOffThread() {
+        properties.setFlushInterval(20);
+        start();
+
+        SysAuditLog auditLog = SysAuditLog.builder().operationType("UPDATE").build();
+        dispatcher.submit(AuditEvent.of(auditLog, new Object[]{Map.of("orderNo", "SO-1")}, Map.of("ok", true)));
+
+        verify(sysAuditLogMapper, timeout(2000)).insertBatch(anyList());
+        SysAuditLog written = batches.get(0).get(0);
+        assertThat(written.getRequestParams()).contains("SO-1");
+        assertThat(written.getResponseData()).contains("ok");
+    }
+
+    @Test
+    @DisplayName("Should retry rows one by one when the batch insert fails")
+    void shouldRetryRowsIndividually() {
+        properties.setBatchSize(2);
+        doThrow(new IllegalStateException("bad row"))
+                .doReturn(1)
+                .doThrow(new IllegalStateException("bad row"))
+                .when(sysAuditLogMapper).insertBatch(anyList());
+        start();
+
+        dispatcher.submit(event("ADD", 1));
+        dispatcher.submit(event("ADD", 1));
+
+        verify(sysAuditLogMapper, timeout(2000).times(3)).insertBatch(anyList());
+        assertThat(meterRegistry.counter("audit.log.written").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("audit.log.write_failed").count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should drop events when full under DROP policy")
+    void shouldDropWhenFull() throws InterruptedException {
+        properties.setCapacity(2);
+        properties.setBatchSize(1);
+        properties.setOverflowPolicy(AuditLogProperties.OverflowPolicy.DROP);
+        blockWrites();
+        start();
+
+        dispatcher.submit(event("QUERY", 4));
+        assertThat(entered.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(dispatcher.submit(event("QUERY", 4))).isTrue();
+        assertThat(dispatcher.submit(event("QUERY", 4))).isTrue();
+
+        assertThat(dispatcher.submit(event("QUERY", 4))).isFalse();
+        assertThat(dropped("full")).isEqualTo(1);
+        assertThat(meterRegistry.get("audit.log.queue.depth").gauge().value()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should sample low-risk events above the high-water mark")
+    void shouldSampleAboveThreshold() throws InterruptedException {
+        properties.setCapacity(8);
+        properties.setBatchSize(1);
+        properties.setSampleThreshold(0.5);
+        properties.setSampleRate(2);
+        blockWrites();
+        start();
+
+        dispatcher.submit(event("QUERY", 1));
+        assertThat(entered.await(2, TimeUnit.SECONDS)).isTrue();
+        for (int i = 0; i < 4; i++) {
+            assertThat(dispatcher.submit(event("QUERY", 1))).isTrue();
+        }
+
+        int accepted = 0;
+        for (int i = 0; i < 4; i++) {
+            if (dispatcher.submit(event("QUERY", 1))) {
+                accepted++;
+            }
+        }
+        assertThat(accepted).isEqualTo(2);
+        assertThat(dropped("sampled")).isEqualTo(2);
+        // 高风险事件不参与采样
+        assertThat(dispatcher.submit(event("PERMISSION_DENIED", 3))).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should wait for space and then drop under BLOCK policy")
+    void shouldBlockThenDrop() throws InterruptedException {
+        properties.setCapacity(2);
+        properties.setBatchSize(1);
+        properties.setOverflowPolicy(AuditLogProperties.OverflowPolicy.BLOCK);
+        properties.setBlockTimeout(30);
+        blockWrites();
+        start();
+
+        dispatcher.submit(event("QUERY", 1));
+        assertThat(entered.await(2, TimeUnit.SECONDS)).isTrue();
+        dispatcher.submit(event("QUERY", 1));
+        dispatcher.submit(event("QUERY", 1));
+
+        long start = System.nanoTime();
+        assertThat(dispatcher.submit(event("QUERY", 1))).isFalse();
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(30));
+        assertThat(meterRegistry.counter("audit.log.blocked").count()).isEqualTo(1);
+        assertThat(dropped("full")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should write queued events on shutdown")
+    void shouldDrainOnDestroy() throws InterruptedException {
+        start();
+        for (int i = 0; i < 5; i++) {
+            dispatcher.submit(event("EXPORT", 2));
+        }
+
+        dispatcher.destroy();
+        dispatcher = null;
+
+        assertThat(batches.stream().mapToInt(List::size).sum()).isEqualTo(5);
+    }
+}
@@ -0,0 +1,85 @@
+package com.frog.common.log.async;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * AuditLogRingBuffer Test Suite
+ *
+ * <p>Validates FIFO order, rejection when full, slot reuse after wrap-around,
+ * and that concurrent producers lose or duplicate nothing.
+ */
+@DisplayName("AuditLogRingBuffer Tests")
+class AuditLogRingBufferTest {
+
+    @Test
+    @DisplayName("Should round capacity up to a power of two")
+    void shouldRoundCapacity() {
+        assertThat(new AuditLogRingBuffer<>(1000).capacity()).isEqualTo(1024);
+        assertThat(new AuditLogRingBuffer<>(1024).capacity()).isEqualTo(1024);
+        assertThat(new AuditLogRingBuffer<>(1).capacity()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should reject offers when full and accept again after polling")
+    void shouldRejectWhenFull() {
+        AuditLogRingBuffer<Integer> buffer = new AuditLogRingBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertThat(buffer.offer(i)).isTrue();
+        }
+        assertThat(buffer.offer(4)).isFalse();
+        assertThat(buffer.size()).isEqualTo(4);
+
+        assertThat(buffer.poll()).isZero();
+        assertThat(buffer.offer(4)).isTrue();
+        for (int i = 1; i <= 4; i++) {
+            assertThat(buffer.poll()).isEqualTo(i);
+        }
+        assertThat(buffer.poll()).isNull();
+        assertThat(buffer.isEmpty()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should deliver every element exactly once with concurrent producers")
+    void shouldNotLoseElementsConcurrently() throws InterruptedException {
+        AuditLogRingBuffer<Integer> buffer = new AuditLogRingBuffer<>(256);
+        int producers = 4;
+        int perProducer = 50_000;
+        CountDownLatch done = new CountDownLatch(producers);
+        ExecutorService pool = Executors.newFixedThreadPool(producers);
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            pool.execute(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    while (!buffer.offer(base + i)) {
+                        Thread.onSpinWait();
+                    }
+                }
+                done.countDown();
+            });
+        }
+
+        Set<Integer> received = new HashSet<>();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (received.size() < producers * perProducer && System.nanoTime() < deadline) {
+            Integer value = buffer.poll();
+            if (value != null) {
+                assertThat(received.add(value)).isTrue();
+            }
+        }
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        pool.shutdown();
+
+        assertThat(received).hasSize(producers * perProducer);
+        assertThat(buffer.poll()).isNull();
+    }
+}
@@ -0,0 +1,54 @@
+package com.frog.common.security.blacklist;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * JtiBloomFilter Test Suite
+ *
+ * <p>Revoked jti must never be reported as absent (no false negatives),
+ * and the false-positive rate must stay close to the configured target.
+ */
+@DisplayName("JtiBloomFilter Tests")
+class JtiBloomFilterTest {
+
+    @Test
+    @DisplayName("Should never miss a revoked jti")
+    void shouldHaveNoFalseNegatives() {
+        JtiBloomFilter filter = new JtiBloomFilter(10_000, 0.001);
+        List<String> revoked = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            String jti = UUID.randomUUID().toString();
+            revoked.add(jti);
+            filter.put(jti);
+        }
+
+        assertThat(revoked).allMatch(filter::mightContain);
+        assertThat(filter.size()).isEqualTo(10_000);
+    }
+
+    @Test
+    @DisplayName("Should keep false-positive rate near the configured target")
+    void shouldKeepFalsePositiveRateLow() {
+        JtiBloomFilter filter = new JtiBloomFilter(10_000, 0.001);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put(UUID.randomUUID().toString());
+        }
+
+        int falsePositives = 0;
+        int probes = 100_000;
+        for (int i = 0; i < probes; i++) {
+            if (filter.mightContain(UUID.randomUUID().toString())) {
+                falsePositives++;
+            }
+        }
+
+        assertThat((double) falsePositives / probes).isLessThan(0.005);
+    }
+}
@@ -11,6 +11,7 @@ import com.frog.common.security.stepup.StepUpRequirement;
 import com.frog.common.security.stepup.StepUpProperties;
 import com.frog.common.security.util.HttpServletRequestUtils;
 import com.frog.common.security.util.JwtUtils;
+import com.frog.common.security.util.VerifiedToken;
 import com.frog.common.security.properties.JwtProperties;
 import com.frog.common.web.domain.SecurityUser;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
@@ -33,10 +34,13 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class SecurityFiltersTest {
@@ -227,12 +231,10 @@ class SecurityFiltersTest {
         HttpServletRequestUtils requestUtils = new HttpServletRequestUtils(jwtProperties);
         SecurityMetrics metrics = new SecurityMetrics(new SimpleMeterRegistry());
 
-        when(jwtUtils.validateToken(anyString(), anyString(), anyString())).thenReturn(true);
         UUID uid = UUID.randomUUID();
-        when(jwtUtils.getUserIdFromToken(anyString())).thenReturn(uid);
-        when(jwtUtils.getUsernameFromToken(anyString())).thenReturn("bob");
-        when(jwtUtils.getPermissionsFromToken(anyString())).thenReturn(Set.of("perm:a"));
-        when(jwtUtils.getRolesFromToken(anyString())).thenReturn(Set.of("role:b"));
+        VerifiedToken verified = new VerifiedToken("jti-1", uid, "bob", "access", null, null,
+                Set.of("role:b"), Set.of("perm:a"), Set.of(), Long.MAX_VALUE);
+        when(jwtUtils.validateAccessToken(anyString(), anyString(), anyString())).thenReturn(verified);
 
         JwtAuthenticationFilter filter = new JwtAuthenticationFilter(jwtUtils, requestUtils, metrics);
 
@@ -245,6 +247,8 @@ class SecurityFiltersTest {
         filter.doFilter(request, response, chain);
 
         assertTrue(proceeded.get(), "Valid token should proceed");
+        assertSame(verified, request.getAttribute(VerifiedToken.REQUEST_ATTRIBUTE));
+        verify(jwtUtils, never()).getUserIdFromToken(anyString());
     }
 
     @Test
@@ -254,7 +258,7 @@ class SecurityFiltersTest {
         HttpServletRequestUtils requestUtils = new HttpServletRequestUtils(jwtProperties);
         SecurityMetrics metrics = new SecurityMetrics(new SimpleMeterRegistry());
 
-        when(jwtUtils.validateToken(anyString(), anyString(), anyString())).thenReturn(false);
+        when(jwtUtils.validateAccessToken(anyString(), anyString(), anyString())).thenReturn(null);
 
         JwtAuthenticationFilter filter = new JwtAuthenticationFilter(jwtUtils, requestUtils, metrics);
 
@@ -279,7 +283,7 @@ class SecurityFiltersTest {
         HttpServletRequestUtils requestUtils = new HttpServletRequestUtils(jwtProperties);
         SecurityMetrics metrics = new SecurityMetrics(new SimpleMeterRegistry());
 
-        when(jwtUtils.validateToken(anyString(), anyString(), anyString())).thenReturn(false);
+        when(jwtUtils.validateAccessToken(anyString(), anyString(), anyString())).thenReturn(null);
 
         JwtAuthenticationFilter filter = new JwtAuthenticationFilter(jwtUtils, requestUtils, metrics);
 
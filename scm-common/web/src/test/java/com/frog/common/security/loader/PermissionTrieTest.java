@@ -0,0 +1,117 @@
+package com.frog.common.security.loader;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * PermissionTrie Test Suite
+ *
+ * <p>Covers exact, path-parameter, single and deep wildcard rules, their
+ * precedence with backtracking, and the fallback to method-agnostic rules.
+ */
+@DisplayName("PermissionTrie Tests")
+class PermissionTrieTest {
+
+    private static PermissionTrie trie(Map<String, Set<String>> mappings) {
+        return PermissionTrie.compile(mappings);
+    }
+
+    @Test
+    @DisplayName("Should match exact paths and ignore redundant slashes")
+    void shouldMatchExactPath() {
+        PermissionTrie trie = trie(Map.of("GET:/api/users", Set.of("user:list")));
+
+        assertThat(trie.match("GET", "/api/users")).containsExactly("user:list");
+        assertThat(trie.match("GET", "/api/users/")).containsExactly("user:list");
+        assertThat(trie.match("GET", "/api//users")).containsExactly("user:list");
+        assertThat(trie.match("GET", "/api/user")).isEmpty();
+        assertThat(trie.match("GET", "/api/users/1")).isEmpty();
+        assertThat(trie.match("POST", "/api/users")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should treat path parameters and * as one segment")
+    void shouldMatchSingleSegmentWildcards() {
+        PermissionTrie trie = trie(Map.of(
+                "GET:/api/users/{id}", Set.of("user:query"),
+                "DELETE:/api/orders/*", Set.of("order:delete")));
+
+        assertThat(trie.match("GET", "/api/users/42")).containsExactly("user:query");
+        assertThat(trie.match("GET", "/api/users/42/roles")).isEmpty();
+        assertThat(trie.match("DELETE", "/api/orders/9")).containsExactly("order:delete");
+        assertThat(trie.match("DELETE", "/api/orders")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should match one or more segments with **")
+    void shouldMatchDeepWildcard() {
+        PermissionTrie trie = trie(Map.of("*:/api/admin/**", Set.of("admin")));
+
+        assertThat(trie.match("GET", "/api/admin/users")).containsExactly("admin");
+        assertThat(trie.match("PUT", "/api/admin/users/1/roles")).containsExactly("admin");
+        assertThat(trie.match("GET", "/api/admin")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should prefer exact over wildcard over deep wildcard and backtrack")
+    void shouldApplyPrecedence() {
+        Map<String, Set<String>> mappings = new HashMap<>();
+        mappings.put("GET:/api/users/me", Set.of("user:self"));
+        mappings.put("GET:/api/users/{id}", Set.of("user:query"));
+        mappings.put("GET:/api/users/{id}/roles", Set.of("user:roles"));
+        mappings.put("GET:/api/users/me/avatar", Set.of("user:avatar"));
+        mappings.put("GET:/api/**", Set.of("api"));
+        PermissionTrie trie = trie(mappings);
+
+        assertThat(trie.match("GET", "/api/users/me")).containsExactly("user:self");
+        assertThat(trie.match("GET", "/api/users/7")).containsExactly("user:query");
+        // 字面量分支 me 下没有 roles，回溯到 {id}
+        assertThat(trie.match("GET", "/api/users/me/roles")).containsExactly("user:roles");
+        assertThat(trie.match("GET", "/api/users/me/avatar")).containsExactly("user:avatar");
+        assertThat(trie.match("GET", "/api/users/7/avatar")).containsExactly("api");
+    }
+
+    @Test
+    @DisplayName("Should fall back to rules declared for all methods")
+    void shouldFallBackToAnyMethod() {
+        PermissionTrie trie = trie(Map.of(
+                "POST:/api/items", Set.of("item:create"),
+                "*:/api/items", Set.of("item:read")));
+
+        assertThat(trie.match("POST", "/api/items")).containsExactly("item:create");
+        assertThat(trie.match("GET", "/api/items")).containsExactly("item:read");
+        assertThat(trie.match(null, "/api/items")).containsExactly("item:read");
+    }
+
+    @Test
+    @DisplayName("Should merge rules that compile to the same node")
+    void shouldMergeEquivalentPatterns() {
+        PermissionTrie trie = trie(Map.of(
+                "GET:/api/users/{id}", Set.of("user:query"),
+                "GET:/api/users/{userId}", Set.of("user:detail")));
+
+        assertThat(trie.match("GET", "/api/users/1")).containsExactlyInAnyOrder("user:query", "user:detail");
+    }
+
+    @Test
+    @DisplayName("Should resolve many sibling literals")
+    void shouldResolveManySiblings() {
+        Map<String, Set<String>> mappings = new HashMap<>();
+        for (int i = 0; i < 500; i++) {
+            mappings.put("GET:/api/module" + i + "/list", Set.of("module" + i + ":list"));
+        }
+        PermissionTrie trie = trie(mappings);
+
+        for (int i = 0; i < 500; i++) {
+            assertThat(trie.match("GET", "/api/module" + i + "/list")).containsExactly("module" + i + ":list");
+        }
+        assertThat(trie.match("GET", "/api/module500/list")).isEmpty();
+        assertThat(PermissionTrie.compile(Map.of()).isEmpty()).isTrue();
+    }
+}
@@ -1,6 +1,7 @@
 package com.frog.common.security.util;
 
 import com.frog.common.exception.UnauthorizedException;
+import com.frog.common.security.blacklist.TokenBlacklist;
 import com.frog.common.security.properties.JwtProperties;
 import io.jsonwebtoken.Claims;
 import org.junit.jupiter.api.BeforeEach;
@@ -47,6 +48,9 @@ class JwtUtilsTest {
     @Mock
     private ValueOperations<String, Object> valueOperations;
 
+    @Mock
+    private TokenBlacklist tokenBlacklist;
+
     @InjectMocks
     private JwtUtils jwtUtils;
 
@@ -243,6 +247,43 @@ class JwtUtilsTest {
         assertThat(permissions).containsExactlyInAnyOrderElementsOf(testPermissions);
     }
 
+    @Test
+    @DisplayName("Should verify a token once and reuse the cached claims")
+    void testVerify_CachesVerifiedToken() {
+        when(jwtProperties.getVerifiedTokenCacheSize()).thenReturn(100L);
+        jwtUtils.init();
+        String token = jwtUtils.generateAccessToken(
+                testUserId, testUsername, testRoles, testPermissions,
+                testDeviceId, testIpAddress
+        );
+
+        VerifiedToken first = jwtUtils.verify(token);
+        VerifiedToken second = jwtUtils.verify(token);
+
+        assertThat(second).isSameAs(first);
+        assertThat(first.isAccessToken()).isTrue();
+        assertThat(first.userId()).isEqualTo(testUserId);
+        assertThat(first.username()).isEqualTo(testUsername);
+        assertThat(first.roles()).containsExactlyInAnyOrderElementsOf(testRoles);
+        assertThat(first.permissions()).containsExactlyInAnyOrderElementsOf(testPermissions);
+    }
+
+    @Test
+    @DisplayName("Should not cache tokens with an invalid signature")
+    void testVerify_TamperedSignatureNotCached() {
+        when(jwtProperties.getVerifiedTokenCacheSize()).thenReturn(100L);
+        jwtUtils.init();
+        String token = jwtUtils.generateAccessToken(
+                testUserId, testUsername, testRoles, testPermissions,
+                testDeviceId, testIpAddress
+        );
+        String[] parts = token.split("\\.");
+        String tamperedToken = parts[0] + "." + parts[1] + ".tampered_signature";
+
+        assertThatThrownBy(() -> jwtUtils.verify(tamperedToken)).isInstanceOf(Exception.class);
+        assertThatThrownBy(() -> jwtUtils.verify(tamperedToken)).isInstanceOf(Exception.class);
+    }
+
     @Test
     @DisplayName("Should throw exception when parsing invalid token")
     void testParseToken_InvalidToken() {
@@ -313,6 +354,9 @@ class JwtUtilsTest {
 
         // Verify fingerprint deletion
         verify(redisTemplate).delete(startsWith("jwt:fingerprint:"));
+
+        // Verify revocation is broadcast to the local blacklist filters
+        verify(tokenBlacklist).revoke(anyString(), anyLong());
     }
 
     @Test
@@ -0,0 +1,133 @@
+package com.frog.common.security.util;
+
+import com.frog.common.security.properties.JwtProperties;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JWT 验签吞吐基准
+ *
+ * <p>cacheSize=0 时每次都做 HMAC-SHA512 校验和 JSON 解析，对比开启已验签缓存后的吞吐；
+ * legacyFilterPath 模拟旧过滤器（validate + 4 个 getter，共 5 次解析），verifiedFilterPath 为一次解析后直接读取字段。
+ * Token 池大小模拟同时活跃的会话数。
+ *
+ * <p>运行: 编译测试代码后执行 main 方法（类名不以 Test 结尾，不随单元测试执行）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class JwtValidationBenchmark {
+    private static final String SECRET =
+            "benchmark-secret-benchmark-secret-benchmark-secret-benchmark-secret-0123456789";
+
+    @Param({"0", "10000"})
+    private long cacheSize;
+
+    @Param({"1000"})
+    private int activeTokens;
+
+    private JwtUtils jwtUtils;
+    private String[] tokens;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        JwtProperties properties = new JwtProperties();
+        properties.setSecret(SECRET);
+        properties.setVerifiedTokenCacheSize(cacheSize);
+        jwtUtils = new JwtUtils(properties, null, null);
+        jwtUtils.init();
+
+        List<String> permissions = new ArrayList<>();
+        for (int i = 0; i < 80; i++) {
+            permissions.add("inventory:stock:op" + i);
+        }
+        tokens = new String[activeTokens];
+        Date expiry = new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(2));
+        for (int i = 0; i < activeTokens; i++) {
+            UUID userId = UUID.randomUUID();
+            tokens[i] = Jwts.builder()
+                    .claim("userId", userId.toString())
+                    .claim("username", "user" + i)
+                    .claim("roles", List.of("ROLE_WAREHOUSE_MANAGER", "ROLE_INVENTORY_AUDITOR"))
+                    .claim("permissions", permissions)
+                    .claim("tokenType", "access")
+                    .claim("deviceId", "device-" + i)
+                    .claim("ipAddress", "10.0.0." + (i % 250))
+                    .claim("jti", UUID.randomUUID().toString())
+                    .subject(userId.toString())
+                    .issuedAt(new Date())
+                    .expiration(expiry)
+                    .signWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)), Jwts.SIG.HS512)
+                    .compact();
+        }
+    }
+
+    @Benchmark
+    public VerifiedToken verify(ThreadCursor cursor) {
+        return jwtUtils.verify(tokens[cursor.next(tokens.length)]);
+    }
+
+    @Benchmark
+    public void verifiedFilterPath(ThreadCursor cursor, Blackhole bh) {
+        VerifiedToken verified = jwtUtils.verify(tokens[cursor.next(tokens.length)]);
+        bh.consume(verified.userId());
+        bh.consume(verified.username());
+        bh.consume(verified.permissions());
+        bh.consume(verified.roles());
+    }
+
+    @Benchmark
+    public void legacyFilterPath(ThreadCursor cursor, Blackhole bh) {
+        String token = tokens[cursor.next(tokens.length)];
+        bh.consume(jwtUtils.verify(token));
+        bh.consume(jwtUtils.getUserIdFromToken(token));
+        bh.consume(jwtUtils.getUsernameFromToken(token));
+        bh.consume(jwtUtils.getPermissionsFromToken(token));
+        bh.consume(jwtUtils.getRolesFromToken(token));
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadCursor {
+        private int index;
+
+        int next(int length) {
+            int current = index;
+            index = current + 1 == length ? 0 : current + 1;
+            return current;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtValidationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
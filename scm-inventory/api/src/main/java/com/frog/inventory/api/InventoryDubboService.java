@@ -28,12 +28,29 @@ public interface InventoryDubboService {
     /**
      * 批量扣减库存
      *
+     * <p>所有明细在一次 Redis 往返内原子完成：全部扣减成功，或全部不扣减。
+     * <p>基于 requestId 幂等，重复请求直接返回成功。
+     *
      * @param deductRequest 批量扣减请求
+     * @throws InsufficientStockException 库存不足异常（任一明细扣减失败，消息包含各明细的失败原因）
+     * @throws IllegalArgumentException 参数非法异常
      */
     void batchDeductStock(BatchDeductStockRequest deductRequest);
 
     /**
-     * 释放库存（回滚扣减）
+     * 批量扣减库存，返回每个明细的扣减结果
+     *
+     * <p>与 {@link #batchDeductStock} 相同的原子、幂等语义，扣减失败时不抛异常，
+     * 由调用方按 {@link BatchDeductStockResult.ItemFailure} 的原因处理。
+     *
+     * @param deductRequest 批量扣减请求
+     * @return 扣减结果（失败时包含每个明细的失败原因）
+     * @throws IllegalArgumentException 参数非法异常
+     */
+    BatchDeductStockResult tryBatchDeductStock(BatchDeductStockRequest deductRequest);
+
+    /**
+     * 释放库存（回滚扣减，使用服务端默认仓库）
      *
      * @param skuId SKU ID
      * @param quantity 释放数量
@@ -42,13 +59,34 @@ public interface InventoryDubboService {
     void releaseStock(Long skuId, Integer quantity, String requestId);
 
     /**
-     * 查询可用库存
+     * 释放指定仓库的库存（回滚扣减）
+     *
+     * <p>回滚按明细指定了仓库的扣减时，需传入扣减时的仓库
+     *
+     * @param skuId SKU ID
+     * @param warehouseId 仓库 ID，为空时使用服务端默认仓库
+     * @param quantity 释放数量
+     * @param requestId 幂等性请求 ID
+     */
+    void releaseStock(Long skuId, String warehouseId, Integer quantity, String requestId);
+
+    /**
+     * 查询可用库存（服务端默认仓库）
      *
      * @param skuId SKU ID
      * @return 可用库存数量
      */
     Integer queryAvailableStock(Long skuId);
 
+    /**
+     * 查询指定仓库的可用库存
+     *
+     * @param skuId SKU ID
+     * @param warehouseId 仓库 ID，为空时使用服务端默认仓库
+     * @return 可用库存数量
+     */
+    Integer queryAvailableStock(Long skuId, String warehouseId);
+
     /**
      * 批量扣减库存请求
      */
@@ -61,6 +99,7 @@ public interface InventoryDubboService {
         public static class StockItem implements java.io.Serializable {
             private static final long serialVersionUID = 1L;
             private Long skuId;
+            private String warehouseId;
             private Integer quantity;
 
             public Long getSkuId() {
@@ -71,6 +110,17 @@ public interface InventoryDubboService {
                 this.skuId = skuId;
             }
 
+            /**
+             * 仓库 ID，为空时使用服务端默认仓库
+             */
+            public String getWarehouseId() {
+                return warehouseId;
+            }
+
+            public void setWarehouseId(String warehouseId) {
+                this.warehouseId = warehouseId;
+            }
+
             public Integer getQuantity() {
                 return quantity;
             }
@@ -97,6 +147,114 @@ public interface InventoryDubboService {
         }
     }
 
+    /**
+     * 批量扣减库存结果
+     */
+    class BatchDeductStockResult implements java.io.Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private boolean success;
+        private boolean duplicate;
+        private java.util.List<ItemFailure> failures = new java.util.ArrayList<>();
+
+        /**
+         * 明细失败原因
+         */
+        public static class ItemFailure implements java.io.Serializable {
+            private static final long serialVersionUID = 1L;
+
+            /**
+             * 库存不存在
+             */
+            public static final String STOCK_NOT_FOUND = "STOCK_NOT_FOUND";
+            /**
+             * 库存不足
+             */
+            public static final String INSUFFICIENT_STOCK = "INSUFFICIENT_STOCK";
+            /**
+             * 库存正在切换为分桶模式，可稍后重试
+             */
+            public static final String STOCK_SHARDING = "STOCK_SHARDING";
+            /**
+             * 库存同步中（仍有未回写数据库的流水），可稍后重试
+             */
+            public static final String STOCK_SYNC_DEFERRED = "STOCK_SYNC_DEFERRED";
+
+            private Long skuId;
+            private String warehouseId;
+            private Integer requestedQuantity;
+            private Integer availableStock;
+            private String reason;
+
+            public Long getSkuId() {
+                return skuId;
+            }
+
+            public void setSkuId(Long skuId) {
+                this.skuId = skuId;
+            }
+
+            public String getWarehouseId() {
+                return warehouseId;
+            }
+
+            public void setWarehouseId(String warehouseId) {
+                this.warehouseId = warehouseId;
+            }
+
+            public Integer getRequestedQuantity() {
+                return requestedQuantity;
+            }
+
+            public void setRequestedQuantity(Integer requestedQuantity) {
+                this.requestedQuantity = requestedQuantity;
+            }
+
+            public Integer getAvailableStock() {
+                return availableStock;
+            }
+
+            public void setAvailableStock(Integer availableStock) {
+                this.availableStock = availableStock;
+            }
+
+            public String getReason() {
+                return reason;
+            }
+
+            public void setReason(String reason) {
+                this.reason = reason;
+            }
+        }
+
+        public boolean isSuccess() {
+            return success;
+        }
+
+        public void setSuccess(boolean success) {
+            this.success = success;
+        }
+
+        /**
+         * 是否为重复请求（requestId 已处理过）
+         */
+        public boolean isDuplicate() {
+            return duplicate;
+        }
+
+        public void setDuplicate(boolean duplicate) {
+            this.duplicate = duplicate;
+        }
+
+        public java.util.List<ItemFailure> getFailures() {
+            return failures;
+        }
+
+        public void setFailures(java.util.List<ItemFailure> failures) {
+            this.failures = failures;
+        }
+    }
+
     /**
      * 库存不足异常
      */
@@ -0,0 +1,374 @@
+package com.frog.inventory.cache;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.frog.common.tenant.TenantContextHolder;
+import com.frog.inventory.domain.entity.Inventory;
+import com.frog.inventory.domain.event.InventoryChangedEvent;
+import com.frog.inventory.mapper.InvInventoryMapper;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 库存近端缓存（进程内 Caffeine + 批量加载）
+ *
+ * <p>按 租户 + skuId + warehouseId 缓存数据库库存记录（不存在的记录同样缓存），TTL 很短，只用于吸收商品列表页
+ * 对同一批 SKU 的高频重复查询。未命中的键不会各自查询数据库：并发到达的未命中在一个短窗口（默认 2ms）内
+ * 汇集，按租户分组各合并为一条 IN 查询（DataLoader 方式），同一个键的并发未命中由 Caffeine 合并为一次加载。
+ * 加载在后台线程执行，查询前恢复调用方的租户上下文，租户隔离与直接查询一致。
+ *
+ * <p>失效：数据库库存变更后发布 {@link InventoryChangedEvent}，事务提交后本实例立即失效，并通过
+ * {@link #INVALIDATION_CHANNEL} 广播给其他实例；广播丢失时由 TTL 兜底。变更事件不带租户（流水回写线程没有
+ * 租户上下文），失效时通过 SKU 二级索引找到该 SKU 在各租户、各仓库下的缓存键，不扫描整个缓存。
+ *
+ * <p>指标：inventory.near-cache.hit.ratio、inventory.near-cache.requests（hit/miss）、
+ * inventory.near-cache.load.batch.size（每次数据库查询的键数）、inventory.near-cache.load.queries（数据库查询次数）
+ *
+ * @author SCM Platform Team
+ * @since 2025-12-26
+ */
+@Slf4j
+@Component
+public class InventoryNearCache implements MessageListener {
+  public static final String INVALIDATION_CHANNEL = "inventory:cache:invalidation";
+  private static final String KEY_SEPARATOR = ",";
+
+  private final InvInventoryMapper inventoryMapper;
+  private final StringRedisTemplate stringRedisTemplate;
+  private final MeterRegistry meterRegistry;
+  private final Queue<PendingLoad> pending = new ConcurrentLinkedQueue<>();
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+  private final AtomicLong loadQueries = new AtomicLong();
+  // SKU -> 该 SKU 已缓存的键（失效时按 SKU 查找，随缓存移除同步清理）
+  private final Map<String, Set<CacheKey>> skuIndex = new ConcurrentHashMap<>();
+
+  @Value("${inventory.near-cache.enabled:true}")
+  private boolean enabled;
+
+  @Value("${inventory.near-cache.ttl-ms:2000}")
+  private long ttlMs;
+
+  @Value("${inventory.near-cache.max-size:100000}")
+  private long maxSize;
+
+  @Value("${inventory.near-cache.batch-window-ms:2}")
+  private long batchWindowMs;
+
+  @Value("${inventory.near-cache.max-batch:500}")
+  private int maxBatch;
+
+  @Value("${inventory.near-cache.loader-threads:4}")
+  private int loaderThreads;
+
+  private AsyncCache<CacheKey, Optional<Inventory>> cache;
+  private ScheduledExecutorService timer;
+  private ExecutorService loaders;
+  private DistributionSummary batchSizeSummary;
+
+  public InventoryNearCache(InvInventoryMapper inventoryMapper,
+                            StringRedisTemplate stringRedisTemplate,
+                            ObjectProvider<MeterRegistry> meterRegistry) {
+    this.inventoryMapper = inventoryMapper;
+    this.stringRedisTemplate = stringRedisTemplate;
+    this.meterRegistry = meterRegistry.getIfAvailable();
+  }
+
+  @PostConstruct
+  public void start() {
+    cache = Caffeine.newBuilder()
+        .maximumSize(maxSize)
+        .expireAfterWrite(Duration.ofMillis(ttlMs))
+        .recordStats()
+        .removalListener((CacheKey key, Optional<Inventory> value, RemovalCause cause) -> unindex(key))
+        .buildAsync();
+    timer = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "inventory-near-cache-window");
+      thread.setDaemon(true);
+      return thread;
+    });
+    AtomicInteger index = new AtomicInteger();
+    loaders = Executors.newFixedThreadPool(loaderThreads, r -> {
+      Thread thread = new Thread(r, "inventory-near-cache-loader-" + index.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    registerMetrics();
+    log.info("✅ 库存近端缓存已启动: enabled={}, ttl={}ms, window={}ms, maxBatch={}",
+        enabled, ttlMs, batchWindowMs, maxBatch);
+  }
+
+  @PreDestroy
+  public void stop() {
+    timer.shutdownNow();
+    loaders.shutdown();
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * 累计数据库查询次数
+   */
+  public long loadQueryCount() {
+    return loadQueries.get();
+  }
+
+  /**
+   * 查询单个库存记录
+   *
+   * @return 库存记录，不存在时返回 null（返回的对象为缓存共享实例，调用方只读）
+   */
+  public Inventory get(String skuId, String warehouseId) {
+    return cache.get(new CacheKey(TenantContextHolder.getTenantId(), skuId, warehouseId),
+            (key, executor) -> enqueue(key))
+        .join()
+        .orElse(null);
+  }
+
+  /**
+   * 批量查询库存记录（未命中的键与其他并发请求合并查询）
+   *
+   * @return 存在的库存记录，按入参顺序
+   */
+  public List<Inventory> getAll(Collection<String> skuIds, String warehouseId) {
+    UUID tenantId = TenantContextHolder.getTenantId();
+    Set<CacheKey> keys = new LinkedHashSet<>();
+    for (String skuId : skuIds) {
+      keys.add(new CacheKey(tenantId, skuId, warehouseId));
+    }
+    Map<CacheKey, Optional<Inventory>> loaded = cache.getAll(keys, (missing, executor) -> {
+      Map<CacheKey, CompletableFuture<Optional<Inventory>>> futures = new HashMap<>();
+      for (CacheKey key : missing) {
+        futures.put(key, enqueue(key));
+      }
+      return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0]))
+          .thenApply(ignored -> {
+            Map<CacheKey, Optional<Inventory>> result = new HashMap<>();
+            futures.forEach((key, future) -> result.put(key, future.join()));
+            return result;
+          });
+    }).join();
+
+    List<Inventory> inventories = new ArrayList<>(keys.size());
+    for (CacheKey key : keys) {
+      loaded.getOrDefault(key, Optional.empty()).ifPresent(inventories::add);
+    }
+    return inventories;
+  }
+
+  /**
+   * 库存变更：失效本实例并广播给其他实例（事务内发布时在提交后执行）
+   */
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onInventoryChanged(InventoryChangedEvent event) {
+    if (event.keys().isEmpty()) {
+      return;
+    }
+    invalidateLocal(event.keys());
+    try {
+      stringRedisTemplate.convertAndSend(INVALIDATION_CHANNEL, String.join(KEY_SEPARATOR, event.keys()));
+    } catch (Exception e) {
+      log.warn("⚠️  库存缓存失效广播失败，依赖 TTL 兜底: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * 其他实例的失效广播
+   */
+  @Override
+  public void onMessage(@NonNull Message message, byte[] pattern) {
+    String body = new String(message.getBody(), StandardCharsets.UTF_8);
+    invalidateLocal(Arrays.asList(body.split(KEY_SEPARATOR)));
+  }
+
+  /**
+   * 按变更键（skuId:warehouseId 或 skuId:*）失效各租户下的缓存
+   */
+  private void invalidateLocal(Collection<String> keys) {
+    List<CacheKey> matched = new ArrayList<>();
+    for (String key : keys) {
+      int separator = key.lastIndexOf(':');
+      Set<CacheKey> cached = skuIndex.get(key.substring(0, separator));
+      if (cached == null) {
+        continue;
+      }
+      // 仓库未知（*）时失效该 SKU 的全部仓库
+      String warehouseId = key.substring(separator + 1);
+      for (CacheKey cacheKey : cached) {
+        if ("*".equals(warehouseId) || cacheKey.warehouseId().equals(warehouseId)) {
+          matched.add(cacheKey);
+        }
+      }
+    }
+    if (!matched.isEmpty()) {
+      cache.synchronous().invalidateAll(matched);
+    }
+  }
+
+  /**
+   * 缓存移除后清理 SKU 索引（键已被重新加载时保留）
+   */
+  private void unindex(CacheKey key) {
+    skuIndex.computeIfPresent(key.skuId(), (skuId, cached) -> {
+      if (!cache.asMap().containsKey(key)) {
+        cached.remove(key);
+      }
+      return cached.isEmpty() ? null : cached;
+    });
+  }
+
+  private CompletableFuture<Optional<Inventory>> enqueue(CacheKey key) {
+    skuIndex.computeIfAbsent(key.skuId(), skuId -> ConcurrentHashMap.newKeySet()).add(key);
+    PendingLoad load = new PendingLoad(key, new CompletableFuture<>());
+    pending.add(load);
+    if (scheduled.compareAndSet(false, true)) {
+      timer.schedule(() -> loaders.execute(this::drain), batchWindowMs, TimeUnit.MILLISECONDS);
+    }
+    return load.future;
+  }
+
+  /**
+   * 取出一批待加载的键合并查询，仍有积压时继续调度
+   */
+  private void drain() {
+    List<PendingLoad> batch = new ArrayList<>(maxBatch);
+    PendingLoad load;
+    while (batch.size() < maxBatch && (load = pending.poll()) != null) {
+      batch.add(load);
+    }
+    scheduled.set(false);
+    if (!pending.isEmpty() && scheduled.compareAndSet(false, true)) {
+      loaders.execute(this::drain);
+    }
+    if (batch.isEmpty()) {
+      return;
+    }
+    // 不同租户的键分别查询，查询时恢复该租户的上下文（加载线程本身没有租户上下文）
+    Map<UUID, List<PendingLoad>> byTenant = new HashMap<>();
+    for (PendingLoad pendingLoad : batch) {
+      byTenant.computeIfAbsent(pendingLoad.key.tenantId(), t -> new ArrayList<>()).add(pendingLoad);
+    }
+    byTenant.forEach((tenantId, loads) -> {
+      if (tenantId != null) {
+        TenantContextHolder.setTenantId(tenantId);
+      }
+      try {
+        loadBatch(loads);
+      } finally {
+        if (tenantId != null) {
+          TenantContextHolder.clear();
+        }
+      }
+    });
+  }
+
+  private void loadBatch(List<PendingLoad> batch) {
+    try {
+      Set<String> skuIds = new LinkedHashSet<>();
+      Set<String> warehouseIds = new LinkedHashSet<>();
+      for (PendingLoad load : batch) {
+        skuIds.add(load.key.skuId());
+        warehouseIds.add(load.key.warehouseId());
+      }
+
+      // 一条 IN 查询，按请求的 (SKU, 仓库) 组合过滤
+      List<Inventory> rows = inventoryMapper.selectList(
+          new LambdaQueryWrapper<Inventory>()
+              .in(Inventory::getSkuId, skuIds)
+              .in(Inventory::getWarehouseId, warehouseIds)
+              .eq(Inventory::getDeleted, false)
+      );
+      Map<String, Inventory> byKey = new HashMap<>();
+      for (Inventory row : rows) {
+        byKey.put(InventoryChangedEvent.key(row.getSkuId(), row.getWarehouseId()), row);
+      }
+
+      loadQueries.incrementAndGet();
+      if (batchSizeSummary != null) {
+        batchSizeSummary.record(batch.size());
+      }
+      for (PendingLoad load : batch) {
+        load.future.complete(Optional.ofNullable(
+            byKey.get(InventoryChangedEvent.key(load.key.skuId(), load.key.warehouseId()))));
+      }
+    } catch (Exception e) {
+      log.error("❌ 库存批量加载失败: keys={}", batch.size(), e);
+      batch.forEach(load -> load.future.completeExceptionally(e));
+    }
+  }
+
+  private void registerMetrics() {
+    if (meterRegistry == null) {
+      return;
+    }
+    Gauge.builder("inventory.near-cache.hit.ratio", cache, c -> c.synchronous().stats().hitRate())
+        .description("库存近端缓存命中率")
+        .register(meterRegistry);
+    FunctionCounter.builder("inventory.near-cache.requests", cache, c -> c.synchronous().stats().hitCount())
+        .tag("result", "hit")
+        .register(meterRegistry);
+    FunctionCounter.builder("inventory.near-cache.requests", cache, c -> c.synchronous().stats().missCount())
+        .tag("result", "miss")
+        .register(meterRegistry);
+    Gauge.builder("inventory.near-cache.size", cache, c -> c.synchronous().estimatedSize())
+        .register(meterRegistry);
+    batchSizeSummary = DistributionSummary.builder("inventory.near-cache.load.batch.size")
+        .description("每次数据库查询合并的键数")
+        .register(meterRegistry);
+    FunctionCounter.builder("inventory.near-cache.load.queries", loadQueries, AtomicLong::get)
+        .description("近端缓存未命中触发的数据库查询次数")
+        .register(meterRegistry);
+  }
+
+  /**
+   * 缓存键（租户为空表示无租户上下文的调用）
+   */
+  private record CacheKey(UUID tenantId, String skuId, String warehouseId) {
+  }
+
+  /**
+   * 等待批量加载的键
+   */
+  private record PendingLoad(CacheKey key, CompletableFuture<Optional<Inventory>> future) {
+  }
+}
@@ -0,0 +1,31 @@
+package com.frog.inventory.config;
+
+import com.frog.inventory.cache.InventoryNearCache;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+/**
+ * 库存近端缓存配置
+ *
+ * @author SCM Platform Team
+ * @since 2025-12-26
+ */
+@Configuration
+public class InventoryCacheConfig {
+
+    /**
+     * 订阅其他实例的库存缓存失效广播
+     */
+    @Bean
+    public RedisMessageListenerContainer inventoryCacheListenerContainer(
+            RedisConnectionFactory connectionFactory,
+            InventoryNearCache nearCache) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(nearCache, new ChannelTopic(InventoryNearCache.INVALIDATION_CHANNEL));
+        return container;
+    }
+}
@@ -0,0 +1,23 @@
+package com.frog.inventory.domain.dto;
+
+import lombok.Data;
+
+/**
+ * 库存快照分块写入结果
+ *
+ * @author SCM Platform Team
+ * @since 2025-12-26
+ */
+@Data
+public class SnapshotChunkResult {
+
+  /**
+   * 本块读取的库存记录数（为 0 表示已处理完）
+   */
+  private Integer rowCount;
+
+  /**
+   * 本块最后一条库存记录 ID（下一块从其之后开始，即断点）
+   */
+  private String lastId;
+}
@@ -0,0 +1,86 @@
+package com.frog.inventory.domain.entity;
+
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 库存统计聚合实体
+ *
+ * <p>按 (租户, 仓库, 分条) 累加的库存统计，由 inv_inventory 上的触发器增量维护，
+ * 同一仓库的各分条相加即为该仓库的统计值
+ *
+ * @author SCM Platform Team
+ * @since 2025-12-26
+ */
+@Data
+@TableName("inv_inventory_stats")
+public class InvInventoryStats {
+
+  /**
+   * 租户 ID
+   */
+  private String tenantId;
+
+  /**
+   * 仓库 ID
+   */
+  private String warehouseId;
+
+  /**
+   * 分条序号（0-15 由触发器按事务 ID 写入，-1 为对账修正）
+   */
+  private Integer stripe;
+
+  /**
+   * 库存记录数
+   */
+  private Long recordCount;
+
+  /**
+   * 总库存
+   */
+  private Long totalStock;
+
+  /**
+   * 可用库存
+   */
+  private Long availableStock;
+
+  /**
+   * 锁定库存
+   */
+  private Long lockedStock;
+
+  /**
+   * 损坏库存
+   */
+  private Long damagedStock;
+
+  /**
+   * 库存总价值（总库存 × 平均成本）
+   */
+  private BigDecimal totalValue;
+
+  /**
+   * 缺货记录数
+   */
+  private Long outOfStockCount;
+
+  /**
+   * 低库存记录数
+   */
+  private Long lowStockCount;
+
+  /**
+   * 正常库存记录数
+   */
+  private Long normalStockCount;
+
+  /**
+   * 更新时间
+   */
+  private LocalDateTime updateTime;
+}
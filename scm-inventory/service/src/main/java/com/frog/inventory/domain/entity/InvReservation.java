@@ -0,0 +1,112 @@
+package com.frog.inventory.domain.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 库存预占记录实体（分区表，按 reserved_at 分区）
+ *
+ * <p>由预占流水异步写入，Redis 中的预占哈希是实时状态，本表是持久化记录
+ *
+ * @author SCM Platform Team
+ * @since 2025-12-26
+ */
+@Data
+@TableName("inv_reservation")
+public class InvReservation {
+
+  /**
+   * 主键 ID（UUID）
+   */
+  @TableId(type = IdType.ASSIGN_UUID)
+  private String id;
+
+  /**
+   * 租户 ID
+   */
+  private String tenantId;
+
+  /**
+   * 预占单号（业务键）
+   */
+  private String reservationNo;
+
+  /**
+   * SKU ID
+   */
+  private String skuId;
+
+  /**
+   * 仓库 ID
+   */
+  private String warehouseId;
+
+  /**
+   * 订单 ID
+   */
+  private String orderId;
+
+  /**
+   * 订单号
+   */
+  private String orderNo;
+
+  /**
+   * 用户 ID
+   */
+  private String userId;
+
+  /**
+   * 预占数量
+   */
+  private Integer quantity;
+
+  /**
+   * 状态：0-已预占，1-已确认，2-已释放，3-已过期
+   */
+  private Integer status;
+
+  /**
+   * 过期时间
+   */
+  private LocalDateTime expireAt;
+
+  /**
+   * 预占时间（分区键）
+   */
+  private LocalDateTime reservedAt;
+
+  /**
+   * 确认时间
+   */
+  private LocalDateTime confirmedAt;
+
+  /**
+   * 释放时间
+   */
+  private LocalDateTime releasedAt;
+
+  /**
+   * 创建时间
+   */
+  private LocalDateTime createTime;
+
+  /**
+   * 备注
+   */
+  private String remark;
+
+  /**
+   * 预占状态
+   */
+  public static class Status {
+    public static final int RESERVED = 0;
+    public static final int CONFIRMED = 1;
+    public static final int RELEASED = 2;
+    public static final int EXPIRED = 3;
+  }
+}
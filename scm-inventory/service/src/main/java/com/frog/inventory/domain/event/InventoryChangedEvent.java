@@ -0,0 +1,31 @@
+package com.frog.inventory.domain.event;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 库存变更事件
+ *
+ * <p>数据库库存记录变更后发布（事务内发布时在提交后处理），用于失效库存近端缓存
+ *
+ * @param keys 变更的库存键（skuId:warehouseId；仓库未知时为 skuId:*）
+ * @author SCM Platform Team
+ * @since 2025-12-26
+ */
+public record InventoryChangedEvent(Collection<String> keys) {
+
+  public static InventoryChangedEvent of(String skuId, String warehouseId) {
+    return new InventoryChangedEvent(List.of(key(skuId, warehouseId)));
+  }
+
+  /**
+   * SKU 在所有仓库的库存变更
+   */
+  public static InventoryChangedEvent ofSku(Object skuId) {
+    return new InventoryChangedEvent(List.of(skuId + ":*"));
+  }
+
+  public static String key(String skuId, String warehouseId) {
+    return skuId + ":" + warehouseId;
+  }
+}
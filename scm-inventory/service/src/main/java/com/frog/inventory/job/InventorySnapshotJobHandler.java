@@ -1,19 +1,17 @@
 package com.frog.inventory.job;
 
-import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.frog.inventory.domain.entity.Inventory;
-import com.frog.inventory.domain.entity.InvSnapshot;
-import com.frog.inventory.mapper.InvInventoryMapper;
+import com.frog.inventory.domain.dto.SnapshotChunkResult;
 import com.frog.inventory.mapper.InvSnapshotMapper;
 import com.xxl.job.core.context.XxlJobHelper;
 import com.xxl.job.core.handler.annotation.XxlJob;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDateTime;
-import java.util.List;
+import java.time.Duration;
+import java.time.LocalDate;
 
 /**
  * 库存快照定时同步任务
@@ -22,91 +20,103 @@ import java.util.List;
  *
  * <p>执行频率: 每天凌晨 1 点执行
  *
+ * <p>执行方式：
+ * <ul>
+ *   <li>按主键分块执行 INSERT ... SELECT，快照在数据库内生成，每块一个独立事务</li>
+ *   <li>每块完成后把断点写入 Redis，任务失败重跑时从断点继续；重做的块按唯一键覆盖，不会重复</li>
+ *   <li>路由策略配置为"分片广播"时，各执行器按 XXL-Job 分片序号处理各自的库存记录</li>
+ *   <li>任务参数可指定快照日期（yyyy-MM-dd），用于补跑</li>
+ * </ul>
+ *
  * @author SCM Platform Team
  * @since 2025-12-26
  */
 @Slf4j
 @Component
 public class InventorySnapshotJobHandler {
+    private static final String CHECKPOINT_KEY_PREFIX = "inventory:snapshot:checkpoint:";
+    private static final String CHECKPOINT_DONE = "DONE";
+    private static final Duration CHECKPOINT_TTL = Duration.ofDays(3);
 
     @Autowired
-    private InvInventoryMapper inventoryMapper;
+    private InvSnapshotMapper snapshotMapper;
 
     @Autowired
-    private InvSnapshotMapper snapshotMapper;
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${inventory.snapshot.chunk-size:2000}")
+    private int chunkSize;
 
     /**
      * 库存快照同步任务
      */
     @XxlJob("inventorySnapshotJobHandler")
-    @Transactional(rollbackFor = Exception.class)
     public void execute() throws Exception {
         long startTime = System.currentTimeMillis();
-        XxlJobHelper.log("📸 [库存快照] 开始执行任务");
+        int shardIndex = XxlJobHelper.getShardIndex();
+        int shardTotal = Math.max(1, XxlJobHelper.getShardTotal());
+        LocalDate snapshotDate = resolveSnapshotDate(XxlJobHelper.getJobParam());
+        String checkpointKey = CHECKPOINT_KEY_PREFIX + snapshotDate + ":" + shardIndex + "/" + shardTotal;
 
-        try {
-            // 1. 查询所有库存记录
-            List<Inventory> inventories = inventoryMapper.selectList(
-                    new LambdaQueryWrapper<Inventory>()
-                            .isNotNull(Inventory::getSkuId)
-            );
+        XxlJobHelper.log("📸 [库存快照] 开始执行任务: date={}, shard={}/{}", snapshotDate, shardIndex, shardTotal);
 
-            if (inventories.isEmpty()) {
-                XxlJobHelper.log("✅ [库存快照] 无库存数据，任务结束");
+        try {
+            // 1. 读取断点
+            String afterId = stringRedisTemplate.opsForValue().get(checkpointKey);
+            if (CHECKPOINT_DONE.equals(afterId)) {
+                XxlJobHelper.log("✅ [库存快照] 当日分片已完成，任务结束: date={}, shard={}/{}",
+                        snapshotDate, shardIndex, shardTotal);
                 return;
             }
+            if (afterId != null) {
+                XxlJobHelper.log("🔄 [库存快照] 从断点继续: afterId={}", afterId);
+            }
 
-            XxlJobHelper.log("📋 [库存快照] 发现库存记录: count={}", inventories.size());
-
-            // 2. 生成快照
-            int successCount = 0;
-            int failCount = 0;
-            LocalDateTime snapshotTime = LocalDateTime.now();
-
-            for (Inventory inventory : inventories) {
-                try {
-                    InvSnapshot snapshot = new InvSnapshot();
-                    snapshot.setSkuId(inventory.getSkuId());
-                    snapshot.setWarehouseId(inventory.getWarehouseId());
-                    snapshot.setAvailableStock(inventory.getAvailableStock());
-                    snapshot.setLockedStock(inventory.getLockedStock());
-                    snapshot.setSnapshotTime(snapshotTime);
+            // 2. 分块生成快照
+            long total = 0;
+            int chunks = 0;
+            while (true) {
+                SnapshotChunkResult chunk = snapshotMapper.insertSnapshotChunk(
+                        snapshotDate, afterId, shardIndex, shardTotal, chunkSize);
+                int rows = chunk != null && chunk.getRowCount() != null ? chunk.getRowCount() : 0;
+                if (rows == 0) {
+                    break;
+                }
 
-                    snapshotMapper.insert(snapshot);
-                    successCount++;
+                afterId = chunk.getLastId();
+                stringRedisTemplate.opsForValue().set(checkpointKey, afterId, CHECKPOINT_TTL);
+                total += rows;
+                chunks++;
 
-                    if (successCount % 100 == 0) {
-                        XxlJobHelper.log("  📊 已生成快照: {}/{}", successCount, inventories.size());
-                    }
-                } catch (Exception e) {
-                    failCount++;
-                    XxlJobHelper.log("  ✗ 快照生成失败: skuId={}, error={}",
-                            inventory.getSkuId(), e.getMessage());
-                    log.error("库存快照生成失败", e);
+                if (chunks % 50 == 0) {
+                    XxlJobHelper.log("  📊 已生成快照: {} 条", total);
+                }
+                if (rows < chunkSize) {
+                    break;
                 }
             }
+            stringRedisTemplate.opsForValue().set(checkpointKey, CHECKPOINT_DONE, CHECKPOINT_TTL);
 
             // 3. 统计结果
             long duration = System.currentTimeMillis() - startTime;
-            XxlJobHelper.log("🎉 [库存快照] 任务完成: 总数={}, 成功={}, 失败={}, 耗时={}ms",
-                    inventories.size(), successCount, failCount, duration);
-
-            // 4. 设置任务结果
-            if (failCount > 0) {
-                XxlJobHelper.handleFail(String.format("部分快照生成失败: 总数=%d, 成功=%d, 失败=%d",
-                        inventories.size(), successCount, failCount));
-            } else {
-                XxlJobHelper.handleSuccess(String.format("所有快照生成成功: 总数=%d, 耗时=%dms",
-                        successCount, duration));
-            }
+            XxlJobHelper.log("🎉 [库存快照] 任务完成: 总数={}, 分块={}, 耗时={}ms", total, chunks, duration);
+            XxlJobHelper.handleSuccess(String.format("快照生成成功: 分片=%d/%d, 总数=%d, 耗时=%dms",
+                    shardIndex, shardTotal, total, duration));
 
         } catch (Exception e) {
             long duration = System.currentTimeMillis() - startTime;
-            XxlJobHelper.log("❌ [库存快照] 任务异常: error={}, 耗时={}ms",
+            XxlJobHelper.log("❌ [库存快照] 任务异常，重跑将从断点继续: error={}, 耗时={}ms",
                     e.getMessage(), duration);
             log.error("库存快照任务执行失败", e);
             XxlJobHelper.handleFail("任务执行失败: " + e.getMessage());
             throw e;
         }
     }
-}
\ No newline at end of file
+
+    private static LocalDate resolveSnapshotDate(String jobParam) {
+        if (jobParam == null || jobParam.isBlank()) {
+            return LocalDate.now();
+        }
+        return LocalDate.parse(jobParam.trim());
+    }
+}
@@ -0,0 +1,69 @@
+package com.frog.inventory.job;
+
+import com.frog.inventory.mapper.InvInventoryStatsMapper;
+import com.xxl.job.core.context.XxlJobHelper;
+import com.xxl.job.core.handler.annotation.XxlJob;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * 库存统计对账任务
+ *
+ * <p>库存统计由触发器增量维护，本任务定期按 (租户, 仓库) 重新聚合库存表，
+ * 把与聚合表的差值写入修正分条，并刷新各租户的去重 SKU 数
+ *
+ * <p>执行频率: 建议每 10 分钟执行一次；多个执行器同时触发时由数据库咨询锁保证只执行一次
+ *
+ * @author SCM Platform Team
+ * @since 2025-12-26
+ */
+@Slf4j
+@Component
+public class InventoryStatsReconcileJobHandler {
+
+    @Autowired
+    private InvInventoryStatsMapper statsMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * 库存统计对账
+     */
+    @XxlJob("inventoryStatsReconcileJobHandler")
+    public void execute() {
+        long startTime = System.currentTimeMillis();
+        XxlJobHelper.log("🔍 [库存统计对账] 开始执行任务");
+
+        try {
+            int[] result = transactionTemplate.execute(status -> {
+                if (!statsMapper.tryLockReconcile()) {
+                    return null;
+                }
+                return new int[]{statsMapper.reconcileWarehouseStats(), statsMapper.refreshTenantSkuCounts()};
+            });
+
+            long duration = System.currentTimeMillis() - startTime;
+            if (result == null) {
+                XxlJobHelper.log("⏭️  [库存统计对账] 其他执行器正在对账，跳过");
+                XxlJobHelper.handleSuccess("其他执行器正在对账，跳过");
+                return;
+            }
+
+            if (result[0] > 0) {
+                log.warn("⚠️  库存统计存在漂移，已修正: warehouses={}", result[0]);
+            }
+            XxlJobHelper.log("🎉 [库存统计对账] 任务完成: 修正仓库数={}, 租户数={}, 耗时={}ms",
+                    result[0], result[1], duration);
+            XxlJobHelper.handleSuccess(String.format("对账完成: 修正仓库数=%d, 耗时=%dms", result[0], duration));
+
+        } catch (Exception e) {
+            long duration = System.currentTimeMillis() - startTime;
+            XxlJobHelper.log("❌ [库存统计对账] 任务异常: error={}, 耗时={}ms", e.getMessage(), duration);
+            log.error("库存统计对账任务执行失败", e);
+            XxlJobHelper.handleFail("任务执行失败: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.frog.inventory.job;
+
+import com.frog.inventory.service.IInvReservationService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 到期预占回收调度
+ *
+ * <p>每个实例按固定间隔调用 {@link IInvReservationService#releaseExpiredReservations()}，
+ * 到期索引的摘取是原子的，多实例同时运行不会重复回收
+ *
+ * <p>指标：inventory.reservation.expired（回收的预占数）
+ *
+ * @author SCM Platform Team
+ * @since 2025-12-26
+ */
+@Slf4j
+@Component
+public class ReservationExpiryScheduler {
+
+    private final IInvReservationService reservationService;
+    private final MeterRegistry meterRegistry;
+    private final ScheduledExecutorService scheduler;
+
+    @Value("${inventory.reservation.expiry.interval-ms:1000}")
+    private long intervalMs;
+
+    public ReservationExpiryScheduler(IInvReservationService reservationService,
+                                      ObjectProvider<MeterRegistry> meterRegistry) {
+        this.reservationService = reservationService;
+        this.meterRegistry = meterRegistry.getIfAvailable();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "inventory-reservation-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::releaseSafely, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        log.info("✅ 到期预占回收已启动: interval={}ms", intervalMs);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    private void releaseSafely() {
+        try {
+            int released = reservationService.releaseExpiredReservations();
+            if (released > 0 && meterRegistry != null) {
+                meterRegistry.counter("inventory.reservation.expired").increment(released);
+            }
+        } catch (Exception e) {
+            log.error("❌ 到期预占回收失败", e);
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package com.frog.inventory.journal;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Redis Stream 流水消费基类
+ *
+ * <p>以消费组方式按固定间隔读取一个或多个 Stream，每轮依次处理：本消费者待确认流水 → 宕机实例遗留流水 → 新流水。
+ * 子类负责回写数据库并通过 {@link #acknowledge} 确认；未确认的流水下个周期重试。
+ *
+ * <p>同一 Stream 内按写入顺序回写：某批流水回写失败后，该 Stream 在这批流水确认之前不再读取新流水，
+ * 后写入的流水（如预占的确认/释放）不会先于它依赖的流水生效。
+ * 一批流水投递次数达到 {@link #maxAttempts} 仍失败时逐条重试，单条仍失败的流水经 {@link #deadLetter} 转入死信后确认，
+ * 个别无法回写的流水不会让整个 Stream 永久停滞。
+ *
+ * <p>写流水的脚本同时在 {@link #pendingKey} 哈希中为该 SKU/仓库计数加一，确认时逐条减一（只对本次真正确认的条目），
+ * 计数大于 0 表示该键还有未回写数据库的流水，见 {@link #hasPending}。
+ *
+ * <p>公共指标：{metricPrefix}.lag（最老未处理流水的滞后毫秒数）、{metricPrefix}.flush.failure、
+ * {metricPrefix}.dead_letter（转入死信的流水数）
+ *
+ * @author SCM Platform Team
+ * @since 2025-12-26
+ */
+@Slf4j
+public abstract class AbstractStreamJournalConsumer {
+  /**
+   * 确认流水并扣减未回写计数：XACK 返回 1 的条目才减一，重复确认不会重复扣减
+   *
+   * <p>KEYS[1]: 流水 Stream；KEYS[2]: 未回写计数哈希
+   * <p>ARGV[1]: 消费组；之后每条流水两个参数：流水 ID、计数字段
+   *
+   * <p>返回值：本次确认的条目数
+   */
+  private static final RedisScript<Long> ACKNOWLEDGE = RedisScript.of(
+      "local acked = 0\n" +
+          "for i = 2, #ARGV, 2 do\n" +
+          "    if redis.call('XACK', KEYS[1], ARGV[1], ARGV[i]) == 1 then\n" +
+          "        acked = acked + 1\n" +
+          "        local pending = tonumber(redis.call('HGET', KEYS[2], ARGV[i + 1]) or '0')\n" +
+          "        if pending > 1 then\n" +
+          "            redis.call('HINCRBY', KEYS[2], ARGV[i + 1], -1)\n" +
+          "        elseif pending == 1 then\n" +
+          "            redis.call('HDEL', KEYS[2], ARGV[i + 1])\n" +
+          "        end\n" +
+          "    end\n" +
+          "    redis.call('XDEL', KEYS[1], ARGV[i])\n" +
+          "end\n" +
+          "return acked",
+      Long.class);
+
+  protected final StringRedisTemplate stringRedisTemplate;
+  protected final MeterRegistry meterRegistry;
+
+  private final String group;
+  private final String metricPrefix;
+  private final String consumerName;
+  private final ScheduledExecutorService scheduler;
+  private final AtomicLong lagMillis = new AtomicLong();
+  private final List<String> streamKeys = new ArrayList<>();
+  private volatile long lastClaimAt;
+
+  protected AbstractStreamJournalConsumer(StringRedisTemplate stringRedisTemplate,
+                                          MeterRegistry meterRegistry,
+                                          String group,
+                                          String metricPrefix) {
+    this.stringRedisTemplate = stringRedisTemplate;
+    this.meterRegistry = meterRegistry;
+    this.group = group;
+    this.metricPrefix = metricPrefix;
+    this.consumerName = resolveConsumerName();
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, group);
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * 流水对应的未回写计数哈希（带上 Stream 的 hash tag，与 Stream 同槽）
+   */
+  public static String pendingKey(String streamKey) {
+    return streamKey + ":pending";
+  }
+
+  /**
+   * 未回写计数字段
+   */
+  public static String pendingField(String skuId, String warehouseId) {
+    return skuId + ":" + warehouseId;
+  }
+
+  /**
+   * 需要消费的 Stream 列表（启动时调用一次）
+   */
+  protected abstract List<String> resolveStreamKeys();
+
+  /**
+   * 处理一批流水（同一 Stream 内按写入顺序）
+   *
+   * @return 整批流水已回写并确认时返回 true；返回 false 时未确认的流水留在待确认列表，下个周期重试
+   */
+  protected abstract boolean process(String streamKey, List<MapRecord<String, Object, Object>> records);
+
+  /**
+   * 记录一条多次回写失败的流水（随后由基类确认），写入失败时抛出异常，流水留待下个周期重试
+   */
+  protected abstract void deadLetter(String streamKey, MapRecord<String, Object, Object> record);
+
+  protected abstract long flushIntervalMs();
+
+  protected abstract int batchSize();
+
+  protected abstract long claimIdleMs();
+
+  /**
+   * 一批流水转入逐条重试/死信前的最大投递次数
+   */
+  protected abstract int maxAttempts();
+
+  @PostConstruct
+  public void start() {
+    streamKeys.addAll(resolveStreamKeys());
+    streamKeys.forEach(this::ensureGroup);
+    if (meterRegistry != null) {
+      Gauge.builder(metricPrefix + ".lag", lagMillis, AtomicLong::get)
+          .description("最老未处理流水的滞后毫秒数")
+          .baseUnit("milliseconds")
+          .register(meterRegistry);
+    }
+    registerMetrics();
+    scheduler.scheduleWithFixedDelay(this::flushSafely, flushIntervalMs(), flushIntervalMs(), TimeUnit.MILLISECONDS);
+    log.info("✅ 流水消费已启动: group={}, streams={}, consumer={}, interval={}ms, batchSize={}",
+        group, streamKeys.size(), consumerName, flushIntervalMs(), batchSize());
+  }
+
+  @PreDestroy
+  public void stop() {
+    scheduler.shutdown();
+    try {
+      if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
+        scheduler.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    // 停机前最后刷一次
+    flushSafely();
+  }
+
+  /**
+   * 子类注册自有指标
+   */
+  protected void registerMetrics() {
+  }
+
+  /**
+   * 执行一次消费（待确认流水 → 宕机实例遗留流水 → 新流水）
+   *
+   * <p>前一步仍有未能回写的流水时，跳过该 Stream 的后续步骤，保持同一 Stream 内的回写顺序
+   *
+   * @return 本次处理的流水条数
+   */
+  public int flush() {
+    boolean claim = System.currentTimeMillis() - lastClaimAt >= claimIdleMs() / 2;
+    if (claim) {
+      lastClaimAt = System.currentTimeMillis();
+    }
+
+    int processed = 0;
+    for (String streamKey : streamKeys) {
+      List<MapRecord<String, Object, Object>> records;
+      boolean drained;
+      do {
+        records = read(streamKey, ReadOffset.from("0"));
+        processed += records.size();
+        drained = handle(streamKey, records);
+      } while (drained && records.size() >= batchSize());
+      if (!drained) {
+        continue;
+      }
+      if (claim) {
+        records = claimStale(streamKey);
+        processed += records.size();
+        if (!handle(streamKey, records)) {
+          continue;
+        }
+      }
+
+      do {
+        records = read(streamKey, ReadOffset.lastConsumed());
+        processed += records.size();
+      } while (handle(streamKey, records) && records.size() >= batchSize());
+    }
+
+    if (processed == 0) {
+      lagMillis.set(0);
+    }
+    return processed;
+  }
+
+  /**
+   * 确认并删除已回写的流水，同时扣减各 SKU/仓库的未回写计数
+   */
+  protected void acknowledge(String streamKey, List<MapRecord<String, Object, Object>> records) {
+    if (records.isEmpty()) {
+      return;
+    }
+    Object[] args = new Object[records.size() * 2 + 1];
+    args[0] = group;
+    for (int i = 0; i < records.size(); i++) {
+      MapRecord<String, Object, Object> record = records.get(i);
+      Map<Object, Object> value = record.getValue();
+      args[i * 2 + 1] = record.getId().getValue();
+      args[i * 2 + 2] = pendingField(String.valueOf(value.get("s")), String.valueOf(value.get("w")));
+    }
+    stringRedisTemplate.execute(ACKNOWLEDGE, List.of(streamKey, pendingKey(streamKey)), args);
+  }
+
+  /**
+   * 该 SKU/仓库在本组件消费的任一 Stream 中是否还有未回写数据库的流水
+   *
+   * <p>有未回写流水时数据库中的库存是落后的，不能用来回填 Redis
+   */
+  public boolean hasPending(String skuId, String warehouseId) {
+    String field = pendingField(skuId, warehouseId);
+    List<Object> counts = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+      byte[] fieldBytes = field.getBytes(StandardCharsets.UTF_8);
+      for (String streamKey : streamKeys) {
+        connection.hashCommands().hGet(pendingKey(streamKey).getBytes(StandardCharsets.UTF_8), fieldBytes);
+      }
+      return null;
+    });
+    for (Object count : counts) {
+      if (count != null && Long.parseLong(count.toString()) > 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return 这批流水是否已全部确认
+   */
+  private boolean handle(String streamKey, List<MapRecord<String, Object, Object>> records) {
+    if (records.isEmpty()) {
+      return true;
+    }
+    long oldestTimestamp = records.get(0).getId().getTimestamp();
+    lagMillis.set(Math.max(0, System.currentTimeMillis() - oldestTimestamp));
+    if (tryProcess(streamKey, records)) {
+      return true;
+    }
+    if (deliveryCount(streamKey, records.get(0)) < maxAttempts()) {
+      return false;
+    }
+
+    // 多次投递仍失败：逐条重试，把无法回写的流水隔离到死信
+    for (MapRecord<String, Object, Object> record : records) {
+      List<MapRecord<String, Object, Object>> single = List.of(record);
+      if (tryProcess(streamKey, single)) {
+        continue;
+      }
+      try {
+        deadLetter(streamKey, record);
+      } catch (Exception e) {
+        log.error("❌ 流水转入死信失败，稍后重试: stream={}, id={}", streamKey, record.getId(), e);
+        return false;
+      }
+      acknowledge(streamKey, single);
+      log.error("❌ 流水多次回写失败，已转入死信: stream={}, id={}, value={}",
+          streamKey, record.getId(), record.getValue());
+      if (meterRegistry != null) {
+        meterRegistry.counter(metricPrefix + ".dead_letter").increment();
+      }
+    }
+    return true;
+  }
+
+  private boolean tryProcess(String streamKey, List<MapRecord<String, Object, Object>> records) {
+    try {
+      return process(streamKey, records);
+    } catch (Exception e) {
+      log.error("❌ 流水处理失败，稍后重试: stream={}, entries={}", streamKey, records.size(), e);
+      return false;
+    }
+  }
+
+  /**
+   * 流水的累计投递次数（读取待确认列表、XCLAIM 都会累加）
+   */
+  private long deliveryCount(String streamKey, MapRecord<String, Object, Object> record) {
+    String id = record.getId().getValue();
+    PendingMessages pending = stringRedisTemplate.opsForStream()
+        .pending(streamKey, group, Range.closed(id, id), 1);
+    if (pending == null || pending.isEmpty()) {
+      return 0;
+    }
+    return pending.get(0).getTotalDeliveryCount();
+  }
+
+  private void flushSafely() {
+    try {
+      flush();
+    } catch (Exception e) {
+      log.error("❌ 流水消费失败: group={}", group, e);
+      if (meterRegistry != null) {
+        meterRegistry.counter(metricPrefix + ".flush.failure").increment();
+      }
+    }
+  }
+
+  private List<MapRecord<String, Object, Object>> read(String streamKey, ReadOffset offset) {
+    List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream().read(
+        Consumer.from(group, consumerName),
+        StreamReadOptions.empty().count(batchSize()),
+        StreamOffset.create(streamKey, offset));
+    return records != null ? records : List.of();
+  }
+
+  /**
+   * 接管其他实例长时间未确认的流水
+   */
+  private List<MapRecord<String, Object, Object>> claimStale(String streamKey) {
+    PendingMessages pending = stringRedisTemplate.opsForStream()
+        .pending(streamKey, group, Range.unbounded(), batchSize());
+    if (pending == null || pending.isEmpty()) {
+      return List.of();
+    }
+    List<RecordId> staleIds = new ArrayList<>();
+    for (PendingMessage message : pending) {
+      if (!consumerName.equals(message.getConsumerName())
+          && message.getElapsedTimeSinceLastDelivery().toMillis() >= claimIdleMs()) {
+        staleIds.add(message.getId());
+      }
+    }
+    if (staleIds.isEmpty()) {
+      return List.of();
+    }
+    log.warn("⚠️  接管其他实例遗留的流水: stream={}, count={}", streamKey, staleIds.size());
+    List<MapRecord<String, Object, Object>> claimed = stringRedisTemplate.opsForStream().claim(
+        streamKey, group, consumerName, Duration.ofMillis(claimIdleMs()), staleIds.toArray(new RecordId[0]));
+    return claimed != null ? claimed : List.of();
+  }
+
+  private void ensureGroup(String streamKey) {
+    try {
+      stringRedisTemplate.execute((RedisCallback<String>) connection ->
+          connection.streamCommands().xGroupCreate(
+              streamKey.getBytes(StandardCharsets.UTF_8), group, ReadOffset.from("0"), true));
+    } catch (Exception e) {
+      // BUSYGROUP：消费组已存在
+      log.debug("流水消费组已存在: stream={}, {}", streamKey, e.getMessage());
+    }
+  }
+
+  private static String resolveConsumerName() {
+    String hostname = System.getenv("HOSTNAME");
+    if (hostname == null || hostname.isBlank()) {
+      hostname = "instance-" + UUID.randomUUID();
+    }
+    return hostname;
+  }
+}
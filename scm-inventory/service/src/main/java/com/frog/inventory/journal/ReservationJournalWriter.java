@@ -0,0 +1,265 @@
+package com.frog.inventory.journal;
+
+import com.frog.inventory.domain.entity.InvReservation;
+import com.frog.inventory.domain.event.InventoryChangedEvent;
+import com.frog.inventory.mapper.InvInventoryMapper;
+import com.frog.inventory.mapper.InvReservationMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 预占流水顺序回写
+ *
+ * <p>预占脚本向 {@link #STREAM_KEY} 追加流水：o=R 预占 / C 确认 / X 释放 / E 到期，b=业务键，s=SKU，w=仓库，q=数量，
+ * t=发生时间（毫秒），p=1 表示可用库存变化已由分桶脚本写入库存流水，预占流水另带 n=租户 ID、e=过期时间、m=备注。
+ *
+ * <p>每批流水在一个数据库事务内按顺序回写：
+ * <ol>
+ *   <li>一条多行 INSERT 写入本批全部预占记录（ON CONFLICT DO NOTHING）</li>
+ *   <li>确认、释放、到期各一条 UPDATE，只切换 status = 0 的记录</li>
+ *   <li>只有实际写入/切换的记录才计入库存变化，按 SKU/仓库合并后每个键一条 UPDATE</li>
+ * </ol>
+ * 事务提交后才确认流水；流水被重放时记录状态已变化，不会重复计入库存。
+ *
+ * <p>回写失败的批次留在待确认列表重试，重试成功前不读取新流水（见 {@link AbstractStreamJournalConsumer}），
+ * 确认/释放不会先于它们的预占回写；多次重试仍失败的单条流水写入 inv_reservation_journal_dead_letter 后确认。
+ *
+ * @author SCM Platform Team
+ * @since 2025-12-26
+ */
+@Slf4j
+@Component
+public class ReservationJournalWriter extends AbstractStreamJournalConsumer {
+  public static final String STREAM_KEY = "inventory:reservation:journal";
+  public static final String PENDING_KEY = pendingKey(STREAM_KEY);
+  private static final String GROUP = "inventory-reservation-writer";
+
+  private final InvReservationMapper reservationMapper;
+  private final InvInventoryMapper inventoryMapper;
+  private final TransactionTemplate transactionTemplate;
+  private final ApplicationEventPublisher eventPublisher;
+
+  @Value("${inventory.reservation.journal.flush-interval-ms:200}")
+  private long flushIntervalMs;
+
+  @Value("${inventory.reservation.journal.batch-size:500}")
+  private int batchSize;
+
+  @Value("${inventory.reservation.journal.claim-idle-ms:60000}")
+  private long claimIdleMs;
+
+  @Value("${inventory.reservation.journal.max-attempts:5}")
+  private int maxAttempts;
+
+  public ReservationJournalWriter(StringRedisTemplate stringRedisTemplate,
+                                  InvReservationMapper reservationMapper,
+                                  InvInventoryMapper inventoryMapper,
+                                  TransactionTemplate transactionTemplate,
+                                  ApplicationEventPublisher eventPublisher,
+                                  ObjectProvider<MeterRegistry> meterRegistry) {
+    super(stringRedisTemplate, meterRegistry.getIfAvailable(), GROUP, "inventory.reservation.journal");
+    this.reservationMapper = reservationMapper;
+    this.inventoryMapper = inventoryMapper;
+    this.transactionTemplate = transactionTemplate;
+    this.eventPublisher = eventPublisher;
+  }
+
+  @Override
+  protected List<String> resolveStreamKeys() {
+    return List.of(STREAM_KEY);
+  }
+
+  @Override
+  protected long flushIntervalMs() {
+    return flushIntervalMs;
+  }
+
+  @Override
+  protected int batchSize() {
+    return batchSize;
+  }
+
+  @Override
+  protected long claimIdleMs() {
+    return claimIdleMs;
+  }
+
+  @Override
+  protected int maxAttempts() {
+    return maxAttempts;
+  }
+
+  @Override
+  protected boolean process(String streamKey, List<MapRecord<String, Object, Object>> records) {
+    Map<String, Event> reserved = new LinkedHashMap<>();
+    Map<String, Event> confirmed = new LinkedHashMap<>();
+    Map<String, Event> released = new LinkedHashMap<>();
+    Map<String, Event> expired = new LinkedHashMap<>();
+    for (MapRecord<String, Object, Object> record : records) {
+      Event event = Event.of(record.getValue());
+      switch (event.operation()) {
+        case "R" -> reserved.put(event.businessKey(), event);
+        case "C" -> confirmed.put(event.businessKey(), event);
+        case "X" -> released.put(event.businessKey(), event);
+        case "E" -> expired.put(event.businessKey(), event);
+        default -> log.error("❌ 未知的预占流水类型: {}", record.getValue());
+      }
+    }
+
+    try {
+      transactionTemplate.executeWithoutResult(status -> apply(reserved, confirmed, released, expired));
+    } catch (Exception e) {
+      // 不确认，下个周期重试
+      log.error("❌ 预占流水回写失败，稍后重试: entries={}", records.size(), e);
+      return false;
+    }
+    acknowledge(streamKey, records);
+    log.debug("💾 预占流水回写: reserved={}, confirmed={}, released={}, expired={}",
+        reserved.size(), confirmed.size(), released.size(), expired.size());
+    return true;
+  }
+
+  @Override
+  protected void deadLetter(String streamKey, MapRecord<String, Object, Object> record) {
+    Map<Object, Object> value = record.getValue();
+    reservationMapper.insertJournalDeadLetter(streamKey, record.getId().getValue(),
+        String.valueOf(value.get("o")), String.valueOf(value.get("b")), value.toString(), "POISON");
+  }
+
+  private void apply(Map<String, Event> reserved, Map<String, Event> confirmed,
+                     Map<String, Event> released, Map<String, Event> expired) {
+    Map<String, long[]> deltas = new LinkedHashMap<>();
+
+    if (!reserved.isEmpty()) {
+      List<InvReservation> rows = reserved.values().stream().map(Event::toReservation).toList();
+      for (String no : reservationMapper.insertReservedBatch(rows)) {
+        Event event = reserved.get(no);
+        // 分桶模式下可用库存与总库存已由库存流水扣减，这里补回总库存
+        if (event.preDeducted()) {
+          addDelta(deltas, event, 0, event.quantity(), event.quantity());
+        } else {
+          addDelta(deltas, event, -event.quantity(), event.quantity(), 0);
+        }
+      }
+    }
+    if (!confirmed.isEmpty()) {
+      List<String> nos = reservationMapper.finishReservedBatch(
+          new ArrayList<>(confirmed.keySet()), InvReservation.Status.CONFIRMED);
+      for (String no : nos) {
+        Event event = confirmed.get(no);
+        addDelta(deltas, event, 0, -event.quantity(), -event.quantity());
+      }
+    }
+    if (!released.isEmpty()) {
+      List<String> nos = reservationMapper.finishReservedBatch(
+          new ArrayList<>(released.keySet()), InvReservation.Status.RELEASED);
+      for (String no : nos) {
+        addReleaseDelta(deltas, released.get(no));
+      }
+    }
+    if (!expired.isEmpty()) {
+      List<String> nos = reservationMapper.finishReservedBatch(
+          new ArrayList<>(expired.keySet()), InvReservation.Status.EXPIRED);
+      for (String no : nos) {
+        addReleaseDelta(deltas, expired.get(no));
+      }
+    }
+
+    List<String> changed = new ArrayList<>(deltas.size());
+    deltas.forEach((key, delta) -> {
+      int separator = key.lastIndexOf(':');
+      String skuId = key.substring(0, separator);
+      String warehouseId = key.substring(separator + 1);
+      int updated = inventoryMapper.applyReservationDelta(skuId, warehouseId, delta[0], delta[1], delta[2]);
+      if (updated > 0) {
+        changed.add(key);
+      } else {
+        // 库存记录不存在或回写后为负：记录告警，不阻塞后续流水
+        log.error("❌ 预占流水无法回写库存: skuId={}, warehouseId={}, available={}, locked={}, total={}",
+            skuId, warehouseId, delta[0], delta[1], delta[2]);
+        if (meterRegistry != null) {
+          meterRegistry.counter("inventory.reservation.journal.rejected").increment();
+        }
+      }
+    });
+    if (!changed.isEmpty()) {
+      // 事务提交后失效库存近端缓存
+      eventPublisher.publishEvent(new InventoryChangedEvent(changed));
+    }
+  }
+
+  /**
+   * 释放/到期：锁定库存转回可用库存（分桶模式下可用与总库存已由库存流水加回，这里扣回总库存）
+   */
+  private static void addReleaseDelta(Map<String, long[]> deltas, Event event) {
+    if (event.preDeducted()) {
+      addDelta(deltas, event, 0, -event.quantity(), -event.quantity());
+    } else {
+      addDelta(deltas, event, event.quantity(), -event.quantity(), 0);
+    }
+  }
+
+  private static void addDelta(Map<String, long[]> deltas, Event event, long available, long locked, long total) {
+    long[] delta = deltas.computeIfAbsent(event.skuId() + ":" + event.warehouseId(), k -> new long[3]);
+    delta[0] += available;
+    delta[1] += locked;
+    delta[2] += total;
+  }
+
+  /**
+   * 单条预占流水
+   */
+  private record Event(String operation, String businessKey, String tenantId, String skuId, String warehouseId,
+                       int quantity, long timestamp, long expireAt, String remark, boolean preDeducted) {
+
+    private static Event of(Map<Object, Object> value) {
+      Object expireAt = value.get("e");
+      Object remark = value.get("m");
+      Object tenantId = value.get("n");
+      return new Event(
+          String.valueOf(value.get("o")),
+          String.valueOf(value.get("b")),
+          tenantId != null && !tenantId.toString().isEmpty() ? tenantId.toString() : null,
+          String.valueOf(value.get("s")),
+          String.valueOf(value.get("w")),
+          Integer.parseInt(String.valueOf(value.get("q"))),
+          Long.parseLong(String.valueOf(value.get("t"))),
+          expireAt != null ? Long.parseLong(expireAt.toString()) : 0,
+          remark != null && !remark.toString().isEmpty() ? remark.toString() : null,
+          "1".equals(String.valueOf(value.get("p"))));
+    }
+
+    private InvReservation toReservation() {
+      InvReservation reservation = new InvReservation();
+      reservation.setTenantId(tenantId);
+      reservation.setReservationNo(businessKey);
+      reservation.setOrderNo(businessKey);
+      reservation.setSkuId(skuId);
+      reservation.setWarehouseId(warehouseId);
+      reservation.setQuantity(quantity);
+      reservation.setReservedAt(toLocalDateTime(timestamp));
+      reservation.setExpireAt(toLocalDateTime(expireAt));
+      reservation.setRemark(remark);
+      return reservation;
+    }
+
+    private static LocalDateTime toLocalDateTime(long epochMillis) {
+      return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+  }
+}
@@ -0,0 +1,331 @@
+package com.frog.inventory.journal;
+
+import com.frog.inventory.domain.event.InventoryChangedEvent;
+import com.frog.inventory.mapper.InvInventoryMapper;
+import com.frog.inventory.mapper.InvStockJournalMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 库存流水异步刷盘（Write-Behind）
+ *
+ * <p>流水按库存分区写入 {@link #partitionStreamKey 分区 Stream}（s=SKU, w=仓库, d=变化量）。库存键、分区 Stream
+ * 与其未回写计数哈希带相同的 hash tag（见 {@link #stockKey}），库存脚本在 Redis Cluster 上是单槽操作。
+ * 本组件按固定间隔以消费组方式读取各分区流水，按 (SKU, 仓库) 合并变化量，每批流水只执行一次
+ * {@link InvInventoryMapper#applyStockDeltas 批量 UPDATE}，事务提交后 XACK + XDEL。
+ * 旧版本写入的全局 Stream {@link #STREAM_KEY} 不再写入，仍继续消费直到排空。
+ *
+ * <p>可靠性：
+ * <ul>
+ *   <li>库存更新与已回写流水 ID（inv_stock_journal_applied）在同一事务内写入；确认前宕机、XACK 失败或被其他实例
+ *       XCLAIM 后重放时，已记录的流水 ID 被跳过，合并量只包含尚未回写的流水</li>
+ *   <li>数据库写失败的一批流水整体不确认，下个周期从本消费者的待确认列表重试；多次重试仍失败时逐条重试，
+ *       单条仍失败的流水以 POISON 原因写入死信表后确认</li>
+ *   <li>其他实例宕机遗留的待确认流水，空闲超过阈值后由存活实例 XCLAIM 接管</li>
+ *   <li>无法回写的流水（库存记录不存在或回写后为负）与已回写 ID 同事务写入死信表 inv_stock_journal_dead_letter
+ *       后再确认，Redis 已生效的变化不会被静默丢弃</li>
+ *   <li>确认时扣减该键的未回写计数（{@link #hasPending}）；计数未归零时数据库库存是落后的，
+ *       {@code RedisInventoryService#syncInventoryToRedis} 不会用它回填过期的库存键</li>
+ * </ul>
+ *
+ * <p>热点库存分桶模式下，各分桶的流水写入与分桶同槽的分区 Stream（{@link #partition(String, int)}）。
+ *
+ * <p>指标：inventory.journal.flush.size（每次刷盘流水数）、inventory.journal.flush.keys（合并后键数）、
+ * inventory.journal.merge.ratio（合并比）、inventory.journal.lag（最老未刷盘流水的滞后毫秒数）、
+ * inventory.journal.replayed（重放被跳过的流水数）、inventory.journal.dead_letter（转入死信的合并键数/流水数）
+ *
+ * @author SCM Platform Team
+ * @since 2025-12-26
+ */
+@Slf4j
+@Component
+public class StockJournalFlusher extends AbstractStreamJournalConsumer {
+  /**
+   * 旧版本的全局流水 Stream（只消费，不再写入）
+   */
+  public static final String STREAM_KEY = "inventory:journal";
+  private static final String STOCK_KEY_PREFIX = "inventory:stock:";
+  private static final String GROUP = "inventory-journal-flusher";
+  private static final long PRUNE_INTERVAL_MS = TimeUnit.HOURS.toMillis(1);
+
+  private final InvInventoryMapper inventoryMapper;
+  private final InvStockJournalMapper journalMapper;
+  private final TransactionTemplate transactionTemplate;
+  private final ApplicationEventPublisher eventPublisher;
+
+  @Value("${inventory.journal.flush-interval-ms:500}")
+  private long flushIntervalMs;
+
+  @Value("${inventory.journal.batch-size:1000}")
+  private int batchSize;
+
+  @Value("${inventory.journal.claim-idle-ms:60000}")
+  private long claimIdleMs;
+
+  @Value("${inventory.journal.max-attempts:5}")
+  private int maxAttempts;
+
+  /**
+   * 已回写流水 ID 保留时长（小时），需大于流水在 Stream 中可能滞留的最长时间
+   */
+  @Value("${inventory.journal.applied-retention-hours:168}")
+  private long appliedRetentionHours;
+
+  /**
+   * 流水分区数（hash tag 个数），决定库存在 Redis Cluster 上能分散到的槽位数；上线后不能修改
+   */
+  @Value("${inventory.journal.partitions:16}")
+  private int partitions;
+
+  private DistributionSummary flushSizeSummary;
+  private DistributionSummary flushKeysSummary;
+  private DistributionSummary mergeRatioSummary;
+  private long lastPruneAt;
+
+  public StockJournalFlusher(StringRedisTemplate stringRedisTemplate,
+                             InvInventoryMapper inventoryMapper,
+                             InvStockJournalMapper journalMapper,
+                             TransactionTemplate transactionTemplate,
+                             ApplicationEventPublisher eventPublisher,
+                             ObjectProvider<MeterRegistry> meterRegistry) {
+    super(stringRedisTemplate, meterRegistry.getIfAvailable(), GROUP, "inventory.journal");
+    this.inventoryMapper = inventoryMapper;
+    this.journalMapper = journalMapper;
+    this.transactionTemplate = transactionTemplate;
+    this.eventPublisher = eventPublisher;
+  }
+
+  /**
+   * 分区流水 Stream 键（hash tag 决定槽位）
+   */
+  public static String partitionStreamKey(int partition) {
+    return STREAM_KEY + ":{" + partition + "}";
+  }
+
+  public int partitions() {
+    return partitions;
+  }
+
+  /**
+   * 库存所在的流水分区
+   */
+  public int partition(String skuId, String warehouseId) {
+    return partition(pendingField(skuId, warehouseId), 0);
+  }
+
+  /**
+   * 库存（field = SKU:仓库）第 offset 个分桶所在的流水分区，offset 为 0 即库存键本身的分区
+   */
+  public int partition(String field, int offset) {
+    return Math.floorMod(field.hashCode() + offset, partitions);
+  }
+
+  /**
+   * 库存键：inventory:stock:{分区}:SKU:仓库，与该库存的分区 Stream、未回写计数哈希同槽
+   */
+  public String stockKey(String skuId, String warehouseId) {
+    return stockKey(pendingField(skuId, warehouseId));
+  }
+
+  public String stockKey(String field) {
+    return STOCK_KEY_PREFIX + "{" + partition(field, 0) + "}:" + field;
+  }
+
+  @Override
+  protected List<String> resolveStreamKeys() {
+    List<String> streamKeys = new ArrayList<>(partitions + 1);
+    streamKeys.add(STREAM_KEY);
+    for (int i = 0; i < partitions; i++) {
+      streamKeys.add(partitionStreamKey(i));
+    }
+    return streamKeys;
+  }
+
+  @Override
+  protected long flushIntervalMs() {
+    return flushIntervalMs;
+  }
+
+  @Override
+  protected int batchSize() {
+    return batchSize;
+  }
+
+  @Override
+  protected long claimIdleMs() {
+    return claimIdleMs;
+  }
+
+  @Override
+  protected int maxAttempts() {
+    return maxAttempts;
+  }
+
+  /**
+   * 合并并回写一批流水（一个事务、一条批量 UPDATE），失败时抛出异常，整批留待重试
+   */
+  @Override
+  protected boolean process(String streamKey, List<MapRecord<String, Object, Object>> records) {
+    // 按键排序，并发刷盘的事务尽量以相同顺序锁行（仍发生死锁时整批重试）
+    Map<String, MergedDelta> merged = new TreeMap<>();
+    for (MapRecord<String, Object, Object> record : records) {
+      Map<Object, Object> value = record.getValue();
+      String skuId = String.valueOf(value.get("s"));
+      String warehouseId = String.valueOf(value.get("w"));
+      long delta = Long.parseLong(String.valueOf(value.get("d")));
+      merged.computeIfAbsent(pendingField(skuId, warehouseId), k -> new MergedDelta(skuId, warehouseId))
+          .add(delta, record);
+    }
+
+    List<String> changed = transactionTemplate.execute(status -> apply(streamKey, merged));
+    acknowledge(streamKey, records);
+
+    if (changed != null && !changed.isEmpty()) {
+      eventPublisher.publishEvent(new InventoryChangedEvent(changed));
+    }
+    if (flushSizeSummary != null) {
+      flushSizeSummary.record(records.size());
+      flushKeysSummary.record(merged.size());
+      mergeRatioSummary.record((double) records.size() / merged.size());
+    }
+    log.debug("💾 库存流水刷盘: entries={}, keys={}", records.size(), merged.size());
+    pruneApplied();
+    return true;
+  }
+
+  @Override
+  protected void deadLetter(String streamKey, MapRecord<String, Object, Object> record) {
+    Map<Object, Object> value = record.getValue();
+    journalMapper.insertDeadLetter(streamKey, String.valueOf(value.get("s")), String.valueOf(value.get("w")),
+        Long.parseLong(String.valueOf(value.get("d"))), record.getId().getValue(), "POISON");
+  }
+
+  /**
+   * 在事务内记录流水 ID，并以一条批量 UPDATE 回写尚未回写过的部分
+   *
+   * @return 库存记录被更新的键（{@link InventoryChangedEvent#key}）
+   */
+  private List<String> apply(String streamKey, Map<String, MergedDelta> merged) {
+    List<String> recordIds = new ArrayList<>();
+    merged.values().forEach(delta -> recordIds.addAll(delta.deltas.keySet()));
+    Set<String> fresh = new HashSet<>(journalMapper.insertApplied(streamKey, recordIds));
+    if (fresh.size() < recordIds.size()) {
+      log.warn("⚠️  跳过已回写的重放流水: stream={}, replayed={}", streamKey, recordIds.size() - fresh.size());
+      if (meterRegistry != null) {
+        meterRegistry.counter("inventory.journal.replayed").increment(recordIds.size() - fresh.size());
+      }
+    }
+
+    List<InvInventoryMapper.StockDelta> deltas = new ArrayList<>(merged.size());
+    for (Map.Entry<String, MergedDelta> entry : merged.entrySet()) {
+      MergedDelta delta = entry.getValue();
+      delta.retain(fresh);
+      if (delta.total() != 0) {
+        deltas.add(new InvInventoryMapper.StockDelta(entry.getKey(), delta.skuId, delta.warehouseId, delta.total()));
+      }
+    }
+    if (deltas.isEmpty()) {
+      return List.of();
+    }
+
+    Set<String> updated = new HashSet<>(inventoryMapper.applyStockDeltas(deltas));
+    List<String> changed = new ArrayList<>(updated.size());
+    for (InvInventoryMapper.StockDelta delta : deltas) {
+      if (updated.contains(delta.getKey())) {
+        changed.add(InventoryChangedEvent.key(delta.getSkuId(), delta.getWarehouseId()));
+        continue;
+      }
+      // 库存记录不存在或回写后为负：Redis 已生效，转入死信待人工核对，不阻塞后续流水
+      MergedDelta rejected = merged.get(delta.getKey());
+      journalMapper.insertDeadLetter(streamKey, delta.getSkuId(), delta.getWarehouseId(), delta.getDelta(),
+          String.join(",", rejected.deltas.keySet()), "NOT_APPLICABLE");
+      log.error("❌ 库存流水无法回写，已转入死信: skuId={}, warehouseId={}, delta={}, entries={}",
+          delta.getSkuId(), delta.getWarehouseId(), delta.getDelta(), rejected.deltas.size());
+      if (meterRegistry != null) {
+        meterRegistry.counter("inventory.journal.dead_letter").increment();
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * 定期清理过期的已回写流水 ID
+   */
+  private void pruneApplied() {
+    long now = System.currentTimeMillis();
+    if (now - lastPruneAt < PRUNE_INTERVAL_MS) {
+      return;
+    }
+    lastPruneAt = now;
+    try {
+      int deleted = journalMapper.deleteAppliedBefore(LocalDateTime.now().minusHours(appliedRetentionHours));
+      log.debug("🧹 清理已回写流水 ID: deleted={}", deleted);
+    } catch (Exception e) {
+      log.warn("⚠️  清理已回写流水 ID 失败: {}", e.getMessage());
+    }
+  }
+
+  @Override
+  protected void registerMetrics() {
+    if (meterRegistry == null) {
+      return;
+    }
+    flushSizeSummary = DistributionSummary.builder("inventory.journal.flush.size")
+        .description("每次刷盘处理的流水条数")
+        .register(meterRegistry);
+    flushKeysSummary = DistributionSummary.builder("inventory.journal.flush.keys")
+        .description("每次刷盘合并后的 SKU/仓库键数")
+        .register(meterRegistry);
+    mergeRatioSummary = DistributionSummary.builder("inventory.journal.merge.ratio")
+        .description("流水条数 / 合并后键数")
+        .register(meterRegistry);
+  }
+
+  /**
+   * 单个 (SKU, 仓库) 在一个刷盘窗口内的合并结果
+   */
+  private static final class MergedDelta {
+    private final String skuId;
+    private final String warehouseId;
+    // 流水 ID -> 变化量（保持写入顺序）
+    private final Map<String, Long> deltas = new LinkedHashMap<>();
+
+    private MergedDelta(String skuId, String warehouseId) {
+      this.skuId = skuId;
+      this.warehouseId = warehouseId;
+    }
+
+    private void add(long value, MapRecord<String, Object, Object> record) {
+      deltas.merge(record.getId().getValue(), value, Long::sum);
+    }
+
+    /**
+     * 只保留尚未回写过的流水
+     */
+    private void retain(Set<String> fresh) {
+      deltas.keySet().retainAll(fresh);
+    }
+
+    private long total() {
+      return deltas.values().stream().mapToLong(Long::longValue).sum();
+    }
+  }
+}
@@ -2,7 +2,15 @@ package com.frog.inventory.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.frog.inventory.domain.entity.Inventory;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.List;
 
 /**
  * 库存表 Mapper
@@ -12,4 +20,115 @@ import org.apache.ibatis.annotations.Mapper;
  */
 @Mapper
 public interface InvInventoryMapper extends BaseMapper<Inventory> {
-}
\ No newline at end of file
+
+  /**
+   * 按 SKU/仓库批量累加可用库存与总库存（库存流水批量回写，一条 UPDATE ... FROM (VALUES ...)）
+   *
+   * <p>结果为负或库存记录不存在的键不更新，不出现在返回值中，由调用方转入死信
+   *
+   * @param deltas 合并后的库存变化量（每个键一条）
+   * @return 已更新的键（{@link StockDelta#getKey()}）
+   */
+  @Select("""
+      <script>
+      UPDATE inv_inventory i
+      SET available_stock = i.available_stock + v.delta,
+          total_stock = i.total_stock + v.delta,
+          last_outbound_at = CASE WHEN v.delta &lt; 0 THEN NOW() ELSE i.last_outbound_at END,
+          last_inbound_at = CASE WHEN v.delta &gt; 0 THEN NOW() ELSE i.last_inbound_at END,
+          version = i.version + 1,
+          update_time = NOW()
+      FROM (VALUES
+      <foreach collection='deltas' item='d' separator=','>
+        (#{d.key}, CAST(#{d.skuId} AS UUID), CAST(#{d.warehouseId} AS UUID), CAST(#{d.delta} AS BIGINT))
+      </foreach>
+      ) AS v (k, sku_id, warehouse_id, delta)
+      WHERE i.sku_id = v.sku_id
+        AND i.warehouse_id = v.warehouse_id
+        AND i.deleted = FALSE
+        AND i.available_stock + v.delta &gt;= 0
+      RETURNING v.k
+      </script>
+      """)
+  @Options(flushCache = Options.FlushCachePolicy.TRUE)
+  List<String> applyStockDeltas(@Param("deltas") List<StockDelta> deltas);
+
+  /**
+   * 按 SKU/仓库累加可用库存与总库存（人工调整、调拨）
+   *
+   * <p>与流水回写一样以增量更新，不覆盖并发回写的库存；结果为负时不更新
+   *
+   * @param skuId SKU ID
+   * @param warehouseId 仓库 ID
+   * @param delta 调整数量（负数为扣减）
+   * @param adjustType 调整类型：1-入库，2-出库，其他不更新出入库时间
+   * @param operatorId 操作人 ID
+   * @return 更新行数
+   */
+  @Update("""
+      UPDATE inv_inventory
+      SET available_stock = available_stock + #{delta},
+          total_stock = total_stock + #{delta},
+          last_inbound_at = CASE WHEN #{adjustType} = 1 THEN NOW() ELSE last_inbound_at END,
+          last_outbound_at = CASE WHEN #{adjustType} = 2 THEN NOW() ELSE last_outbound_at END,
+          version = version + 1,
+          update_by = #{operatorId},
+          update_time = NOW()
+      WHERE sku_id = #{skuId}
+        AND warehouse_id = #{warehouseId}
+        AND deleted = FALSE
+        AND available_stock + #{delta} >= 0
+      """)
+  int adjustStock(@Param("skuId") String skuId,
+                  @Param("warehouseId") String warehouseId,
+                  @Param("delta") long delta,
+                  @Param("adjustType") int adjustType,
+                  @Param("operatorId") String operatorId);
+
+  /**
+   * 按 SKU/仓库累加可用、锁定、总库存（预占流水合并回写）
+   *
+   * <p>结果为负时不更新，由调用方记录并告警
+   *
+   * @param skuId SKU ID
+   * @param warehouseId 仓库 ID
+   * @param availableDelta 可用库存变化量
+   * @param lockedDelta 锁定库存变化量
+   * @param totalDelta 总库存变化量
+   * @return 更新行数
+   */
+  @Update("""
+      UPDATE inv_inventory
+      SET available_stock = available_stock + #{availableDelta},
+          locked_stock = locked_stock + #{lockedDelta},
+          total_stock = total_stock + #{totalDelta},
+          last_outbound_at = CASE WHEN #{totalDelta} < 0 THEN NOW() ELSE last_outbound_at END,
+          version = version + 1,
+          update_time = NOW()
+      WHERE sku_id = #{skuId}
+        AND warehouse_id = #{warehouseId}
+        AND deleted = FALSE
+        AND available_stock + #{availableDelta} >= 0
+        AND locked_stock + #{lockedDelta} >= 0
+      """)
+  int applyReservationDelta(@Param("skuId") String skuId,
+                            @Param("warehouseId") String warehouseId,
+                            @Param("availableDelta") long availableDelta,
+                            @Param("lockedDelta") long lockedDelta,
+                            @Param("totalDelta") long totalDelta);
+
+  /**
+   * 单个 SKU/仓库的合并变化量
+   */
+  @Getter
+  @RequiredArgsConstructor
+  class StockDelta {
+    /**
+     * 键（SKU:仓库），用于匹配返回值
+     */
+    private final String key;
+    private final String skuId;
+    private final String warehouseId;
+    private final long delta;
+  }
+}
@@ -0,0 +1,146 @@
+package com.frog.inventory.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.frog.inventory.domain.entity.InvInventoryStats;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
+
+/**
+ * 库存统计聚合 Mapper
+ *
+ * @author SCM Platform Team
+ * @since 2025-12-26
+ */
+@Mapper
+public interface InvInventoryStatsMapper extends BaseMapper<InvInventoryStats> {
+
+  /**
+   * 按仓库汇总各分条（只返回仍有库存记录的仓库）
+   *
+   * @return 每个仓库一行的统计
+   */
+  @Select("""
+      SELECT warehouse_id,
+             SUM(record_count) AS record_count,
+             SUM(total_stock) AS total_stock,
+             SUM(available_stock) AS available_stock,
+             SUM(locked_stock) AS locked_stock,
+             SUM(damaged_stock) AS damaged_stock,
+             SUM(total_value) AS total_value,
+             SUM(out_of_stock_count) AS out_of_stock_count,
+             SUM(low_stock_count) AS low_stock_count,
+             SUM(normal_stock_count) AS normal_stock_count
+      FROM inv_inventory_stats
+      GROUP BY warehouse_id
+      HAVING SUM(record_count) > 0
+      """)
+  List<InvInventoryStats> selectWarehouseTotals();
+
+  /**
+   * 去重 SKU 数（对账任务刷新）
+   */
+  @Select("SELECT COALESCE(SUM(sku_count), 0) FROM inv_inventory_stats_tenant")
+  Long selectSkuCount();
+
+  /**
+   * 获取对账事务级咨询锁（多实例同时触发时只有一个执行）
+   */
+  @Select("SELECT pg_try_advisory_xact_lock(HASHTEXT('inv_inventory_stats'))")
+  boolean tryLockReconcile();
+
+  /**
+   * 对账：按 (租户, 仓库) 重新聚合 inv_inventory，与聚合表的差值累加到修正分条（stripe = -1）
+   *
+   * <p>同一条语句内读取库存表与聚合表，二者处于同一快照；触发器与库存变更同事务提交，
+   * 因此差值只包含真实漂移，不受并发变更影响
+   *
+   * @return 被修正的仓库数
+   */
+  @Insert("""
+      WITH actual AS (
+        SELECT tenant_id, warehouse_id,
+               COUNT(*) AS record_count,
+               SUM(total_stock) AS total_stock,
+               SUM(available_stock) AS available_stock,
+               SUM(locked_stock) AS locked_stock,
+               SUM(damaged_stock) AS damaged_stock,
+               SUM(total_stock * COALESCE(average_cost, 0)) AS total_value,
+               COUNT(*) FILTER (WHERE available_stock = 0) AS out_of_stock_count,
+               COUNT(*) FILTER (WHERE available_stock > 0
+                                  AND available_stock <= COALESCE(safety_stock, 0)) AS low_stock_count,
+               COUNT(*) FILTER (WHERE available_stock > COALESCE(safety_stock, 0)) AS normal_stock_count
+        FROM inv_inventory
+        WHERE deleted = FALSE
+        GROUP BY tenant_id, warehouse_id
+      ), cached AS (
+        SELECT tenant_id, warehouse_id,
+               SUM(record_count) AS record_count,
+               SUM(total_stock) AS total_stock,
+               SUM(available_stock) AS available_stock,
+               SUM(locked_stock) AS locked_stock,
+               SUM(damaged_stock) AS damaged_stock,
+               SUM(total_value) AS total_value,
+               SUM(out_of_stock_count) AS out_of_stock_count,
+               SUM(low_stock_count) AS low_stock_count,
+               SUM(normal_stock_count) AS normal_stock_count
+        FROM inv_inventory_stats
+        GROUP BY tenant_id, warehouse_id
+      ), diff AS (
+        SELECT COALESCE(a.tenant_id, c.tenant_id) AS tenant_id,
+               COALESCE(a.warehouse_id, c.warehouse_id) AS warehouse_id,
+               COALESCE(a.record_count, 0) - COALESCE(c.record_count, 0) AS record_count,
+               COALESCE(a.total_stock, 0) - COALESCE(c.total_stock, 0) AS total_stock,
+               COALESCE(a.available_stock, 0) - COALESCE(c.available_stock, 0) AS available_stock,
+               COALESCE(a.locked_stock, 0) - COALESCE(c.locked_stock, 0) AS locked_stock,
+               COALESCE(a.damaged_stock, 0) - COALESCE(c.damaged_stock, 0) AS damaged_stock,
+               COALESCE(a.total_value, 0) - COALESCE(c.total_value, 0) AS total_value,
+               COALESCE(a.out_of_stock_count, 0) - COALESCE(c.out_of_stock_count, 0) AS out_of_stock_count,
+               COALESCE(a.low_stock_count, 0) - COALESCE(c.low_stock_count, 0) AS low_stock_count,
+               COALESCE(a.normal_stock_count, 0) - COALESCE(c.normal_stock_count, 0) AS normal_stock_count
+        FROM actual a
+        FULL OUTER JOIN cached c
+          ON a.tenant_id = c.tenant_id AND a.warehouse_id = c.warehouse_id
+      )
+      INSERT INTO inv_inventory_stats AS s (
+          tenant_id, warehouse_id, stripe, record_count, total_stock, available_stock, locked_stock,
+          damaged_stock, total_value, out_of_stock_count, low_stock_count, normal_stock_count, update_time)
+      SELECT tenant_id, warehouse_id, -1, record_count, total_stock, available_stock, locked_stock,
+             damaged_stock, total_value, out_of_stock_count, low_stock_count, normal_stock_count, NOW()
+      FROM diff
+      WHERE record_count <> 0 OR total_stock <> 0 OR available_stock <> 0 OR locked_stock <> 0
+         OR damaged_stock <> 0 OR total_value <> 0 OR out_of_stock_count <> 0
+         OR low_stock_count <> 0 OR normal_stock_count <> 0
+      ON CONFLICT (tenant_id, warehouse_id, stripe) DO UPDATE
+      SET record_count = s.record_count + EXCLUDED.record_count,
+          total_stock = s.total_stock + EXCLUDED.total_stock,
+          available_stock = s.available_stock + EXCLUDED.available_stock,
+          locked_stock = s.locked_stock + EXCLUDED.locked_stock,
+          damaged_stock = s.damaged_stock + EXCLUDED.damaged_stock,
+          total_value = s.total_value + EXCLUDED.total_value,
+          out_of_stock_count = s.out_of_stock_count + EXCLUDED.out_of_stock_count,
+          low_stock_count = s.low_stock_count + EXCLUDED.low_stock_count,
+          normal_stock_count = s.normal_stock_count + EXCLUDED.normal_stock_count,
+          update_time = NOW()
+      """)
+  int reconcileWarehouseStats();
+
+  /**
+   * 刷新各租户去重 SKU 数
+   *
+   * @return 刷新的租户数
+   */
+  @Insert("""
+      INSERT INTO inv_inventory_stats_tenant (tenant_id, sku_count, reconciled_at)
+      SELECT tenant_id, COUNT(DISTINCT sku_id), NOW()
+      FROM inv_inventory
+      WHERE deleted = FALSE
+      GROUP BY tenant_id
+      ON CONFLICT (tenant_id) DO UPDATE
+      SET sku_count = EXCLUDED.sku_count,
+          reconciled_at = EXCLUDED.reconciled_at
+      """)
+  int refreshTenantSkuCounts();
+}
@@ -0,0 +1,138 @@
+package com.frog.inventory.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.frog.inventory.domain.entity.InvReservation;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
+
+/**
+ * 库存预占记录 Mapper
+ *
+ * @author SCM Platform Team
+ * @since 2025-12-26
+ */
+@Mapper
+public interface InvReservationMapper extends BaseMapper<InvReservation> {
+
+  /**
+   * 批量写入预占记录（重复的预占单号忽略）
+   *
+   * <p>预占流水可能被重放，(reservation_no, reserved_at) 取自流水本身，重放时冲突而不重复写入；
+   * 回写在后台线程执行，租户 ID 同样取自流水
+   *
+   * @param reservations 预占记录
+   * @return 本次实际写入的预占单号
+   */
+  @Select("""
+      <script>
+      INSERT INTO inv_reservation (tenant_id, reservation_no, sku_id, warehouse_id, order_no, quantity, status,
+                                   expire_at, reserved_at, remark)
+      VALUES
+      <foreach collection='reservations' item='r' separator=','>
+        (CAST(#{r.tenantId} AS UUID), #{r.reservationNo}, #{r.skuId}, #{r.warehouseId}, #{r.orderNo}, #{r.quantity}, 0,
+         #{r.expireAt}, #{r.reservedAt}, #{r.remark})
+      </foreach>
+      ON CONFLICT (reservation_no, reserved_at) DO NOTHING
+      RETURNING reservation_no
+      </script>
+      """)
+  @Options(flushCache = Options.FlushCachePolicy.TRUE)
+  List<String> insertReservedBatch(@Param("reservations") List<InvReservation> reservations);
+
+  /**
+   * 批量将已预占记录切换为终态
+   *
+   * <p>只更新 status = 0 的记录，重放时不会重复生效
+   *
+   * @param reservationNos 预占单号
+   * @param status 目标状态（1-已确认，2-已释放，3-已过期）
+   * @return 本次实际切换的预占单号
+   */
+  @Select("""
+      <script>
+      UPDATE inv_reservation
+      SET status = #{status},
+          confirmed_at = CASE WHEN #{status} = 1 THEN NOW() ELSE confirmed_at END,
+          released_at = CASE WHEN #{status} IN (2, 3) THEN NOW() ELSE released_at END
+      WHERE status = 0
+        AND reservation_no IN
+      <foreach collection='reservationNos' item='no' open='(' close=')' separator=','>
+        #{no}
+      </foreach>
+      RETURNING reservation_no
+      </script>
+      """)
+  @Options(flushCache = Options.FlushCachePolicy.TRUE)
+  List<String> finishReservedBatch(@Param("reservationNos") List<String> reservationNos,
+                                   @Param("status") int status);
+
+  /**
+   * 写入多次回写失败的预占流水
+   *
+   * @param streamKey 流水 Stream
+   * @param recordId 流水 ID
+   * @param operation 流水类型
+   * @param businessKey 业务键
+   * @param payload 流水原文
+   * @param reason 原因
+   * @return 写入行数
+   */
+  @Insert("""
+      INSERT INTO inv_reservation_journal_dead_letter (stream_key, record_id, operation, business_key, payload, reason)
+      VALUES (#{streamKey}, #{recordId}, #{operation}, #{businessKey}, #{payload}, #{reason})
+      ON CONFLICT (stream_key, record_id) DO NOTHING
+      """)
+  int insertJournalDeadLetter(@Param("streamKey") String streamKey,
+                              @Param("recordId") String recordId,
+                              @Param("operation") String operation,
+                              @Param("businessKey") String businessKey,
+                              @Param("payload") String payload,
+                              @Param("reason") String reason);
+
+  /**
+   * 查询超过宽限期仍未结束的预占（走 idx_reservation_expire 部分索引）
+   *
+   * @param graceSeconds 到期后的宽限秒数（正常情况下 Redis 到期处理已在宽限期内回收）
+   * @param limit 最大条数
+   * @return 预占单号
+   */
+  @Select("""
+      SELECT reservation_no
+      FROM inv_reservation
+      WHERE status = 0
+        AND expire_at < NOW() - MAKE_INTERVAL(secs => #{graceSeconds})
+      ORDER BY expire_at
+      LIMIT #{limit}
+      """)
+  List<String> selectOverdueReservationNos(@Param("graceSeconds") long graceSeconds,
+                                           @Param("limit") int limit);
+
+  /**
+   * 批量将已预占记录标记为已过期，并返回被标记的记录
+   *
+   * <p>只更新 status = 0 的记录，多实例并发执行时每条记录只会被一个实例标记
+   *
+   * @param reservationNos 预占单号
+   * @return 本次实际标记的记录（预占单号、SKU、仓库、数量）
+   */
+  @Select("""
+      <script>
+      UPDATE inv_reservation
+      SET status = 3,
+          released_at = NOW()
+      WHERE status = 0
+        AND reservation_no IN
+      <foreach collection='reservationNos' item='no' open='(' close=')' separator=','>
+        #{no}
+      </foreach>
+      RETURNING reservation_no, sku_id, warehouse_id, quantity
+      </script>
+      """)
+  @Options(flushCache = Options.FlushCachePolicy.TRUE)
+  List<InvReservation> expireReservedBatch(@Param("reservationNos") List<String> reservationNos);
+}
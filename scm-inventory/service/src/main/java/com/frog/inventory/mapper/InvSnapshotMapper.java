@@ -1,7 +1,13 @@
 package com.frog.inventory.mapper;
 
+import com.frog.inventory.domain.dto.SnapshotChunkResult;
 import com.frog.inventory.domain.entity.InvSnapshot;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDate;
 
 /**
  * <p>
@@ -13,4 +19,57 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
  */
 public interface InvSnapshotMapper extends BaseMapper<InvSnapshot> {
 
+    /**
+     * 按主键顺序取一块库存记录，在数据库内直接生成快照（INSERT ... SELECT，数据不经过应用）
+     *
+     * <p>同一天重复执行时覆盖已有快照，断点续跑重做的块不会产生重复数据
+     *
+     * @param snapshotDate 快照日期
+     * @param afterId 断点（上一块最后一条库存记录 ID），首块为 null
+     * @param shardIndex 分片序号
+     * @param shardTotal 分片总数
+     * @param chunkSize 每块记录数
+     * @return 本块读取的记录数与最后一条记录 ID
+     */
+    @Select("""
+            <script>
+            WITH chunk AS (
+              SELECT id, tenant_id, sku_id, warehouse_id, total_stock, available_stock, locked_stock,
+                     damaged_stock, COALESCE(average_cost, 0) AS average_cost
+              FROM inv_inventory
+              WHERE deleted = FALSE
+              <if test='afterId != null'>
+                AND id &gt; CAST(#{afterId} AS UUID)
+              </if>
+              <if test='shardTotal &gt; 1'>
+                AND MOD((HASHTEXT(id::text) &amp; 2147483647), #{shardTotal}) = #{shardIndex}
+              </if>
+              ORDER BY id
+              LIMIT #{chunkSize}
+            ), written AS (
+              INSERT INTO inv_snapshot (tenant_id, snapshot_date, sku_id, warehouse_id, total_stock, available_stock,
+                                        locked_stock, damaged_stock, average_cost, total_value, create_time)
+              SELECT tenant_id, #{snapshotDate}, sku_id, warehouse_id, total_stock, available_stock,
+                     locked_stock, damaged_stock, average_cost, total_stock * average_cost, NOW()
+              FROM chunk
+              ON CONFLICT (tenant_id, snapshot_date, sku_id, warehouse_id) DO UPDATE
+              SET total_stock = EXCLUDED.total_stock,
+                  available_stock = EXCLUDED.available_stock,
+                  locked_stock = EXCLUDED.locked_stock,
+                  damaged_stock = EXCLUDED.damaged_stock,
+                  average_cost = EXCLUDED.average_cost,
+                  total_value = EXCLUDED.total_value,
+                  create_time = EXCLUDED.create_time
+              RETURNING 1
+            )
+            SELECT COUNT(*) AS row_count, MAX(id::text) AS last_id
+            FROM chunk
+            </script>
+            """)
+    @Options(flushCache = Options.FlushCachePolicy.TRUE)
+    SnapshotChunkResult insertSnapshotChunk(@Param("snapshotDate") LocalDate snapshotDate,
+                                            @Param("afterId") String afterId,
+                                            @Param("shardIndex") int shardIndex,
+                                            @Param("shardTotal") int shardTotal,
+                                            @Param("chunkSize") int chunkSize);
 }
@@ -0,0 +1,77 @@
+package com.frog.inventory.mapper;
+
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 库存流水回写记录 Mapper（已回写流水 ID 与死信）
+ *
+ * @author SCM Platform Team
+ * @since 2025-12-26
+ */
+@Mapper
+public interface InvStockJournalMapper {
+
+  /**
+   * 记录已回写的流水 ID（已存在的忽略）
+   *
+   * <p>与库存更新在同一事务内执行，重放的流水在这里冲突，不会重复计入库存
+   *
+   * @param streamKey 流水 Stream
+   * @param recordIds 流水 ID
+   * @return 本次新记录的流水 ID（即尚未回写过的流水）
+   */
+  @Select("""
+      <script>
+      INSERT INTO inv_stock_journal_applied (stream_key, record_id)
+      VALUES
+      <foreach collection='recordIds' item='id' separator=','>
+        (#{streamKey}, #{id})
+      </foreach>
+      ON CONFLICT (stream_key, record_id) DO NOTHING
+      RETURNING record_id
+      </script>
+      """)
+  @Options(flushCache = Options.FlushCachePolicy.TRUE)
+  List<String> insertApplied(@Param("streamKey") String streamKey, @Param("recordIds") List<String> recordIds);
+
+  /**
+   * 写入无法回写数据库的流水
+   *
+   * @param streamKey 流水 Stream
+   * @param skuId SKU ID
+   * @param warehouseId 仓库 ID
+   * @param delta 合并后的库存变化量
+   * @param recordIds 合并的流水 ID，逗号分隔
+   * @param reason 原因
+   * @return 写入行数
+   */
+  @Insert("""
+      INSERT INTO inv_stock_journal_dead_letter (stream_key, sku_id, warehouse_id, delta, record_ids, reason)
+      VALUES (#{streamKey}, #{skuId}, #{warehouseId}, #{delta}, #{recordIds}, #{reason})
+      """)
+  int insertDeadLetter(@Param("streamKey") String streamKey,
+                       @Param("skuId") String skuId,
+                       @Param("warehouseId") String warehouseId,
+                       @Param("delta") long delta,
+                       @Param("recordIds") String recordIds,
+                       @Param("reason") String reason);
+
+  /**
+   * 清理早于指定时间的已回写流水 ID（对应流水早已确认删除，不会再被重放）
+   *
+   * @param before 截止时间
+   * @return 删除行数
+   */
+  @Delete("""
+      DELETE FROM inv_stock_journal_applied WHERE applied_at < #{before}
+      """)
+  int deleteAppliedBefore(@Param("before") LocalDateTime before);
+}
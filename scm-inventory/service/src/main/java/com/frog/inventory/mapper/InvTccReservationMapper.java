@@ -3,6 +3,11 @@ package com.frog.inventory.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.frog.inventory.domain.entity.InvTccReservation;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
 
 /**
  * 库存 TCC 预留记录 Mapper
@@ -12,4 +17,46 @@ import org.apache.ibatis.annotations.Mapper;
  */
 @Mapper
 public interface InvTccReservationMapper extends BaseMapper<InvTccReservation> {
-}
\ No newline at end of file
+
+    /**
+     * 查询已存在预留记录的业务键（任意状态，含空回滚写入的 CANCELLED 记录）
+     *
+     * @param businessKeys 业务键
+     * @return 已存在的业务键
+     */
+    @Select("""
+            <script>
+            SELECT business_key
+            FROM inv_tcc_reservation
+            WHERE business_key IN
+            <foreach collection='businessKeys' item='key' open='(' close=')' separator=','>
+              #{key}
+            </foreach>
+            </script>
+            """)
+    List<String> selectExistingBusinessKeys(@Param("businessKeys") List<String> businessKeys);
+
+    /**
+     * 批量写入 TRYING 预留记录（业务键已存在的忽略）
+     *
+     * <p>与空回滚并发时，Cancel 先写入的 CANCELLED 记录会使对应 Try 被忽略（防悬挂）
+     *
+     * @param reservations 预留记录
+     * @return 本次实际写入的业务键
+     */
+    @Select("""
+            <script>
+            INSERT INTO inv_tcc_reservation (business_key, sku_id, quantity, xid, branch_id, status,
+                                             try_time, create_time, update_time)
+            VALUES
+            <foreach collection='reservations' item='r' separator=','>
+              (#{r.businessKey}, #{r.skuId}, #{r.quantity}, #{r.xid}, #{r.branchId}, 'TRYING',
+               #{r.tryTime}, NOW(), NOW())
+            </foreach>
+            ON CONFLICT (business_key) DO NOTHING
+            RETURNING business_key
+            </script>
+            """)
+    @Options(flushCache = Options.FlushCachePolicy.TRUE)
+    List<String> insertTryingBatch(@Param("reservations") List<InvTccReservation> reservations);
+}
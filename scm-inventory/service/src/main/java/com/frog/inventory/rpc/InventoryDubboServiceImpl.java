@@ -0,0 +1,172 @@
+package com.frog.inventory.rpc;
+
+import com.frog.inventory.api.InventoryDubboService;
+import com.frog.inventory.service.RedisInventoryService;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.dubbo.config.annotation.DubboService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * 库存服务 Dubbo 实现
+ *
+ * <p>扣减、释放均走 Redis Lua 脚本，批量扣减在一次往返内对全部明细做"全部或全不"的原子扣减。
+ *
+ * @author SCM Platform Team
+ * @since 2025-12-26
+ */
+@Slf4j
+@DubboService
+@Component
+public class InventoryDubboServiceImpl implements InventoryDubboService {
+    private final RedisInventoryService redisInventoryService;
+
+    /**
+     * 接口未指定仓库时使用的仓库（可选，配置时必须是真实的仓库 ID）
+     */
+    @Value("${inventory.default-warehouse-id:}")
+    private String defaultWarehouseId;
+
+    public InventoryDubboServiceImpl(RedisInventoryService redisInventoryService) {
+        this.redisInventoryService = redisInventoryService;
+    }
+
+    @PostConstruct
+    public void validateDefaultWarehouse() {
+        if (!StringUtils.hasText(defaultWarehouseId)) {
+            log.warn("⚠️  未配置 inventory.default-warehouse-id，未指定仓库的库存调用将被拒绝");
+            return;
+        }
+        try {
+            UUID.fromString(defaultWarehouseId);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException(
+                    "inventory.default-warehouse-id 必须是仓库 ID（UUID）: " + defaultWarehouseId, e);
+        }
+    }
+
+    @Override
+    public void deductStock(Long skuId, Integer quantity, String requestId) {
+        BatchDeductStockRequest.StockItem item = new BatchDeductStockRequest.StockItem();
+        item.setSkuId(skuId);
+        item.setQuantity(quantity);
+
+        BatchDeductStockRequest request = new BatchDeductStockRequest();
+        request.setItems(List.of(item));
+        request.setRequestId(requestId);
+
+        BatchDeductStockResult result = tryBatchDeductStock(request);
+        if (!result.isSuccess()) {
+            BatchDeductStockResult.ItemFailure failure = result.getFailures().get(0);
+            throw new InsufficientStockException(String.format("库存扣减失败: skuId=%d, reason=%s, available=%s",
+                    skuId, failure.getReason(), failure.getAvailableStock()));
+        }
+    }
+
+    @Override
+    public void batchDeductStock(BatchDeductStockRequest deductRequest) {
+        BatchDeductStockResult result = tryBatchDeductStock(deductRequest);
+        if (!result.isSuccess()) {
+            String details = result.getFailures().stream()
+                    .map(f -> String.format("skuId=%d, reason=%s, available=%s",
+                            f.getSkuId(), f.getReason(), f.getAvailableStock()))
+                    .collect(Collectors.joining("; "));
+            throw new InsufficientStockException("批量库存扣减失败: " + details);
+        }
+    }
+
+    @Override
+    public BatchDeductStockResult tryBatchDeductStock(BatchDeductStockRequest deductRequest) {
+        if (deductRequest == null || deductRequest.getItems() == null || deductRequest.getItems().isEmpty()) {
+            throw new IllegalArgumentException("扣减明细不能为空");
+        }
+        if (!StringUtils.hasText(deductRequest.getRequestId())) {
+            throw new IllegalArgumentException("requestId 不能为空");
+        }
+
+        List<RedisInventoryService.StockLine> lines = new ArrayList<>(deductRequest.getItems().size());
+        for (BatchDeductStockRequest.StockItem item : deductRequest.getItems()) {
+            if (item.getSkuId() == null || item.getQuantity() == null || item.getQuantity() <= 0) {
+                throw new IllegalArgumentException("扣减明细非法: skuId=" + item.getSkuId()
+                        + ", quantity=" + item.getQuantity());
+            }
+            lines.add(new RedisInventoryService.StockLine(
+                    String.valueOf(item.getSkuId()),
+                    resolveWarehouseId(item.getWarehouseId()),
+                    item.getQuantity()));
+        }
+
+        RedisInventoryService.BatchDeductResult outcome =
+                redisInventoryService.batchDeductStock(lines, deductRequest.getRequestId());
+
+        BatchDeductStockResult result = new BatchDeductStockResult();
+        result.setSuccess(outcome.success());
+        result.setDuplicate(outcome.duplicate());
+        for (RedisInventoryService.LineFailure lineFailure : outcome.failures()) {
+            BatchDeductStockResult.ItemFailure failure = new BatchDeductStockResult.ItemFailure();
+            failure.setSkuId(Long.valueOf(lineFailure.line().skuId()));
+            failure.setWarehouseId(lineFailure.line().warehouseId());
+            failure.setRequestedQuantity(lineFailure.line().quantity());
+            failure.setAvailableStock(lineFailure.availableStock());
+            failure.setReason(lineFailure.reason());
+            result.getFailures().add(failure);
+        }
+        return result;
+    }
+
+    @Override
+    public void releaseStock(Long skuId, Integer quantity, String requestId) {
+        releaseStock(skuId, null, quantity, requestId);
+    }
+
+    @Override
+    public void releaseStock(Long skuId, String warehouseId, Integer quantity, String requestId) {
+        if (skuId == null || quantity == null || quantity <= 0) {
+            throw new IllegalArgumentException("释放参数非法: skuId=" + skuId + ", quantity=" + quantity);
+        }
+        redisInventoryService.releaseStock(String.valueOf(skuId), resolveWarehouseId(warehouseId), quantity, requestId);
+    }
+
+    @Override
+    public Integer queryAvailableStock(Long skuId) {
+        return queryAvailableStock(skuId, null);
+    }
+
+    @Override
+    public Integer queryAvailableStock(Long skuId, String warehouseId) {
+        String sku = String.valueOf(skuId);
+        String warehouse = resolveWarehouseId(warehouseId);
+        Integer stock = redisInventoryService.getStock(sku, warehouse);
+        if (stock == null) {
+            RedisInventoryService.SyncResult synced = redisInventoryService.syncInventoryToRedis(sku, warehouse);
+            if (synced == RedisInventoryService.SyncResult.DEFERRED) {
+                // 数据库尚未追平 Redis 流水，返回 0 会被当成无货
+                throw new IllegalStateException("库存同步中，请稍后重试: skuId=" + skuId);
+            }
+            if (synced == RedisInventoryService.SyncResult.SYNCED) {
+                stock = redisInventoryService.getStock(sku, warehouse);
+            }
+        }
+        return stock != null ? stock : 0;
+    }
+
+    /**
+     * 明细未指定仓库时使用默认仓库；默认仓库未配置时拒绝调用
+     */
+    private String resolveWarehouseId(String warehouseId) {
+        if (StringUtils.hasText(warehouseId)) {
+            return warehouseId;
+        }
+        if (!StringUtils.hasText(defaultWarehouseId)) {
+            throw new IllegalArgumentException("未指定仓库，且服务端未配置 inventory.default-warehouse-id");
+        }
+        return defaultWarehouseId;
+    }
+}
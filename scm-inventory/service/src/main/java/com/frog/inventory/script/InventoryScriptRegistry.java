@@ -0,0 +1,445 @@
+package com.frog.inventory.script;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisScriptingCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 库存模块 Lua 脚本注册表
+ *
+ * <p>所有库存相关的 Lua 脚本在此集中定义，脚本对象全局唯一，SHA1 只计算一次。
+ *
+ * <p>执行方式：
+ * <ul>
+ *   <li>启动时通过 SCRIPT LOAD 预加载全部脚本</li>
+ *   <li>运行时统一使用 EVALSHA，只传输 40 字节摘要而非脚本正文</li>
+ *   <li>Redis 重启或 SCRIPT FLUSH 后遇到 NOSCRIPT，自动回退为 EVAL，同时将脚本重新载入缓存</li>
+ * </ul>
+ *
+ * <p>脚本参数统一按字符串序列化（而非 JSON），保证 Lua 侧 tonumber / 键拼接的结果稳定。
+ *
+ * <p>库存脚本访问的库存键、幂等键、流水 Stream 与未回写计数哈希必须带相同的 hash tag（流水分区），
+ * 调用方按 {@code StockJournalFlusher#stockKey} / {@code partitionStreamKey} 组装，脚本在 Redis Cluster 上是单槽操作。
+ *
+ * @author SCM Platform Team
+ * @since 2025-12-26
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class InventoryScriptRegistry {
+  private final RedisTemplate<String, Object> redisTemplate;
+
+  private static final RedisSerializer<Object> ARGS_SERIALIZER =
+      new GenericToStringSerializer<>(Object.class);
+  private static final RedisSerializer<String> RESULT_SERIALIZER = new StringRedisSerializer();
+
+  /**
+   * 原子性扣减库存（防超卖），在同一次调用内刷新 TTL、追加库存流水并累加未回写计数
+   *
+   * <p>KEYS[1]: 库存键；KEYS[2]: 库存流水 Stream；KEYS[3]: 未回写计数哈希
+   * <p>ARGV[1]: 扣减数量；ARGV[2]: TTL（秒）；ARGV[3]: 流水最大长度；ARGV[4]: SKU ID；ARGV[5]: 仓库 ID
+   *
+   * <p>返回值：
+   * - 1: 扣减成功
+   * - -1: 库存不存在
+   * - -2: 库存不足
+   * - -4: 该库存已切换为分桶模式（键值为分桶标记）
+   *
+   * <p>分桶模式下同一脚本作用于单个分桶键，流水写入与分桶同槽的分区 Stream
+   */
+  public static final RedisScript<Long> DEDUCT_STOCK = RedisScript.of(
+      "local stock = redis.call('GET', KEYS[1])\n" +
+          "if not stock then\n" +
+          "    return -1\n" +
+          "end\n" +
+          "stock = tonumber(stock)\n" +
+          "if not stock then\n" +
+          "    return -4\n" +
+          "end\n" +
+          "if stock < tonumber(ARGV[1]) then\n" +
+          "    return -2\n" +
+          "end\n" +
+          "redis.call('DECRBY', KEYS[1], ARGV[1])\n" +
+          "redis.call('EXPIRE', KEYS[1], ARGV[2])\n" +
+          "redis.call('XADD', KEYS[2], 'MAXLEN', '~', ARGV[3], '*', 's', ARGV[4], 'w', ARGV[5], 'd', -tonumber(ARGV[1]))\n" +
+          "redis.call('HINCRBY', KEYS[3], ARGV[4] .. ':' .. ARGV[5], 1)\n" +
+          "return 1",
+      Long.class);
+
+  /**
+   * 原子性增加库存，在同一次调用内刷新 TTL、追加库存流水并累加未回写计数
+   *
+   * <p>KEYS[1]: 库存键；KEYS[2]: 库存流水 Stream；KEYS[3]: 未回写计数哈希
+   * <p>ARGV[1]: 增加数量；ARGV[2]: TTL（秒）；ARGV[3]: 流水最大长度；ARGV[4]: SKU ID；ARGV[5]: 仓库 ID
+   *
+   * <p>返回值：
+   * - >=0: 增加后的库存数量（键不存在时等价于 SET ARGV[1]）
+   * - -4: 该库存已切换为分桶模式
+   */
+  public static final RedisScript<Long> ADD_STOCK = RedisScript.of(
+      "local current = redis.call('GET', KEYS[1])\n" +
+          "if current and not tonumber(current) then\n" +
+          "    return -4\n" +
+          "end\n" +
+          "local stock = redis.call('INCRBY', KEYS[1], ARGV[1])\n" +
+          "redis.call('EXPIRE', KEYS[1], ARGV[2])\n" +
+          "redis.call('XADD', KEYS[2], 'MAXLEN', '~', ARGV[3], '*', 's', ARGV[4], 'w', ARGV[5], 'd', ARGV[1])\n" +
+          "redis.call('HINCRBY', KEYS[3], ARGV[4] .. ':' .. ARGV[5], 1)\n" +
+          "return stock",
+      Long.class);
+
+  /**
+   * 幂等增加库存（释放/回滚扣减），在同一次调用内刷新 TTL、追加库存流水并累加未回写计数
+   *
+   * <p>KEYS[1]: 幂等键；KEYS[2]: 库存键；KEYS[3]: 库存流水 Stream；KEYS[4]: 未回写计数哈希
+   * <p>ARGV[1]: 增加数量；ARGV[2]: 库存 TTL（秒）；ARGV[3]: 幂等键 TTL（秒）；
+   * ARGV[4]: 流水最大长度；ARGV[5]: SKU ID；ARGV[6]: 仓库 ID
+   *
+   * <p>返回值：
+   * - >=0: 增加后的库存数量
+   * - -3: 重复请求（幂等键已存在）
+   * - -4: 该库存已切换为分桶模式（未写入幂等键）
+   */
+  public static final RedisScript<Long> ADD_STOCK_IDEMPOTENT = RedisScript.of(
+      "local current = redis.call('GET', KEYS[2])\n" +
+          "if current and not tonumber(current) then\n" +
+          "    return -4\n" +
+          "end\n" +
+          "if not redis.call('SET', KEYS[1], '1', 'NX', 'EX', ARGV[3]) then\n" +
+          "    return -3\n" +
+          "end\n" +
+          "local stock = redis.call('INCRBY', KEYS[2], ARGV[1])\n" +
+          "redis.call('EXPIRE', KEYS[2], ARGV[2])\n" +
+          "redis.call('XADD', KEYS[3], 'MAXLEN', '~', ARGV[4], '*', 's', ARGV[5], 'w', ARGV[6], 'd', ARGV[1])\n" +
+          "redis.call('HINCRBY', KEYS[4], ARGV[5] .. ':' .. ARGV[6], 1)\n" +
+          "return stock",
+      Long.class);
+
+  /**
+   * 多 SKU 原子批量扣减：全部校验通过才全部扣减，否则一个都不扣；成功时为每个明细追加库存流水并累加未回写计数
+   *
+   * <p>KEYS[1]: 幂等键；KEYS[2]: 库存流水 Stream；KEYS[3]: 未回写计数哈希；KEYS[4..N+3]: 库存键（同一流水分区）
+   * <p>ARGV[1]: 库存 TTL（秒）；ARGV[2]: 幂等键 TTL（秒）；ARGV[3]: 流水最大长度；
+   * 之后每个明细三个参数：扣减数量、SKU ID、仓库 ID（第 j 个明细为 ARGV[3j+1..3j+3]）
+   *
+   * <p>返回值：
+   * - {1}: 全部扣减成功
+   * - {2}: 重复请求（幂等键已存在，未重复扣减）
+   * - {0, 序号, 原因, 当前库存, ...}: 扣减失败，每个失败明细三个元素；
+   *   序号从 1 开始，原因 -1 库存不存在 / -2 库存不足 / -4 已切换为分桶模式，无法给出库存时为 -1
+   */
+  @SuppressWarnings("rawtypes")
+  public static final RedisScript<List> BATCH_DEDUCT_STOCK = RedisScript.of(
+      "if redis.call('EXISTS', KEYS[1]) == 1 then\n" +
+          "    return {2}\n" +
+          "end\n" +
+          "local n = #KEYS - 3\n" +
+          "local result = {0}\n" +
+          "for j = 1, n do\n" +
+          "    local stock = redis.call('GET', KEYS[j + 3])\n" +
+          "    if not stock then\n" +
+          "        table.insert(result, j)\n" +
+          "        table.insert(result, -1)\n" +
+          "        table.insert(result, -1)\n" +
+          "    elseif not tonumber(stock) then\n" +
+          "        table.insert(result, j)\n" +
+          "        table.insert(result, -4)\n" +
+          "        table.insert(result, -1)\n" +
+          "    elseif tonumber(stock) < tonumber(ARGV[3 * j + 1]) then\n" +
+          "        table.insert(result, j)\n" +
+          "        table.insert(result, -2)\n" +
+          "        table.insert(result, tonumber(stock))\n" +
+          "    end\n" +
+          "end\n" +
+          "if #result > 1 then\n" +
+          "    return result\n" +
+          "end\n" +
+          "for j = 1, n do\n" +
+          "    local qty = ARGV[3 * j + 1]\n" +
+          "    redis.call('DECRBY', KEYS[j + 3], qty)\n" +
+          "    redis.call('EXPIRE', KEYS[j + 3], ARGV[1])\n" +
+          "    redis.call('XADD', KEYS[2], 'MAXLEN', '~', ARGV[3], '*', 's', ARGV[3 * j + 2], 'w', ARGV[3 * j + 3], 'd', -tonumber(qty))\n" +
+          "    redis.call('HINCRBY', KEYS[3], ARGV[3 * j + 2] .. ':' .. ARGV[3 * j + 3], 1)\n" +
+          "end\n" +
+          "redis.call('SET', KEYS[1], '1', 'EX', ARGV[2])\n" +
+          "return {1}",
+      List.class);
+
+  /**
+   * 将普通库存键切换为分桶模式：取出当前库存并写入分桶标记
+   *
+   * <p>KEYS[1]: 库存键；ARGV[1]: 分桶标记；ARGV[2]: 标记 TTL（秒）
+   *
+   * <p>返回值：
+   * - >=0: 切换前的库存数量（由调用方分配到各分桶）
+   * - -1: 库存不存在
+   * - -4: 已是分桶模式
+   */
+  public static final RedisScript<Long> PROMOTE_TO_SHARDS = RedisScript.of(
+      "local stock = redis.call('GET', KEYS[1])\n" +
+          "if not stock then\n" +
+          "    return -1\n" +
+          "end\n" +
+          "stock = tonumber(stock)\n" +
+          "if not stock then\n" +
+          "    return -4\n" +
+          "end\n" +
+          "redis.call('SET', KEYS[1], ARGV[1], 'EX', ARGV[2])\n" +
+          "return stock",
+      Long.class);
+
+  /**
+   * 从单个分桶取出最多 ARGV[1] 的库存（分桶间搬运的取出一侧），刷新 TTL 并追加库存流水
+   *
+   * <p>KEYS[1]: 分桶键；KEYS[2]: 与分桶同槽的分区流水 Stream；KEYS[3]: 未回写计数哈希
+   * <p>ARGV[1]: 期望取出数量；ARGV[2]: 分桶 TTL（秒）；ARGV[3]: 流水最大长度；ARGV[4]: SKU ID；ARGV[5]: 仓库 ID
+   *
+   * <p>搬运的放入一侧使用 {@link #ADD_STOCK}，两侧各自写流水，数据库按流水回写，与 Redis 中的分桶合计保持一致
+   *
+   * <p>返回值：实际取出数量（分桶不存在时为 0）
+   */
+  public static final RedisScript<Long> TAKE_SHARD = RedisScript.of(
+      "local stock = tonumber(redis.call('GET', KEYS[1]) or '0') or 0\n" +
+          "local take = math.min(stock, tonumber(ARGV[1]))\n" +
+          "if take <= 0 then\n" +
+          "    return 0\n" +
+          "end\n" +
+          "redis.call('DECRBY', KEYS[1], take)\n" +
+          "redis.call('EXPIRE', KEYS[1], ARGV[2])\n" +
+          "redis.call('XADD', KEYS[2], 'MAXLEN', '~', ARGV[3], '*', 's', ARGV[4], 'w', ARGV[5], 'd', -take)\n" +
+          "redis.call('HINCRBY', KEYS[3], ARGV[4] .. ':' .. ARGV[5], 1)\n" +
+          "return take",
+      Long.class);
+
+  /**
+   * 预占库存：校验可用库存、扣减、写入预占哈希与索引、记录幂等标记并追加预占流水，一次调用完成
+   *
+   * <p>KEYS[1]: 幂等键；KEYS[2]: 库存键；KEYS[3]: 预占哈希；KEYS[4]: SKU 预占索引；KEYS[5]: 预占流水 Stream；
+   * KEYS[6]: 预占到期索引（ZSET，score 为到期时间）；KEYS[7]: 预占流水未回写计数哈希
+   * <p>ARGV[1]: 数量；ARGV[2]: 预占超时（秒）；ARGV[3]: 库存 TTL（秒）；ARGV[4]: 幂等键 TTL（秒）；
+   * ARGV[5]: 流水最大长度；ARGV[6]: SKU ID；ARGV[7]: 仓库 ID；ARGV[8]: 业务键；ARGV[9]: 操作人 ID；
+   * ARGV[10]: 操作人姓名；ARGV[11]: 备注；ARGV[12]: 当前时间（毫秒）；ARGV[13]: 库存已由调用方扣减（分桶模式）为 1；
+   * ARGV[14]: 预占哈希在到期后的保留时间（秒），留给到期处理读取；ARGV[15]: 租户 ID（随预占流水写入数据库）
+   *
+   * <p>返回值：
+   * - 1: 预占成功
+   * - 2: 重复请求（幂等键已存在）
+   * - -1: 库存不存在
+   * - -2: 库存不足
+   * - -4: 该库存已切换为分桶模式
+   */
+  public static final RedisScript<Long> RESERVE_STOCK = RedisScript.of(
+      "if redis.call('EXISTS', KEYS[1]) == 1 then\n" +
+          "    return 2\n" +
+          "end\n" +
+          "if ARGV[13] ~= '1' then\n" +
+          "    local stock = redis.call('GET', KEYS[2])\n" +
+          "    if not stock then\n" +
+          "        return -1\n" +
+          "    end\n" +
+          "    stock = tonumber(stock)\n" +
+          "    if not stock then\n" +
+          "        return -4\n" +
+          "    end\n" +
+          "    if stock < tonumber(ARGV[1]) then\n" +
+          "        return -2\n" +
+          "    end\n" +
+          "    redis.call('DECRBY', KEYS[2], ARGV[1])\n" +
+          "    redis.call('EXPIRE', KEYS[2], ARGV[3])\n" +
+          "end\n" +
+          "local expireAt = tonumber(ARGV[12]) + tonumber(ARGV[2]) * 1000\n" +
+          "redis.call('SET', KEYS[1], '1', 'EX', ARGV[4])\n" +
+          "redis.call('HSET', KEYS[3], 'skuId', ARGV[6], 'warehouseId', ARGV[7], 'quantity', ARGV[1],\n" +
+          "    'businessKey', ARGV[8], 'operatorId', ARGV[9], 'operatorName', ARGV[10], 'remark', ARGV[11],\n" +
+          "    'createTime', ARGV[12], 'expireAt', expireAt)\n" +
+          "local keep = tonumber(ARGV[2]) + tonumber(ARGV[14])\n" +
+          "redis.call('EXPIRE', KEYS[3], keep)\n" +
+          "redis.call('SADD', KEYS[4], ARGV[8])\n" +
+          "if redis.call('TTL', KEYS[4]) < keep then\n" +
+          "    redis.call('EXPIRE', KEYS[4], keep)\n" +
+          "end\n" +
+          "redis.call('ZADD', KEYS[6], expireAt, ARGV[8])\n" +
+          "redis.call('XADD', KEYS[5], 'MAXLEN', '~', ARGV[5], '*', 'o', 'R', 'b', ARGV[8], 's', ARGV[6],\n" +
+          "    'w', ARGV[7], 'q', ARGV[1], 't', ARGV[12], 'e', expireAt, 'm', ARGV[11], 'p', ARGV[13],\n" +
+          "    'n', ARGV[15])\n" +
+          "redis.call('HINCRBY', KEYS[7], ARGV[6] .. ':' .. ARGV[7], 1)\n" +
+          "return 1",
+      Long.class);
+
+  /**
+   * 结束预占（确认或释放）：删除预占哈希与索引并追加预占流水；释放时把数量加回可用库存
+   *
+   * <p>KEYS[1]: 预占哈希；KEYS[2]: SKU 预占索引；KEYS[3]: 预占流水 Stream；KEYS[4]: 库存键；KEYS[5]: 预占到期索引；
+   * KEYS[6]: 预占流水未回写计数哈希
+   * <p>ARGV[1]: 业务键；ARGV[2]: 流水最大长度；ARGV[3]: 当前时间（毫秒）；ARGV[4]: 操作类型 C-确认 / X-释放；
+   * ARGV[5]: 库存 TTL（秒）；ARGV[6]: 库存由调用方加回（分桶模式）为 1
+   *
+   * <p>释放时库存键不存在则不回补：缓存未命中会从数据库同步，预占流水回写后数据库已包含该数量
+   *
+   * <p>分桶模式下可用库存的变化已由分桶脚本写入库存流水，预占流水带 p=1，回写时只调整锁定库存与总库存
+   *
+   * <p>已到期的预占不能再确认或释放，由到期处理统一回收
+   *
+   * <p>返回值：
+   * - >0: 预占数量
+   * - 0: 预占不存在、已结束或已到期
+   * - -4: 该库存已切换为分桶模式（未做任何修改）
+   */
+  public static final RedisScript<Long> FINISH_RESERVATION = RedisScript.of(
+      "local data = redis.call('HMGET', KEYS[1], 'skuId', 'warehouseId', 'quantity', 'expireAt')\n" +
+          "if not data[3] then\n" +
+          "    return 0\n" +
+          "end\n" +
+          "if data[4] and tonumber(data[4]) <= tonumber(ARGV[3]) then\n" +
+          "    return 0\n" +
+          "end\n" +
+          "if ARGV[4] == 'X' and ARGV[6] ~= '1' then\n" +
+          "    local stock = redis.call('GET', KEYS[4])\n" +
+          "    if stock and not tonumber(stock) then\n" +
+          "        return -4\n" +
+          "    end\n" +
+          "    if stock then\n" +
+          "        redis.call('INCRBY', KEYS[4], data[3])\n" +
+          "        redis.call('EXPIRE', KEYS[4], ARGV[5])\n" +
+          "    end\n" +
+          "end\n" +
+          "redis.call('DEL', KEYS[1])\n" +
+          "redis.call('SREM', KEYS[2], ARGV[1])\n" +
+          "redis.call('ZREM', KEYS[5], ARGV[1])\n" +
+          "redis.call('XADD', KEYS[3], 'MAXLEN', '~', ARGV[2], '*', 'o', ARGV[4], 'b', ARGV[1], 's', data[1],\n" +
+          "    'w', data[2], 'q', data[3], 't', ARGV[3], 'p', ARGV[6])\n" +
+          "redis.call('HINCRBY', KEYS[6], data[1] .. ':' .. data[2], 1)\n" +
+          "return tonumber(data[3])",
+      Long.class);
+
+  /**
+   * 批量回收到期预占：从到期索引摘除（多实例并发时只有一个实例摘除成功）、把数量加回可用库存、
+   * 删除预占哈希与索引并追加 E（到期）流水
+   *
+   * <p>KEYS[1]: 预占到期索引；KEYS[2]: 预占流水 Stream；KEYS[3]: 预占流水未回写计数哈希；
+   * 之后每个预占三个键：预占哈希、SKU 预占索引、库存键（第 j 个预占为 KEYS[3j+1..3j+3]）
+   * <p>ARGV[1]: 当前时间（毫秒）；ARGV[2]: 流水最大长度；ARGV[3]: 库存 TTL（秒）；之后每个预占的业务键（ARGV[3+j]）
+   *
+   * <p>返回值：与输入等长的列表，每个预占一个元素：
+   * - >0: 已回收，数量已加回库存键（库存键不存在时由数据库同步兜底）
+   * - <0: 已回收，库存为分桶模式，调用方需把 |值| 加回分桶
+   * - 0: 未回收（已被其他实例处理、已结束或尚未到期）
+   */
+  @SuppressWarnings("rawtypes")
+  public static final RedisScript<List> EXPIRE_RESERVATIONS = RedisScript.of(
+      "local result = {}\n" +
+          "local n = (#KEYS - 3) / 3\n" +
+          "for j = 1, n do\n" +
+          "    local bk = ARGV[3 + j]\n" +
+          "    local hash, index, stockKey = KEYS[3 * j + 1], KEYS[3 * j + 2], KEYS[3 * j + 3]\n" +
+          "    local released = 0\n" +
+          "    local data = redis.call('HMGET', hash, 'skuId', 'warehouseId', 'quantity', 'expireAt')\n" +
+          "    if data[3] and (tonumber(data[4]) or 0) <= tonumber(ARGV[1]) then\n" +
+          "        if redis.call('ZREM', KEYS[1], bk) == 1 then\n" +
+          "            released = tonumber(data[3])\n" +
+          "            local stock = redis.call('GET', stockKey)\n" +
+          "            local sharded = '0'\n" +
+          "            if stock and not tonumber(stock) then\n" +
+          "                released = -released\n" +
+          "                sharded = '1'\n" +
+          "            elseif stock then\n" +
+          "                redis.call('INCRBY', stockKey, data[3])\n" +
+          "                redis.call('EXPIRE', stockKey, ARGV[3])\n" +
+          "            end\n" +
+          "            redis.call('DEL', hash)\n" +
+          "            redis.call('SREM', index, bk)\n" +
+          "            redis.call('XADD', KEYS[2], 'MAXLEN', '~', ARGV[2], '*', 'o', 'E', 'b', bk, 's', data[1],\n" +
+          "                'w', data[2], 'q', data[3], 't', ARGV[1], 'p', sharded)\n" +
+          "            redis.call('HINCRBY', KEYS[3], data[1] .. ':' .. data[2], 1)\n" +
+          "        end\n" +
+          "    elseif not data[3] then\n" +
+          "        -- 预占哈希已不存在：摘除索引，数据库侧由兜底扫描回收\n" +
+          "        redis.call('ZREM', KEYS[1], bk)\n" +
+          "    end\n" +
+          "    table.insert(result, released)\n" +
+          "end\n" +
+          "return result",
+      List.class);
+
+  /**
+   * 库存键存在且为数值时加回库存（不写流水，用于数据库侧已直接回写的场景）
+   *
+   * <p>KEYS[1]: 库存键；ARGV[1]: 数量；ARGV[2]: 库存 TTL（秒）
+   *
+   * <p>返回值：1 已加回，0 库存键不存在或为分桶标记
+   */
+  public static final RedisScript<Long> CREDIT_CACHED_STOCK = RedisScript.of(
+      "local stock = redis.call('GET', KEYS[1])\n" +
+          "if not stock or not tonumber(stock) then\n" +
+          "    return 0\n" +
+          "end\n" +
+          "redis.call('INCRBY', KEYS[1], ARGV[1])\n" +
+          "redis.call('EXPIRE', KEYS[1], ARGV[2])\n" +
+          "return 1",
+      Long.class);
+
+  private static final List<RedisScript<?>> SCRIPTS = List.of(
+      DEDUCT_STOCK,
+      ADD_STOCK,
+      ADD_STOCK_IDEMPOTENT,
+      BATCH_DEDUCT_STOCK,
+      PROMOTE_TO_SHARDS,
+      TAKE_SHARD,
+      RESERVE_STOCK,
+      FINISH_RESERVATION,
+      EXPIRE_RESERVATIONS,
+      CREDIT_CACHED_STOCK
+  );
+
+  /**
+   * 启动时预加载全部脚本
+   *
+   * <p>预加载失败不影响启动：首次执行时 EVALSHA 收到 NOSCRIPT 会自动回退为 EVAL
+   */
+  @PostConstruct
+  public void preload() {
+    try {
+      redisTemplate.execute((RedisCallback<Void>) connection -> {
+        RedisScriptingCommands scripting = connection.scriptingCommands();
+        for (RedisScript<?> script : SCRIPTS) {
+          scripting.scriptLoad(script.getScriptAsString().getBytes(StandardCharsets.UTF_8));
+        }
+        return null;
+      });
+      log.info("✅ 库存 Lua 脚本预加载完成: count={}", SCRIPTS.size());
+    } catch (Exception e) {
+      log.warn("⚠️  库存 Lua 脚本预加载失败，将在首次执行时加载: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * 执行脚本（EVALSHA，NOSCRIPT 时自动回退为 EVAL）
+   *
+   * @param script 脚本
+   * @param keys 脚本键
+   * @param args 脚本参数（按字符串序列化）
+   * @return 脚本返回值；多值返回时元素为 Long 或 String
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+    return redisTemplate.execute(
+        script,
+        ARGS_SERIALIZER,
+        (RedisSerializer<T>) RESULT_SERIALIZER,
+        keys,
+        args
+    );
+  }
+}
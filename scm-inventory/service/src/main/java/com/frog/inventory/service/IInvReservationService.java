@@ -89,7 +89,8 @@ public interface IInvReservationService {
   /**
    * 自动释放过期的预占（由定时任务调用）
    *
-   * <p>Redis 的过期机制可能有延迟，需要定时任务兜底扫描过期预占并释放库存
+   * <p>按到期索引批量回收已到期的预占，并定期对数据库中超过宽限期仍未回收的预占做兜底回收；
+   * 多实例同时调用时每条预占只会被回收一次
    *
    * @return 释放的预占数量
    */
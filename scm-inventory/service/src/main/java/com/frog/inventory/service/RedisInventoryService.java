@@ -1,15 +1,23 @@
 package com.frog.inventory.service;
 
 import com.frog.inventory.domain.entity.Inventory;
+import com.frog.inventory.journal.ReservationJournalWriter;
+import com.frog.inventory.journal.StockJournalFlusher;
 import com.frog.inventory.mapper.InvInventoryMapper;
+import com.frog.inventory.script.InventoryScriptRegistry;
+import com.frog.inventory.sharding.HotSkuShardingService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Service;
 
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -17,6 +25,12 @@ import java.util.concurrent.TimeUnit;
  *
  * <p>基于 Redis 实现的高性能库存管理，使用 Lua 脚本保证库存扣减的原子性，防止超卖
  *
+ * <p>每次扣减/增加都会在同一脚本内向库存所在分区的流水 Stream 追加一条流水，由 {@link StockJournalFlusher}
+ * 异步合并后回写数据库。库存键、幂等键与分区 Stream 带相同的 hash tag（{@link StockJournalFlusher#stockKey}），
+ * 每个脚本只访问一个槽位，可以运行在 Redis Cluster 上
+ *
+ * <p>热点 SKU 可切换为分桶模式（{@link HotSkuShardingService}），此时扣减/增加/查询都落到分桶键上
+ *
  * @author SCM Platform Team
  * @since 2025-12-26
  */
@@ -26,62 +40,42 @@ import java.util.concurrent.TimeUnit;
 public class RedisInventoryService {
   private final RedisTemplate<String, Object> redisTemplate;
   private final InvInventoryMapper inventoryMapper;
+  private final InventoryScriptRegistry scriptRegistry;
+  private final HotSkuShardingService shardingService;
+  private final StockJournalFlusher stockJournalFlusher;
+  private final ReservationJournalWriter reservationJournalWriter;
 
-  private static final String INVENTORY_KEY_PREFIX = "inventory:stock:";
   private static final String INVENTORY_DETAIL_KEY_PREFIX = "inventory:detail:";
+  private static final String DEDUCT_IDEMPOTENT_KEY_PREFIX = "inventory:idempotent:deduct:";
+  private static final String RELEASE_IDEMPOTENT_KEY_PREFIX = "inventory:idempotent:release:";
   private static final long INVENTORY_CACHE_TTL = 30; // 库存缓存30秒（热数据）
+  private static final long IDEMPOTENT_TTL = 24 * 60 * 60; // 幂等标记保留24小时
 
   /**
-   * Lua 脚本：原子性扣减库存（防超卖）
-   *
-   * <p>逻辑：
-   * 1. 检查库存是否存在
-   * 2. 检查库存是否充足
-   * 3. 扣减库存
-   *
-   * <p>返回值：
-   * - 1: 扣减成功
-   * - -1: 库存不存在
-   * - -2: 库存不足
-   */
-  private static final String DEDUCT_STOCK_LUA_SCRIPT =
-      "local stock = redis.call('GET', KEYS[1])\n" +
-          "if not stock then\n" +
-          "    return -1\n" +  // 库存不存在
-          "end\n" +
-          "if tonumber(stock) < tonumber(ARGV[1]) then\n" +
-          "    return -2\n" +  // 库存不足
-          "end\n" +
-          "redis.call('DECRBY', KEYS[1], ARGV[1])\n" +
-          "return 1";  // 扣减成功
-
-  /**
-   * Lua 脚本：原子性增加库存
-   *
-   * <p>用于退款、取消订单等场景
-   *
-   * <p>返回值：
-   * - 增加后的库存数量
+   * 库存流水 Stream 近似最大长度（兜底防止刷盘停滞时无限增长）
    */
-  private static final String ADD_STOCK_LUA_SCRIPT =
-      "local stock = redis.call('GET', KEYS[1])\n" +
-          "if not stock then\n" +
-          "    redis.call('SET', KEYS[1], ARGV[1])\n" +
-          "    return tonumber(ARGV[1])\n" +
-          "else\n" +
-          "    return redis.call('INCRBY', KEYS[1], ARGV[1])\n" +
-          "end";
+  @Value("${inventory.journal.max-length:1000000}")
+  private long journalMaxLength;
 
   /**
    * 从数据库同步库存到 Redis
    *
+   * <p>该键还有未回写数据库的库存/预占流水时（库存键在刷盘追平前过期），数据库中的库存是落后的，
+   * 此时不回填，返回 {@link SyncResult#DEFERRED}，调用方应提示稍后重试，而不是按库存不存在处理
+   *
    * @param skuId SKU ID
    * @param warehouseId 仓库 ID
-   * @return true-同步成功，false-库存不存在
+   * @return 同步结果
    */
-  public boolean syncInventoryToRedis(String skuId, String warehouseId) {
+  public SyncResult syncInventoryToRedis(String skuId, String warehouseId) {
     log.debug("🔄 同步库存到 Redis: skuId={}, warehouseId={}", skuId, warehouseId);
 
+    if (stockJournalFlusher.hasPending(skuId, warehouseId)
+        || reservationJournalWriter.hasPending(skuId, warehouseId)) {
+      log.warn("⚠️  同步库存跳过：仍有未回写的库存流水: skuId={}, warehouseId={}", skuId, warehouseId);
+      return SyncResult.DEFERRED;
+    }
+
     Inventory inventory = inventoryMapper.selectOne(
         new com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper<Inventory>()
             .eq(Inventory::getSkuId, skuId)
@@ -91,14 +85,15 @@ public class RedisInventoryService {
 
     if (inventory == null) {
       log.warn("⚠️  同步库存失败：库存不存在: skuId={}, warehouseId={}", skuId, warehouseId);
-      return false;
+      return SyncResult.NOT_FOUND;
     }
 
     String stockKey = buildStockKey(skuId, warehouseId);
     String detailKey = buildDetailKey(skuId, warehouseId);
 
-    // 缓存可用库存数量
-    redisTemplate.opsForValue().set(
+    // 缓存可用库存数量：仅在缓存不存在时写入。已存在的缓存是最新值（数据库由流水异步追平），
+    // 覆盖会丢失未刷盘的扣减；分桶模式下的分桶标记同样不能被覆盖
+    redisTemplate.opsForValue().setIfAbsent(
         stockKey,
         inventory.getAvailableStock(),
         INVENTORY_CACHE_TTL,
@@ -116,7 +111,7 @@ public class RedisInventoryService {
     log.info("✅ 同步库存成功: skuId={}, warehouseId={}, availableStock={}",
         skuId, warehouseId, inventory.getAvailableStock());
 
-    return true;
+    return SyncResult.SYNCED;
   }
 
   /**
@@ -134,17 +129,26 @@ public class RedisInventoryService {
 
     log.debug("📉 扣减库存: skuId={}, warehouseId={}, quantity={}", skuId, warehouseId, quantity);
 
-    String stockKey = buildStockKey(skuId, warehouseId);
+    shardingService.recordDeduction(skuId, warehouseId);
+    if (shardingService.isSharded(skuId, warehouseId)) {
+      Boolean deducted = deductShardedStock(skuId, warehouseId, quantity);
+      if (deducted != null) {
+        return deducted;
+      }
+    }
 
-    // 执行 Lua 脚本（原子操作）
-    DefaultRedisScript<Long> script = new DefaultRedisScript<>();
-    script.setScriptText(DEDUCT_STOCK_LUA_SCRIPT);
-    script.setResultType(Long.class);
+    String stockKey = buildStockKey(skuId, warehouseId);
+    String streamKey = buildStreamKey(skuId, warehouseId);
 
-    Long result = redisTemplate.execute(
-        script,
-        Collections.singletonList(stockKey),
-        quantity
+    // 执行 Lua 脚本（原子操作，EVALSHA + TTL 刷新一次往返完成）
+    Long result = scriptRegistry.execute(
+        InventoryScriptRegistry.DEDUCT_STOCK,
+        List.of(stockKey, streamKey, StockJournalFlusher.pendingKey(streamKey)),
+        quantity,
+        INVENTORY_CACHE_TTL,
+        journalMaxLength,
+        skuId,
+        warehouseId
     );
 
     if (result == null) {
@@ -158,7 +162,7 @@ public class RedisInventoryService {
           skuId, warehouseId);
 
       // 尝试从数据库同步库存
-      if (syncInventoryToRedis(skuId, warehouseId)) {
+      if (syncInventoryToRedis(skuId, warehouseId) == SyncResult.SYNCED) {
         // 重试扣减
         return deductStock(skuId, warehouseId, quantity);
       }
@@ -172,8 +176,14 @@ public class RedisInventoryService {
       return false;
     }
 
-    // 刷新缓存过期时间
-    redisTemplate.expire(stockKey, INVENTORY_CACHE_TTL, TimeUnit.SECONDS);
+    if (result == -4L) {
+      // 其他实例已将该库存切换为分桶模式
+      if (shardingService.awaitSharded(skuId, warehouseId)) {
+        return Boolean.TRUE.equals(deductShardedStock(skuId, warehouseId, quantity));
+      }
+      log.warn("⚠️  扣减库存失败：库存正在切换分桶模式: skuId={}, warehouseId={}", skuId, warehouseId);
+      return false;
+    }
 
     log.info("✅ 扣减库存成功: skuId={}, warehouseId={}, quantity={}",
         skuId, warehouseId, quantity);
@@ -198,17 +208,23 @@ public class RedisInventoryService {
 
     log.debug("📈 增加库存: skuId={}, warehouseId={}, quantity={}", skuId, warehouseId, quantity);
 
-    String stockKey = buildStockKey(skuId, warehouseId);
+    if (shardingService.isSharded(skuId, warehouseId)) {
+      shardingService.add(skuId, warehouseId, quantity);
+      return getStock(skuId, warehouseId);
+    }
 
-    // 执行 Lua 脚本（原子操作）
-    DefaultRedisScript<Long> script = new DefaultRedisScript<>();
-    script.setScriptText(ADD_STOCK_LUA_SCRIPT);
-    script.setResultType(Long.class);
+    String stockKey = buildStockKey(skuId, warehouseId);
+    String streamKey = buildStreamKey(skuId, warehouseId);
 
-    Long result = redisTemplate.execute(
-        script,
-        Collections.singletonList(stockKey),
-        quantity
+    // 执行 Lua 脚本（原子操作，EVALSHA + TTL 刷新一次往返完成）
+    Long result = scriptRegistry.execute(
+        InventoryScriptRegistry.ADD_STOCK,
+        List.of(stockKey, streamKey, StockJournalFlusher.pendingKey(streamKey)),
+        quantity,
+        INVENTORY_CACHE_TTL,
+        journalMaxLength,
+        skuId,
+        warehouseId
     );
 
     if (result == null) {
@@ -217,8 +233,14 @@ public class RedisInventoryService {
       return null;
     }
 
-    // 刷新缓存过期时间
-    redisTemplate.expire(stockKey, INVENTORY_CACHE_TTL, TimeUnit.SECONDS);
+    if (result == -4L) {
+      if (!shardingService.awaitSharded(skuId, warehouseId)) {
+        log.warn("⚠️  增加库存失败：库存正在切换分桶模式: skuId={}, warehouseId={}", skuId, warehouseId);
+        return null;
+      }
+      shardingService.add(skuId, warehouseId, quantity);
+      return getStock(skuId, warehouseId);
+    }
 
     log.info("✅ 增加库存成功: skuId={}, warehouseId={}, quantity={}, afterStock={}",
         skuId, warehouseId, quantity, result);
@@ -226,6 +248,130 @@ public class RedisInventoryService {
     return result.intValue();
   }
 
+  /**
+   * 批量扣减库存（多 SKU，全部成功或全部不扣）
+   *
+   * <p>同一 SKU/仓库的多条明细先合并；全部明细位于同一流水分区时通过一次 Lua 调用原子完成校验与扣减，
+   * 耗时不随明细数量增加而增加往返次数。基于 requestId 幂等。
+   *
+   * <p>若部分库存未同步到 Redis，会从数据库同步后重试一次；因仍有未回写流水而暂不能同步的明细
+   * 以 {@link LineFailure#STOCK_SYNC_DEFERRED} 返回，调用方可稍后重试。
+   *
+   * <p>明细跨多个流水分区或包含分桶库存时（Redis Cluster 上不同槽位不能在一个脚本内访问），
+   * 分桶明细逐个扣减，其余明细按分区各走一次批量脚本，任一失败则补偿已扣减的部分。
+   *
+   * @param lines 扣减明细
+   * @param requestId 幂等性请求 ID
+   * @return 扣减结果
+   */
+  public BatchDeductResult batchDeductStock(List<StockLine> lines, String requestId) {
+    if (lines == null || lines.isEmpty()) {
+      throw new IllegalArgumentException("扣减明细不能为空");
+    }
+    if (requestId == null || requestId.isBlank()) {
+      throw new IllegalArgumentException("requestId 不能为空");
+    }
+
+    // 合并同一库存键的明细
+    Map<String, StockLine> merged = new LinkedHashMap<>();
+    for (StockLine line : lines) {
+      if (line.quantity() <= 0) {
+        throw new IllegalArgumentException("扣减数量必须大于0");
+      }
+      shardingService.recordDeduction(line.skuId(), line.warehouseId());
+      merged.merge(buildStockKey(line.skuId(), line.warehouseId()), line,
+          (a, b) -> new StockLine(a.skuId(), a.warehouseId(), a.quantity() + b.quantity()));
+    }
+    List<StockLine> mergedLines = new ArrayList<>(merged.values());
+
+    log.debug("📉 批量扣减库存: requestId={}, lines={}", requestId, mergedLines.size());
+
+    Set<Integer> partitions = new HashSet<>();
+    mergedLines.forEach(line -> partitions.add(stockJournalFlusher.partition(line.skuId(), line.warehouseId())));
+
+    BatchDeductResult result = null;
+    for (int attempt = 0; attempt < 2; attempt++) {
+      boolean anySharded = mergedLines.stream()
+          .anyMatch(line -> shardingService.isSharded(line.skuId(), line.warehouseId()));
+      result = anySharded || partitions.size() > 1
+          ? executeSplitBatchDeduct(mergedLines, requestId)
+          : executeBatchDeductWithSync(mergedLines, requestId);
+
+      // 其他实例刚将部分库存切换为分桶模式：刷新分桶视图后重试
+      List<StockLine> sharding = result.failures().stream()
+          .filter(f -> LineFailure.STOCK_SHARDING.equals(f.reason()))
+          .map(LineFailure::line)
+          .toList();
+      if (sharding.isEmpty()) {
+        break;
+      }
+      sharding.forEach(line -> shardingService.awaitSharded(line.skuId(), line.warehouseId()));
+    }
+
+    if (result.success()) {
+      log.info("✅ 批量扣减库存成功: requestId={}, lines={}, duplicate={}",
+          requestId, mergedLines.size(), result.duplicate());
+    } else {
+      log.warn("⚠️  批量扣减库存失败: requestId={}, failures={}", requestId, result.failures());
+    }
+    return result;
+  }
+
+  /**
+   * 幂等增加库存（释放/回滚扣减）
+   *
+   * @param skuId SKU ID
+   * @param warehouseId 仓库 ID
+   * @param quantity 增加数量
+   * @param requestId 幂等性请求 ID
+   * @return true-本次已增加，false-重复请求未增加
+   */
+  public boolean releaseStock(String skuId, String warehouseId, int quantity, String requestId) {
+    if (quantity <= 0) {
+      throw new IllegalArgumentException("释放数量必须大于0");
+    }
+
+    String idempotentKey = RELEASE_IDEMPOTENT_KEY_PREFIX + requestId + ":" + skuId + ":" + warehouseId;
+    if (shardingService.isSharded(skuId, warehouseId)) {
+      return releaseShardedStock(skuId, warehouseId, quantity, idempotentKey, requestId);
+    }
+
+    int partition = stockJournalFlusher.partition(skuId, warehouseId);
+    String streamKey = StockJournalFlusher.partitionStreamKey(partition);
+    Long result = scriptRegistry.execute(
+        InventoryScriptRegistry.ADD_STOCK_IDEMPOTENT,
+        List.of(idempotentKey + ":{" + partition + "}",
+            buildStockKey(skuId, warehouseId),
+            streamKey,
+            StockJournalFlusher.pendingKey(streamKey)),
+        quantity,
+        INVENTORY_CACHE_TTL,
+        IDEMPOTENT_TTL,
+        journalMaxLength,
+        skuId,
+        warehouseId
+    );
+
+    if (result == null) {
+      log.error("❌ 释放库存异常：Lua 脚本执行失败: skuId={}, warehouseId={}", skuId, warehouseId);
+      throw new IllegalStateException("释放库存失败");
+    }
+    if (result == -3L) {
+      log.warn("⚠️  释放库存重复请求，幂等返回: requestId={}, skuId={}", requestId, skuId);
+      return false;
+    }
+    if (result == -4L) {
+      if (!shardingService.awaitSharded(skuId, warehouseId)) {
+        throw new IllegalStateException("释放库存失败：库存正在切换分桶模式");
+      }
+      return releaseShardedStock(skuId, warehouseId, quantity, idempotentKey, requestId);
+    }
+
+    log.info("✅ 释放库存成功: skuId={}, warehouseId={}, quantity={}, afterStock={}",
+        skuId, warehouseId, quantity, result);
+    return true;
+  }
+
   /**
    * 获取库存数量（从 Redis 缓存）
    *
@@ -234,6 +380,10 @@ public class RedisInventoryService {
    * @return 库存数量（如果缓存不存在则返回 null）
    */
   public Integer getStock(String skuId, String warehouseId) {
+    if (shardingService.isSharded(skuId, warehouseId)) {
+      return shardingService.getStock(skuId, warehouseId);
+    }
+
     String stockKey = buildStockKey(skuId, warehouseId);
     Object stock = redisTemplate.opsForValue().get(stockKey);
 
@@ -242,6 +392,13 @@ public class RedisInventoryService {
       return null;
     }
 
+    if (stock instanceof String) {
+      // 库存键为分桶标记
+      return shardingService.awaitSharded(skuId, warehouseId)
+          ? shardingService.getStock(skuId, warehouseId)
+          : null;
+    }
+
     return Integer.parseInt(stock.toString());
   }
 
@@ -261,7 +418,7 @@ public class RedisInventoryService {
           skuId, warehouseId);
 
       // 从数据库同步
-      if (syncInventoryToRedis(skuId, warehouseId)) {
+      if (syncInventoryToRedis(skuId, warehouseId) == SyncResult.SYNCED) {
         stock = getStock(skuId, warehouseId);
       }
     }
@@ -291,6 +448,7 @@ public class RedisInventoryService {
     String stockKey = buildStockKey(skuId, warehouseId);
     String detailKey = buildDetailKey(skuId, warehouseId);
 
+    shardingService.demote(skuId, warehouseId);
     redisTemplate.delete(stockKey);
     redisTemplate.delete(detailKey);
 
@@ -310,10 +468,261 @@ public class RedisInventoryService {
   }
 
   /**
-   * 构建库存数量缓存键
+   * 分桶扣减
+   *
+   * @return 扣减结果；null 表示已退出分桶模式，应走普通库存键
+   */
+  private Boolean deductShardedStock(String skuId, String warehouseId, int quantity) {
+    HotSkuShardingService.Outcome outcome = shardingService.deduct(skuId, warehouseId, quantity);
+    if (outcome == HotSkuShardingService.Outcome.NOT_SHARDED) {
+      return null;
+    }
+    if (outcome == HotSkuShardingService.Outcome.INSUFFICIENT) {
+      log.warn("⚠️  扣减库存失败：库存不足（分桶）: skuId={}, warehouseId={}, quantity={}",
+          skuId, warehouseId, quantity);
+      return false;
+    }
+    log.debug("✅ 扣减库存成功（分桶）: skuId={}, warehouseId={}, quantity={}", skuId, warehouseId, quantity);
+    return true;
+  }
+
+  private boolean releaseShardedStock(String skuId, String warehouseId, int quantity,
+                                      String idempotentKey, String requestId) {
+    boolean released = shardingService.release(skuId, warehouseId, quantity, idempotentKey, requestId, IDEMPOTENT_TTL);
+    if (!released) {
+      log.warn("⚠️  释放库存重复请求，幂等返回: requestId={}, skuId={}", requestId, skuId);
+      return false;
+    }
+    log.info("✅ 释放库存成功（分桶）: skuId={}, warehouseId={}, quantity={}", skuId, warehouseId, quantity);
+    return true;
+  }
+
+  /**
+   * 批量扣减（明细跨多个流水分区或含分桶库存）
+   *
+   * <p>先以 requestId 占用幂等键，分桶明细逐个扣减，其余明细按流水分区各走一次批量脚本；
+   * 任一明细失败则补偿已扣减的分桶明细与分区，并释放幂等键
+   */
+  private BatchDeductResult executeSplitBatchDeduct(List<StockLine> lines, String requestId) {
+    String idempotentKey = DEDUCT_IDEMPOTENT_KEY_PREFIX + requestId;
+    Boolean claimed = redisTemplate.opsForValue().setIfAbsent(idempotentKey, 1, IDEMPOTENT_TTL, TimeUnit.SECONDS);
+    if (!Boolean.TRUE.equals(claimed)) {
+      return new BatchDeductResult(true, true, List.of());
+    }
+
+    Map<Integer, List<StockLine>> plainLines = new LinkedHashMap<>();
+    List<StockLine> deducted = new ArrayList<>();
+    List<LineFailure> failures = new ArrayList<>();
+    for (StockLine line : lines) {
+      if (!shardingService.isSharded(line.skuId(), line.warehouseId())) {
+        addToPartition(plainLines, line);
+        continue;
+      }
+      switch (shardingService.deduct(line.skuId(), line.warehouseId(), line.quantity())) {
+        case DEDUCTED -> deducted.add(line);
+        case INSUFFICIENT -> failures.add(new LineFailure(line, LineFailure.INSUFFICIENT_STOCK,
+            shardingService.getStock(line.skuId(), line.warehouseId())));
+        case NOT_SHARDED -> addToPartition(plainLines, line);
+      }
+    }
+
+    Map<String, List<StockLine>> deductedPartitions = new LinkedHashMap<>();
+    if (failures.isEmpty()) {
+      for (Map.Entry<Integer, List<StockLine>> entry : plainLines.entrySet()) {
+        String partRequestId = requestId + ":" + entry.getKey();
+        BatchDeductResult part = executeBatchDeductWithSync(entry.getValue(), partRequestId);
+        if (!part.success()) {
+          failures.addAll(part.failures());
+          break;
+        }
+        if (!part.duplicate()) {
+          deductedPartitions.put(partRequestId, entry.getValue());
+        }
+      }
+    }
+
+    if (!failures.isEmpty()) {
+      deducted.forEach(line -> shardingService.add(line.skuId(), line.warehouseId(), line.quantity()));
+      deductedPartitions.forEach((partRequestId, partLines) -> {
+        partLines.forEach(line -> addStock(line.skuId(), line.warehouseId(), line.quantity()));
+        StockLine first = partLines.get(0);
+        redisTemplate.delete(deductIdempotentKey(first.skuId(), first.warehouseId(), partRequestId));
+      });
+      redisTemplate.delete(idempotentKey);
+      return new BatchDeductResult(false, false, failures);
+    }
+    return new BatchDeductResult(true, false, List.of());
+  }
+
+  private void addToPartition(Map<Integer, List<StockLine>> partitions, StockLine line) {
+    partitions.computeIfAbsent(stockJournalFlusher.partition(line.skuId(), line.warehouseId()),
+        p -> new ArrayList<>()).add(line);
+  }
+
+  /**
+   * 执行批量扣减脚本（明细位于同一流水分区）；存在未同步的库存时从数据库同步后重试一次
+   */
+  private BatchDeductResult executeBatchDeductWithSync(List<StockLine> lines, String requestId) {
+    BatchDeductResult result = executeBatchDeduct(lines, requestId);
+
+    List<StockLine> missing = result.failures().stream()
+        .filter(f -> LineFailure.STOCK_NOT_FOUND.equals(f.reason()))
+        .map(LineFailure::line)
+        .toList();
+    if (missing.isEmpty()) {
+      return result;
+    }
+    boolean synced = false;
+    Set<StockLine> deferred = new HashSet<>();
+    for (StockLine line : missing) {
+      SyncResult sync = syncInventoryToRedis(line.skuId(), line.warehouseId());
+      synced |= sync == SyncResult.SYNCED;
+      if (sync == SyncResult.DEFERRED) {
+        deferred.add(line);
+      }
+    }
+    if (synced) {
+      result = executeBatchDeduct(lines, requestId);
+    }
+    if (deferred.isEmpty() || result.success()) {
+      return result;
+    }
+    // 库存键过期但仍有未回写流水：不是库存不存在，调用方稍后重试即可
+    List<LineFailure> failures = result.failures().stream()
+        .map(f -> LineFailure.STOCK_NOT_FOUND.equals(f.reason()) && deferred.contains(f.line())
+            ? new LineFailure(f.line(), LineFailure.STOCK_SYNC_DEFERRED, null)
+            : f)
+        .toList();
+    return new BatchDeductResult(false, false, failures);
+  }
+
+  /**
+   * 执行一次批量扣减脚本并解析结果（明细位于同一流水分区）
+   */
+  @SuppressWarnings("unchecked")
+  private BatchDeductResult executeBatchDeduct(List<StockLine> lines, String requestId) {
+    StockLine first = lines.get(0);
+    String streamKey = buildStreamKey(first.skuId(), first.warehouseId());
+    List<String> keys = new ArrayList<>(lines.size() + 3);
+    Object[] args = new Object[lines.size() * 3 + 3];
+    keys.add(deductIdempotentKey(first.skuId(), first.warehouseId(), requestId));
+    keys.add(streamKey);
+    keys.add(StockJournalFlusher.pendingKey(streamKey));
+    args[0] = INVENTORY_CACHE_TTL;
+    args[1] = IDEMPOTENT_TTL;
+    args[2] = journalMaxLength;
+    for (int i = 0; i < lines.size(); i++) {
+      StockLine line = lines.get(i);
+      keys.add(buildStockKey(line.skuId(), line.warehouseId()));
+      args[i * 3 + 3] = line.quantity();
+      args[i * 3 + 4] = line.skuId();
+      args[i * 3 + 5] = line.warehouseId();
+    }
+
+    List<Object> raw = scriptRegistry.execute(InventoryScriptRegistry.BATCH_DEDUCT_STOCK, keys, args);
+    if (raw == null || raw.isEmpty()) {
+      log.error("❌ 批量扣减库存异常：Lua 脚本执行失败: requestId={}", requestId);
+      throw new IllegalStateException("批量扣减库存失败");
+    }
+
+    long status = ((Number) raw.get(0)).longValue();
+    if (status == 1L) {
+      return new BatchDeductResult(true, false, List.of());
+    }
+    if (status == 2L) {
+      return new BatchDeductResult(true, true, List.of());
+    }
+
+    List<LineFailure> failures = new ArrayList<>();
+    for (int i = 1; i + 2 < raw.size(); i += 3) {
+      int index = ((Number) raw.get(i)).intValue() - 1;
+      long code = ((Number) raw.get(i + 1)).longValue();
+      long stock = ((Number) raw.get(i + 2)).longValue();
+      String reason = code == -1L ? LineFailure.STOCK_NOT_FOUND
+          : code == -4L ? LineFailure.STOCK_SHARDING
+          : LineFailure.INSUFFICIENT_STOCK;
+      failures.add(new LineFailure(lines.get(index), reason, stock < 0 ? null : (int) stock));
+    }
+    return new BatchDeductResult(false, false, failures);
+  }
+
+  /**
+   * 库存同步结果
+   */
+  public enum SyncResult {
+    /**
+     * 已同步（或 Redis 中已有最新值）
+     */
+    SYNCED,
+    /**
+     * 仍有未回写数据库的流水，暂不同步，稍后重试
+     */
+    DEFERRED,
+    /**
+     * 库存记录不存在
+     */
+    NOT_FOUND
+  }
+
+  /**
+   * 扣减明细
+   *
+   * @param skuId SKU ID
+   * @param warehouseId 仓库 ID
+   * @param quantity 数量
+   */
+  public record StockLine(String skuId, String warehouseId, int quantity) {
+  }
+
+  /**
+   * 批量扣减结果
+   *
+   * @param success 是否全部扣减成功
+   * @param duplicate 是否为重复请求
+   * @param failures 失败明细
+   */
+  public record BatchDeductResult(boolean success, boolean duplicate, List<LineFailure> failures) {
+  }
+
+  /**
+   * 失败明细
+   *
+   * @param line 扣减明细
+   * @param reason 失败原因
+   * @param availableStock 当前可用库存（库存不存在时为 null）
+   */
+  public record LineFailure(StockLine line, String reason, Integer availableStock) {
+    public static final String STOCK_NOT_FOUND = "STOCK_NOT_FOUND";
+    public static final String INSUFFICIENT_STOCK = "INSUFFICIENT_STOCK";
+    /**
+     * 库存正在切换为分桶模式，可重试
+     */
+    public static final String STOCK_SHARDING = "STOCK_SHARDING";
+    /**
+     * 库存缓存已过期且仍有未回写数据库的流水，暂不能从数据库同步，可稍后重试
+     */
+    public static final String STOCK_SYNC_DEFERRED = "STOCK_SYNC_DEFERRED";
+  }
+
+  /**
+   * 构建库存数量缓存键（带流水分区 hash tag）
+   */
+  public String buildStockKey(String skuId, String warehouseId) {
+    return stockJournalFlusher.stockKey(skuId, warehouseId);
+  }
+
+  /**
+   * 库存所在分区的流水 Stream
+   */
+  private String buildStreamKey(String skuId, String warehouseId) {
+    return StockJournalFlusher.partitionStreamKey(stockJournalFlusher.partition(skuId, warehouseId));
+  }
+
+  /**
+   * 批量扣减幂等键（与明细所在分区同槽）
    */
-  private String buildStockKey(String skuId, String warehouseId) {
-    return INVENTORY_KEY_PREFIX + skuId + ":" + warehouseId;
+  private String deductIdempotentKey(String skuId, String warehouseId, String requestId) {
+    return DEDUCT_IDEMPOTENT_KEY_PREFIX + "{" + stockJournalFlusher.partition(skuId, warehouseId) + "}:" + requestId;
   }
 
   /**
@@ -4,16 +4,22 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.frog.inventory.cache.InventoryNearCache;
 import com.frog.inventory.domain.dto.InventoryAdjustRequest;
 import com.frog.inventory.domain.dto.InventoryQueryRequest;
 import com.frog.inventory.domain.dto.InventoryResponse;
 import com.frog.inventory.domain.dto.InventoryStatsResponse;
 import com.frog.inventory.domain.dto.InventoryTransferRequest;
+import com.frog.inventory.domain.entity.InvInventoryStats;
 import com.frog.inventory.domain.entity.Inventory;
+import com.frog.inventory.domain.event.InventoryChangedEvent;
 import com.frog.inventory.mapper.InvInventoryMapper;
+import com.frog.inventory.mapper.InvInventoryStatsMapper;
 import com.frog.inventory.service.IInvInventoryService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
@@ -23,6 +29,7 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.ToLongFunction;
 import java.util.stream.Collectors;
 
 /**
@@ -38,15 +45,20 @@ import java.util.stream.Collectors;
 public class InvInventoryServiceImpl extends ServiceImpl<InvInventoryMapper, Inventory>
     implements IInvInventoryService {
 
+  @Autowired
+  private InvInventoryStatsMapper statsMapper;
+
+  @Autowired
+  private InventoryNearCache nearCache;
+
+  @Autowired
+  private ApplicationEventPublisher eventPublisher;
+
   @Override
   public InventoryResponse getInventory(String skuId, String warehouseId) {
     log.debug("📦 查询库存: skuId={}, warehouseId={}", skuId, warehouseId);
 
-    Inventory inventory = lambdaQuery()
-        .eq(Inventory::getSkuId, skuId)
-        .eq(Inventory::getWarehouseId, warehouseId)
-        .eq(Inventory::getDeleted, false)
-        .one();
+    Inventory inventory = findInventory(skuId, warehouseId);
 
     if (inventory == null) {
       log.warn("⚠️  库存不存在: skuId={}, warehouseId={}", skuId, warehouseId);
@@ -64,6 +76,12 @@ public class InvInventoryServiceImpl extends ServiceImpl<InvInventoryMapper, Inv
 
     log.debug("📦 批量查询库存: skuIds={}, warehouseId={}", skuIds, warehouseId);
 
+    if (StringUtils.hasText(warehouseId) && nearCache.isEnabled()) {
+      return nearCache.getAll(skuIds, warehouseId).stream()
+          .map(this::convertToResponse)
+          .collect(Collectors.toList());
+    }
+
     LambdaQueryWrapper<Inventory> wrapper = Wrappers.lambdaQuery();
     wrapper.in(Inventory::getSkuId, skuIds);
     if (StringUtils.hasText(warehouseId)) {
@@ -112,38 +130,39 @@ public class InvInventoryServiceImpl extends ServiceImpl<InvInventoryMapper, Inv
     if (inventory == null) {
       log.info("📝 库存不存在，创建新库存记录: skuId={}, warehouseId={}",
           request.getSkuId(), request.getWarehouseId());
-      inventory = initInventoryEntity(request.getSkuId(), request.getWarehouseId(), 0);
-    }
-
-    int beforeStock = inventory.getAvailableStock();
-    int afterStock = beforeStock + request.getQuantity();
-
-    if (afterStock < 0) {
-      throw new IllegalArgumentException(
-          String.format("❌ 库存不足，无法扣减。当前库存: %d, 扣减数量: %d",
-              beforeStock, Math.abs(request.getQuantity()))
-      );
-    }
-
-    inventory.setAvailableStock(afterStock);
-    inventory.setTotalStock(inventory.getTotalStock() + request.getQuantity());
-    inventory.setUpdateTime(LocalDateTime.now());
-    inventory.setUpdateBy(request.getOperatorId());
-
-    if (request.getAdjustType() == 1) {
-      inventory.setLastInboundAt(LocalDateTime.now());
-    } else if (request.getAdjustType() == 2) {
-      inventory.setLastOutboundAt(LocalDateTime.now());
-    }
-
-    boolean success = saveOrUpdate(inventory);
-
-    if (!success) {
-      throw new RuntimeException("❌ 库存调整失败");
+      if (request.getQuantity() < 0) {
+        throw new IllegalArgumentException(
+            String.format("❌ 库存不足，无法扣减。当前库存: 0, 扣减数量: %d", Math.abs(request.getQuantity()))
+        );
+      }
+      inventory = initInventoryEntity(request.getSkuId(), request.getWarehouseId(), request.getQuantity());
+      inventory.setUpdateBy(request.getOperatorId());
+      if (request.getAdjustType() == 1) {
+        inventory.setLastInboundAt(LocalDateTime.now());
+      }
+      if (!save(inventory)) {
+        throw new RuntimeException("❌ 库存调整失败");
+      }
+    } else {
+      // 增量更新：库存流水回写同时在累加该行，读-改-写的整行覆盖会丢失回写的变化
+      int updated = baseMapper.adjustStock(request.getSkuId(), request.getWarehouseId(),
+          request.getQuantity(), request.getAdjustType(), request.getOperatorId());
+      if (updated == 0) {
+        throw new IllegalArgumentException(
+            String.format("❌ 库存不足，无法扣减。当前库存: %d, 扣减数量: %d",
+                inventory.getAvailableStock(), Math.abs(request.getQuantity()))
+        );
+      }
+      inventory = lambdaQuery()
+          .eq(Inventory::getSkuId, request.getSkuId())
+          .eq(Inventory::getWarehouseId, request.getWarehouseId())
+          .eq(Inventory::getDeleted, false)
+          .one();
     }
+    eventPublisher.publishEvent(InventoryChangedEvent.of(request.getSkuId(), request.getWarehouseId()));
 
-    log.info("✅ 库存调整成功: skuId={}, warehouseId={}, before={}, after={}",
-        request.getSkuId(), request.getWarehouseId(), beforeStock, afterStock);
+    log.info("✅ 库存调整成功: skuId={}, warehouseId={}, quantity={}, after={}",
+        request.getSkuId(), request.getWarehouseId(), request.getQuantity(), inventory.getAvailableStock());
 
     return convertToResponse(inventory);
   }
@@ -190,11 +209,7 @@ public class InvInventoryServiceImpl extends ServiceImpl<InvInventoryMapper, Inv
 
   @Override
   public boolean checkStockAvailable(String skuId, String warehouseId, Integer quantity) {
-    Inventory inventory = lambdaQuery()
-        .eq(Inventory::getSkuId, skuId)
-        .eq(Inventory::getWarehouseId, warehouseId)
-        .eq(Inventory::getDeleted, false)
-        .one();
+    Inventory inventory = findInventory(skuId, warehouseId);
 
     if (inventory == null) {
       log.warn("⚠️  库存不存在: skuId={}, warehouseId={}", skuId, warehouseId);
@@ -208,49 +223,31 @@ public class InvInventoryServiceImpl extends ServiceImpl<InvInventoryMapper, Inv
     return available;
   }
 
+  /**
+   * 库存统计
+   *
+   * <p>读取按仓库增量维护的聚合（inv_inventory_stats），开销与仓库数相关而与 SKU 数无关；
+   * 去重 SKU 数由对账任务定期刷新
+   */
   @Override
   public InventoryStatsResponse getInventoryStats() {
     log.debug("📊 获取库存统计信息");
 
-    List<Inventory> allInventories = lambdaQuery()
-        .eq(Inventory::getDeleted, false)
-        .list();
+    List<InvInventoryStats> warehouses = statsMapper.selectWarehouseTotals();
 
     InventoryStatsResponse stats = new InventoryStatsResponse();
-    stats.setTotalSkuCount((long) allInventories.stream()
-        .map(Inventory::getSkuId)
-        .distinct()
-        .count());
-    stats.setTotalWarehouseCount((long) allInventories.stream()
-        .map(Inventory::getWarehouseId)
-        .distinct()
-        .count());
-    stats.setTotalStockQuantity(allInventories.stream()
-        .mapToLong(Inventory::getTotalStock)
-        .sum());
-    stats.setAvailableStockQuantity(allInventories.stream()
-        .mapToLong(Inventory::getAvailableStock)
-        .sum());
-    stats.setLockedStockQuantity(allInventories.stream()
-        .mapToLong(Inventory::getLockedStock)
-        .sum());
-    stats.setDamagedStockQuantity(allInventories.stream()
-        .mapToLong(Inventory::getDamagedStock)
-        .sum());
-    stats.setTotalStockValue(allInventories.stream()
-        .map(inv -> inv.getAverageCost().multiply(BigDecimal.valueOf(inv.getTotalStock())))
+    stats.setTotalSkuCount(statsMapper.selectSkuCount());
+    stats.setTotalWarehouseCount((long) warehouses.size());
+    stats.setTotalStockQuantity(sum(warehouses, InvInventoryStats::getTotalStock));
+    stats.setAvailableStockQuantity(sum(warehouses, InvInventoryStats::getAvailableStock));
+    stats.setLockedStockQuantity(sum(warehouses, InvInventoryStats::getLockedStock));
+    stats.setDamagedStockQuantity(sum(warehouses, InvInventoryStats::getDamagedStock));
+    stats.setTotalStockValue(warehouses.stream()
+        .map(InvInventoryStats::getTotalValue)
         .reduce(BigDecimal.ZERO, BigDecimal::add));
-
-    stats.setOutOfStockCount(allInventories.stream()
-        .filter(inv -> inv.getAvailableStock() == 0)
-        .count());
-    stats.setLowStockCount(allInventories.stream()
-        .filter(inv -> inv.getAvailableStock() > 0 &&
-            inv.getAvailableStock() <= inv.getSafetyStock())
-        .count());
-    stats.setNormalStockCount(allInventories.stream()
-        .filter(inv -> inv.getAvailableStock() > inv.getSafetyStock())
-        .count());
+    stats.setOutOfStockCount(sum(warehouses, InvInventoryStats::getOutOfStockCount));
+    stats.setLowStockCount(sum(warehouses, InvInventoryStats::getLowStockCount));
+    stats.setNormalStockCount(sum(warehouses, InvInventoryStats::getNormalStockCount));
 
     log.debug("📊 库存统计结果: {}", stats);
     return stats;
@@ -280,6 +277,7 @@ public class InvInventoryServiceImpl extends ServiceImpl<InvInventoryMapper, Inv
     if (!success) {
       throw new RuntimeException("❌ 初始化库存失败");
     }
+    eventPublisher.publishEvent(InventoryChangedEvent.of(skuId, warehouseId));
 
     log.info("✅ 库存初始化成功: id={}, skuId={}, warehouseId={}",
         inventory.getId(), skuId, warehouseId);
@@ -289,6 +287,20 @@ public class InvInventoryServiceImpl extends ServiceImpl<InvInventoryMapper, Inv
 
   // ==================== Private Methods ====================
 
+  /**
+   * 按 SKU/仓库查询库存（近端缓存开启时经缓存与批量加载）
+   */
+  private Inventory findInventory(String skuId, String warehouseId) {
+    if (nearCache.isEnabled()) {
+      return nearCache.get(skuId, warehouseId);
+    }
+    return lambdaQuery()
+        .eq(Inventory::getSkuId, skuId)
+        .eq(Inventory::getWarehouseId, warehouseId)
+        .eq(Inventory::getDeleted, false)
+        .one();
+  }
+
   /**
    * 构建查询条件
    */
@@ -365,6 +377,10 @@ public class InvInventoryServiceImpl extends ServiceImpl<InvInventoryMapper, Inv
     return inventory;
   }
 
+  private static long sum(List<InvInventoryStats> warehouses, ToLongFunction<InvInventoryStats> field) {
+    return warehouses.stream().mapToLong(field).sum();
+  }
+
   /**
    * 转换为响应对象
    */
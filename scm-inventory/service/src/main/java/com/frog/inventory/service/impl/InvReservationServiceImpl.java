@@ -1,27 +1,42 @@
 package com.frog.inventory.service.impl;
 
-import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.frog.common.tenant.TenantContextHolder;
 import com.frog.inventory.domain.dto.InventoryReservationRequest;
-import com.frog.inventory.domain.entity.Inventory;
-import com.frog.inventory.lock.DistributedLock;
+import com.frog.inventory.domain.entity.InvReservation;
+import com.frog.inventory.domain.event.InventoryChangedEvent;
+import com.frog.inventory.journal.ReservationJournalWriter;
 import com.frog.inventory.mapper.InvInventoryMapper;
+import com.frog.inventory.mapper.InvReservationMapper;
+import com.frog.inventory.script.InventoryScriptRegistry;
 import com.frog.inventory.service.IInvReservationService;
+import com.frog.inventory.service.RedisInventoryService;
+import com.frog.inventory.sharding.HotSkuShardingService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.HashMap;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.TimeUnit;
 
 /**
  * 库存预占服务实现
  *
- * <p>基于 Redis + MySQL 实现的库存预占机制
+ * <p>基于 Redis Lua 脚本的无锁预占：一次脚本调用内完成可用库存校验与扣减、预占哈希与索引写入、
+ * 幂等标记和预占流水追加；数据库（inv_inventory 的可用/锁定库存、inv_reservation 记录）由
+ * {@link ReservationJournalWriter} 按流水顺序异步回写
+ *
+ * <p>预占到期：预占脚本把到期时间写入到期索引 ZSET，{@link #releaseExpiredReservations()} 按到期时间批量摘取并
+ * 原子回收（多实例并发时由 ZREM 决定归属）；Redis 数据丢失的预占由数据库兜底扫描回收
  *
  * @author SCM Platform Team
  * @since 2025-12-26
@@ -31,264 +46,435 @@ import java.util.concurrent.TimeUnit;
 public class InvReservationServiceImpl implements IInvReservationService {
 
   @Autowired
-  private RedisTemplate<String, Object> redisTemplate;
+  private StringRedisTemplate stringRedisTemplate;
+
+  @Autowired
+  private InventoryScriptRegistry scriptRegistry;
+
+  @Autowired
+  private RedisInventoryService redisInventoryService;
+
+  @Autowired
+  private HotSkuShardingService shardingService;
+
+  @Autowired
+  private InvReservationMapper reservationMapper;
 
   @Autowired
   private InvInventoryMapper inventoryMapper;
 
   @Autowired
-  private DistributedLock distributedLock;
+  private TransactionTemplate transactionTemplate;
+
+  @Autowired
+  private ApplicationEventPublisher eventPublisher;
 
   private static final String RESERVATION_KEY_PREFIX = "inventory:reservation:";
   private static final String RESERVATION_INDEX_PREFIX = "inventory:reservation:index:";
+  private static final String RESERVE_IDEMPOTENT_KEY_PREFIX = "inventory:idempotent:reserve:";
+  private static final String EXPIRY_INDEX_KEY = "inventory:reservation:expiry";
+  private static final long RESERVATION_RETAIN_SECONDS = 600; // 预占哈希到期后再保留10分钟，供到期处理读取
   private static final int DEFAULT_TIMEOUT_SECONDS = 900; // 15分钟
+  private static final long STOCK_CACHE_TTL = 30;
+  private static final long IDEMPOTENT_TTL = 24 * 60 * 60; // 幂等标记保留24小时
+  private static final int MAX_ATTEMPTS = 3;
+
+  /**
+   * 预占流水 Stream 近似最大长度
+   */
+  @Value("${inventory.journal.max-length:1000000}")
+  private long journalMaxLength;
+
+  @Value("${inventory.reservation.expiry.batch-size:200}")
+  private int expiryBatchSize;
+
+  @Value("${inventory.reservation.expiry.db-sweep-interval-ms:60000}")
+  private long dbSweepIntervalMs;
+
+  @Value("${inventory.reservation.expiry.db-grace-seconds:300}")
+  private long dbGraceSeconds;
+
+  private volatile long lastDbSweepAt;
 
   @Override
-  @Transactional(rollbackFor = Exception.class)
   public boolean reserveInventory(InventoryReservationRequest request) {
     log.info("🔵 预占库存: skuId={}, warehouseId={}, quantity={}, businessKey={}",
         request.getSkuId(), request.getWarehouseId(),
         request.getQuantity(), request.getBusinessKey());
 
-    String reservationKey = buildReservationKey(request.getBusinessKey());
-
-    // 1. 幂等性检查：预占是否已存在
-    if (Boolean.TRUE.equals(redisTemplate.hasKey(reservationKey))) {
-      log.warn("⚠️  预占已存在，幂等返回: businessKey={}", request.getBusinessKey());
-      return true;
-    }
-
-    // 2. 使用分布式锁防止并发问题
-    String lockKey = "reserve:" + request.getSkuId() + ":" + request.getWarehouseId();
-    DistributedLock.LockHandle lock = distributedLock.tryLock(lockKey, 10, TimeUnit.SECONDS);
-
-    if (lock == null) {
-      log.error("❌ 获取分布式锁失败: lockKey={}", lockKey);
-      throw new RuntimeException("系统繁忙，请稍后重试");
-    }
+    String skuId = request.getSkuId();
+    String warehouseId = request.getWarehouseId();
+    int timeoutSeconds = request.getTimeoutSeconds() != null ?
+        request.getTimeoutSeconds() : DEFAULT_TIMEOUT_SECONDS;
+
+    boolean sharded = shardingService.isSharded(skuId, warehouseId);
+    for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+      // 分桶模式：先从分桶扣减，脚本只写预占记录
+      if (sharded) {
+        HotSkuShardingService.Outcome outcome =
+            shardingService.deduct(skuId, warehouseId, request.getQuantity());
+        if (outcome == HotSkuShardingService.Outcome.NOT_SHARDED) {
+          sharded = false;
+          continue;
+        }
+        if (outcome == HotSkuShardingService.Outcome.INSUFFICIENT) {
+          throw insufficientStock(request);
+        }
+      }
 
-    try {
-      // 3. 查询库存（行锁）
-      Inventory inventory = inventoryMapper.selectOne(
-          new LambdaQueryWrapper<Inventory>()
-              .eq(Inventory::getSkuId, request.getSkuId())
-              .eq(Inventory::getWarehouseId, request.getWarehouseId())
-              .eq(Inventory::getDeleted, false)
-              .last("FOR UPDATE")
-      );
+      Long result = executeReserve(request, timeoutSeconds, sharded);
 
-      if (inventory == null) {
-        log.error("❌ 库存不存在: skuId={}, warehouseId={}",
-            request.getSkuId(), request.getWarehouseId());
-        throw new IllegalArgumentException("商品不存在");
+      if (result == null) {
+        if (sharded) {
+          shardingService.add(skuId, warehouseId, request.getQuantity());
+        }
+        log.error("❌ 预占库存异常：Lua 脚本执行失败: businessKey={}", request.getBusinessKey());
+        throw new RuntimeException("系统繁忙，请稍后重试");
       }
 
-      // 4. 检查库存是否充足
-      if (inventory.getAvailableStock() < request.getQuantity()) {
-        log.error("❌ 库存不足: skuId={}, available={}, required={}",
-            request.getSkuId(), inventory.getAvailableStock(), request.getQuantity());
-        throw new RuntimeException(
-            String.format("库存不足: 可用 %d, 需要 %d",
-                inventory.getAvailableStock(), request.getQuantity())
-        );
+      if (result == 1L) {
+        log.info("✅ 库存预占成功: skuId={}, warehouseId={}, quantity={}, businessKey={}, timeout={}s",
+            skuId, warehouseId, request.getQuantity(), request.getBusinessKey(), timeoutSeconds);
+        return true;
       }
 
-      // 5. 锁定库存（available_stock -> locked_stock）
-      int updated = inventoryMapper.update(null,
-          new LambdaUpdateWrapper<Inventory>()
-              .setSql("available_stock = available_stock - " + request.getQuantity())
-              .setSql("locked_stock = locked_stock + " + request.getQuantity())
-              .eq(Inventory::getId, inventory.getId())
-              .ge(Inventory::getAvailableStock, request.getQuantity())
-      );
-
-      if (updated == 0) {
-        log.error("❌ 库存锁定失败（并发冲突）: skuId={}", request.getSkuId());
-        throw new RuntimeException("库存锁定失败，请重试");
+      if (result == 2L) {
+        if (sharded) {
+          shardingService.add(skuId, warehouseId, request.getQuantity());
+        }
+        log.warn("⚠️  预占已存在，幂等返回: businessKey={}", request.getBusinessKey());
+        return true;
       }
 
-      // 6. 在 Redis 中记录预占信息
-      Map<String, Object> reservationData = new HashMap<>();
-      reservationData.put("skuId", request.getSkuId());
-      reservationData.put("warehouseId", request.getWarehouseId());
-      reservationData.put("quantity", request.getQuantity());
-      reservationData.put("businessKey", request.getBusinessKey());
-      reservationData.put("operatorId", request.getOperatorId());
-      reservationData.put("operatorName", request.getOperatorName());
-      reservationData.put("remark", request.getRemark());
-      reservationData.put("createTime", System.currentTimeMillis());
-
-      int timeoutSeconds = request.getTimeoutSeconds() != null ?
-          request.getTimeoutSeconds() : DEFAULT_TIMEOUT_SECONDS;
-
-      redisTemplate.opsForHash().putAll(reservationKey, reservationData);
-      redisTemplate.expire(reservationKey, timeoutSeconds, TimeUnit.SECONDS);
-
-      // 7. 建立索引（sku:warehouse -> businessKey），方便按SKU查询预占
-      String indexKey = buildIndexKey(request.getSkuId(), request.getWarehouseId());
-      redisTemplate.opsForSet().add(indexKey, request.getBusinessKey());
-      redisTemplate.expire(indexKey, timeoutSeconds, TimeUnit.SECONDS);
-
-      log.info("✅ 库存预占成功: skuId={}, warehouseId={}, quantity={}, businessKey={}, timeout={}s",
-          request.getSkuId(), request.getWarehouseId(),
-          request.getQuantity(), request.getBusinessKey(), timeoutSeconds);
+      if (result == -1L) {
+        // 库存未同步到 Redis：从数据库同步后重试
+        RedisInventoryService.SyncResult synced = redisInventoryService.syncInventoryToRedis(skuId, warehouseId);
+        if (synced == RedisInventoryService.SyncResult.NOT_FOUND) {
+          log.error("❌ 库存不存在: skuId={}, warehouseId={}", skuId, warehouseId);
+          throw new IllegalArgumentException("商品不存在");
+        }
+        if (synced == RedisInventoryService.SyncResult.DEFERRED) {
+          // 数据库尚未追平 Redis 流水，不能用它回填，稍后重试即可
+          throw new RuntimeException("库存同步中，请稍后重试");
+        }
+        continue;
+      }
 
-      return true;
+      if (result == -2L) {
+        throw insufficientStock(request);
+      }
 
-    } finally {
-      lock.release();
+      // -4：其他实例已将该库存切换为分桶模式
+      sharded = shardingService.awaitSharded(skuId, warehouseId);
     }
+
+    log.error("❌ 预占库存失败（重试次数耗尽）: businessKey={}", request.getBusinessKey());
+    throw new RuntimeException("系统繁忙，请稍后重试");
   }
 
   @Override
-  @Transactional(rollbackFor = Exception.class)
   public boolean confirmReservation(String businessKey) {
     log.info("🟢 确认预占: businessKey={}", businessKey);
 
-    String reservationKey = buildReservationKey(businessKey);
-
-    // 1. 检查预占是否存在
-    Map<Object, Object> reservationData = redisTemplate.opsForHash().entries(reservationKey);
-
-    if (reservationData.isEmpty()) {
+    Long quantity = finishReservation(businessKey, "C");
+    if (quantity == null) {
       log.warn("⚠️  预占不存在或已过期: businessKey={}", businessKey);
       return false;
     }
 
-    String skuId = (String) reservationData.get("skuId");
-    String warehouseId = (String) reservationData.get("warehouseId");
-    Integer quantity = (Integer) reservationData.get("quantity");
+    log.info("✅ 预占确认成功: quantity={}, businessKey={}", quantity, businessKey);
+    return true;
+  }
 
-    // 2. 使用分布式锁
-    String lockKey = "confirm:" + skuId + ":" + warehouseId;
-    DistributedLock.LockHandle lock = distributedLock.tryLock(lockKey, 10, TimeUnit.SECONDS);
+  @Override
+  public boolean releaseReservation(String businessKey) {
+    log.info("🔴 释放预占: businessKey={}", businessKey);
 
-    if (lock == null) {
-      log.error("❌ 获取分布式锁失败: lockKey={}", lockKey);
-      throw new RuntimeException("系统繁忙，请稍后重试");
+    Long quantity = finishReservation(businessKey, "X");
+    if (quantity == null) {
+      log.warn("⚠️  预占不存在: businessKey={}", businessKey);
+      return false;
     }
 
-    try {
-      // 3. 扣减锁定库存（locked_stock -> 扣减, total_stock -> 扣减）
-      int updated = inventoryMapper.update(null,
-          new LambdaUpdateWrapper<Inventory>()
-              .setSql("locked_stock = locked_stock - " + quantity)
-              .setSql("total_stock = total_stock - " + quantity)
-              .eq(Inventory::getSkuId, skuId)
-              .eq(Inventory::getWarehouseId, warehouseId)
-              .ge(Inventory::getLockedStock, quantity)
-      );
-
-      if (updated == 0) {
-        log.error("❌ 锁定库存不足: skuId={}, warehouseId={}, quantity={}",
-            skuId, warehouseId, quantity);
-        throw new RuntimeException("锁定库存不足");
-      }
-
-      // 4. 删除 Redis 预占记录
-      redisTemplate.delete(reservationKey);
-
-      // 5. 从索引中移除
-      String indexKey = buildIndexKey(skuId, warehouseId);
-      redisTemplate.opsForSet().remove(indexKey, businessKey);
-
-      log.info("✅ 预占确认成功: skuId={}, warehouseId={}, quantity={}, businessKey={}",
-          skuId, warehouseId, quantity, businessKey);
+    log.info("✅ 预占释放成功: quantity={}, businessKey={}", quantity, businessKey);
+    return true;
+  }
 
-      return true;
+  @Override
+  public boolean checkReservationExists(String businessKey) {
+    return getReservedQuantity(businessKey) != null;
+  }
 
-    } finally {
-      lock.release();
+  @Override
+  public Integer getReservedQuantity(String businessKey) {
+    String reservationKey = buildReservationKey(businessKey);
+    List<Object> values = stringRedisTemplate.opsForHash()
+        .multiGet(reservationKey, List.of("quantity", "expireAt"));
+    if (values.get(0) == null || isExpired(values.get(1))) {
+      return null;
     }
+    return Integer.valueOf(values.get(0).toString());
   }
 
   @Override
-  @Transactional(rollbackFor = Exception.class)
-  public boolean releaseReservation(String businessKey) {
-    log.info("🔴 释放预占: businessKey={}", businessKey);
-
-    String reservationKey = buildReservationKey(businessKey);
+  public int releaseExpiredReservations() {
+    long now = System.currentTimeMillis();
+    int released = 0;
+
+    // 1. 按到期时间从到期索引摘取并回收（每批一次脚本调用）
+    List<String> due;
+    do {
+      Set<String> members = stringRedisTemplate.opsForZSet()
+          .rangeByScore(EXPIRY_INDEX_KEY, 0, now, 0, expiryBatchSize);
+      due = members != null ? new ArrayList<>(members) : List.of();
+      if (!due.isEmpty()) {
+        released += expireBatch(due, now);
+      }
+    } while (due.size() >= expiryBatchSize);
 
-    // 1. 检查预占是否存在
-    Map<Object, Object> reservationData = redisTemplate.opsForHash().entries(reservationKey);
+    // 2. 数据库兜底：Redis 数据丢失（重启、故障切换）导致未被回收的预占
+    if (now - lastDbSweepAt >= dbSweepIntervalMs) {
+      lastDbSweepAt = now;
+      released += sweepOverdueReservations();
+    }
 
-    if (reservationData.isEmpty()) {
-      log.warn("⚠️  预占不存在: businessKey={}", businessKey);
-      return false;
+    if (released > 0) {
+      log.info("✅ 回收到期预占: count={}", released);
     }
+    return released;
+  }
 
-    String skuId = (String) reservationData.get("skuId");
-    String warehouseId = (String) reservationData.get("warehouseId");
-    Integer quantity = (Integer) reservationData.get("quantity");
+  /**
+   * 回收一批到期预占
+   */
+  @SuppressWarnings("unchecked")
+  private int expireBatch(List<String> businessKeys, long now) {
+    // 一次流水线读取各预占的 SKU/仓库，用于声明脚本涉及的键
+    List<Object> locations = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+      for (String businessKey : businessKeys) {
+        hMGet(connection, buildReservationKey(businessKey));
+      }
+      return null;
+    });
+
+    List<String> keys = new ArrayList<>(businessKeys.size() * 3 + 3);
+    List<Object> args = new ArrayList<>(businessKeys.size() + 3);
+    keys.add(EXPIRY_INDEX_KEY);
+    keys.add(ReservationJournalWriter.STREAM_KEY);
+    keys.add(ReservationJournalWriter.PENDING_KEY);
+    args.add(now);
+    args.add(journalMaxLength);
+    args.add(STOCK_CACHE_TTL);
+    List<String[]> skuWarehouses = new ArrayList<>(businessKeys.size());
+    for (int i = 0; i < businessKeys.size(); i++) {
+      String reservationKey = buildReservationKey(businessKeys.get(i));
+      List<Object> location = (List<Object>) locations.get(i);
+      keys.add(reservationKey);
+      if (location != null && location.get(0) != null) {
+        String skuId = location.get(0).toString();
+        String warehouseId = location.get(1).toString();
+        keys.add(buildIndexKey(skuId, warehouseId));
+        keys.add(buildStockKey(skuId, warehouseId));
+        skuWarehouses.add(new String[]{skuId, warehouseId});
+      } else {
+        // 预占哈希已不存在，脚本只摘除到期索引
+        keys.add(reservationKey);
+        keys.add(reservationKey);
+        skuWarehouses.add(null);
+      }
+      args.add(businessKeys.get(i));
+    }
 
-    // 2. 使用分布式锁
-    String lockKey = "release:" + skuId + ":" + warehouseId;
-    DistributedLock.LockHandle lock = distributedLock.tryLock(lockKey, 10, TimeUnit.SECONDS);
+    List<Object> results = scriptRegistry.execute(
+        InventoryScriptRegistry.EXPIRE_RESERVATIONS, keys, args.toArray());
+    if (results == null) {
+      throw new IllegalStateException("回收到期预占失败");
+    }
 
-    if (lock == null) {
-      log.error("❌ 获取分布式锁失败: lockKey={}", lockKey);
-      throw new RuntimeException("系统繁忙，请稍后重试");
+    int released = 0;
+    for (int i = 0; i < results.size(); i++) {
+      long quantity = ((Number) results.get(i)).longValue();
+      if (quantity == 0) {
+        continue;
+      }
+      released++;
+      if (quantity < 0) {
+        // 分桶模式：数量加回分桶
+        String[] skuWarehouse = skuWarehouses.get(i);
+        shardingService.add(skuWarehouse[0], skuWarehouse[1], (int) -quantity);
+      }
     }
+    return released;
+  }
 
-    try {
-      // 3. 释放锁定库存为可用库存（locked_stock -> available_stock）
-      int updated = inventoryMapper.update(null,
-          new LambdaUpdateWrapper<Inventory>()
-              .setSql("available_stock = available_stock + " + quantity)
-              .setSql("locked_stock = locked_stock - " + quantity)
-              .eq(Inventory::getSkuId, skuId)
-              .eq(Inventory::getWarehouseId, warehouseId)
-              .ge(Inventory::getLockedStock, quantity)
-      );
+  /**
+   * 数据库兜底回收：超过宽限期仍为已预占、且 Redis 中已无预占哈希的记录
+   *
+   * <p>标记过期的 UPDATE 只切换 status = 0 的记录，多实例并发时每条只会被一个实例回收；
+   * 库存按 SKU/仓库合并，每个键一条 UPDATE
+   */
+  private int sweepOverdueReservations() {
+    List<String> candidates = reservationMapper.selectOverdueReservationNos(dbGraceSeconds, expiryBatchSize);
+    if (candidates.isEmpty()) {
+      return 0;
+    }
 
-      if (updated == 0) {
-        log.warn("⚠️  锁定库存不足（可能已被释放）: skuId={}, warehouseId={}, quantity={}",
-            skuId, warehouseId, quantity);
-        // 不抛异常，继续删除 Redis 记录
+    // Redis 中仍有预占哈希的由到期索引处理
+    List<String> orphaned = new ArrayList<>(candidates.size());
+    for (String businessKey : candidates) {
+      if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(buildReservationKey(businessKey)))) {
+        orphaned.add(businessKey);
       }
+    }
+    if (orphaned.isEmpty()) {
+      return 0;
+    }
 
-      // 4. 删除 Redis 预占记录
-      redisTemplate.delete(reservationKey);
-
-      // 5. 从索引中移除
-      String indexKey = buildIndexKey(skuId, warehouseId);
-      redisTemplate.opsForSet().remove(indexKey, businessKey);
+    Map<String, InvReservation> released = new LinkedHashMap<>();
+    transactionTemplate.executeWithoutResult(status -> {
+      Map<String, Long> quantityBySku = new LinkedHashMap<>();
+      for (InvReservation reservation : reservationMapper.expireReservedBatch(orphaned)) {
+        String key = reservation.getSkuId() + ":" + reservation.getWarehouseId();
+        quantityBySku.merge(key, reservation.getQuantity().longValue(), Long::sum);
+        released.putIfAbsent(key, reservation);
+      }
+      quantityBySku.forEach((key, quantity) -> {
+        InvReservation sample = released.get(key);
+        int updated = inventoryMapper.applyReservationDelta(
+            sample.getSkuId(), sample.getWarehouseId(), quantity, -quantity, 0);
+        if (updated > 0) {
+          eventPublisher.publishEvent(InventoryChangedEvent.of(sample.getSkuId(), sample.getWarehouseId()));
+        } else {
+          log.error("❌ 兜底回收预占无法回写库存: skuId={}, warehouseId={}, quantity={}",
+              sample.getSkuId(), sample.getWarehouseId(), quantity);
+        }
+        sample.setQuantity(quantity.intValue());
+      });
+    });
+
+    // 数据库已直接回写，Redis 只在库存键存在时加回（不写流水）
+    for (InvReservation reservation : released.values()) {
+      scriptRegistry.execute(
+          InventoryScriptRegistry.CREDIT_CACHED_STOCK,
+          List.of(buildStockKey(reservation.getSkuId(), reservation.getWarehouseId())),
+          reservation.getQuantity(),
+          STOCK_CACHE_TTL
+      );
+    }
 
-      log.info("✅ 预占释放成功: skuId={}, warehouseId={}, quantity={}, businessKey={}",
-          skuId, warehouseId, quantity, businessKey);
+    log.warn("⚠️  数据库兜底回收到期预占: skus={}, candidates={}", released.size(), orphaned.size());
+    return orphaned.size();
+  }
 
-      return true;
+  /**
+   * 执行预占脚本
+   */
+  private Long executeReserve(InventoryReservationRequest request, int timeoutSeconds, boolean preDeducted) {
+    return scriptRegistry.execute(
+        InventoryScriptRegistry.RESERVE_STOCK,
+        List.of(RESERVE_IDEMPOTENT_KEY_PREFIX + request.getBusinessKey(),
+            buildStockKey(request.getSkuId(), request.getWarehouseId()),
+            buildReservationKey(request.getBusinessKey()),
+            buildIndexKey(request.getSkuId(), request.getWarehouseId()),
+            ReservationJournalWriter.STREAM_KEY,
+            EXPIRY_INDEX_KEY,
+            ReservationJournalWriter.PENDING_KEY),
+        request.getQuantity(),
+        timeoutSeconds,
+        STOCK_CACHE_TTL,
+        IDEMPOTENT_TTL,
+        journalMaxLength,
+        request.getSkuId(),
+        request.getWarehouseId(),
+        request.getBusinessKey(),
+        nullToEmpty(request.getOperatorId()),
+        nullToEmpty(request.getOperatorName()),
+        nullToEmpty(request.getRemark()),
+        System.currentTimeMillis(),
+        preDeducted ? 1 : 0,
+        RESERVATION_RETAIN_SECONDS,
+        TenantContextHolder.getRequiredTenantId()
+    );
+  }
 
-    } finally {
-      lock.release();
+  /**
+   * 结束预占（确认 C / 释放 X）
+   *
+   * @return 预占数量，预占不存在时返回 null
+   */
+  private Long finishReservation(String businessKey, String operation) {
+    String reservationKey = buildReservationKey(businessKey);
+    List<Object> location = stringRedisTemplate.opsForHash()
+        .multiGet(reservationKey, List.of("skuId", "warehouseId"));
+    if (location.get(0) == null) {
+      return null;
     }
+    String skuId = location.get(0).toString();
+    String warehouseId = location.get(1).toString();
+
+    boolean sharded = shardingService.isSharded(skuId, warehouseId);
+    for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+      Long result = scriptRegistry.execute(
+          InventoryScriptRegistry.FINISH_RESERVATION,
+          List.of(reservationKey,
+              buildIndexKey(skuId, warehouseId),
+              ReservationJournalWriter.STREAM_KEY,
+              buildStockKey(skuId, warehouseId),
+              EXPIRY_INDEX_KEY,
+              ReservationJournalWriter.PENDING_KEY),
+          businessKey,
+          journalMaxLength,
+          System.currentTimeMillis(),
+          operation,
+          STOCK_CACHE_TTL,
+          sharded ? 1 : 0
+      );
+      if (result == null) {
+        throw new RuntimeException("系统繁忙，请稍后重试");
+      }
+      if (result == 0L) {
+        return null;
+      }
+      if (result > 0) {
+        if (sharded && "X".equals(operation)) {
+          shardingService.add(skuId, warehouseId, result.intValue());
+        }
+        return result;
+      }
+      // -4：库存已切换为分桶模式
+      sharded = shardingService.awaitSharded(skuId, warehouseId);
+    }
+    throw new RuntimeException("系统繁忙，请稍后重试");
   }
 
-  @Override
-  public boolean checkReservationExists(String businessKey) {
-    String reservationKey = buildReservationKey(businessKey);
-    return Boolean.TRUE.equals(redisTemplate.hasKey(reservationKey));
+  private RuntimeException insufficientStock(InventoryReservationRequest request) {
+    Integer available = redisInventoryService.getStock(request.getSkuId(), request.getWarehouseId());
+    log.error("❌ 库存不足: skuId={}, available={}, required={}",
+        request.getSkuId(), available, request.getQuantity());
+    return new RuntimeException(
+        String.format("库存不足: 可用 %d, 需要 %d",
+            available != null ? available : 0, request.getQuantity())
+    );
   }
 
-  @Override
-  public Integer getReservedQuantity(String businessKey) {
-    String reservationKey = buildReservationKey(businessKey);
-    Object quantity = redisTemplate.opsForHash().get(reservationKey, "quantity");
-    return quantity != null ? (Integer) quantity : null;
+  private static boolean isExpired(Object expireAt) {
+    return expireAt != null && Long.parseLong(expireAt.toString()) <= System.currentTimeMillis();
   }
 
-  @Override
-  @Transactional(rollbackFor = Exception.class)
-  public int releaseExpiredReservations() {
-    log.info("🔄 开始扫描并释放过期预占");
+  private static void hMGet(RedisConnection connection, String key) {
+    connection.hashCommands().hMGet(key.getBytes(StandardCharsets.UTF_8),
+        "skuId".getBytes(StandardCharsets.UTF_8), "warehouseId".getBytes(StandardCharsets.UTF_8));
+  }
 
-    // 注意：Redis 的过期机制是惰性的，不会主动通知过期
-    // 这里的实现是兜底机制，实际过期释放依赖 Redis 自动过期 + 监听器
-    // 由于无法直接扫描所有过期的 key，这里只是一个示例实现
-    // 生产环境建议使用 Redis Keyspace Notifications 或定时任务扫描数据库中的预占记录
+  private static String nullToEmpty(String value) {
+    return value != null ? value : "";
+  }
 
-    log.warn("⚠️  当前实现依赖 Redis 自动过期机制，无需手动扫描");
-    return 0;
+  /**
+   * 构建库存数量缓存键（与 RedisInventoryService 一致）
+   */
+  private String buildStockKey(String skuId, String warehouseId) {
+    return redisInventoryService.buildStockKey(skuId, warehouseId);
   }
 
   /**
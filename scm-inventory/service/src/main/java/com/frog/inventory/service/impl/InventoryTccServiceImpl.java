@@ -5,15 +5,19 @@ import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.frog.inventory.api.InventoryTccService;
 import com.frog.inventory.domain.entity.InvTccReservation;
 import com.frog.inventory.domain.entity.Inventory;
+import com.frog.inventory.domain.event.InventoryChangedEvent;
 import com.frog.inventory.mapper.InvInventoryMapper;
 import com.frog.inventory.mapper.InvTccReservationMapper;
+import com.frog.inventory.tcc.TccTryGroupCommitter;
 import io.seata.core.context.RootContext;
 import io.seata.rm.tcc.api.BusinessActionContext;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 
@@ -29,6 +33,9 @@ import java.time.LocalDateTime;
  *   <li>允许空回滚：Cancel 时如果 Try 未执行，直接返回成功</li>
  * </ul>
  *
+ * <p>开启 inventory.tcc.group-commit.enabled 后，同一 SKU 的并发 Try 由 {@link TccTryGroupCommitter}
+ * 合并为一个事务执行，以上三点保持不变
+ *
  * @author SCM Platform Team
  * @since 2025-12-26
  */
@@ -38,6 +45,12 @@ import java.time.LocalDateTime;
 public class InventoryTccServiceImpl implements InventoryTccService {
     private final InvInventoryMapper inventoryMapper;
     private final InvTccReservationMapper reservationMapper;
+    private final TccTryGroupCommitter groupCommitter;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${inventory.tcc.group-commit.enabled:false}")
+    private boolean groupCommitEnabled;
 
     /**
      * Try 阶段：预留库存
@@ -47,14 +60,27 @@ public class InventoryTccServiceImpl implements InventoryTccService {
      * 2. 查询库存并检查是否充足
      * 3. 将可用库存转为锁定库存（available_stock - X, locked_stock + X）
      * 4. 插入预留记录
+     *
+     * <p>组提交模式下由 {@link TccTryGroupCommitter} 批量执行上述步骤
      */
     @Override
-    @Transactional(rollbackFor = Exception.class)
     public boolean reserveInventory(Long skuId, Integer quantity, String businessKey) {
         String xid = RootContext.getXID();
         log.info("🔵 [TCC-Try] 开始预留库存: skuId={}, quantity={}, businessKey={}, XID={}",
                 skuId, quantity, businessKey, xid);
 
+        if (groupCommitEnabled) {
+            return groupCommitter.reserve(skuId, quantity, businessKey, xid);
+        }
+        return Boolean.TRUE.equals(transactionTemplate.execute(status ->
+                reserveSingle(skuId, quantity, businessKey, xid)));
+    }
+
+    /**
+     * 单条 Try（独立事务）
+     */
+    private boolean reserveSingle(Long skuId, Integer quantity, String businessKey, String xid) {
+
         // 1. 幂等性检查
         InvTccReservation existingReservation = reservationMapper.selectOne(
                 new LambdaQueryWrapper<InvTccReservation>()
@@ -112,6 +138,7 @@ public class InventoryTccServiceImpl implements InventoryTccService {
         reservation.setTryTime(LocalDateTime.now());
 
         reservationMapper.insert(reservation);
+        eventPublisher.publishEvent(InventoryChangedEvent.ofSku(skuId));
 
         log.info("✅ [TCC-Try] 库存预留成功: skuId={}, quantity={}, businessKey={}, XID={}",
                 skuId, quantity, businessKey, xid);
@@ -168,6 +195,7 @@ public class InventoryTccServiceImpl implements InventoryTccService {
             log.error("❌ [TCC-Confirm] 锁定库存不足: skuId={}, quantity={}", skuId, quantity);
             throw new RuntimeException("锁定库存不足");
         }
+        eventPublisher.publishEvent(InventoryChangedEvent.ofSku(skuId));
 
         // 5. 更新预留记录状态
         reservation.setStatus(InvTccReservation.Status.CONFIRMED);
@@ -240,6 +268,8 @@ public class InventoryTccServiceImpl implements InventoryTccService {
             log.warn("⚠️  [TCC-Cancel] 锁定库存不足，可能已被释放: skuId={}, quantity={}",
                     skuId, quantity);
             // 不抛异常，标记为已取消
+        } else {
+            eventPublisher.publishEvent(InventoryChangedEvent.ofSku(skuId));
         }
 
         // 5. 更新预留记录状态
@@ -0,0 +1,605 @@
+package com.frog.inventory.sharding;
+
+import com.frog.inventory.journal.StockJournalFlusher;
+import com.frog.inventory.lock.DistributedLock;
+import com.frog.inventory.script.InventoryScriptRegistry;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 热点 SKU 库存分桶
+ *
+ * <p>单个库存键上的所有扣减都会串行在同一个 Redis 槽位上。分桶模式把一个热点 SKU 的可用库存拆到 K 个子键：
+ * <ul>
+ *   <li>扣减从随机分桶开始，分桶不足时依次尝试相邻分桶；全部不足但总量足够时先把库存归集到一个分桶再扣</li>
+ *   <li>每个分桶各自带 hash tag，与各自的流水分区 Stream 同槽（{@link StockJournalFlusher#partitionStreamKey}），
+ *       同一 SKU 的 K 个分桶落在 K 个不同分区，在 Redis Cluster 上分散到不同槽位，扣减脚本仍是单槽操作</li>
+ *   <li>原库存键写入分桶标记，未刷新本地分桶列表的实例执行脚本时会拿到 -4 并刷新</li>
+ *   <li>后台定时再平衡，把库存从富余分桶搬到不足分桶，并把全部分桶的 TTL 对齐到最近一次扣减刷新的 TTL，
+ *       分桶标记比分桶多保留 {@link #SHARD_TTL}；分桶全部过期后自动退出分桶模式</li>
+ *   <li>本实例每秒扣减次数超过阈值的 SKU 自动切换为分桶模式</li>
+ * </ul>
+ *
+ * <p>分桶之间的搬运（归集、再平衡）拆成两个单分桶脚本：从源分桶取出（{@link InventoryScriptRegistry#TAKE_SHARD}）
+ * 与放入目标分桶（{@link InventoryScriptRegistry#ADD_STOCK}），两侧各自在同槽分区 Stream 写一条库存流水。
+ * 两步之间宕机时，取出的数量随流水同样从数据库扣除，Redis 与数据库保持一致，不会出现只存在于一侧的库存；
+ * 搬运期间并发扣减看到的合计暂时偏少，只会误判不足，不会超卖。
+ *
+ * @author SCM Platform Team
+ * @since 2025-12-26
+ */
+@Slf4j
+@Component
+public class HotSkuShardingService {
+  /**
+   * 分桶标记（JSON 字符串形式，保证 RedisTemplate 的 JSON 反序列化仍可读取）
+   */
+  public static final String SHARD_MARKER = "\"SHARDED\"";
+
+  private static final String REGISTRY_KEY = "inventory:shard:registry";
+  private static final String SHARD_KEY_PREFIX = "inventory:stock:shard:";
+  private static final long SHARD_TTL = 300; // 分桶键保留5分钟（扣减/搬运时刷新，再平衡时对齐到全部分桶）
+  private static final int STALE_RETRY_TIMES = 3;
+  private static final long STALE_RETRY_SLEEP_MS = 20;
+
+  private final StringRedisTemplate stringRedisTemplate;
+  private final InventoryScriptRegistry scriptRegistry;
+  private final DistributedLock distributedLock;
+  private final StockJournalFlusher stockJournalFlusher;
+  private final MeterRegistry meterRegistry;
+  private final ScheduledExecutorService scheduler;
+
+  /**
+   * 已分桶的库存（SKU:仓库 → 分桶数），定时从 Redis 注册表刷新
+   */
+  private volatile Map<String, Integer> shardedKeys = Map.of();
+
+  /**
+   * 当前统计窗口内各库存的扣减次数
+   */
+  private volatile ConcurrentHashMap<String, LongAdder> deductionWindow = new ConcurrentHashMap<>();
+
+  @Value("${inventory.sharding.enabled:false}")
+  private boolean enabled;
+
+  @Value("${inventory.sharding.buckets:8}")
+  private int buckets;
+
+  @Value("${inventory.sharding.promote-threshold:2000}")
+  private long promoteThreshold;
+
+  @Value("${inventory.sharding.rebalance-interval-ms:1000}")
+  private long rebalanceIntervalMs;
+
+  @Value("${inventory.journal.max-length:1000000}")
+  private long journalMaxLength;
+
+  public HotSkuShardingService(StringRedisTemplate stringRedisTemplate,
+                               InventoryScriptRegistry scriptRegistry,
+                               DistributedLock distributedLock,
+                               StockJournalFlusher stockJournalFlusher,
+                               ObjectProvider<MeterRegistry> meterRegistry) {
+    this.stringRedisTemplate = stringRedisTemplate;
+    this.scriptRegistry = scriptRegistry;
+    this.distributedLock = distributedLock;
+    this.stockJournalFlusher = stockJournalFlusher;
+    this.meterRegistry = meterRegistry.getIfAvailable();
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "inventory-shard-rebalancer");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  @PostConstruct
+  public void start() {
+    if (!enabled) {
+      return;
+    }
+    if (buckets > stockJournalFlusher.partitions()) {
+      throw new IllegalStateException("inventory.sharding.buckets 不能大于 inventory.journal.partitions");
+    }
+    refreshRegistry();
+    if (meterRegistry != null) {
+      Gauge.builder("inventory.shard.keys", this, s -> s.shardedKeys.size())
+          .description("当前处于分桶模式的库存数")
+          .register(meterRegistry);
+    }
+    scheduler.scheduleWithFixedDelay(this::tickSafely, rebalanceIntervalMs, rebalanceIntervalMs,
+        TimeUnit.MILLISECONDS);
+    log.info("✅ 热点库存分桶已启用: buckets={}, promoteThreshold={}/s, journalPartitions={}",
+        buckets, promoteThreshold, stockJournalFlusher.partitions());
+  }
+
+  @PreDestroy
+  public void stop() {
+    scheduler.shutdownNow();
+  }
+
+  /**
+   * 是否处于分桶模式（本地视图）
+   */
+  public boolean isSharded(String skuId, String warehouseId) {
+    return enabled && shardedKeys.containsKey(field(skuId, warehouseId));
+  }
+
+  /**
+   * 库存键已是分桶标记但本地视图未包含时调用：刷新注册表，必要时短暂等待切换完成
+   *
+   * @return true-已处于分桶模式
+   */
+  public boolean awaitSharded(String skuId, String warehouseId) {
+    if (!enabled) {
+      log.warn("⚠️  库存键为分桶标记，但本实例未启用分桶: skuId={}, warehouseId={}", skuId, warehouseId);
+      return false;
+    }
+    for (int attempt = 0; attempt < STALE_RETRY_TIMES; attempt++) {
+      refreshRegistry();
+      if (isSharded(skuId, warehouseId)) {
+        return true;
+      }
+      sleepQuietly();
+    }
+    return false;
+  }
+
+  /**
+   * 记录一次扣减，用于自动切换分桶
+   */
+  public void recordDeduction(String skuId, String warehouseId) {
+    if (enabled) {
+      deductionWindow.computeIfAbsent(field(skuId, warehouseId), k -> new LongAdder()).increment();
+    }
+  }
+
+  /**
+   * 从 Redis 注册表刷新本地分桶视图
+   *
+   * <p>脚本返回 -4（库存键已是分桶标记）时由调用方触发
+   */
+  public void refreshRegistry() {
+    Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(REGISTRY_KEY);
+    Map<String, Integer> snapshot = new HashMap<>(entries.size());
+    entries.forEach((k, v) -> snapshot.put(String.valueOf(k), Integer.parseInt(String.valueOf(v))));
+    shardedKeys = Map.copyOf(snapshot);
+  }
+
+  /**
+   * 分桶扣减
+   *
+   * @return 扣减结果；{@link Outcome#NOT_SHARDED} 表示调用方应走普通库存键
+   */
+  public Outcome deduct(String skuId, String warehouseId, int quantity) {
+    for (int attempt = 0; attempt < STALE_RETRY_TIMES; attempt++) {
+      String field = field(skuId, warehouseId);
+      Integer bucketCount = shardedKeys.get(field);
+      if (bucketCount == null) {
+        return Outcome.NOT_SHARDED;
+      }
+
+      int start = ThreadLocalRandom.current().nextInt(bucketCount);
+      int missing = 0;
+      for (int i = 0; i < bucketCount; i++) {
+        int bucket = (start + i) % bucketCount;
+        Long result = deductBucket(field, bucket, skuId, warehouseId, quantity);
+        if (result != null && result == 1L) {
+          return Outcome.DEDUCTED;
+        }
+        if (result != null && result == -1L) {
+          missing++;
+        }
+      }
+
+      if (missing < bucketCount) {
+        // 每个分桶都不足：把其他分桶的库存归集到起始分桶后再试一次
+        if (gather(field, bucketCount, start, skuId, warehouseId, quantity)) {
+          Long result = deductBucket(field, start, skuId, warehouseId, quantity);
+          if (result != null && result == 1L) {
+            return Outcome.DEDUCTED;
+          }
+        }
+        return Outcome.INSUFFICIENT;
+      }
+
+      // 分桶全部不存在：正在切换或已退出分桶模式，刷新后重试
+      sleepQuietly();
+      refreshRegistry();
+    }
+    return Outcome.NOT_SHARDED;
+  }
+
+  /**
+   * 分桶增加库存（随机分桶）
+   */
+  public void add(String skuId, String warehouseId, int quantity) {
+    String field = field(skuId, warehouseId);
+    int bucket = ThreadLocalRandom.current().nextInt(shardedKeys.getOrDefault(field, buckets));
+    put(field, bucket, skuId, warehouseId, quantity);
+  }
+
+  /**
+   * 分桶幂等增加库存
+   *
+   * <p>分桶由 requestId 决定，幂等键通过 hash tag 与分桶同槽，重试总是落在同一分桶
+   *
+   * @return true-本次已增加，false-重复请求未增加
+   */
+  public boolean release(String skuId, String warehouseId, int quantity, String idempotentKey, String requestId,
+                         long idempotentTtl) {
+    String field = field(skuId, warehouseId);
+    int bucket = Math.floorMod(requestId.hashCode(), shardedKeys.getOrDefault(field, buckets));
+    int partition = partition(field, bucket);
+    String streamKey = StockJournalFlusher.partitionStreamKey(partition);
+    Long result = scriptRegistry.execute(
+        InventoryScriptRegistry.ADD_STOCK_IDEMPOTENT,
+        List.of(idempotentKey + ":{" + partition + "}",
+            bucketKey(field, bucket),
+            streamKey,
+            StockJournalFlusher.pendingKey(streamKey)),
+        quantity,
+        SHARD_TTL,
+        idempotentTtl,
+        journalMaxLength,
+        skuId,
+        warehouseId
+    );
+    if (result == null) {
+      throw new IllegalStateException("分桶释放库存失败");
+    }
+    return result != -3L;
+  }
+
+  /**
+   * 汇总各分桶库存
+   *
+   * @return 库存总量（分桶全部不存在时返回 null）
+   */
+  public Integer getStock(String skuId, String warehouseId) {
+    String field = field(skuId, warehouseId);
+    List<String> values = stringRedisTemplate.opsForValue()
+        .multiGet(bucketKeys(field, shardedKeys.getOrDefault(field, buckets)));
+    if (values == null) {
+      return null;
+    }
+    int total = 0;
+    boolean found = false;
+    for (String value : values) {
+      if (value != null) {
+        total += Integer.parseInt(value);
+        found = true;
+      }
+    }
+    return found ? total : null;
+  }
+
+  /**
+   * 将库存切换为分桶模式
+   *
+   * <p>可用于大促前手动预切换；库存尚未同步到 Redis 时返回 false
+   */
+  public boolean promote(String skuId, String warehouseId) {
+    String field = field(skuId, warehouseId);
+    if (!enabled || shardedKeys.containsKey(field)) {
+      return false;
+    }
+
+    DistributedLock.LockHandle lock = distributedLock.tryLock("shard:" + field, 10, TimeUnit.SECONDS);
+    if (lock == null) {
+      return false;
+    }
+    try {
+      Long stock = scriptRegistry.execute(
+          InventoryScriptRegistry.PROMOTE_TO_SHARDS,
+          List.of(stockJournalFlusher.stockKey(field)),
+          SHARD_MARKER,
+          SHARD_TTL
+      );
+      if (stock == null || stock == -1L) {
+        return false;
+      }
+      if (stock == -4L) {
+        refreshRegistry();
+        return false;
+      }
+
+      // 先写分桶、再登记注册表：其他实例看到注册表时分桶一定已就绪。
+      // 库存只是从原库存键转移到分桶，总量不变，不写流水
+      long base = stock / buckets;
+      long remainder = stock % buckets;
+      for (int i = 0; i < buckets; i++) {
+        long value = base + (i < remainder ? 1 : 0);
+        stringRedisTemplate.opsForValue().set(bucketKey(field, i), String.valueOf(value), SHARD_TTL, TimeUnit.SECONDS);
+      }
+      stringRedisTemplate.opsForHash().put(REGISTRY_KEY, field, String.valueOf(buckets));
+      refreshRegistry();
+
+      if (meterRegistry != null) {
+        meterRegistry.counter("inventory.shard.promotions").increment();
+      }
+      log.info("🔀 库存切换为分桶模式: skuId={}, warehouseId={}, stock={}, buckets={}",
+          skuId, warehouseId, stock, buckets);
+      return true;
+    } finally {
+      lock.release();
+    }
+  }
+
+  /**
+   * 退出分桶模式并删除全部分桶（库存调整后强制从数据库重新同步）
+   */
+  public void demote(String skuId, String warehouseId) {
+    String field = field(skuId, warehouseId);
+    Integer bucketCount = shardedKeys.get(field);
+    if (bucketCount == null) {
+      return;
+    }
+    stringRedisTemplate.opsForHash().delete(REGISTRY_KEY, field);
+    stringRedisTemplate.delete(stockJournalFlusher.stockKey(field));
+    bucketKeys(field, bucketCount).forEach(stringRedisTemplate::delete);
+    refreshRegistry();
+    log.info("🔀 库存退出分桶模式: skuId={}, warehouseId={}", skuId, warehouseId);
+  }
+
+  private void tickSafely() {
+    try {
+      ConcurrentHashMap<String, LongAdder> window = deductionWindow;
+      deductionWindow = new ConcurrentHashMap<>();
+      refreshRegistry();
+
+      long threshold = promoteThreshold * rebalanceIntervalMs / 1000;
+      window.forEach((field, count) -> {
+        if (count.sum() >= threshold && !shardedKeys.containsKey(field)) {
+          int separator = field.lastIndexOf(':');
+          promote(field.substring(0, separator), field.substring(separator + 1));
+        }
+      });
+
+      shardedKeys.forEach(this::rebalance);
+    } catch (Exception e) {
+      log.error("❌ 热点库存分桶维护失败", e);
+    }
+  }
+
+  /**
+   * 再平衡：分布不均（有分桶低于均值一半）时把富余分桶的库存搬到不足分桶，随后把全部分桶的 TTL 对齐到最长的剩余 TTL
+   * 并续期分桶标记，未被扣减的分桶不会先于其他分桶过期；分桶全部过期则退出分桶模式
+   */
+  private void rebalance(String field, int bucketCount) {
+    DistributedLock.LockHandle lock = distributedLock.tryLock("shard:" + field, 10, TimeUnit.SECONDS);
+    if (lock == null) {
+      return;
+    }
+    try {
+      List<String> keys = bucketKeys(field, bucketCount);
+      List<String> values = stringRedisTemplate.opsForValue().multiGet(keys);
+      if (values == null || values.stream().allMatch(Objects::isNull)) {
+        stringRedisTemplate.opsForHash().delete(REGISTRY_KEY, field);
+        stringRedisTemplate.delete(stockJournalFlusher.stockKey(field));
+        log.info("🔀 分桶已全部过期，库存退出分桶模式: {}", field);
+        return;
+      }
+
+      long[] stocks = new long[bucketCount];
+      long total = 0;
+      for (int i = 0; i < bucketCount; i++) {
+        stocks[i] = values.get(i) != null ? Long.parseLong(values.get(i)) : 0;
+        total += stocks[i];
+      }
+      long target = total / bucketCount;
+      boolean skewed = false;
+      for (long stock : stocks) {
+        skewed |= stock < target / 2;
+      }
+      if (skewed) {
+        move(field, stocks, target);
+      }
+
+      alignTtl(field, keys);
+    } finally {
+      lock.release();
+    }
+  }
+
+  /**
+   * 先从富余分桶取出，再补给不足分桶（搬运期间合计只会暂时偏少，不会超卖）
+   */
+  private void move(String field, long[] stocks, long target) {
+    int separator = field.lastIndexOf(':');
+    String skuId = field.substring(0, separator);
+    String warehouseId = field.substring(separator + 1);
+
+    long pool = 0;
+    for (int i = 0; i < stocks.length; i++) {
+      if (stocks[i] > target) {
+        pool += take(field, i, skuId, warehouseId, stocks[i] - target);
+      }
+    }
+    long moved = pool;
+    for (int i = 0; i < stocks.length && pool > 0; i++) {
+      // 并发扣减使取出量与快照不符时，差额落在最后一个分桶
+      long give = i == stocks.length - 1 ? pool : Math.min(pool, Math.max(0, target - stocks[i]));
+      if (give > 0) {
+        put(field, i, skuId, warehouseId, give);
+        pool -= give;
+      }
+    }
+
+    if (meterRegistry != null) {
+      meterRegistry.counter("inventory.shard.rebalance.moved").increment(moved);
+    }
+    log.debug("⚖️  分桶再平衡: {}, moved={}", field, moved);
+  }
+
+  /**
+   * 把全部分桶的 TTL 对齐到最长的剩余 TTL，分桶标记比分桶晚 {@link #SHARD_TTL} 过期：
+   * 标记在而分桶不在时扣减返回不足，不会绕过分桶读到旧库存
+   */
+  private void alignTtl(String field, List<String> keys) {
+    List<Object> ttls = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+      for (String key : keys) {
+        connection.keyCommands().pTtl(key.getBytes(StandardCharsets.UTF_8));
+      }
+      return null;
+    });
+    long ttlMillis = -2;
+    for (Object value : ttls) {
+      long pttl = ((Number) value).longValue();
+      if (pttl == -1 || (ttlMillis != -1 && pttl > ttlMillis)) {
+        ttlMillis = pttl;
+      }
+    }
+    if (ttlMillis == -2) {
+      return;
+    }
+
+    long alignTo = ttlMillis;
+    stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+      for (int i = 0; i < keys.size(); i++) {
+        long pttl = ((Number) ttls.get(i)).longValue();
+        if (pttl < 0 && pttl != -1) {
+          continue;
+        }
+        byte[] key = keys.get(i).getBytes(StandardCharsets.UTF_8);
+        if (alignTo == -1) {
+          connection.keyCommands().persist(key);
+        } else if (pttl != alignTo) {
+          connection.keyCommands().pExpire(key, alignTo);
+        }
+      }
+      return null;
+    });
+
+    if (alignTo > 0) {
+      stringRedisTemplate.expire(stockJournalFlusher.stockKey(field),
+          alignTo + TimeUnit.SECONDS.toMillis(SHARD_TTL), TimeUnit.MILLISECONDS);
+    } else {
+      stringRedisTemplate.persist(stockJournalFlusher.stockKey(field));
+    }
+  }
+
+  /**
+   * 从其他分桶归集库存到目标分桶，直到目标分桶可满足 quantity
+   */
+  private boolean gather(String field, int bucketCount, int target, String skuId, String warehouseId, int quantity) {
+    String current = stringRedisTemplate.opsForValue().get(bucketKey(field, target));
+    long needed = quantity - (current != null ? Long.parseLong(current) : 0);
+    long collected = 0;
+    for (int i = 1; i < bucketCount && collected < needed; i++) {
+      collected += take(field, (target + i) % bucketCount, skuId, warehouseId, needed - collected);
+    }
+    if (collected > 0) {
+      put(field, target, skuId, warehouseId, collected);
+    }
+    return collected >= needed;
+  }
+
+  /**
+   * 从分桶取出最多 quantity 的库存并写流水
+   */
+  private long take(String field, int bucket, String skuId, String warehouseId, long quantity) {
+    String streamKey = StockJournalFlusher.partitionStreamKey(partition(field, bucket));
+    Long taken = scriptRegistry.execute(
+        InventoryScriptRegistry.TAKE_SHARD,
+        List.of(bucketKey(field, bucket), streamKey, StockJournalFlusher.pendingKey(streamKey)),
+        quantity,
+        SHARD_TTL,
+        journalMaxLength,
+        skuId,
+        warehouseId
+    );
+    return taken != null ? taken : 0;
+  }
+
+  /**
+   * 向分桶放入库存并写流水
+   */
+  private void put(String field, int bucket, String skuId, String warehouseId, long quantity) {
+    String streamKey = StockJournalFlusher.partitionStreamKey(partition(field, bucket));
+    scriptRegistry.execute(
+        InventoryScriptRegistry.ADD_STOCK,
+        List.of(bucketKey(field, bucket), streamKey, StockJournalFlusher.pendingKey(streamKey)),
+        quantity,
+        SHARD_TTL,
+        journalMaxLength,
+        skuId,
+        warehouseId
+    );
+  }
+
+  private Long deductBucket(String field, int bucket, String skuId, String warehouseId, int quantity) {
+    String streamKey = StockJournalFlusher.partitionStreamKey(partition(field, bucket));
+    return scriptRegistry.execute(
+        InventoryScriptRegistry.DEDUCT_STOCK,
+        List.of(bucketKey(field, bucket), streamKey, StockJournalFlusher.pendingKey(streamKey)),
+        quantity,
+        SHARD_TTL,
+        journalMaxLength,
+        skuId,
+        warehouseId
+    );
+  }
+
+  private void sleepQuietly() {
+    try {
+      Thread.sleep(STALE_RETRY_SLEEP_MS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private List<String> bucketKeys(String field, int bucketCount) {
+    List<String> keys = new ArrayList<>(bucketCount);
+    for (int i = 0; i < bucketCount; i++) {
+      keys.add(bucketKey(field, i));
+    }
+    return keys;
+  }
+
+  /**
+   * 分桶键：inventory:stock:shard:{分区}:SKU:仓库:分桶序号，hash tag 与该分桶的流水分区 Stream 一致
+   */
+  private String bucketKey(String field, int bucket) {
+    return SHARD_KEY_PREFIX + "{" + partition(field, bucket) + "}:" + field + ":" + bucket;
+  }
+
+  /**
+   * 分桶所在的流水分区：同一库存的 K 个分桶落在 K 个相邻分区（K 不超过分区数），0 号分桶与库存键同分区
+   */
+  private int partition(String field, int bucket) {
+    return stockJournalFlusher.partition(field, bucket);
+  }
+
+  private static String field(String skuId, String warehouseId) {
+    return skuId + ":" + warehouseId;
+  }
+
+  /**
+   * 分桶扣减结果
+   */
+  public enum Outcome {
+    DEDUCTED,
+    INSUFFICIENT,
+    NOT_SHARDED
+  }
+}
@@ -0,0 +1,325 @@
+package com.frog.inventory.tcc;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.frog.inventory.domain.entity.InvTccReservation;
+import com.frog.inventory.domain.entity.Inventory;
+import com.frog.inventory.domain.event.InventoryChangedEvent;
+import com.frog.inventory.mapper.InvInventoryMapper;
+import com.frog.inventory.mapper.InvTccReservationMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * TCC Try 阶段组提交
+ *
+ * <p>同一 SKU 的并发 Try 请求在一个短窗口（默认 3ms）内汇集，由一个事务统一处理：
+ * <ol>
+ *   <li>一次查询过滤已存在预留记录的业务键（幂等 / 防悬挂，与单条模式一致直接返回成功）</li>
+ *   <li>SELECT ... FOR UPDATE 锁定库存行，按到达顺序依次校验库存，放不下的请求单独失败</li>
+ *   <li>一条多值 INSERT ... ON CONFLICT DO NOTHING 写入预留记录，被空回滚抢先写入的业务键不计入</li>
+ *   <li>按实际写入的数量合计执行一条 UPDATE（可用库存 → 锁定库存）</li>
+ * </ol>
+ * 每个调用方拿到各自的结果；同一 SKU 同一时刻只有一个批次在执行，行锁由批次持有而不是逐单排队。
+ * 队列排空后移除该 SKU 的分组，分组数只与当前有请求在排队的 SKU 数相关。
+ *
+ * <p>指标：inventory.tcc.group.size（每批请求数）
+ *
+ * @author SCM Platform Team
+ * @since 2025-12-26
+ */
+@Slf4j
+@Component
+public class TccTryGroupCommitter {
+    private final InvInventoryMapper inventoryMapper;
+    private final InvTccReservationMapper reservationMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ConcurrentHashMap<Long, SkuGroup> groups = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer;
+    private final ExecutorService workers;
+    private final DistributionSummary groupSizeSummary;
+
+    @Value("${inventory.tcc.group-commit.window-ms:3}")
+    private long windowMs;
+
+    @Value("${inventory.tcc.group-commit.max-batch:64}")
+    private int maxBatch;
+
+    @Value("${inventory.tcc.group-commit.timeout-ms:3000}")
+    private long timeoutMs;
+
+    public TccTryGroupCommitter(InvInventoryMapper inventoryMapper,
+                                InvTccReservationMapper reservationMapper,
+                                TransactionTemplate transactionTemplate,
+                                ApplicationEventPublisher eventPublisher,
+                                ObjectProvider<MeterRegistry> meterRegistry,
+                                @Value("${inventory.tcc.group-commit.worker-threads:8}") int workerThreads) {
+        this.inventoryMapper = inventoryMapper;
+        this.reservationMapper = reservationMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.timer = Executors.newSingleThreadScheduledExecutor(daemon("tcc-try-window"));
+        AtomicInteger index = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerThreads,
+                r -> daemon("tcc-try-commit-" + index.incrementAndGet()).newThread(r));
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        this.groupSizeSummary = registry == null ? null : DistributionSummary.builder("inventory.tcc.group.size")
+                .description("每次组提交处理的 Try 请求数")
+                .register(registry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+        workers.shutdown();
+    }
+
+    /**
+     * 提交一个 Try 请求并等待所在批次的结果
+     *
+     * @return true 表示预留成功或幂等返回
+     * @throws IllegalArgumentException SKU 不存在
+     * @throws RuntimeException 库存不足或批次执行失败
+     */
+    public boolean reserve(Long skuId, Integer quantity, String businessKey, String xid) {
+        TryRequest request = new TryRequest(skuId, quantity, businessKey, xid);
+        // 入队与排空后移除分组都在 ConcurrentHashMap 的同一个桶锁内完成，请求不会落入已移除的分组
+        SkuGroup group = groups.compute(skuId, (k, current) -> {
+            SkuGroup target = current != null ? current : new SkuGroup();
+            target.queue.add(request);
+            return target;
+        });
+        if (group.scheduled.compareAndSet(false, true)) {
+            timer.schedule(() -> workers.execute(() -> drain(skuId, group)), windowMs, TimeUnit.MILLISECONDS);
+        }
+
+        try {
+            return request.result.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException("库存预留失败，请重试", e.getCause());
+        } catch (TimeoutException e) {
+            // 批次可能仍会提交，由 Seata 回滚时的 Cancel 释放
+            log.error("❌ [TCC-Try] 组提交等待超时: skuId={}, businessKey={}", skuId, businessKey);
+            throw new RuntimeException("库存预留超时，请重试");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("库存预留被中断", e);
+        }
+    }
+
+    /**
+     * 处理一个 SKU 的排队请求，处理完仍有积压时立即调度下一批
+     */
+    private void drain(Long skuId, SkuGroup group) {
+        List<TryRequest> batch = new ArrayList<>(maxBatch);
+        TryRequest request;
+        while (batch.size() < maxBatch && (request = group.queue.poll()) != null) {
+            batch.add(request);
+        }
+
+        try {
+            if (!batch.isEmpty()) {
+                commit(skuId, batch);
+            }
+        } catch (Exception e) {
+            log.error("❌ [TCC-Try] 组提交失败: skuId={}, size={}", skuId, batch.size(), e);
+            batch.forEach(r -> r.result.completeExceptionally(e));
+        } finally {
+            group.scheduled.set(false);
+            groups.computeIfPresent(skuId, (k, current) -> current == group && group.queue.isEmpty() ? null : current);
+            // 排队期间到达的请求已经等待过一个窗口，直接处理
+            if (!group.queue.isEmpty() && group.scheduled.compareAndSet(false, true)) {
+                workers.execute(() -> drain(skuId, group));
+            }
+        }
+    }
+
+    private void commit(Long skuId, List<TryRequest> batch) {
+        if (groupSizeSummary != null) {
+            groupSizeSummary.record(batch.size());
+        }
+
+        // 同一批次内重复的业务键只处理第一次，其余跟随其结果
+        Map<String, TryRequest> unique = new LinkedHashMap<>();
+        Map<TryRequest, TryRequest> followers = new LinkedHashMap<>();
+        for (TryRequest request : batch) {
+            TryRequest first = unique.putIfAbsent(request.businessKey, request);
+            if (first != null) {
+                followers.put(request, first);
+            }
+        }
+
+        Map<TryRequest, Object> outcomes = transactionTemplate.execute(status -> {
+            Map<TryRequest, Object> results = new LinkedHashMap<>();
+
+            // 1. 幂等 / 防悬挂：已有记录（含空回滚写入的 CANCELLED 记录）直接返回成功
+            Set<String> existing = new HashSet<>(
+                    reservationMapper.selectExistingBusinessKeys(new ArrayList<>(unique.keySet())));
+            List<TryRequest> pending = new ArrayList<>();
+            for (TryRequest request : unique.values()) {
+                if (existing.contains(request.businessKey)) {
+                    log.warn("⚠️  [TCC-Try] 预留记录已存在，幂等返回: businessKey={}", request.businessKey);
+                    results.put(request, Boolean.TRUE);
+                } else {
+                    pending.add(request);
+                }
+            }
+            if (pending.isEmpty()) {
+                return results;
+            }
+
+            // 2. 锁定库存行并按到达顺序校验
+            Inventory inventory = inventoryMapper.selectOne(
+                    new LambdaQueryWrapper<Inventory>()
+                            .eq(Inventory::getSkuId, skuId)
+                            .last("FOR UPDATE")
+            );
+            if (inventory == null) {
+                log.error("❌ [TCC-Try] SKU 不存在: skuId={}", skuId);
+                pending.forEach(r -> results.put(r, new IllegalArgumentException("商品不存在")));
+                return results;
+            }
+
+            int available = inventory.getAvailableStock();
+            LocalDateTime tryTime = LocalDateTime.now();
+            List<InvTccReservation> records = new ArrayList<>();
+            Map<String, TryRequest> admitted = new LinkedHashMap<>();
+            for (TryRequest request : pending) {
+                if (available < request.quantity) {
+                    log.error("❌ [TCC-Try] 库存不足: skuId={}, available={}, required={}",
+                            skuId, available, request.quantity);
+                    results.put(request, new RuntimeException(String.format("库存不足: 可用 %d, 需要 %d",
+                            available, request.quantity)));
+                    continue;
+                }
+                available -= request.quantity;
+                admitted.put(request.businessKey, request);
+                records.add(toRecord(request, tryTime));
+            }
+            if (records.isEmpty()) {
+                return results;
+            }
+
+            // 3. 写入预留记录，被空回滚抢先写入的业务键不预留库存（防悬挂）
+            int reserved = 0;
+            Set<String> inserted = new HashSet<>(reservationMapper.insertTryingBatch(records));
+            for (TryRequest request : admitted.values()) {
+                if (inserted.contains(request.businessKey)) {
+                    reserved += request.quantity;
+                } else {
+                    log.warn("⚠️  [TCC-Try] 预留记录已存在，幂等返回: businessKey={}", request.businessKey);
+                }
+                results.put(request, Boolean.TRUE);
+            }
+
+            // 4. 一条 UPDATE 预留整批库存
+            if (reserved > 0) {
+                int updated = inventoryMapper.update(null,
+                        new LambdaUpdateWrapper<Inventory>()
+                                .setSql("available_stock = available_stock - " + reserved)
+                                .setSql("locked_stock = locked_stock + " + reserved)
+                                .eq(Inventory::getId, inventory.getId())
+                                .ge(Inventory::getAvailableStock, reserved)
+                );
+                if (updated == 0) {
+                    throw new IllegalStateException("库存预留失败，请重试");
+                }
+                eventPublisher.publishEvent(InventoryChangedEvent.ofSku(skuId));
+            }
+
+            log.info("✅ [TCC-Try] 组提交完成: skuId={}, requests={}, reserved={}",
+                    skuId, batch.size(), reserved);
+            return results;
+        });
+
+        // 事务提交后再通知调用方
+        outcomes.forEach(TryRequest::complete);
+        followers.forEach((follower, first) -> follower.complete(outcomes.get(first)));
+    }
+
+    private static InvTccReservation toRecord(TryRequest request, LocalDateTime tryTime) {
+        InvTccReservation reservation = new InvTccReservation();
+        reservation.setBusinessKey(request.businessKey);
+        reservation.setSkuId(request.skuId);
+        reservation.setQuantity(request.quantity);
+        reservation.setXid(request.xid);
+        reservation.setBranchId(0L);  // 分支 ID 由 Seata 管理
+        reservation.setStatus(InvTccReservation.Status.TRYING);
+        reservation.setTryTime(tryTime);
+        return reservation;
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * 单个 SKU 的排队请求
+     */
+    private static final class SkuGroup {
+        private final Queue<TryRequest> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+    }
+
+    /**
+     * 一个 Try 请求及其结果
+     */
+    private static final class TryRequest {
+        private final Long skuId;
+        private final Integer quantity;
+        private final String businessKey;
+        private final String xid;
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        private TryRequest(Long skuId, Integer quantity, String businessKey, String xid) {
+            this.skuId = skuId;
+            this.quantity = quantity;
+            this.businessKey = businessKey;
+            this.xid = xid;
+        }
+
+        private void complete(Object outcome) {
+            if (outcome instanceof Throwable error) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(Boolean.TRUE);
+            }
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package com.frog.inventory;
+
+import com.frog.inventory.cache.InventoryNearCache;
+import com.frog.inventory.domain.dto.InventoryReservationRequest;
+import com.frog.inventory.domain.entity.Inventory;
+import com.frog.inventory.mapper.InvInventoryMapper;
+import com.frog.inventory.service.IInvInventoryService;
+import com.frog.inventory.lock.DistributedLock;
+import com.frog.inventory.service.IInvReservationService;
+import com.frog.inventory.service.RedisInventoryService;
+import com.frog.inventory.sharding.HotSkuShardingService;
+import lombok.extern.slf4j.Slf4j;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 库存 Redis 热路径性能测试
+ *
+ * <p>测试场景：
+ * 1. 扣减库存：旧实现（每次新建脚本 EVAL + 单独 EXPIRE） vs 脚本注册表（EVALSHA，TTL 在脚本内刷新）
+ * 2. 多行购物车扣减：逐行 deductStock vs 单脚本原子批量扣减
+ * 3. 热点 SKU：单库存键 vs 分桶（单节点 Redis 上主要体现脚本排队的缓解，Cluster 上分桶分布到多个槽位）
+ * 4. 热点 SKU 预占：分布式锁 + 多次往返 vs 单脚本无锁预占
+ * 5. 商品列表库存查询：逐次查库 vs 近端缓存 + 批量加载（对比数据库查询次数）
+ *
+ * <p>性能指标：ops/sec
+ *
+ * <p>依赖 test profile 指向的 Redis 实例（场景 5 另需数据库）
+ *
+ * @author SCM Platform Team
+ * @since 2025-12-26
+ */
+@Slf4j
+@SpringBootTest(properties = {
+        "inventory.sharding.enabled=true",
+        "inventory.sharding.promote-threshold=100000000",
+        "inventory.default-warehouse-id=00000000-0000-0000-0000-000000000001"
+})
+@ActiveProfiles("test")
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@DisplayName("库存 Redis 热路径性能测试")
+public class InventoryPerformanceTest {
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private RedisInventoryService redisInventoryService;
+
+    @Autowired
+    private HotSkuShardingService shardingService;
+
+    @Autowired
+    private IInvReservationService reservationService;
+
+    @Autowired
+    private DistributedLock distributedLock;
+
+    @Autowired
+    private IInvInventoryService inventoryService;
+
+    @Autowired
+    private InvInventoryMapper inventoryMapper;
+
+    @Autowired
+    private InventoryNearCache nearCache;
+
+    private static final String PERF_SKU_ID = "perf-sku-8888";
+    private static final String PERF_WAREHOUSE_ID = "perf-wh-1";
+    private static final int INITIAL_STOCK = 1_000_000;
+    private static final int THREAD_COUNT = 32;
+    private static final int OPS_PER_THREAD = 2_000;
+
+    /**
+     * 旧实现的扣减脚本（用于对比）
+     */
+    private static final String LEGACY_DEDUCT_LUA =
+            "local stock = redis.call('GET', KEYS[1])\n" +
+                    "if not stock then\n" +
+                    "    return -1\n" +
+                    "end\n" +
+                    "if tonumber(stock) < tonumber(ARGV[1]) then\n" +
+                    "    return -2\n" +
+                    "end\n" +
+                    "redis.call('DECRBY', KEYS[1], ARGV[1])\n" +
+                    "return 1";
+
+    @BeforeEach
+    public void setup() {
+        redisTemplate.opsForValue().set(stockKey(PERF_SKU_ID), INITIAL_STOCK, 10, TimeUnit.MINUTES);
+    }
+
+    @AfterEach
+    public void cleanup() {
+        redisTemplate.delete(stockKey(PERF_SKU_ID));
+    }
+
+    /**
+     * 场景 1: 扣减库存 旧实现 vs 脚本注册表
+     */
+    @Test
+    @Order(1)
+    @DisplayName("场景1: 扣减库存 EVAL+EXPIRE vs EVALSHA")
+    public void testDeductStockScriptRegistry() throws Exception {
+        double legacyOps = runConcurrently(() -> {
+            DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+            script.setScriptText(LEGACY_DEDUCT_LUA);
+            script.setResultType(Long.class);
+            Long result = redisTemplate.execute(script, Collections.singletonList(stockKey(PERF_SKU_ID)), 1);
+            redisTemplate.expire(stockKey(PERF_SKU_ID), 30, TimeUnit.SECONDS);
+            return result != null && result == 1L;
+        });
+
+        setup();
+
+        double registryOps = runConcurrently(
+                () -> redisInventoryService.deductStock(PERF_SKU_ID, PERF_WAREHOUSE_ID, 1));
+
+        log.info("📊 扣减库存: 旧实现={} ops/s, 脚本注册表={} ops/s, 提升={}x",
+                String.format("%.0f", legacyOps),
+                String.format("%.0f", registryOps),
+                String.format("%.2f", registryOps / legacyOps));
+
+        Integer remaining = redisInventoryService.getStock(PERF_SKU_ID, PERF_WAREHOUSE_ID);
+        assertEquals(INITIAL_STOCK - THREAD_COUNT * OPS_PER_THREAD, remaining);
+        assertTrue(redisTemplate.getExpire(stockKey(PERF_SKU_ID), TimeUnit.SECONDS) > 0, "TTL 应在脚本内刷新");
+    }
+
+    /**
+     * 场景 2: 多行购物车扣减 逐行扣减 vs 原子批量扣减
+     */
+    @Test
+    @Order(2)
+    @DisplayName("场景2: 多行扣减 逐行 vs 批量")
+    public void testBatchDeductStock() throws Exception {
+        int lineCount = 10;
+        List<String> skuIds = new ArrayList<>();
+        for (int i = 0; i < lineCount; i++) {
+            String skuId = PERF_SKU_ID + "-" + i;
+            skuIds.add(skuId);
+            redisTemplate.opsForValue().set(stockKey(skuId), INITIAL_STOCK, 10, TimeUnit.MINUTES);
+        }
+
+        try {
+            double perLineOps = runConcurrently(() -> {
+                for (String skuId : skuIds) {
+                    if (!redisInventoryService.deductStock(skuId, PERF_WAREHOUSE_ID, 1)) {
+                        return false;
+                    }
+                }
+                return true;
+            });
+
+            AtomicLong requestSeq = new AtomicLong();
+            List<RedisInventoryService.StockLine> lines = skuIds.stream()
+                    .map(skuId -> new RedisInventoryService.StockLine(skuId, PERF_WAREHOUSE_ID, 1))
+                    .toList();
+            double batchOps = runConcurrently(() -> redisInventoryService
+                    .batchDeductStock(lines, "perf-batch-" + requestSeq.incrementAndGet())
+                    .success());
+
+            log.info("📊 {} 行购物车扣减: 逐行={} carts/s, 批量={} carts/s, 提升={}x",
+                    lineCount,
+                    String.format("%.0f", perLineOps),
+                    String.format("%.0f", batchOps),
+                    String.format("%.2f", batchOps / perLineOps));
+
+            Integer remaining = redisInventoryService.getStock(skuIds.get(0), PERF_WAREHOUSE_ID);
+            assertEquals(INITIAL_STOCK - 2 * THREAD_COUNT * OPS_PER_THREAD, remaining);
+        } finally {
+            skuIds.forEach(skuId -> redisTemplate.delete(stockKey(skuId)));
+            redisTemplate.delete(redisTemplate.keys("inventory:idempotent:deduct:perf-batch-*"));
+        }
+    }
+
+    /**
+     * 场景 3: 热点 SKU 单库存键 vs 分桶
+     */
+    @Test
+    @Order(3)
+    @DisplayName("场景3: 热点 SKU 单键 vs 分桶")
+    public void testHotSkuSharding() throws Exception {
+        double singleKeyOps = runConcurrently(
+                () -> redisInventoryService.deductStock(PERF_SKU_ID, PERF_WAREHOUSE_ID, 1));
+
+        setup();
+        assertTrue(shardingService.promote(PERF_SKU_ID, PERF_WAREHOUSE_ID), "应成功切换为分桶模式");
+        try {
+            double shardedOps = runConcurrently(
+                    () -> redisInventoryService.deductStock(PERF_SKU_ID, PERF_WAREHOUSE_ID, 1));
+
+            log.info("📊 热点 SKU 扣减: 单键={} ops/s, 分桶={} ops/s, 提升={}x",
+                    String.format("%.0f", singleKeyOps),
+                    String.format("%.0f", shardedOps),
+                    String.format("%.2f", shardedOps / singleKeyOps));
+
+            // 分桶总量守恒
+            Integer remaining = redisInventoryService.getStock(PERF_SKU_ID, PERF_WAREHOUSE_ID);
+            assertEquals(INITIAL_STOCK - THREAD_COUNT * OPS_PER_THREAD, remaining);
+        } finally {
+            shardingService.demote(PERF_SKU_ID, PERF_WAREHOUSE_ID);
+        }
+    }
+
+    /**
+     * 场景 4: 热点 SKU 预占 分布式锁 vs 单脚本
+     *
+     * <p>旧实现只模拟其 Redis 部分（加锁、写哈希、设置 TTL、写索引、设置 TTL、解锁），
+     * 不含 SELECT ... FOR UPDATE 与 UPDATE 两次数据库往返，实际差距更大
+     */
+    @Test
+    @Order(4)
+    @DisplayName("场景4: 热点 SKU 预占 分布式锁 vs 单脚本")
+    public void testReservationThroughput() throws Exception {
+        AtomicLong legacySeq = new AtomicLong();
+        double legacyOps = runConcurrently(() -> {
+            DistributedLock.LockHandle lock = distributedLock.lock(
+                    "reserve:" + PERF_SKU_ID + ":" + PERF_WAREHOUSE_ID, 10, TimeUnit.SECONDS, 10_000, 1);
+            if (lock == null) {
+                return false;
+            }
+            try {
+                String businessKey = "perf-legacy-" + legacySeq.incrementAndGet();
+                Map<String, Object> data = new HashMap<>();
+                data.put("skuId", PERF_SKU_ID);
+                data.put("warehouseId", PERF_WAREHOUSE_ID);
+                data.put("quantity", 1);
+                data.put("businessKey", businessKey);
+                redisTemplate.opsForHash().putAll("inventory:reservation:" + businessKey, data);
+                redisTemplate.expire("inventory:reservation:" + businessKey, 900, TimeUnit.SECONDS);
+                String indexKey = "inventory:reservation:index:" + PERF_SKU_ID + ":" + PERF_WAREHOUSE_ID;
+                redisTemplate.opsForSet().add(indexKey, businessKey);
+                redisTemplate.expire(indexKey, 900, TimeUnit.SECONDS);
+                return true;
+            } finally {
+                lock.release();
+            }
+        });
+
+        AtomicLong scriptSeq = new AtomicLong();
+        double scriptOps = runConcurrently(() -> {
+            InventoryReservationRequest request = new InventoryReservationRequest();
+            request.setSkuId(PERF_SKU_ID);
+            request.setWarehouseId(PERF_WAREHOUSE_ID);
+            request.setQuantity(1);
+            request.setBusinessKey("perf-reserve-" + scriptSeq.incrementAndGet());
+            return reservationService.reserveInventory(request);
+        });
+
+        try {
+            log.info("📊 热点 SKU 预占: 分布式锁={} reservations/s, 单脚本={} reservations/s, 提升={}x",
+                    String.format("%.0f", legacyOps),
+                    String.format("%.0f", scriptOps),
+                    String.format("%.2f", scriptOps / legacyOps));
+
+            Integer remaining = redisInventoryService.getStock(PERF_SKU_ID, PERF_WAREHOUSE_ID);
+            assertEquals(INITIAL_STOCK - THREAD_COUNT * OPS_PER_THREAD, remaining);
+            assertTrue(reservationService.checkReservationExists("perf-reserve-1"));
+        } finally {
+            redisTemplate.delete(redisTemplate.keys("inventory:reservation:perf-*"));
+            redisTemplate.delete(redisTemplate.keys("inventory:idempotent:reserve:perf-*"));
+            redisTemplate.delete("inventory:reservation:index:" + PERF_SKU_ID + ":" + PERF_WAREHOUSE_ID);
+        }
+    }
+
+    /**
+     * 场景 5: 商品列表页对同一批 SKU 的高频库存查询
+     *
+     * <p>旧实现每次调用查询一次数据库；近端缓存下重复查询命中进程内缓存，未命中的键合并为 IN 查询
+     */
+    @Test
+    @Order(5)
+    @DisplayName("场景5: 库存查询 逐次查库 vs 近端缓存")
+    public void testNearCacheQueryFanOut() throws Exception {
+        int skuCount = 100;
+        AtomicLong legacySeq = new AtomicLong();
+        double legacyOps = runConcurrently(() -> {
+            String skuId = "perf-list-sku-" + legacySeq.incrementAndGet() % skuCount;
+            inventoryMapper.selectOne(new LambdaQueryWrapper<Inventory>()
+                    .eq(Inventory::getSkuId, skuId)
+                    .eq(Inventory::getWarehouseId, PERF_WAREHOUSE_ID)
+                    .eq(Inventory::getDeleted, false));
+            return true;
+        });
+        long legacyQueries = (long) THREAD_COUNT * OPS_PER_THREAD;
+
+        long queriesBefore = nearCache.loadQueryCount();
+        AtomicLong cachedSeq = new AtomicLong();
+        double cachedOps = runConcurrently(() -> {
+            String skuId = "perf-list-sku-" + cachedSeq.incrementAndGet() % skuCount;
+            inventoryService.getInventory(skuId, PERF_WAREHOUSE_ID);
+            return true;
+        });
+        long cachedQueries = nearCache.loadQueryCount() - queriesBefore;
+
+        log.info("📊 库存查询: 逐次查库={} ops/s（{} 次查询）, 近端缓存={} ops/s（{} 次查询）, 数据库查询减少={}x",
+                String.format("%.0f", legacyOps), legacyQueries,
+                String.format("%.0f", cachedOps), cachedQueries,
+                String.format("%.1f", (double) legacyQueries / Math.max(1, cachedQueries)));
+
+        assertTrue(cachedQueries < legacyQueries / 10, "近端缓存应显著减少数据库查询");
+    }
+
+    private String stockKey(String skuId) {
+        return redisInventoryService.buildStockKey(skuId, PERF_WAREHOUSE_ID);
+    }
+
+    /**
+     * 并发执行操作并返回 ops/sec
+     */
+    private double runConcurrently(BooleanSupplier operation) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        CountDownLatch latch = new CountDownLatch(THREAD_COUNT);
+        AtomicInteger failCount = new AtomicInteger(0);
+
+        long startTime = System.nanoTime();
+        for (int t = 0; t < THREAD_COUNT; t++) {
+            executor.submit(() -> {
+                try {
+                    for (int i = 0; i < OPS_PER_THREAD; i++) {
+                        if (!operation.getAsBoolean()) {
+                            failCount.incrementAndGet();
+                        }
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+        latch.await();
+        long elapsedNanos = System.nanoTime() - startTime;
+        executor.shutdown();
+
+        assertEquals(0, failCount.get(), "性能测试期间不应出现失败");
+        return (double) THREAD_COUNT * OPS_PER_THREAD / (elapsedNanos / 1_000_000_000.0);
+    }
+}
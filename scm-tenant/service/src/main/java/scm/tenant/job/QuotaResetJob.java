@@ -15,9 +15,8 @@ import java.util.UUID;
  * 执行时间：每日凌晨 00:05（cron: 0 5 0 * * ?）
  *
  * 功能：
- * 1. 重置所有租户的每日配额计数器
- * 2. 重置字段：current_orders_today = 0, current_api_calls_today = 0
- * 3. 支持参数化重置单个租户（用于手动触发）
+ * 1. 每日配额计数器按自然日分 key，跨天自动归零，全量重置不再删除计数器
+ * 2. 支持参数化重置单个租户（用于手动触发），递增该租户的配额代号，当天重新计数
  *
  * XXL-Job 配置示例：
  * - 执行器：scm-tenant-executor
@@ -13,4 +13,11 @@ import com.baomidou.mybatisplus.extension.service.IService;
  */
 public interface ITenantResourceQuotaService extends IService<TenantResourceQuota> {
 
+    /**
+     * 将租户限额发布到 Redis，供各服务的配额引擎读取；
+     * 存量计数器（用户、仓库、SKU、存储）不存在时以当前使用量初始化
+     *
+     * @param quota 租户资源配额
+     */
+    void publishQuota(TenantResourceQuota quota);
 }
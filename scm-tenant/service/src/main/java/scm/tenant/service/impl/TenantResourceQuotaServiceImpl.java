@@ -1,20 +1,170 @@
 package scm.tenant.service.impl;
 
+import com.frog.common.tenant.quota.QuotaKeys;
+import com.frog.common.tenant.quota.QuotaLimitSource;
+import com.frog.common.tenant.quota.QuotaType;
+import scm.tenant.domain.entity.Tenant;
 import scm.tenant.domain.entity.TenantResourceQuota;
+import scm.tenant.mapper.TenantMapper;
 import scm.tenant.mapper.TenantResourceQuotaMapper;
 import scm.tenant.service.ITenantResourceQuotaService;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Service;
 
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
 /**
  * <p>
  * 租户资源配额表 服务实现类
  * </p>
+ * 保存或修改配额后同步发布限额到 Redis，配额计数由 Redis 配额引擎维护。
+ * 启动时发布全部租户的限额（没有配额记录的租户发布空限额，即不限额），Redis 中限额丢失时按需从配额表重新发布。
  *
  * @author deng
  * @since 2025-12-25
  */
+@Slf4j
 @Service
-public class TenantResourceQuotaServiceImpl extends ServiceImpl<TenantResourceQuotaMapper, TenantResourceQuota> implements ITenantResourceQuotaService {
+@RequiredArgsConstructor
+public class TenantResourceQuotaServiceImpl extends ServiceImpl<TenantResourceQuotaMapper, TenantResourceQuota>
+        implements ITenantResourceQuotaService, QuotaLimitSource {
+
+    /**
+     * 原子替换限额 Hash：删除旧限额与写入新限额在一个脚本内完成，读取方不会看到中间的空 Hash
+     * <p>
+     * KEYS[1]: 限额 Hash；ARGV: field、value 交替
+     */
+    private static final DefaultRedisScript<Long> REPLACE_LIMITS = new DefaultRedisScript<>("""
+            redis.call('DEL', KEYS[1])
+            redis.call('HSET', KEYS[1], unpack(ARGV))
+            return 1
+            """, Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final TenantMapper tenantMapper;
+
+    @Override
+    public boolean save(TenantResourceQuota entity) {
+        boolean saved = super.save(entity);
+        if (saved) {
+            publishQuota(entity);
+        }
+        return saved;
+    }
+
+    @Override
+    public boolean updateById(TenantResourceQuota entity) {
+        boolean updated = super.updateById(entity);
+        if (updated) {
+            // 更新实体可能只包含变更字段，重新读取完整配额
+            publishQuota(getById(entity.getId()));
+        }
+        return updated;
+    }
+
+    @Override
+    public void publishQuota(TenantResourceQuota quota) {
+        if (quota == null || quota.getTenantId() == null) {
+            return;
+        }
+        UUID tenantId = UUID.fromString(quota.getTenantId());
+        writeLimits(tenantId, toLimits(quota));
+
+        seedCounter(tenantId, QuotaType.USERS, quota.getCurrentUsers());
+        seedCounter(tenantId, QuotaType.WAREHOUSES, quota.getCurrentWarehouses());
+        seedCounter(tenantId, QuotaType.SKUS, quota.getCurrentSkus());
+        if (quota.getCurrentStorageGb() != null) {
+            seedCounter(tenantId, QuotaType.STORAGE,
+                    quota.getCurrentStorageGb().setScale(0, RoundingMode.CEILING).intValue());
+        }
+    }
+
+    @Override
+    public Map<QuotaType, Long> reload(UUID tenantId) {
+        TenantResourceQuota quota = lambdaQuery()
+                .eq(TenantResourceQuota::getTenantId, tenantId.toString())
+                .one();
+        if (quota == null) {
+            // 没有配额记录：发布空限额（不限额），避免各服务反复回源
+            writeLimits(tenantId, Map.of());
+            return Map.of();
+        }
+        publishQuota(quota);
+        return toLimits(quota);
+    }
+
+    /**
+     * 启动时发布全部租户的限额，覆盖首次上线和 Redis 数据丢失的情况
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void publishAll() {
+        int published = 0;
+        for (TenantResourceQuota quota : list()) {
+            try {
+                publishQuota(quota);
+                published++;
+            } catch (Exception e) {
+                log.warn("[Quota] Failed to publish limits: tenant={}, error={}", quota.getTenantId(), e.getMessage());
+            }
+        }
+        List<Object> tenantIds = tenantMapper.selectObjs(new LambdaQueryWrapper<Tenant>().select(Tenant::getId));
+        for (Object tenantId : tenantIds) {
+            UUID id = UUID.fromString(tenantId.toString());
+            if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(QuotaKeys.limits(id)))) {
+                writeLimits(id, Map.of());
+                published++;
+            }
+        }
+        log.info("[Quota] Published limits of {} tenants", published);
+    }
+
+    private static Map<QuotaType, Long> toLimits(TenantResourceQuota quota) {
+        Map<QuotaType, Long> limits = new EnumMap<>(QuotaType.class);
+        putLimit(limits, QuotaType.USERS, quota.getMaxUsers());
+        putLimit(limits, QuotaType.WAREHOUSES, quota.getMaxWarehouses());
+        putLimit(limits, QuotaType.SKUS, quota.getMaxSkus());
+        putLimit(limits, QuotaType.ORDERS, quota.getMaxOrdersPerDay());
+        putLimit(limits, QuotaType.STORAGE, quota.getMaxStorageGb());
+        putLimit(limits, QuotaType.API_CALLS, quota.getMaxApiCallsPerDay());
+        return limits;
+    }
+
+    private static void putLimit(Map<QuotaType, Long> limits, QuotaType type, Integer limit) {
+        // 未设置限额视为不限额，不写入
+        if (limit != null) {
+            limits.put(type, limit.longValue());
+        }
+    }
+
+    /**
+     * 原子替换限额 Hash，始终带发布标记（不限额的租户也有这个 key）
+     */
+    private void writeLimits(UUID tenantId, Map<QuotaType, Long> limits) {
+        List<String> args = new ArrayList<>(limits.size() * 2 + 2);
+        args.add(QuotaKeys.PUBLISHED_FIELD);
+        args.add(String.valueOf(System.currentTimeMillis()));
+        limits.forEach((type, limit) -> {
+            args.add(type.name());
+            args.add(String.valueOf(limit));
+        });
+        stringRedisTemplate.execute(REPLACE_LIMITS, List.of(QuotaKeys.limits(tenantId)), args.toArray());
+    }
 
+    private void seedCounter(UUID tenantId, QuotaType type, Integer current) {
+        if (current != null) {
+            stringRedisTemplate.opsForValue().setIfAbsent(QuotaKeys.stock(tenantId, type), String.valueOf(current));
+        }
+    }
 }
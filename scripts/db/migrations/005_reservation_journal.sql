@@ -0,0 +1,10 @@
+-- ======================================================================
+-- 库存预占异步持久化
+-- 预占记录由 Redis 预占流水异步写入 inv_reservation，业务键即预占单号 / 订单号，
+-- 写入时尚无订单 ID，因此放开 order_id 非空约束
+-- ======================================================================
+
+-- 连接到 db_inventory 数据库
+-- \c db_inventory
+
+ALTER TABLE inv_reservation ALTER COLUMN order_id DROP NOT NULL;
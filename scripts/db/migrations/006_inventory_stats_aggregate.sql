@@ -0,0 +1,145 @@
+-- ======================================================================
+-- 库存统计聚合
+-- inv_inventory 每次变更由触发器把差值累加到 (租户, 仓库) 聚合行，统计查询不再全表扫描。
+-- 同一仓库的聚合拆为 16 个分条（stripe），分条由事务 ID 决定：并发事务分散到不同分条，避免热点行锁，
+-- 同一事务的全部变更（含一次 UPDATE 的移除旧值与加入新值）落在同一分条，每个仓库只锁一行，不会交叉加锁死锁；
+-- stripe = -1 为对账修正分条，只由对账任务写入
+-- ======================================================================
+
+-- 连接到 db_inventory 数据库
+-- \c db_inventory
+
+-- ======================================================================
+-- 1. 仓库维度聚合表 (inv_inventory_stats)
+-- ======================================================================
+CREATE TABLE IF NOT EXISTS inv_inventory_stats (
+    tenant_id UUID NOT NULL,
+    warehouse_id UUID NOT NULL,
+    stripe SMALLINT NOT NULL,
+
+    record_count BIGINT NOT NULL DEFAULT 0,        -- 库存记录数
+    total_stock BIGINT NOT NULL DEFAULT 0,
+    available_stock BIGINT NOT NULL DEFAULT 0,
+    locked_stock BIGINT NOT NULL DEFAULT 0,
+    damaged_stock BIGINT NOT NULL DEFAULT 0,
+    total_value DECIMAL(20, 2) NOT NULL DEFAULT 0, -- SUM(total_stock * average_cost)
+    out_of_stock_count BIGINT NOT NULL DEFAULT 0,  -- available_stock = 0
+    low_stock_count BIGINT NOT NULL DEFAULT 0,     -- 0 < available_stock <= safety_stock
+    normal_stock_count BIGINT NOT NULL DEFAULT 0,  -- available_stock > safety_stock
+
+    update_time TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+
+    PRIMARY KEY (tenant_id, warehouse_id, stripe)
+);
+
+COMMENT ON TABLE inv_inventory_stats IS '库存统计聚合（按租户、仓库分条累加，由触发器增量维护）';
+
+-- ======================================================================
+-- 2. 租户维度 SKU 数（去重计数无法增量累加，由对账任务刷新）
+-- ======================================================================
+CREATE TABLE IF NOT EXISTS inv_inventory_stats_tenant (
+    tenant_id UUID PRIMARY KEY,
+    sku_count BIGINT NOT NULL DEFAULT 0,
+    reconciled_at TIMESTAMPTZ NOT NULL DEFAULT NOW()
+);
+
+COMMENT ON TABLE inv_inventory_stats_tenant IS '库存统计：租户去重 SKU 数（对账任务刷新）';
+
+-- ======================================================================
+-- 函数：累加一条库存记录对聚合的贡献（p_sign = 1 加入，-1 移除）
+-- 分条取 txid_current() % 16：同一事务内固定，不同事务分散
+-- ======================================================================
+CREATE OR REPLACE FUNCTION fn_inventory_stats_add(p_row inv_inventory, p_sign INT)
+RETURNS VOID AS $$
+DECLARE
+    v_safety INT := COALESCE(p_row.safety_stock, 0);
+BEGIN
+    INSERT INTO inv_inventory_stats AS s (
+        tenant_id, warehouse_id, stripe, record_count, total_stock, available_stock, locked_stock,
+        damaged_stock, total_value, out_of_stock_count, low_stock_count, normal_stock_count, update_time)
+    VALUES (
+        p_row.tenant_id, p_row.warehouse_id, (txid_current() % 16)::SMALLINT,
+        p_sign,
+        p_sign * p_row.total_stock,
+        p_sign * p_row.available_stock,
+        p_sign * p_row.locked_stock,
+        p_sign * p_row.damaged_stock,
+        p_sign * p_row.total_stock * COALESCE(p_row.average_cost, 0),
+        p_sign * (p_row.available_stock = 0)::INT,
+        p_sign * (p_row.available_stock > 0 AND p_row.available_stock <= v_safety)::INT,
+        p_sign * (p_row.available_stock > v_safety)::INT,
+        NOW())
+    ON CONFLICT (tenant_id, warehouse_id, stripe) DO UPDATE
+    SET record_count = s.record_count + EXCLUDED.record_count,
+        total_stock = s.total_stock + EXCLUDED.total_stock,
+        available_stock = s.available_stock + EXCLUDED.available_stock,
+        locked_stock = s.locked_stock + EXCLUDED.locked_stock,
+        damaged_stock = s.damaged_stock + EXCLUDED.damaged_stock,
+        total_value = s.total_value + EXCLUDED.total_value,
+        out_of_stock_count = s.out_of_stock_count + EXCLUDED.out_of_stock_count,
+        low_stock_count = s.low_stock_count + EXCLUDED.low_stock_count,
+        normal_stock_count = s.normal_stock_count + EXCLUDED.normal_stock_count,
+        update_time = NOW();
+END;
+$$ LANGUAGE plpgsql;
+
+-- ======================================================================
+-- 函数：库存记录变更时维护聚合（先移除旧贡献，再加入新贡献；逻辑删除的记录不计入）
+-- ======================================================================
+CREATE OR REPLACE FUNCTION fn_inventory_stats_maintain()
+RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP IN ('UPDATE', 'DELETE') AND NOT OLD.deleted THEN
+        PERFORM fn_inventory_stats_add(OLD, -1);
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') AND NOT NEW.deleted THEN
+        PERFORM fn_inventory_stats_add(NEW, 1);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- 触发器：只在影响统计的字段变化时执行
+DROP TRIGGER IF EXISTS trg_inventory_stats_insert_delete ON inv_inventory;
+CREATE TRIGGER trg_inventory_stats_insert_delete
+    AFTER INSERT OR DELETE ON inv_inventory
+    FOR EACH ROW
+    EXECUTE FUNCTION fn_inventory_stats_maintain();
+
+DROP TRIGGER IF EXISTS trg_inventory_stats_update ON inv_inventory;
+CREATE TRIGGER trg_inventory_stats_update
+    AFTER UPDATE OF tenant_id, warehouse_id, total_stock, available_stock, locked_stock, damaged_stock,
+        safety_stock, average_cost, deleted ON inv_inventory
+    FOR EACH ROW
+    WHEN (OLD.* IS DISTINCT FROM NEW.*)
+    EXECUTE FUNCTION fn_inventory_stats_maintain();
+
+COMMENT ON FUNCTION fn_inventory_stats_maintain IS '库存记录变更时增量维护 inv_inventory_stats';
+
+-- ======================================================================
+-- 初始化：由现有库存一次性生成聚合（写入对账修正分条）
+-- ======================================================================
+INSERT INTO inv_inventory_stats (
+    tenant_id, warehouse_id, stripe, record_count, total_stock, available_stock, locked_stock,
+    damaged_stock, total_value, out_of_stock_count, low_stock_count, normal_stock_count)
+SELECT tenant_id, warehouse_id, -1,
+       COUNT(*),
+       SUM(total_stock),
+       SUM(available_stock),
+       SUM(locked_stock),
+       SUM(damaged_stock),
+       SUM(total_stock * COALESCE(average_cost, 0)),
+       COUNT(*) FILTER (WHERE available_stock = 0),
+       COUNT(*) FILTER (WHERE available_stock > 0 AND available_stock <= COALESCE(safety_stock, 0)),
+       COUNT(*) FILTER (WHERE available_stock > COALESCE(safety_stock, 0))
+FROM inv_inventory
+WHERE deleted = FALSE
+GROUP BY tenant_id, warehouse_id
+ON CONFLICT (tenant_id, warehouse_id, stripe) DO NOTHING;
+
+INSERT INTO inv_inventory_stats_tenant (tenant_id, sku_count)
+SELECT tenant_id, COUNT(DISTINCT sku_id)
+FROM inv_inventory
+WHERE deleted = FALSE
+GROUP BY tenant_id
+ON CONFLICT (tenant_id) DO NOTHING;
@@ -0,0 +1,44 @@
+-- ======================================================================
+-- 库存流水回写幂等与死信
+-- 库存流水（Redis Stream）合并回写 inv_inventory 时，已回写的流水 ID 与库存更新在同一事务内记录，
+-- 流水被重放（确认前宕机、XACK 失败、其他实例 XCLAIM）时跳过已记录的 ID，不会重复计入库存。
+-- 无法回写的流水（库存记录不存在或回写后为负）转入死信表，人工核对后处理，不再直接丢弃
+-- ======================================================================
+
+-- 连接到 db_inventory 数据库
+-- \c db_inventory
+
+-- ======================================================================
+-- 1. 已回写流水 (inv_stock_journal_applied)
+-- ======================================================================
+CREATE TABLE IF NOT EXISTS inv_stock_journal_applied (
+    stream_key VARCHAR(64) NOT NULL,
+    record_id VARCHAR(32) NOT NULL,               -- Stream 条目 ID（毫秒时间戳-序号）
+    applied_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+
+    PRIMARY KEY (stream_key, record_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_stock_journal_applied_at ON inv_stock_journal_applied (applied_at);
+
+COMMENT ON TABLE inv_stock_journal_applied IS '已回写的库存流水 ID（重放去重，定期清理）';
+
+-- ======================================================================
+-- 2. 库存流水死信 (inv_stock_journal_dead_letter)
+-- ======================================================================
+CREATE TABLE IF NOT EXISTS inv_stock_journal_dead_letter (
+    id BIGSERIAL PRIMARY KEY,
+    stream_key VARCHAR(64) NOT NULL,
+    sku_id VARCHAR(64) NOT NULL,
+    warehouse_id VARCHAR(64) NOT NULL,
+    delta BIGINT NOT NULL,                        -- 合并后的库存变化量
+    record_ids TEXT NOT NULL,                     -- 合并的流水 ID，逗号分隔
+    reason VARCHAR(64) NOT NULL,
+    resolved BOOLEAN NOT NULL DEFAULT FALSE,
+    create_time TIMESTAMPTZ NOT NULL DEFAULT NOW()
+);
+
+CREATE INDEX IF NOT EXISTS idx_stock_journal_dead_letter_sku
+    ON inv_stock_journal_dead_letter (sku_id, warehouse_id) WHERE resolved = FALSE;
+
+COMMENT ON TABLE inv_stock_journal_dead_letter IS '无法回写数据库的库存流水（Redis 已生效，需人工核对）';
@@ -0,0 +1,36 @@
+-- ======================================================================
+-- 库存预占回写兜底
+-- 1. inv_reservation 只建了 2025-01 ~ 2025-03 的月分区，之后的预占流水回写找不到分区，整批失败并无限重试；
+--    增加默认分区承接未建月分区的记录
+-- 2. 多次重试仍无法回写的单条预占流水转入死信表后确认，不再阻塞同一 Stream 的后续流水
+-- ======================================================================
+
+-- 连接到 db_inventory 数据库
+-- \c db_inventory
+
+-- ======================================================================
+-- 1. 预占默认分区
+-- ======================================================================
+CREATE TABLE IF NOT EXISTS inv_reservation_default PARTITION OF inv_reservation DEFAULT;
+
+-- ======================================================================
+-- 2. 预占流水死信 (inv_reservation_journal_dead_letter)
+-- ======================================================================
+CREATE TABLE IF NOT EXISTS inv_reservation_journal_dead_letter (
+    id BIGSERIAL PRIMARY KEY,
+    stream_key VARCHAR(64) NOT NULL,
+    record_id VARCHAR(32) NOT NULL,               -- Stream 条目 ID（毫秒时间戳-序号）
+    operation CHAR(1) NOT NULL,                   -- R 预占 / C 确认 / X 释放 / E 到期
+    business_key VARCHAR(128) NOT NULL,
+    payload TEXT NOT NULL,                        -- 流水原文
+    reason VARCHAR(64) NOT NULL,
+    resolved BOOLEAN NOT NULL DEFAULT FALSE,
+    create_time TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+
+    CONSTRAINT uk_reservation_dead_letter_record UNIQUE (stream_key, record_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_reservation_dead_letter_business_key
+    ON inv_reservation_journal_dead_letter (business_key) WHERE resolved = FALSE;
+
+COMMENT ON TABLE inv_reservation_journal_dead_letter IS '多次回写失败的预占流水（Redis 已生效，需人工核对）';